@@ -0,0 +1,93 @@
+package org.javamale.ectotext.bench;
+
+import org.javamale.ectotext.common.packet.impl.GameNarratorPacket;
+import org.javamale.ectotext.server.core.GameRoom;
+import org.javamale.ectotext.server.network.ClientHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura la diffusione di un pacchetto a tutti i membri di una stanza
+ * tramite {@link GameRoom#broadcastPacket}.
+ * <p>
+ * I destinatari sono spettatori collegati a socket fittizi; il frame viene
+ * consegnato a {@link ClientHandler#sendFrame(String)} e contato, senza
+ * passare dalla coda di invio. Si misura quindi il costo sostenuto dal
+ * thread che esegue il comando (serializzazione una tantum e
+ * consegna a ogni destinatario), non la scrittura sul socket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    /** Numero di destinatari nella stanza. */
+    @Param({"3", "100", "500"})
+    public int recipients;
+
+    private GameRoom room;
+    private GameNarratorPacket packet;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        room = new GameRoom("bench", "", 1, recipients);
+        for (int i = 0; i < recipients; i++) {
+            room.addSpectator("spettatore" + i, new CountingClientHandler(room));
+        }
+
+        packet = new GameNarratorPacket("""
+                Ti trovi nella hall del Sedgewick Hotel. Il pavimento di marmo è lucido \
+                e dal soffitto pende un enorme lampadario di cristallo.""");
+    }
+
+    @Benchmark
+    public void broadcast() {
+        room.broadcastPacket(packet);
+    }
+
+    /* ====================================================================== */
+    /*                          CLIENT FITTIZI                                */
+    /* ====================================================================== */
+
+    /**
+     * Client che conta i frame ricevuti invece di accodarli: il thread
+     * di lettura non viene avviato.
+     */
+    private static final class CountingClientHandler extends ClientHandler {
+
+        private long frames;
+
+        CountingClientHandler(GameRoom room) throws IOException {
+            super(new NullSocket(), room);
+        }
+
+        @Override
+        public void sendFrame(String frame) {
+            frames += frame.length();
+        }
+    }
+
+    /**
+     * Socket non connesso con stream vuoti.
+     */
+    private static final class NullSocket extends Socket {
+
+        @Override
+        public InputStream getInputStream() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.javamale.ectotext.bench;
+
+import org.javamale.ectotext.common.model.GameCreator;
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.impl.EctoTextCreator;
+import org.javamale.ectotext.server.core.GameCreatorRegistry;
+import org.javamale.ectotext.server.core.GameEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura {@link GameEngine#handleCommand(String, String)} per ciascun comando
+ * registrato da {@link EctoTextCreator}.
+ * <p>
+ * Ogni comando viene misurato a partire dallo stato iniziale, così i comandi
+ * che modificano lo stato (es. {@code raccogli}) non alterano le misure
+ * successive. Invece di ripristinare lo stato prima di ogni invocazione, il
+ * cui costo fisso falserebbe tempi inferiori al millisecondo, prima di ogni
+ * iterazione vengono preparati {@link #BATCH} motori con lo stato iniziale e
+ * ogni iterazione esegue il comando una volta su ciascuno: il tempo riportato
+ * è la media per comando.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+public class GameEngineBenchmark {
+
+    private static final String PLAYER = "bench";
+
+    /** Comandi eseguiti in ogni iterazione, ciascuno su un motore nuovo. */
+    private static final int BATCH = 1000;
+
+    /** Riga di comando inviata, una per ciascun comando registrato. */
+    @Param({
+            "chiama ascensore",
+            "guarda",
+            "inventario",
+            "parla direttore",
+            "raccogli mocio",
+            "usa zaino",
+            "vai nord",
+            "aiuto"
+    })
+    public String command;
+
+    private GameCreator creator;
+    private GameDescription description;
+    private final GameEngine[] engines = new GameEngine[BATCH];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        creator = GameCreatorRegistry.getCreator(EctoTextCreator.ID);
+        description = GameCreatorRegistry.getGameDescription(EctoTextCreator.ID);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetState() {
+        for (int i = 0; i < BATCH; i++) {
+            GameEngine engine = new GameEngine(creator, description);
+            engine.connectPlayer(PLAYER, "peter");
+            engines[i] = engine;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void handleCommand(Blackhole blackhole) {
+        for (GameEngine engine : engines) {
+            blackhole.consume(engine.handleCommand(PLAYER, command));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.javamale.ectotext.bench;
+
+import org.javamale.ectotext.common.model.GameCreator;
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.GameState;
+import org.javamale.ectotext.common.model.impl.EctoTextCreator;
+import org.javamale.ectotext.server.core.GameCreatorRegistry;
+import org.javamale.ectotext.server.persistence.DbManager;
+import org.javamale.ectotext.server.persistence.dao.GameStateDAO;
+import org.javamale.ectotext.server.util.DAOFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura il salvataggio e il caricamento dello stato di gioco tramite
+ * {@link GameStateDAO}.
+ * <p>
+ * Usa un'istanza H2 in memoria, preparata con
+ * {@link DbManager#setupDatabase(Connection)}, in modo che il risultato
+ * non dipenda dal disco né dal database del server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameStateDAOBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+    private static final String ROOM = "bench";
+
+    private Connection connection;
+    private GameStateDAO gameStateDAO;
+    private GameState gameState;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        GameCreator creator = GameCreatorRegistry.getCreator(EctoTextCreator.ID);
+        GameDescription description = GameCreatorRegistry.getGameDescription(EctoTextCreator.ID);
+
+        connection = DriverManager.getConnection(URL, "sa", "");
+        DbManager.setupDatabase(connection);
+
+        try (PreparedStatement ps = connection.prepareStatement(
+                "merge into game_rooms(gr_name, gr_password) values (?, ?)")) {
+            ps.setString(1, ROOM);
+            ps.setString(2, "");
+            ps.executeUpdate();
+        }
+
+        gameStateDAO = DAOFactory.createRowGameStateDAO(connection, description);
+        gameState = creator.createDefaultGameState(description);
+        gameStateDAO.save(ROOM, gameState);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public void save() throws SQLException {
+        gameStateDAO.save(ROOM, gameState);
+    }
+
+    @Benchmark
+    public GameState get() throws SQLException {
+        return gameStateDAO.get(ROOM);
+    }
+}
@@ -0,0 +1,93 @@
+package org.javamale.ectotext.bench;
+
+import org.javamale.ectotext.common.packet.ErrorCode;
+import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.PacketType;
+import org.javamale.ectotext.common.packet.impl.*;
+import org.javamale.ectotext.common.packet.impl.RoomListPacket.RoomListEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura la serializzazione e la deserializzazione dei pacchetti.
+ * <p>
+ * Il parametro {@link #type} copre tutte le costanti di {@link PacketType}:
+ * per ciascuna viene costruito un pacchetto rappresentativo con
+ * {@link #samplePacket(PacketType)}, che va aggiornato quando si aggiunge
+ * un nuovo tipo (lo {@code switch} non compila finché il caso manca).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PacketCodecBenchmark {
+
+    /** Tipo di pacchetto misurato (tutti i valori dell'enum). */
+    @Param
+    public PacketType type;
+
+    private Packet packet;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        packet = samplePacket(type);
+        json = packet.toBaseJson();
+    }
+
+    @Benchmark
+    public String encode() {
+        return packet.toBaseJson();
+    }
+
+    @Benchmark
+    public Packet decode() {
+        return Packet.fromBaseJson(json);
+    }
+
+    /**
+     * Costruisce un pacchetto con contenuti di dimensione realistica.
+     *
+     * @param type tipo di pacchetto
+     * @return pacchetto di esempio
+     */
+    static Packet samplePacket(PacketType type) {
+        return switch (type) {
+            case OK -> new OkPacket("Operazione completata");
+            case ERROR -> new ErrorPacket(ErrorCode.ROOM_NOT_FOUND);
+            case SERVER_SHUTDOWN -> new ServerShutdownPacket("Il server si sta riavviando", 5000);
+            case GET_ROOM_LIST -> new GetRoomListPacket();
+            case GET_ROOM_DETAILS -> new GetRoomDetailsPacket("SalaProva");
+            case CREATE_ROOM -> new CreateRoomPacket("SalaProva", "1234", 3, 10);
+            case JOIN_ROOM -> new JoinRoomPacket("giocatore", "SalaProva", "1234");
+            case DISCONNECT_ROOM -> new DisconnectRoomPacket("SalaProva");
+            case DELETE_ROOM -> new DeleteRoomPacket("SalaProva");
+            case RESUME_SESSION -> new ResumeSessionPacket("q2Xb9TzL0kV7cJmR4sYwAg", 42);
+            case ROOM_LIST -> new RoomListPacket(
+                    new RoomListEntry("SalaProva", 2, 3),
+                    new RoomListEntry("Hotel", 3, 3),
+                    new RoomListEntry("Biblioteca", 0, 3),
+                    new RoomListEntry("Caserma", 1, 3));
+            case ROOM_DETAILS -> new RoomDetailsPacket("SalaProva", "peter", "ray", "egon");
+            case ROOM_CREATED -> new RoomCreatedPacket("SalaProva");
+            case ROOM_JOINED -> new RoomJoinedPacket("giocatore", "SalaProva", "q2Xb9TzL0kV7cJmR4sYwAg");
+            case ROOM_DISCONNECTED -> new RoomDisconnectedPacket("SalaProva");
+            case ROOM_MOVED -> new RoomMovedPacket("SalaProva", "localhost", 6667);
+            case ROOM_DELETED -> new RoomDeletedPacket("SalaProva");
+            case CHAT_MESSAGE -> new ChatMessagePacket("giocatore", "Qualcuno ha visto il fantasma verde?");
+            case GAME_GET_AVAILABLE_CHARACTERS -> new GameGetAvailableCharactersPacket();
+            case GAME_SELECT_CHARACTER -> new GameSelectCharacterPacket("giocatore", "peter");
+            case GAME_COMMAND -> new GameCommandPacket("giocatore", "vai nord");
+            case GAME_AVAILABLE_CHARACTERS -> new GameAvailableCharactersPacket("peter", "ray", "egon");
+            case GAME_NARRATOR -> new GameNarratorPacket("""
+                    Ti trovi nella hall del Sedgewick Hotel. Il pavimento di marmo è lucido \
+                    e dal soffitto pende un enorme lampadario di cristallo. A nord c'è l'ascensore, \
+                    a est la porta della sala da ballo.""");
+            case GAME_DIALOGUE -> new GameDialoguePacket("Direttore",
+                    "Vi prego, fate in fretta! Gli ospiti cominciano a lamentarsi.");
+        };
+    }
+}
@@ -1,13 +1,33 @@
 package org.javamale.ectotext;
 
 import org.javamale.ectotext.client.GameClient;
+import org.javamale.ectotext.client.gui.panel.Scrollback;
+import org.javamale.ectotext.client.load.LoadGenerator;
+import org.javamale.ectotext.client.load.LoadStats;
+import org.javamale.ectotext.common.model.impl.EctoTextCreator;
+import org.javamale.ectotext.common.model.world.WorldBinaryFormat;
+import org.javamale.ectotext.common.model.world.WorldDefinition;
+import org.javamale.ectotext.common.model.world.WorldLoader;
 import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.cluster.Cluster;
+import org.javamale.ectotext.server.cluster.ClusterNode;
+import org.javamale.ectotext.server.core.GameCreatorRegistry;
+import org.javamale.ectotext.server.core.RoomImport;
 import org.javamale.ectotext.server.persistence.DbManager;
+import org.javamale.ectotext.server.persistence.journal.EventJournal;
+import org.javamale.ectotext.server.persistence.mapped.MappedStateStore;
+import org.javamale.ectotext.server.persistence.storage.Storage;
+import org.javamale.ectotext.server.replay.CommandReplayer;
+import org.javamale.ectotext.server.replay.ReplayScript;
+import org.javamale.ectotext.server.util.DAOFactory;
+import org.javamale.ectotext.server.trace.Tracer;
 import picocli.CommandLine;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 
@@ -30,10 +50,15 @@ import java.util.concurrent.CountDownLatch;
           - Client mode: starts the graphical interface for players to explore rooms, interact with the environment, and communicate with others.
           - Server mode: runs the game server, handles game state, player data, and room logic.
           Supports JSON room loading, database reset, and configuration via properties file.
+          Several server nodes can share the rooms by consistent hashing (--cluster-config, --node-id, --cluster-secret).
 
         Use 'client' or 'server' subcommands to choose the mode.
+        Use 'compile-world' to precompile a JSON world file for faster server startup.
+        Use 'load-test' to simulate many headless players against a running server.
+        Use 'replay' to replay a command script offline and compare it with a golden transcript.
         """,
-        subcommands = {MainGame.ClientCommand.class, MainGame.ServerCommand.class}
+        subcommands = {MainGame.ClientCommand.class, MainGame.ServerCommand.class, MainGame.CompileWorldCommand.class,
+                MainGame.LoadTestCommand.class, MainGame.ReplayCommand.class}
 )
 public class MainGame implements Runnable {
     /** Versione corrente dell'applicazione. */
@@ -82,11 +107,35 @@ public class MainGame implements Runnable {
             name = "client",
             description = "Launch the client")
     static class ClientCommand implements Runnable {
+        /** Limite di caratteri dell'area di gioco. */
+        @CommandLine.Option(names = "--scrollback", description = "Game text scrollback in characters, 0 for unlimited (default: "
+                + Scrollback.DEFAULT_GAME_CHARS + ")")
+        private Integer gameScrollback;
+
+        /** Limite di caratteri della chat. */
+        @CommandLine.Option(names = "--chat-scrollback", description = "Chat scrollback in characters, 0 for unlimited (default: "
+                + Scrollback.DEFAULT_CHAT_CHARS + ")")
+        private Integer chatScrollback;
+
+        /** File in cui archiviare il testo rimosso dalla cronologia. */
+        @CommandLine.Option(names = "--scrollback-archive", description = "Append trimmed game and chat text to this file")
+        private File scrollbackArchive;
+
         /**
          * Avvia l'applicazione in modalità client con interfaccia grafica.
          */
         @Override
         public void run() {
+            if (gameScrollback != null) {
+                System.setProperty(Scrollback.GAME_CHARS_PROPERTY, gameScrollback.toString());
+            }
+            if (chatScrollback != null) {
+                System.setProperty(Scrollback.CHAT_CHARS_PROPERTY, chatScrollback.toString());
+            }
+            if (scrollbackArchive != null) {
+                System.setProperty(Scrollback.ARCHIVE_PROPERTY, scrollbackArchive.getPath());
+            }
+
             System.out.println("Launching in CLIENT mode");
             GameClient.getInstance().startWindow();
         }
@@ -121,6 +170,42 @@ public class MainGame implements Runnable {
         @CommandLine.Option(names = "--rest-port", description = "REST port")
         private Integer restPort;
 
+        /** File del mondo di gioco (JSON o compilato). */
+        @CommandLine.Option(names = {"-w", "--world"}, description = "Path to a world file (JSON or compiled .ectw)")
+        private File worldFile;
+
+        /** Supporto di memorizzazione di stanze e stati di gioco. */
+        @CommandLine.Option(names = "--storage", description = "Storage backend: h2, h2-mem or heap (default: h2)")
+        private String storage;
+
+        /** Modalità di persistenza degli stati di gioco. */
+        @CommandLine.Option(names = "--persistence", description = "Game state persistence: rows, journal or mapped (default: rows)")
+        private String persistence;
+
+        /** Soglia in millisecondi oltre la quale una richiesta è registrata come lenta. */
+        @CommandLine.Option(names = "--slow-request-ms", description = "Slow request log threshold in milliseconds (default: 250)")
+        private Long slowRequestMillis;
+
+        /** Frazione dei pacchetti di cui conservare la traccia. */
+        @CommandLine.Option(names = "--trace-sample-rate", description = "Fraction of packets to trace, between 0 and 1 (default: 0.01)")
+        private Double traceSampleRate;
+
+        /** Tempo massimo dell'arresto ordinato, in secondi. */
+        @CommandLine.Option(names = "--drain-timeout", description = "Seconds to wait for in-flight commands on shutdown (default: 10)")
+        private Long drainTimeoutSeconds;
+
+        /** File JSON con i nodi del cluster. */
+        @CommandLine.Option(names = "--cluster-config", description = "Path to the cluster nodes JSON file (enables multi-node mode)")
+        private File clusterConfig;
+
+        /** Identificatore del nodo locale nel cluster. */
+        @CommandLine.Option(names = "--node-id", description = "Id of this node in the cluster config")
+        private String nodeId;
+
+        /** Segreto condiviso dai nodi del cluster. */
+        @CommandLine.Option(names = "--cluster-secret", description = "Shared secret required on node-to-node cluster requests")
+        private String clusterSecret;
+
         /** Flag per il reset del database. */
         @CommandLine.Option(names = "--reset-db", description = "Reset the database")
         private boolean resetDb;
@@ -131,6 +216,8 @@ public class MainGame implements Runnable {
          * Il metodo:
          * <ul>
          *   <li>Carica le configurazioni dal file properties se specificato</li>
+         *   <li>Carica la configurazione del cluster se specificata: le porte
+         *       predefinite e il database diventano quelli del nodo locale</li>
          *   <li>Inizializza il server sulle porte specificate</li>
          *   <li>Carica le stanze dal file JSON se specificato</li>
          *   <li>Gestisce il reset del database se richiesto</li>
@@ -169,6 +256,101 @@ public class MainGame implements Runnable {
                 }
             }
 
+            if (worldFile == null && props.getProperty("world") != null) {
+                worldFile = new File(props.getProperty("world"));
+            }
+
+            if (worldFile != null) {
+                System.setProperty(EctoTextCreator.WORLD_PROPERTY, worldFile.getPath());
+            }
+
+            if (persistence == null) {
+                persistence = props.getProperty("persistence");
+            }
+
+            if (persistence != null) {
+                if (!List.of("rows", "journal", "mapped").contains(persistence)) {
+                    System.err.println("Error: Invalid persistence mode: " + persistence);
+                    System.exit(1);
+                }
+                System.setProperty(DAOFactory.PERSISTENCE_PROPERTY, persistence);
+            }
+
+            if (storage == null) {
+                storage = props.getProperty("storage");
+            }
+
+            if (storage != null) {
+                if (!Storage.NAMES.contains(storage)) {
+                    System.err.println("Error: Invalid storage backend: " + storage);
+                    System.exit(1);
+                }
+                if (!Storage.H2.equals(storage) && persistence != null && !persistence.equals("rows")) {
+                    System.err.println("Error: Persistence mode " + persistence + " writes to disk and requires --storage h2");
+                    System.exit(1);
+                }
+                System.setProperty(Storage.STORAGE_PROPERTY, storage);
+            }
+
+            try {
+                if (slowRequestMillis == null && props.getProperty("slow-request-ms") != null) {
+                    slowRequestMillis = Long.parseLong(props.getProperty("slow-request-ms"));
+                }
+                if (drainTimeoutSeconds == null && props.getProperty("drain-timeout") != null) {
+                    drainTimeoutSeconds = Long.parseLong(props.getProperty("drain-timeout"));
+                }
+                if (traceSampleRate == null && props.getProperty("trace-sample-rate") != null) {
+                    traceSampleRate = Double.parseDouble(props.getProperty("trace-sample-rate"));
+                }
+                if (slowRequestMillis != null) {
+                    Tracer.setSlowThresholdMillis(slowRequestMillis);
+                }
+                if (traceSampleRate != null) {
+                    Tracer.setSampleRate(traceSampleRate);
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: Invalid tracing or drain configuration: " + e.getMessage());
+                System.exit(1);
+            }
+
+            if (clusterConfig == null && props.getProperty("cluster-config") != null) {
+                clusterConfig = new File(props.getProperty("cluster-config"));
+            }
+            if (nodeId == null) {
+                nodeId = props.getProperty("node-id");
+            }
+            if (clusterSecret == null) {
+                clusterSecret = props.getProperty("cluster-secret");
+            }
+            if (clusterSecret != null) {
+                System.setProperty(Cluster.SECRET_PROPERTY, clusterSecret);
+            }
+
+            if (clusterConfig != null) {
+                if (nodeId == null) {
+                    System.err.println("Error: --node-id is required with --cluster-config");
+                    System.exit(1);
+                }
+                if (System.getProperty(Cluster.SECRET_PROPERTY) == null) {
+                    System.err.println("Error: --cluster-secret is required with --cluster-config");
+                    System.exit(1);
+                }
+                try {
+                    Cluster.init(clusterConfig, nodeId);
+                } catch (IOException e) {
+                    System.err.println("Error: Failed to load cluster config: " + clusterConfig);
+                    System.err.println(e.getMessage());
+                    System.exit(1);
+                }
+
+                ClusterNode node = Cluster.getLocalNode();
+                socketPort = socketPort == null ? node.socketPort() : socketPort;
+                restPort = restPort == null ? node.restPort() : restPort;
+                if (System.getProperty(DbManager.DB_PATH_PROPERTY) == null) {
+                    System.setProperty(DbManager.DB_PATH_PROPERTY, "./ectotextdb-" + node.id());
+                }
+            }
+
             System.out.println("Launching in SERVER mode");
 
             // Set default ports if not provided
@@ -183,7 +365,7 @@ public class MainGame implements Runnable {
                 System.exit(1);
             }
 
-            int loadedRooms = 0;
+            RoomImport loadedRooms = null;
 
             if (roomsFile != null) {
                 try {
@@ -196,7 +378,9 @@ public class MainGame implements Runnable {
 
             if (resetDb) {
                 try {
-                    DbManager.resetDb();
+                    Storage.reset();
+                    EventJournal.reset();
+                    MappedStateStore.reset();
                     System.out.println("Database reset completed. Please restart the server.");
                 } catch (Exception e) {
                     System.err.println("Error while resetting the database:");
@@ -209,17 +393,29 @@ public class MainGame implements Runnable {
             System.out.println("Server started successfully");
             System.out.println("REST API listening on port: " + restPort);
             System.out.println("Socket server listening on port: " + socketPort);
+            if (Cluster.isEnabled()) {
+                System.out.println("Cluster node '" + nodeId + "' of " + Cluster.getNodes().size() + " node(s)");
+            }
 
-            if (loadedRooms > 0) {
-                System.out.println("Loaded " + loadedRooms + " room(s) from: " + roomsFile);
+            if (loadedRooms != null && loadedRooms.created() > 0) {
+                System.out.println("Loaded " + loadedRooms.created() + " room(s) from: " + roomsFile);
+            }
+            if (loadedRooms != null && !loadedRooms.duplicates().isEmpty()) {
+                List<String> duplicates = loadedRooms.duplicates();
+                System.err.println("Skipped " + duplicates.size() + " room(s) that already exist: "
+                        + String.join(", ", duplicates.subList(0, Math.min(duplicates.size(), 10)))
+                        + (duplicates.size() > 10 ? ", ..." : ""));
             }
 
             /*
              * Shutdown hook: invoked when the JVM receives Ctrl + C (SIGINT) or SIGTERM.
-             * Closes the server gracefully.
+             * Drains the server (no new packets, in-flight commands completed, game
+             * states saved, clients notified) and then closes it.
              */
+            Duration drainTimeout = Duration.ofSeconds(drainTimeoutSeconds == null ? 10 : drainTimeoutSeconds);
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("\n⏹  Stopping server…");
+                GameServer.drain(drainTimeout);
                 GameServer.shutdown();
                 System.out.println("Server stopped successfully.");
                 shutdownLatch.countDown();          // releases the main thread
@@ -233,4 +429,234 @@ public class MainGame implements Runnable {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Comando per la compilazione offline di un mondo di gioco.
+     * <p>
+     * Converte un mondo JSON nel formato binario {@link WorldBinaryFormat},
+     * che il server carica mappandolo in memoria.
+     * </p>
+     */
+    @CommandLine.Command(
+            mixinStandardHelpOptions = true,
+            versionProvider = MainGame.VersionProvider.class,
+            name = "compile-world",
+            description = "Compile a JSON world file into the binary .ectw format"
+    )
+    static class CompileWorldCommand implements Runnable {
+        /** File JSON sorgente del mondo. */
+        @CommandLine.Parameters(index = "0", description = "Source world JSON file")
+        private File source;
+
+        /** File compilato di destinazione. */
+        @CommandLine.Parameters(index = "1", arity = "0..1", description = "Output file (default: source with .ectw extension)")
+        private File target;
+
+        /**
+         * Compila il mondo e stampa un riepilogo.
+         */
+        @Override
+        public void run() {
+            if (target == null) {
+                String name = source.getName().replaceFirst("\\.json$", "");
+                target = new File(source.getAbsoluteFile().getParentFile(), name + WorldBinaryFormat.EXTENSION);
+            }
+
+            try {
+                WorldDefinition world = WorldLoader.compile(source.toPath(), target.toPath());
+                System.out.println("Compiled world '" + world.name() + "' (" + world.rooms().size() + " rooms) to: " + target);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error: Failed to compile world file: " + source);
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Comando per il test di carico di un server in esecuzione.
+     * <p>
+     * Apre molte connessioni headless con {@link LoadGenerator}, fa creare
+     * stanze, scegliere personaggi ed eseguire uno script di comandi, quindi
+     * stampa latenze, throughput e codici di errore.
+     * </p>
+     */
+    @CommandLine.Command(
+            mixinStandardHelpOptions = true,
+            versionProvider = MainGame.VersionProvider.class,
+            name = "load-test",
+            description = "Simulate many headless players against a running server"
+    )
+    static class LoadTestCommand implements Runnable {
+        /** Indirizzo del server. */
+        @CommandLine.Option(names = "--host", defaultValue = "localhost", description = "Server host (default: ${DEFAULT-VALUE})")
+        private String host;
+
+        /** Porta socket del server. */
+        @CommandLine.Option(names = "--socket-port", defaultValue = "6666", description = "Socket port (default: ${DEFAULT-VALUE})")
+        private int socketPort;
+
+        /** Numero di connessioni simultanee. */
+        @CommandLine.Option(names = {"-c", "--clients"}, defaultValue = "100", description = "Concurrent connections (default: ${DEFAULT-VALUE})")
+        private int clients;
+
+        /** Giocatori per stanza. */
+        @CommandLine.Option(names = "--players-per-room", defaultValue = "3", description = "Players per room (default: ${DEFAULT-VALUE})")
+        private int playersPerRoom;
+
+        /** Comandi al secondo per giocatore. */
+        @CommandLine.Option(names = "--rate", defaultValue = "1", description = "Commands per second per player, 0 for no pacing (default: ${DEFAULT-VALUE})")
+        private double rate;
+
+        /** Ripetizioni dello script. */
+        @CommandLine.Option(names = "--walks", defaultValue = "1", description = "Script repetitions per player (default: ${DEFAULT-VALUE})")
+        private int walks;
+
+        /** Secondi in cui distribuire l'apertura delle connessioni. */
+        @CommandLine.Option(names = "--ramp-up", defaultValue = "10", description = "Seconds over which connections are opened (default: ${DEFAULT-VALUE})")
+        private int rampUp;
+
+        /** Secondi di attesa massima per ogni risposta. */
+        @CommandLine.Option(names = "--timeout", defaultValue = "30", description = "Seconds to wait for each response (default: ${DEFAULT-VALUE})")
+        private int timeout;
+
+        /** Script di comandi di gioco. */
+        @CommandLine.Option(names = {"-s", "--script"}, description = "Command script, one per line (default: the walkthrough in doc/Soluzione.md)")
+        private File script;
+
+        /**
+         * Esegue il test di carico e stampa il riepilogo.
+         */
+        @Override
+        public void run() {
+            LoadGenerator.Options options;
+            try {
+                List<String> commands = LoadGenerator.loadScript(script == null ? null : script.toPath());
+                options = new LoadGenerator.Options(host, socketPort, clients, playersPerRoom, rate, walks,
+                        Duration.ofSeconds(rampUp), Duration.ofSeconds(timeout), commands);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error: Invalid load test configuration");
+                System.err.println(e.getMessage());
+                System.exit(1);
+                return;
+            }
+
+            System.out.println("Starting load test: " + clients + " client(s) against " + host + ":" + socketPort);
+
+            LoadGenerator generator = new LoadGenerator(options);
+            try {
+                LoadStats stats = generator.run();
+                stats.print(System.out, generator.getElapsedNanos());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Comando per la riproduzione offline di uno script di comandi.
+     * <p>
+     * Esegue lo script con {@link CommandReplayer} direttamente sul motore di
+     * gioco, senza server né database. Può salvare la trascrizione come
+     * riferimento, confrontarla con un riferimento salvato in precedenza e
+     * ripetere lo script più volte in parallelo per misurarne il throughput.
+     * </p>
+     */
+    @CommandLine.Command(
+            mixinStandardHelpOptions = true,
+            versionProvider = MainGame.VersionProvider.class,
+            name = "replay",
+            description = "Replay a command script offline and compare it with a golden transcript"
+    )
+    static class ReplayCommand implements Runnable {
+        /** Script da riprodurre. */
+        @CommandLine.Parameters(index = "0", arity = "0..1",
+                description = "Script of commands or JSON packets, one per line (default: the walkthrough in doc/Soluzione.md)")
+        private File script;
+
+        /** Avventura da riprodurre. */
+        @CommandLine.Option(names = "--game", defaultValue = GameCreatorRegistry.DEFAULT_GAME_ID, description = "Game id (default: ${DEFAULT-VALUE})")
+        private String gameId;
+
+        /** File del mondo. */
+        @CommandLine.Option(names = {"-w", "--world"}, description = "Path to a world file (JSON or compiled .ectw)")
+        private File worldFile;
+
+        /** File in cui salvare la trascrizione di riferimento. */
+        @CommandLine.Option(names = "--record", description = "Write the transcript to this golden file")
+        private File record;
+
+        /** Trascrizione di riferimento da confrontare. */
+        @CommandLine.Option(names = "--golden", description = "Compare the transcript with this golden file")
+        private File golden;
+
+        /** Ripetizioni dello script. */
+        @CommandLine.Option(names = "--repeat", defaultValue = "1", description = "Independent replays to run and compare (default: ${DEFAULT-VALUE})")
+        private int repeat;
+
+        /** Thread per le ripetizioni. */
+        @CommandLine.Option(names = "--threads", defaultValue = "1", description = "Threads for the repeated replays (default: ${DEFAULT-VALUE})")
+        private int threads;
+
+        /**
+         * Riproduce lo script e stampa l'esito.
+         */
+        @Override
+        public void run() {
+            if (worldFile != null) {
+                System.setProperty(EctoTextCreator.WORLD_PROPERTY, worldFile.getPath());
+            }
+
+            CommandReplayer replayer;
+            try {
+                if (repeat < 1 || threads < 1) {
+                    throw new IllegalArgumentException("--repeat and --threads must be at least 1");
+                }
+                ReplayScript steps = script == null
+                        ? ReplayScript.ofCommands(LoadGenerator.loadScript(null))
+                        : ReplayScript.load(script.toPath());
+                replayer = new CommandReplayer(gameId, steps);
+                System.out.println("Replaying " + steps.steps().size() + " step(s), "
+                        + steps.commandCount() + " command(s) on game '" + gameId + "'");
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error: Invalid replay configuration");
+                System.err.println(e.getMessage());
+                System.exit(1);
+                return;
+            }
+
+            try {
+                if (record != null) {
+                    replayer.record(record.toPath());
+                    System.out.println("Golden transcript written to: " + record);
+                }
+                if (golden != null) {
+                    CommandReplayer.Mismatch mismatch = replayer.verify(golden.toPath());
+                    if (mismatch != null) {
+                        System.err.println("Mismatch at transcript line " + mismatch.line() + " of " + golden);
+                        System.err.println("  expected: " + (mismatch.expected() == null ? "<end of file>" : mismatch.expected()));
+                        System.err.println("  actual:   " + (mismatch.actual() == null ? "<end of file>" : mismatch.actual()));
+                        System.exit(1);
+                        return;
+                    }
+                    System.out.println("Transcript matches: " + golden);
+                }
+            } catch (IOException e) {
+                System.err.println("Error: Failed to access the golden transcript");
+                System.err.println(e.getMessage());
+                System.exit(1);
+                return;
+            }
+
+            CommandReplayer.Summary summary = replayer.benchmark(repeat, threads);
+            System.out.printf("Replays:          %d on %d thread(s)%n", summary.runs(), threads);
+            System.out.printf("Commands:         %d in %.1f ms (%.0f/min)%n",
+                    summary.commands(), summary.nanos() / 1e6, summary.commandsPerMinute());
+            System.out.printf("Transcript CRC32: %08x%n", summary.digest());
+            if (!summary.deterministic()) {
+                System.err.println("Error: Replays produced different transcripts");
+                System.exit(1);
+            }
+        }
+    }
+}
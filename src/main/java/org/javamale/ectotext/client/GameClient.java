@@ -62,6 +62,27 @@ public class GameClient {
     /** Nome del giocatore corrente. */
     private String playerName;
 
+    /** Token della sessione nella stanza corrente, usato per riconnettersi. */
+    private volatile String sessionToken;
+
+    /**
+     * Pacchetti ricevuti dall'ingresso nella stanza, comunicati al server
+     * alla ripresa della sessione per ricevere solo quelli persi.
+     */
+    private volatile long receivedSinceJoin;
+
+    /** Host dell'ultima connessione socket. */
+    private String socketHost;
+
+    /** Porta dell'ultima connessione socket. */
+    private int socketPort;
+
+    /** Tentativi di riconnessione dopo la caduta della connessione. */
+    private static final int RESUME_ATTEMPTS = 8;
+
+    /** Attesa massima tra due tentativi di riconnessione (ms). */
+    private static final long RESUME_MAX_BACKOFF_MILLIS = 5000;
+
     /**
      * Costruttore privato per il pattern Singleton.
      * Inizializza la finestra principale del gioco.
@@ -194,6 +215,8 @@ public class GameClient {
             try {
                 socketClient = new SocketClient(host, port);
                 socketClient.start();
+                socketHost = host;
+                socketPort = port;
 
                 return socketClient;
 
@@ -205,6 +228,31 @@ public class GameClient {
         }
     }
 
+    /**
+     * Si assicura che il client sia collegato al nodo indicato.
+     * <p>
+     * Con un server a più nodi ogni stanza è ospitata da un nodo diverso:
+     * se il client è collegato a un altro nodo la connessione viene chiusa e
+     * sostituita.
+     * </p>
+     *
+     * @param host indirizzo del nodo
+     * @param port porta socket del nodo
+     * @return il client socket collegato al nodo, o null in caso di errore
+     */
+    public SocketClient connectTo(String host, int port) {
+        synchronized (socketClientLock) {
+            if (socketClient != null) {
+                if (host.equals(socketHost) && port == socketPort) {
+                    return socketClient;
+                }
+                socketClient.close();
+                socketClient = null;
+            }
+            return connect(host, port);
+        }
+    }
+
     /**
      * Disconnette il client dal server.
      */
@@ -219,6 +267,65 @@ public class GameClient {
         }
     }
 
+    /**
+     * Gestisce la caduta della connessione con il server.
+     * <p>
+     * Se il giocatore è in una stanza, tenta di riconnettersi in background
+     * con attese crescenti e di riprendere la sessione con un
+     * {@link ResumeSessionPacket}; se non ci riesce torna alla lobby.
+     * Chiamato dal thread di ricezione di {@code source}.
+     * </p>
+     *
+     * @param source client socket la cui connessione è caduta
+     */
+    public void connectionLost(SocketClient source) {
+        String token;
+        synchronized (socketClientLock) {
+            if (socketClient != source) {
+                return;
+            }
+            socketClient = null;
+            token = sessionToken;
+        }
+
+        if (token == null) {
+            return;
+        }
+
+        SwingUtilities.invokeLater(() -> gameWindow.receiveErrorMessage("Connessione persa, riconnessione in corso..."));
+        Thread.ofVirtual().name("session-resume").start(() -> resumeSession(token, 500));
+    }
+
+    /**
+     * Segue la stanza spostata su un altro nodo del server.
+     * <p>
+     * Chiude la connessione corrente e riprende subito la sessione sul
+     * nuovo nodo con lo stesso token; il pacchetto ricevuto conta tra i
+     * messaggi già ricevuti. Chiamato dal thread di ricezione.
+     * </p>
+     *
+     * @param roomMovedPacket pacchetto con l'indirizzo del nuovo nodo
+     */
+    private void followRoom(RoomMovedPacket roomMovedPacket) {
+        String token;
+        synchronized (socketClientLock) {
+            token = sessionToken;
+            if (socketClient != null) {
+                socketClient.close();
+                socketClient = null;
+            }
+            socketHost = roomMovedPacket.getHost();
+            socketPort = roomMovedPacket.getSocketPort();
+        }
+
+        if (token == null) {
+            return;
+        }
+
+        SwingUtilities.invokeLater(() -> gameWindow.receiveNarratorMessage("La stanza si sposta su un altro server..."));
+        Thread.ofVirtual().name("session-resume").start(() -> resumeSession(token, 0));
+    }
+
     /**
      * Indica se il client è connesso.
      * @return valore di tipo boolean.
@@ -360,6 +467,10 @@ public class GameClient {
      * @see Packet
      */
     public void handleUpdate(Packet update){
+        if (sessionToken != null && !(update instanceof RoomJoinedPacket)) {
+            receivedSinceJoin++;
+        }
+
         switch (update){
             case ErrorPacket errorPacket -> handleError(errorPacket);
 
@@ -373,14 +484,24 @@ public class GameClient {
             case RoomJoinedPacket roomJoinedPacket -> {
                 roomName = roomJoinedPacket.getRoomName();
                 playerName = roomJoinedPacket.getPlayerName();
+
+                String token = roomJoinedPacket.getSessionToken();
+                if (token != null && token.equals(sessionToken)) {
+                    SwingUtilities.invokeLater(() -> gameWindow.receiveNarratorMessage("Connessione ripristinata."));
+                    return;
+                }
+                sessionToken = token;
+                receivedSinceJoin = 0;
                 completeJoinRoom(true);
             }
             case RoomDisconnectedPacket ignored -> {
                 roomName = null;
                 playerName = null;
+                sessionToken = null;
 
                 SwingUtilities.invokeLater(gameWindow::showLobbyPanel);
             }
+            case RoomMovedPacket roomMovedPacket -> followRoom(roomMovedPacket);
             case RoomDeletedPacket roomDeletedPacket -> {
                 SwingUtilities.invokeLater(() -> {
                     gameWindow.showInfo("Stanza cancellata",
@@ -389,6 +510,14 @@ public class GameClient {
                 });
             }
 
+            case ServerShutdownPacket serverShutdownPacket -> {
+                long seconds = Math.max(1, serverShutdownPacket.getReconnectAfterMillis() / 1000);
+                SwingUtilities.invokeLater(() -> {
+                    gameWindow.showInfo("Server in arresto",
+                            serverShutdownPacket.getMessage() + " (tra circa " + seconds + " secondi)");
+                });
+            }
+
             case ChatMessagePacket chatMessagePacket -> {
                 SwingUtilities.invokeLater(() -> {
                     gameWindow.receiveChatMessage(chatMessagePacket.getPlayerName(), chatMessagePacket.getMessage());
@@ -459,15 +588,93 @@ public class GameClient {
                 gameWindow.showError("Nickname già utilizzato");
                 completeJoinRoom(false);
             }
+            case ROOM_ON_OTHER_NODE -> {
+                gameWindow.showError("La stanza è ospitata da un altro server");
+                completeCreateRoom(false);
+                completeJoinRoom(false);
+            }
             case WRONG_ROOM_PASSWORD -> {
                 gameWindow.showError("Password errata");
                 completeJoinRoom(false);
             }
             case ROOM_NOT_DELETED -> gameWindow.showError("Stanza non eliminata correttamente");
+            case SESSION_EXPIRED -> abandonSession("Sessione scaduta, rientra nella stanza dalla lobby");
+            case ROOM_MIGRATING -> {
+                if (roomName != null) {
+                    SwingUtilities.invokeLater(() -> {
+                        gameWindow.receiveErrorMessage("La stanza si sta spostando, riprova tra poco");
+                    });
+                } else {
+                    gameWindow.showError("La stanza si sta spostando, riprova tra poco");
+                }
+                completeJoinRoom(false);
+            }
+            case SERVER_DRAINING -> {
+                if (roomName != null) {
+                    SwingUtilities.invokeLater(() -> {
+                        gameWindow.receiveErrorMessage("Il server si sta riavviando");
+                    });
+                } else {
+                    gameWindow.showError("Il server si sta riavviando");
+                }
+                completeCreateRoom(false);
+                completeJoinRoom(false);
+            }
             default -> {
                 System.err.println("ERROR " + errorPacket.getErrorCode().getCode() + ": " + errorPacket.getErrorMessage());
             }
         }
     }
 
-}
\ No newline at end of file
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Tenta di riconnettersi all'ultimo server e di riprendere la sessione.
+     *
+     * @param token token della sessione da riprendere
+     * @param delay attesa prima del primo tentativo in millisecondi, raddoppiata
+     *              (almeno 500 ms) a ogni tentativo successivo
+     */
+    private void resumeSession(String token, long delay) {
+        long backoff = delay;
+        for (int attempt = 0; attempt < RESUME_ATTEMPTS; attempt++) {
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = Math.min(Math.max(backoff * 2, 500), RESUME_MAX_BACKOFF_MILLIS);
+
+            synchronized (socketClientLock) {
+                if (!token.equals(sessionToken) || socketClient != null) {
+                    return;
+                }
+                SocketClient client = connect(socketHost, socketPort);
+                if (client != null) {
+                    client.sendMessage(new ResumeSessionPacket(token, receivedSinceJoin));
+                    return;
+                }
+            }
+        }
+        abandonSession("Impossibile riconnettersi al server");
+    }
+
+    /**
+     * Abbandona la stanza corrente lato client e torna alla lobby.
+     *
+     * @param message messaggio di errore da mostrare
+     */
+    private void abandonSession(String message) {
+        sessionToken = null;
+        roomName = null;
+        playerName = null;
+        SwingUtilities.invokeLater(() -> {
+            gameWindow.showLobbyPanel();
+            gameWindow.showError(message);
+        });
+    }
+
+}
@@ -7,6 +7,7 @@ import org.javamale.ectotext.client.rest.RestAccess;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
+import java.net.InetSocketAddress;
 import javax.swing.text.PlainDocument;
 import javax.swing.text.DocumentFilter;
 import javax.swing.text.AttributeSet;
@@ -258,21 +259,20 @@ public class CreateRoomDialog extends JDialog {
             GameClient client = GameClient.getInstance();
             GameWindow window = client.getGameWindow();
 
-            if (!client.isConnected()) {
-                var host = client.getServerAddress();
-                var port = client.getServerRestPort();
+            var host = client.getServerAddress();
+            var port = client.getServerRestPort();
 
-                if (!client.isRestHealthy()) {
-                    showError("Server non raggiungibile");
-                    return;
-                }
+            if (!client.isRestHealthy()) {
+                showError("Server non raggiungibile");
+                return;
+            }
 
-                int socketPort = RestAccess.retrieveSocketPort(host, port);
-                SocketClient socketClient = client.connect(host, socketPort);
-                if (socketClient == null) {
-                    showError("Connessione fallita");
-                    return;
-                }
+            // La stanza può essere ospitata da un nodo diverso da quello attuale
+            InetSocketAddress node = RestAccess.retrieveSocketAddress(host, port, roomName);
+            SocketClient socketClient = node == null ? null : client.connectTo(node.getHostString(), node.getPort());
+            if (socketClient == null) {
+                showError("Connessione fallita");
+                return;
             }
 
             client.createRoom(roomName, roomPassword).thenAccept(success -> {
@@ -0,0 +1,143 @@
+package org.javamale.ectotext.client.gui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Finestra di dialogo modale che mostra la cronologia archiviata.
+ * Contiene i messaggi di gioco e di chat rimossi dalla schermata di gioco
+ * perché oltre il limite di cronologia.
+ * <p>
+ * L'archivio cresce per tutta la sessione, quindi:
+ * <ul>
+ *   <li>il file viene letto da uno {@link SwingWorker}, senza bloccare
+ *       l'Event Dispatch Thread</li>
+ *   <li>vengono mostrati solo gli ultimi {@value #TAIL_BYTES} byte, a partire
+ *       da una riga intera</li>
+ *   <li>il pulsante «Apri file» apre l'archivio completo con l'applicazione
+ *       predefinita del sistema, se disponibile</li>
+ * </ul>
+ * </p>
+ */
+public class HistoryDialog extends JDialog {
+
+    /** Byte finali dell'archivio mostrati nella finestra. */
+    static final int TAIL_BYTES = 256 * 1024;
+
+    /** Area con il contenuto dell'archivio. */
+    private final JTextArea historyArea = new JTextArea("Caricamento della cronologia...");
+
+    /**
+     * Crea la finestra e avvia la lettura del file di archivio.
+     *
+     * @param owner   la finestra proprietaria del dialogo
+     * @param archive file di archivio della cronologia
+     */
+    public HistoryDialog(Window owner, Path archive) {
+        super(owner, "Cronologia", ModalityType.APPLICATION_MODAL);
+
+        setSize(800, 500);
+        setLocationRelativeTo(owner);
+
+        getContentPane().setBackground(new Color(30, 30, 30));
+        setLayout(new BorderLayout());
+
+        historyArea.setEditable(false);
+        historyArea.setLineWrap(true);
+        historyArea.setWrapStyleWord(true);
+        historyArea.setBackground(new Color(20, 20, 20));
+        historyArea.setForeground(Color.LIGHT_GRAY);
+        historyArea.setFont(new Font("Consolas", Font.PLAIN, 13));
+
+        add(new JScrollPane(historyArea), BorderLayout.CENTER);
+
+        if (Desktop.isDesktopSupported() && Desktop.getDesktop().isSupported(Desktop.Action.OPEN)) {
+            JButton openButton = new JButton("Apri file");
+            openButton.setFocusPainted(false);
+            openButton.addActionListener(e -> openArchive(archive));
+
+            JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            buttonPanel.setBackground(new Color(30, 30, 30));
+            buttonPanel.add(openButton);
+            add(buttonPanel, BorderLayout.SOUTH);
+        }
+
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                return readArchive(archive);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    historyArea.setText(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    historyArea.setText("Impossibile leggere " + archive + ": " + e.getMessage());
+                }
+                historyArea.setCaretPosition(historyArea.getDocument().getLength());
+            }
+        }.execute();
+    }
+
+    /* ---- METODI DI SUPPORTO PRIVATI ---- */
+
+    /**
+     * Legge la parte finale del file di archivio.
+     * <p>
+     * Se il file supera {@value #TAIL_BYTES} byte, la lettura parte dalla
+     * prima riga intera dopo il punto di taglio, così da non spezzare né una
+     * riga né un carattere UTF-8, e il testo è preceduto da un avviso.
+     * </p>
+     *
+     * @param archive file di archivio
+     * @return contenuto da mostrare, o un messaggio se non è disponibile
+     */
+    private static String readArchive(Path archive) {
+        try (SeekableByteChannel channel = Files.newByteChannel(archive)) {
+            long size = channel.size();
+            long start = Math.max(0, size - TAIL_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocate((int) (size - start));
+            channel.position(start);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // lettura fino al riempimento del buffer
+            }
+            buffer.flip();
+
+            if (start == 0) {
+                return StandardCharsets.UTF_8.decode(buffer).toString();
+            }
+            while (buffer.hasRemaining() && buffer.get() != '\n') {
+                // salta la riga spezzata dal taglio
+            }
+            return "[... testo precedente disponibile in " + archive + "]\n"
+                    + StandardCharsets.UTF_8.decode(buffer);
+        } catch (NoSuchFileException e) {
+            return "Nessun messaggio archiviato in " + archive;
+        } catch (IOException e) {
+            return "Impossibile leggere " + archive + ": " + e.getMessage();
+        }
+    }
+
+    /**
+     * Apre il file di archivio completo con l'applicazione predefinita.
+     *
+     * @param archive file di archivio
+     */
+    private void openArchive(Path archive) {
+        try {
+            Desktop.getDesktop().open(archive.toFile());
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Impossibile aprire " + archive + ": " + e.getMessage(),
+                    "Errore", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
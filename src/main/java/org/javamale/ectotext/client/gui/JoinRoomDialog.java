@@ -7,6 +7,7 @@ import org.javamale.ectotext.client.rest.RestAccess;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
+import java.net.InetSocketAddress;
 import java.util.Collection;
 
 /**
@@ -280,21 +281,20 @@ public class JoinRoomDialog extends JDialog {
             GameClient client = GameClient.getInstance();
             GameWindow window = client.getGameWindow();
 
-            if (!client.isConnected()) {
-                var host = client.getServerAddress();
-                var port = client.getServerRestPort();
-
-                if (!client.isRestHealthy()) {
-                    showError("Server non raggiungibile");
-                    return;
-                }
-
-                var socketPort = RestAccess.retrieveSocketPort(host, port);
-                SocketClient socketClient = client.connect(host, socketPort);
-                if (socketClient == null) {
-                    showError("Connessione fallita");
-                    return;
-                }
+            var host = client.getServerAddress();
+            var port = client.getServerRestPort();
+
+            if (!client.isRestHealthy()) {
+                showError("Server non raggiungibile");
+                return;
+            }
+
+            // La stanza può essere ospitata da un nodo diverso da quello attuale
+            InetSocketAddress node = RestAccess.retrieveSocketAddress(host, port, roomName);
+            SocketClient socketClient = node == null ? null : client.connectTo(node.getHostString(), node.getPort());
+            if (socketClient == null) {
+                showError("Connessione fallita");
+                return;
             }
 
             client.joinRoom(name, roomName, pass).thenAccept(success -> {
@@ -2,18 +2,17 @@ package org.javamale.ectotext.client.gui.panel;
 
 import org.javamale.ectotext.client.GameClient;
 import org.javamale.ectotext.client.gui.GameWindow;
+import org.javamale.ectotext.client.gui.HistoryDialog;
 import org.javamale.ectotext.client.gui.MapDialog;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
-import javax.swing.text.*;
 import java.awt.*;
 import java.io.File;
+import java.nio.file.Path;
 import java.util.Collection;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Pannello principale di gioco che gestisce l'interfaccia durante la sessione di gioco.
@@ -28,6 +27,7 @@ import java.util.concurrent.LinkedBlockingQueue;
  *     <ul>
  *       <li>Selezione personaggio (Ghostbusters)</li>
  *       <li>Visualizzazione mappa</li>
+ *       <li>Cronologia archiviata, se configurata</li>
  *       <li>Controllo musica</li>
  *       <li>Gestione stanza (disconnessione/eliminazione)</li>
  *     </ul>
@@ -91,6 +91,12 @@ public class GamePlayPanel extends JPanel {
      */
     private final JButton mapButton;
 
+    /**
+     * Pulsante per visualizzare la cronologia archiviata, visibile solo se
+     * è configurato un file di archivio.
+     */
+    private final JButton historyButton;
+
     /**
      * Pannello per la barra di navigazione.
      */
@@ -127,14 +133,19 @@ public class GamePlayPanel extends JPanel {
     private final GameWindow gameWindow;
 
     /**
-     * Coda per la gestione della stampa progressiva dei messaggi.
+     * Pipeline che stampa i messaggi nell'area di gioco.
      */
-    private final BlockingQueue<Runnable> printQueue = new LinkedBlockingQueue<>();
+    private final GameTextRenderer gameRenderer;
 
     /**
-     * Flag che indica se è in corso la stampa di messaggi.
+     * Limite della cronologia dell'area di gioco.
      */
-    private volatile boolean printingInProgress = false;
+    private final Scrollback gameScrollback;
+
+    /**
+     * Limite della cronologia della chat.
+     */
+    private final Scrollback chatScrollback;
 
     /**
      * Flag che indica se è abilitata la stampa progressiva dei caratteri.
@@ -196,6 +207,13 @@ public class GamePlayPanel extends JPanel {
         } catch (Exception ignored) {}
         mapButton.addActionListener(e -> openMapDialog());
 
+        // Pulsante Cronologia
+        Path archive = Scrollback.archivePath();
+        historyButton = new JButton("Cronologia");
+        styleNormalButton(historyButton);
+        historyButton.setVisible(archive != null);
+        historyButton.addActionListener(e -> openHistoryDialog(archive));
+
         // Pulsante Disconnetti
         disconnectButton = new JButton("Disconnetti");
         styleDangerButton(disconnectButton);
@@ -263,12 +281,15 @@ public class GamePlayPanel extends JPanel {
         navBar.add(mapButton, gbc);
 
         gbc.gridx = 2;
-        navBar.add(musicPanel, gbc);
+        navBar.add(historyButton, gbc);
 
         gbc.gridx = 3;
-        navBar.add(deleteRoomButton, gbc);
+        navBar.add(musicPanel, gbc);
 
         gbc.gridx = 4;
+        navBar.add(deleteRoomButton, gbc);
+
+        gbc.gridx = 5;
         navBar.add(disconnectButton, gbc);
 
         // Aggiungi la navBar alla finestra principale
@@ -287,6 +308,9 @@ public class GamePlayPanel extends JPanel {
         gamePane.setBackground(new Color(20, 20, 20));
         gamePane.setForeground(Color.WHITE);
         gamePane.setFont(new Font("Consolas", Font.PLAIN, 14));
+        gameScrollback = new Scrollback(gamePane.getDocument(), "Gioco",
+                Integer.getInteger(Scrollback.GAME_CHARS_PROPERTY, Scrollback.DEFAULT_GAME_CHARS), archive);
+        gameRenderer = new GameTextRenderer(gamePane, gameScrollback, progressivePrintEnabled);
         JScrollPane gameScroll = new JScrollPane(gamePane);
         leftPanel.add(gameScroll, BorderLayout.CENTER);
 
@@ -336,6 +360,8 @@ public class GamePlayPanel extends JPanel {
         chatArea.setBackground(new Color(50, 50, 50));
         chatArea.setForeground(Color.CYAN);
         chatArea.setFont(new Font("SansSerif", Font.PLAIN, 13));
+        chatScrollback = new Scrollback(chatArea.getDocument(), "Chat",
+                Integer.getInteger(Scrollback.CHAT_CHARS_PROPERTY, Scrollback.DEFAULT_CHAT_CHARS), archive);
 
         JPanel chatPanel = new JPanel(new BorderLayout());
         chatPanel.setBorder(BorderFactory.createTitledBorder(
@@ -425,15 +451,10 @@ public class GamePlayPanel extends JPanel {
     }
 
     /**
-     * Pulisce l'area di gioco dai messaggi.
+     * Pulisce l'area di gioco dai messaggi, scartando quelli ancora in stampa.
      */
     private void clearGamePane() {
-        printingInProgress = false;
-        printQueue.clear();
-
-        SwingUtilities.invokeLater(() -> {
-            gamePane.setText("");
-        });
+        SwingUtilities.invokeLater(gameRenderer::clear);
     }
 
     /**
@@ -447,6 +468,8 @@ public class GamePlayPanel extends JPanel {
 
     /**
      * Aggiunge un messaggio all'area di gioco con stile specifico.
+     * Deve essere chiamato sull'Event Dispatch Thread: il messaggio viene
+     * accodato e stampato da {@link GameTextRenderer}.
      *
      * @param text testo da aggiungere
      * @param color colore del testo
@@ -454,67 +477,24 @@ public class GamePlayPanel extends JPanel {
      * @param italic true se il testo deve essere in corsivo
      */
     private void appendToGamePane(String text, Color color, boolean bold, boolean italic) {
-        printQueue.add(() -> {
-            try {
-                StyledDocument doc = gamePane.getStyledDocument();
-                Style style = gamePane.addStyle("messageStyle", null);
-                StyleConstants.setForeground(style, color);
-                StyleConstants.setBold(style, bold);
-                StyleConstants.setItalic(style, italic);
-
-                if (progressivePrintEnabled) {
-                    for (char c : text.toCharArray()) {
-                        SwingUtilities.invokeAndWait(() -> {
-                            try {
-                                doc.insertString(doc.getLength(), String.valueOf(c), style);
-                                gamePane.setCaretPosition(doc.getLength());
-                            } catch (BadLocationException e) {
-                                e.printStackTrace();
-                            }
-                        });
-                        Thread.sleep(15);
-                    }
-                } else {
-                    SwingUtilities.invokeAndWait(() -> {
-                        try {
-                            doc.insertString(doc.getLength(), text, style);
-                            gamePane.setCaretPosition(doc.getLength());
-                        } catch (BadLocationException e) {
-                            e.printStackTrace();
-                        }
-                    });
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
-
-        startPrintingQueue();
+        gameRenderer.append(text, gameRenderer.style(color, bold, italic));
     }
 
     /**
-     * Avvia il processo di stampa dei messaggi in coda.
+     * Apre la finestra di dialogo della mappa.
      */
-    private synchronized void startPrintingQueue() {
-        if (printingInProgress) return;
-        printingInProgress = true;
-
-        new Thread(() -> {
-            while (printingInProgress && !printQueue.isEmpty()) {
-                Runnable task = printQueue.poll();
-                if (task != null) {
-                    task.run();
-                }
-            }
-            printingInProgress = false;
-        }).start();
+    private void openMapDialog() {
+        MapDialog dialog = new MapDialog(SwingUtilities.getWindowAncestor(this));
+        dialog.setVisible(true);
     }
 
     /**
-     * Apre la finestra di dialogo della mappa.
+     * Apre la finestra di dialogo della cronologia archiviata.
+     *
+     * @param archive file di archivio della cronologia
      */
-    private void openMapDialog() {
-        MapDialog dialog = new MapDialog(SwingUtilities.getWindowAncestor(this));
+    private void openHistoryDialog(Path archive) {
+        HistoryDialog dialog = new HistoryDialog(SwingUtilities.getWindowAncestor(this), archive);
         dialog.setVisible(true);
     }
 
@@ -530,12 +510,14 @@ public class GamePlayPanel extends JPanel {
 
     /**
      * Visualizza un messaggio di chat ricevuto nell'area dedicata.
+     * Le righe più vecchie oltre il limite di cronologia vengono rimosse.
      *
      * @param sender mittente del messaggio
      * @param message contenuto del messaggio
      */
     public void receiveChatMessage(String sender, String message) {
         chatArea.append(sender + ": " + message + "\n");
+        chatScrollback.trim();
     }
 
     /**
@@ -624,8 +606,11 @@ public class GamePlayPanel extends JPanel {
 
     /**
      * Tenta di inviare un comando di gioco.
+     * I messaggi ancora in stampa vengono completati subito, così che la
+     * risposta al comando non resti in coda dietro di essi.
      */
     public void attemptSendCommand() {
+        gameRenderer.skipToEnd();
         String msg = commandField.getText().trim();
         commandField.setText("");
         if (!msg.isEmpty()) new Thread(() -> GameClient.getInstance().sendGameCommand(msg)).start();
@@ -0,0 +1,208 @@
+package org.javamale.ectotext.client.gui.panel;
+
+import javax.swing.*;
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pipeline di stampa dei messaggi nell'area di gioco.
+ * <p>
+ * Tutto avviene sull'Event Dispatch Thread:
+ * <ul>
+ *   <li>I messaggi vengono accodati come segmenti di testo con il loro stile,
+ *       creato una sola volta per ogni combinazione di colore e attributi</li>
+ *   <li>Un unico {@link Timer} Swing stampa a ogni tick un blocco di
+ *       caratteri, con un solo {@code insertString} per ogni tratto di stile
+ *       uniforme e un solo aggiornamento del cursore</li>
+ *   <li>Il blocco cresce con l'arretrato, così che una raffica di messaggi
+ *       venga smaltita in al più {@value #CATCH_UP_TICKS} tick; un messaggio
+ *       singolo viene stampato un carattere per tick</li>
+ *   <li>Dopo ogni stampa viene applicato il limite di {@link Scrollback}</li>
+ *   <li>{@link #skipToEnd()} stampa subito tutto l'arretrato, ad esempio
+ *       quando il giocatore invia un nuovo comando</li>
+ * </ul>
+ */
+final class GameTextRenderer {
+
+    /** Intervallo tra due tick dell'effetto macchina da scrivere. */
+    static final int TICK_MILLIS = 15;
+
+    /** Caratteri stampati per tick in assenza di arretrato. */
+    static final int CHARS_PER_TICK = 1;
+
+    /** Numero massimo di tick in cui viene smaltito l'arretrato. */
+    static final int CATCH_UP_TICKS = 100;
+
+    /**
+     * Tratto di testo da stampare con il suo stile.
+     *
+     * @param text  testo da stampare
+     * @param style stile del testo
+     */
+    private record Segment(String text, AttributeSet style) {}
+
+    /** Area di testo di destinazione. */
+    private final JTextPane pane;
+
+    /** Limite della cronologia, applicato dopo ogni stampa. */
+    private final Scrollback scrollback;
+
+    /** Timer che stampa i segmenti in coda. */
+    private final Timer timer;
+
+    /** Stili già creati, per combinazione di colore e attributi. */
+    private final Map<String, Style> styles = new HashMap<>();
+
+    /** Segmenti ancora da stampare. */
+    private final Deque<Segment> pending = new ArrayDeque<>();
+
+    /** Caratteri del primo segmento in coda già stampati. */
+    private int headOffset;
+
+    /** Caratteri in coda non ancora stampati. */
+    private int pendingChars;
+
+    /** Caratteri stampati a ogni tick finché la coda non si svuota. */
+    private int charsPerTick = CHARS_PER_TICK;
+
+    /** Indica se i messaggi vengono stampati progressivamente. */
+    private final boolean progressive;
+
+    /**
+     * Crea la pipeline di stampa per l'area indicata.
+     *
+     * @param pane        area di testo di destinazione
+     * @param scrollback  limite della cronologia dell'area
+     * @param progressive {@code true} per l'effetto macchina da scrivere,
+     *                    {@code false} per stampare ogni messaggio subito
+     */
+    GameTextRenderer(JTextPane pane, Scrollback scrollback, boolean progressive) {
+        this.pane = pane;
+        this.scrollback = scrollback;
+        this.progressive = progressive;
+        this.timer = new Timer(TICK_MILLIS, e -> tick());
+        this.timer.setCoalesce(true);
+    }
+
+    /**
+     * Restituisce lo stile con il colore e gli attributi indicati, creandolo
+     * al primo utilizzo.
+     *
+     * @param color  colore del testo
+     * @param bold   {@code true} per il grassetto
+     * @param italic {@code true} per il corsivo
+     * @return stile registrato nell'area di testo
+     */
+    AttributeSet style(Color color, boolean bold, boolean italic) {
+        String name = "msg-" + Integer.toHexString(color.getRGB()) + (bold ? "-b" : "") + (italic ? "-i" : "");
+        return styles.computeIfAbsent(name, n -> {
+            Style style = pane.addStyle(n, null);
+            StyleConstants.setForeground(style, color);
+            StyleConstants.setBold(style, bold);
+            StyleConstants.setItalic(style, italic);
+            return style;
+        });
+    }
+
+    /**
+     * Accoda un testo da stampare.
+     *
+     * @param text  testo da stampare
+     * @param style stile ottenuto da {@link #style(Color, boolean, boolean)}
+     */
+    void append(String text, AttributeSet style) {
+        if (text.isEmpty()) {
+            return;
+        }
+        pending.add(new Segment(text, style));
+        pendingChars += text.length();
+        charsPerTick = Math.max(charsPerTick, (pendingChars + CATCH_UP_TICKS - 1) / CATCH_UP_TICKS);
+        if (progressive) {
+            timer.start();
+        } else {
+            skipToEnd();
+        }
+    }
+
+    /**
+     * Stampa subito tutto il testo in coda.
+     */
+    void skipToEnd() {
+        print(pendingChars);
+    }
+
+    /**
+     * Svuota la coda e l'area di testo.
+     */
+    void clear() {
+        timer.stop();
+        pending.clear();
+        headOffset = 0;
+        pendingChars = 0;
+        charsPerTick = CHARS_PER_TICK;
+        pane.setText("");
+    }
+
+    /* ---- METODI DI SUPPORTO PRIVATI ---- */
+
+    /**
+     * Stampa il blocco di caratteri del tick corrente.
+     */
+    private void tick() {
+        print(charsPerTick);
+    }
+
+    /**
+     * Stampa fino a {@code budget} caratteri dalla coda, unendo i segmenti
+     * consecutivi con lo stesso stile in un solo inserimento.
+     *
+     * @param budget numero massimo di caratteri da stampare
+     */
+    private void print(int budget) {
+        StyledDocument doc = pane.getStyledDocument();
+        StringBuilder run = new StringBuilder();
+        AttributeSet runStyle = null;
+
+        try {
+            while (budget > 0 && !pending.isEmpty()) {
+                Segment head = pending.peek();
+                int end = Math.min(head.text().length(), headOffset + budget);
+                if (end < head.text().length() && Character.isHighSurrogate(head.text().charAt(end - 1))) {
+                    end++;
+                }
+
+                if (runStyle != null && runStyle != head.style()) {
+                    doc.insertString(doc.getLength(), run.toString(), runStyle);
+                    run.setLength(0);
+                }
+                runStyle = head.style();
+                run.append(head.text(), headOffset, end);
+
+                budget -= end - headOffset;
+                pendingChars -= end - headOffset;
+                if (end == head.text().length()) {
+                    pending.poll();
+                    headOffset = 0;
+                } else {
+                    headOffset = end;
+                }
+            }
+            if (runStyle != null) {
+                doc.insertString(doc.getLength(), run.toString(), runStyle);
+                scrollback.trim();
+                pane.setCaretPosition(doc.getLength());
+            }
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+
+        if (pending.isEmpty()) {
+            timer.stop();
+            charsPerTick = CHARS_PER_TICK;
+        }
+    }
+}
@@ -177,7 +177,9 @@ public class LobbyPanel extends JPanel {
         roomListModel.setRowCount(0);
         for (var e : rooms) {
             String label = String.format("%s", e.name());
-            String players = String.format("%d/3", e.userCount());
+            String players = e.maxPlayers() > 0
+                    ? String.format("%d/%d", e.userCount(), e.maxPlayers())
+                    : String.valueOf(e.userCount());
             roomListModel.addRow(new Object[]{label, players});
         }
     }
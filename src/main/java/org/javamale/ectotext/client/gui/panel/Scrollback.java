@@ -0,0 +1,134 @@
+package org.javamale.ectotext.client.gui.panel;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Limite della cronologia visibile di un'area di testo.
+ * <p>
+ * Quando il documento supera {@code maxChars} caratteri ne viene rimossa
+ * la parte più vecchia, a righe intere, fino a tornare a
+ * {@value #KEEP_PERCENT}% del limite: la rimozione avviene quindi a blocchi
+ * e non a ogni nuovo messaggio. Memoria, layout e aggiornamento del cursore
+ * restano così costanti anche in sessioni di molte ore.
+ * </p>
+ * <p>
+ * Se è impostata {@link #ARCHIVE_PROPERTY}, il testo rimosso viene aggiunto
+ * al file indicato, consultabile dal pulsante «Cronologia» della schermata
+ * di gioco. Va usato solo sull'Event Dispatch Thread.
+ * </p>
+ */
+public final class Scrollback {
+
+    /** Proprietà di sistema con il limite di caratteri dell'area di gioco (0 = illimitato). */
+    public static final String GAME_CHARS_PROPERTY = "ectotext.client.scrollback.gameChars";
+
+    /** Proprietà di sistema con il limite di caratteri della chat (0 = illimitato). */
+    public static final String CHAT_CHARS_PROPERTY = "ectotext.client.scrollback.chatChars";
+
+    /** Proprietà di sistema con il file in cui archiviare il testo rimosso. */
+    public static final String ARCHIVE_PROPERTY = "ectotext.client.scrollback.archive";
+
+    /** Limite predefinito dell'area di gioco. */
+    public static final int DEFAULT_GAME_CHARS = 200_000;
+
+    /** Limite predefinito della chat. */
+    public static final int DEFAULT_CHAT_CHARS = 50_000;
+
+    /** Percentuale del limite conservata dopo una rimozione. */
+    static final int KEEP_PERCENT = 75;
+
+    /** Caratteri esaminati oltre il punto di taglio per arrivare a fine riga. */
+    private static final int LINE_SEARCH_CHARS = 4096;
+
+    /** Formato dell'orario nell'intestazione dei blocchi archiviati. */
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    /** Documento da limitare. */
+    private final Document document;
+
+    /** Nome dell'area, usato nell'intestazione dei blocchi archiviati. */
+    private final String label;
+
+    /** Numero massimo di caratteri, 0 per nessun limite. */
+    private final int maxChars;
+
+    /** File di archivio, o {@code null} se il testo rimosso viene scartato. */
+    private final Path archive;
+
+    /**
+     * Crea il limite per un documento.
+     *
+     * @param document documento da limitare
+     * @param label    nome dell'area nell'archivio
+     * @param maxChars numero massimo di caratteri, 0 per nessun limite
+     * @param archive  file di archivio, o {@code null}
+     */
+    Scrollback(Document document, String label, int maxChars, Path archive) {
+        this.document = document;
+        this.label = label;
+        this.maxChars = Math.max(0, maxChars);
+        this.archive = archive;
+    }
+
+    /**
+     * Restituisce il file di archivio configurato.
+     *
+     * @return percorso indicato da {@link #ARCHIVE_PROPERTY}, o {@code null}
+     */
+    public static Path archivePath() {
+        String path = System.getProperty(ARCHIVE_PROPERTY);
+        return path == null || path.isBlank() ? null : Path.of(path);
+    }
+
+    /**
+     * Rimuove la parte più vecchia del documento se supera il limite.
+     * Da chiamare dopo ogni inserimento.
+     */
+    void trim() {
+        int length = document.getLength();
+        if (maxChars == 0 || length <= maxChars) {
+            return;
+        }
+
+        try {
+            int cut = length - (int) ((long) maxChars * KEEP_PERCENT / 100);
+            String tail = document.getText(cut, Math.min(LINE_SEARCH_CHARS, length - cut));
+            int newline = tail.indexOf('\n');
+            if (newline >= 0) {
+                cut += newline + 1;
+            }
+
+            if (archive != null) {
+                archive(document.getText(0, cut));
+            }
+            document.remove(0, cut);
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /* ---- METODI DI SUPPORTO PRIVATI ---- */
+
+    /**
+     * Aggiunge un blocco di testo rimosso al file di archivio.
+     *
+     * @param text testo rimosso
+     */
+    private void archive(String text) {
+        String header = "----- " + label + " " + LocalTime.now().format(TIME_FORMAT) + " -----\n";
+        try {
+            Files.writeString(archive, header + text + (text.endsWith("\n") ? "" : "\n"), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Scrollback archive write failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.javamale.ectotext.client.load;
+
+import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.PacketType;
+import org.javamale.ectotext.common.packet.impl.ErrorPacket;
+import org.javamale.ectotext.common.packet.impl.GameCommandPacket;
+import org.javamale.ectotext.common.packet.impl.OkPacket;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Connessione headless verso il server di gioco, usata da
+ * {@link LoadGenerator} al posto di
+ * {@link org.javamale.ectotext.client.network.SocketClient}.
+ * <p>
+ * Un thread virtuale legge i pacchetti in arrivo e li accoda; le richieste
+ * sono sincrone: ogni metodo invia un pacchetto e attende la risposta
+ * corrispondente, registrando il tempo di andata e ritorno in
+ * {@link LoadStats}.
+ * </p>
+ * Il protocollo non associa in generale le risposte alle richieste, quindi:
+ * <ul>
+ *   <li>prima di ogni richiesta vengono scartati i pacchetti ancora in coda
+ *       (broadcast di altri giocatori, introduzione, ...);</li>
+ *   <li>un comando di gioco può produrre un numero variabile di risposte:
+ *       viene inviato con un identificativo progressivo della connessione e
+ *       si considera completato all'arrivo dell'{@link OkPacket} con lo
+ *       stesso identificativo, che il server invia al solo mittente dopo
+ *       tutte le risposte del comando, oppure di un {@link ErrorPacket} se
+ *       il comando viene rifiutato.</li>
+ * </ul>
+ */
+final class LoadClient implements Closeable {
+
+    /** Segnaposto accodato alla chiusura della connessione. */
+    private static final Packet EOF = new OkPacket("eof");
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final PrintWriter out;
+    private final BlockingQueue<Packet> inbox = new LinkedBlockingQueue<>();
+    private final LoadStats stats;
+    private final long timeoutNanos;
+    private final String playerName;
+    private final Thread reader;
+
+    /** Identificativo dell'ultimo comando di gioco inviato. */
+    private long lastRequestId;
+
+    /** Impostato dal thread di lettura quando la connessione si chiude. */
+    private volatile boolean closed;
+
+    /**
+     * Apre la connessione e avvia il thread di lettura.
+     *
+     * @param playerName   nickname usato nella stanza
+     * @param host         indirizzo del server
+     * @param port         porta socket del server
+     * @param stats        statistiche da aggiornare
+     * @param timeoutNanos attesa massima di una risposta
+     * @throws IOException se la connessione fallisce
+     */
+    LoadClient(String playerName, String host, int port, LoadStats stats, long timeoutNanos) throws IOException {
+        this.playerName = playerName;
+        this.socket = new Socket(host, port);
+        this.socket.setTcpNoDelay(true);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())));
+        this.stats = stats;
+        this.timeoutNanos = timeoutNanos;
+        this.reader = Thread.ofVirtual().name("load-reader-", socket.getLocalPort()).start(this::readLoop);
+    }
+
+    /**
+     * Invia una richiesta e attende la risposta del tipo indicato
+     * o un {@link ErrorPacket}.
+     *
+     * @param request richiesta da inviare
+     * @param reply   condizione che identifica la risposta attesa
+     * @return risposta ricevuta
+     * @throws IOException se la risposta non arriva o la connessione cade
+     */
+    Packet request(Packet request, Predicate<Packet> reply) throws IOException {
+        discardPending();
+        long start = System.nanoTime();
+        send(request);
+
+        Packet response = await(start, p -> p instanceof ErrorPacket || reply.test(p));
+        stats.recordLatency(request.getType(), System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Invia un comando di gioco e attende tutte le relative risposte.
+     * <p>
+     * La latenza viene misurata a partire da {@code scheduledNanos}: se il
+     * client è in ritardo rispetto al ritmo richiesto, il ritardo viene
+     * conteggiato invece di essere nascosto.
+     * </p>
+     *
+     * @param command        comando testuale
+     * @param scheduledNanos istante previsto per l'invio ({@link System#nanoTime()})
+     * @throws IOException se le risposte non arrivano o la connessione cade
+     */
+    void command(String command, long scheduledNanos) throws IOException {
+        discardPending();
+        long requestId = ++lastRequestId;
+        GameCommandPacket packet = new GameCommandPacket(playerName, command);
+        packet.setRequestId(requestId);
+
+        long start = System.nanoTime();
+        send(packet);
+
+        await(start, p -> p instanceof ErrorPacket
+                || p instanceof OkPacket ok && ok.getRequestId() == requestId);
+        stats.recordLatency(PacketType.GAME_COMMAND, System.nanoTime() - Math.min(start, scheduledNanos));
+    }
+
+    /** @return nickname usato nella stanza */
+    String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * Invia un pacchetto senza attendere risposta.
+     *
+     * @param packet pacchetto da inviare
+     */
+    void send(Packet packet) {
+        synchronized (out) {
+            out.println(packet.toBaseJson());
+            out.flush();
+        }
+        stats.recordSent();
+    }
+
+    /**
+     * Chiude la connessione.
+     */
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+        reader.interrupt();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Scarta i pacchetti non ancora letti, che non possono essere risposte
+     * alla richiesta successiva.
+     */
+    private void discardPending() throws EOFException {
+        inbox.clear();
+        if (closed) {
+            throw new EOFException("Connection closed by server");
+        }
+    }
+
+    /**
+     * Attende il primo pacchetto che soddisfa la condizione, registrando gli
+     * errori incontrati nel frattempo.
+     */
+    private Packet await(long start, Predicate<Packet> matcher) throws IOException {
+        long deadline = start + timeoutNanos;
+        try {
+            while (true) {
+                Packet packet = inbox.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (packet == null) {
+                    stats.recordTimeout();
+                    throw new IOException("Timed out waiting for a response");
+                }
+                if (packet == EOF) {
+                    throw new EOFException("Connection closed by server");
+                }
+                if (packet instanceof ErrorPacket error) {
+                    stats.recordError(error.getErrorCode());
+                }
+                if (matcher.test(packet)) {
+                    return packet;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void readLoop() {
+        try {
+            String json;
+            while ((json = in.readLine()) != null) {
+                Packet packet = Packet.fromBaseJson(json);
+                if (packet != null) {
+                    inbox.add(packet);
+                }
+                stats.recordReceived();
+            }
+            stats.recordDisconnection();
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                stats.recordDisconnection();
+            }
+        } finally {
+            closed = true;
+            inbox.add(EOF);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package org.javamale.ectotext.client.load;
+
+import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.PacketType;
+import org.javamale.ectotext.common.packet.impl.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Generatore di carico headless per il server di gioco.
+ * <p>
+ * Simula {@link Options#clients()} giocatori, ciascuno su una propria
+ * connessione e su un proprio thread virtuale. I giocatori sono divisi in
+ * gruppi di {@link Options#playersPerRoom()}: per ogni gruppo
+ * <ul>
+ *   <li>il primo giocatore crea una stanza ({@link CreateRoomPacket});</li>
+ *   <li>tutti vi entrano ({@link JoinRoomPacket}) e scelgono, uno alla volta,
+ *       il primo personaggio disponibile;</li>
+ *   <li>ogni giocatore esegue lo script di comandi al ritmo di
+ *       {@link Options#rate()} comandi al secondo, per
+ *       {@link Options#walks()} volte;</li>
+ *   <li>al termine il primo giocatore elimina la stanza.</li>
+ * </ul>
+ * Le connessioni vengono aperte gradualmente nell'arco di
+ * {@link Options#rampUp()}. I risultati sono raccolti in {@link LoadStats}.
+ */
+public final class LoadGenerator {
+
+    /** Script predefinito: la soluzione completa del gioco. */
+    public static final String DEFAULT_SCRIPT = "/loadtest/walkthrough.txt";
+
+    private final Options options;
+    private final LoadStats stats = new LoadStats();
+    private final String runId = Long.toString(System.currentTimeMillis() % 1_000_000, 36);
+    private long elapsedNanos;
+
+    /**
+     * Parametri del test di carico.
+     *
+     * @param host           indirizzo del server
+     * @param port           porta socket del server
+     * @param clients        numero di connessioni simultanee
+     * @param playersPerRoom giocatori per stanza
+     * @param rate           comandi al secondo per giocatore ({@code 0} = senza pause)
+     * @param walks          ripetizioni dello script per giocatore
+     * @param rampUp         intervallo in cui distribuire l'apertura delle connessioni
+     * @param timeout        attesa massima di ogni risposta
+     * @param script         comandi di gioco da eseguire, in ordine
+     */
+    public record Options(String host,
+                          int port,
+                          int clients,
+                          int playersPerRoom,
+                          double rate,
+                          int walks,
+                          Duration rampUp,
+                          Duration timeout,
+                          List<String> script) {
+
+        /**
+         * @throws IllegalArgumentException se un parametro non è valido
+         */
+        public Options {
+            if (clients < 1 || playersPerRoom < 1 || rate < 0 || walks < 0) {
+                throw new IllegalArgumentException("Invalid load test options");
+            }
+            if (rampUp.isNegative() || timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("Invalid load test durations");
+            }
+            script = List.copyOf(script);
+        }
+    }
+
+    /**
+     * Crea un generatore di carico.
+     *
+     * @param options parametri del test
+     */
+    public LoadGenerator(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * Legge uno script di comandi: un comando per riga, le righe vuote e
+     * quelle che iniziano con {@code #} vengono ignorate.
+     *
+     * @param path file dello script, o {@code null} per {@link #DEFAULT_SCRIPT}
+     * @return comandi in ordine
+     * @throws IOException se lo script non è leggibile
+     */
+    public static List<String> loadScript(Path path) throws IOException {
+        if (path != null) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                return readScript(reader);
+            }
+        }
+
+        InputStream in = LoadGenerator.class.getResourceAsStream(DEFAULT_SCRIPT);
+        if (in == null) {
+            throw new FileNotFoundException("Script resource not found: " + DEFAULT_SCRIPT);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return readScript(reader);
+        }
+    }
+
+    /**
+     * Esegue il test e attende il termine di tutti i giocatori.
+     *
+     * @return statistiche raccolte
+     * @throws InterruptedException se il thread viene interrotto
+     */
+    public LoadStats run() throws InterruptedException {
+        int roomCount = (options.clients() + options.playersPerRoom() - 1) / options.playersPerRoom();
+        RoomGroup[] groups = new RoomGroup[roomCount];
+        for (int i = 0; i < roomCount; i++) {
+            int size = Math.min(options.playersPerRoom(), options.clients() - i * options.playersPerRoom());
+            groups[i] = new RoomGroup("load-" + runId + "-" + i, size);
+        }
+
+        long start = System.nanoTime();
+        long rampUpNanos = options.rampUp().toNanos();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < options.clients(); i++) {
+                int index = i;
+                long startAt = start + rampUpNanos * i / options.clients();
+                executor.submit(() -> {
+                    TimeUnit.NANOSECONDS.sleep(startAt - System.nanoTime());
+                    runPlayer(index, groups[index / options.playersPerRoom()]);
+                    return null;
+                });
+            }
+        }
+
+        elapsedNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    /** @return durata dell'ultima esecuzione di {@link #run()} in nanosecondi */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static List<String> readScript(BufferedReader reader) throws IOException {
+        List<String> commands = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.strip();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                commands.add(line);
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Ciclo di vita completo di un giocatore simulato.
+     */
+    private void runPlayer(int index, RoomGroup group) throws InterruptedException {
+        boolean leader = index % options.playersPerRoom() == 0;
+        String playerName = "bot" + index;
+        long timeoutNanos = options.timeout().toNanos();
+
+        LoadClient client = null;
+        boolean playing = false;
+        try {
+            client = new LoadClient(playerName, options.host(), options.port(), stats, timeoutNanos);
+            playing = enterRoom(client, group, leader);
+        } catch (IOException e) {
+            if (client == null) {
+                stats.recordConnectFailure();
+            }
+            System.err.println(playerName + ": " + e.getMessage());
+        } finally {
+            if (leader) {
+                group.created.countDown();
+            }
+            group.ready.countDown();
+        }
+
+        try {
+            if (playing) {
+                group.ready.await();
+                walk(client);
+            }
+        } catch (IOException e) {
+            System.err.println(playerName + ": " + e.getMessage());
+        } finally {
+            group.finished.countDown();
+        }
+
+        try {
+            if (leader && group.available && client != null) {
+                group.finished.await();
+                client.request(new DeleteRoomPacket(group.name), is(PacketType.ROOM_DELETED));
+            }
+        } catch (IOException e) {
+            System.err.println(playerName + ": " + e.getMessage());
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Crea (se leader) ed entra nella stanza del gruppo, poi sceglie un
+     * personaggio.
+     *
+     * @return {@code true} se il giocatore è pronto a giocare
+     */
+    private boolean enterRoom(LoadClient client, RoomGroup group, boolean leader)
+            throws IOException, InterruptedException {
+        if (leader) {
+            Packet created = client.request(
+                    new CreateRoomPacket(group.name, "", group.size, 0), is(PacketType.ROOM_CREATED));
+            group.available = created.getType() == PacketType.ROOM_CREATED;
+            group.created.countDown();
+        } else {
+            group.created.await();
+        }
+
+        if (!group.available) {
+            return false;
+        }
+
+        Packet joined = client.request(
+                new JoinRoomPacket(client.getPlayerName(), group.name, ""), is(PacketType.ROOM_JOINED));
+        if (joined.getType() != PacketType.ROOM_JOINED) {
+            return false;
+        }
+
+        // Una scelta alla volta: la risposta è un broadcast, va attribuita a chi l'ha causata
+        group.selection.lock();
+        try {
+            Packet available = client.request(
+                    new GameGetAvailableCharactersPacket(), is(PacketType.GAME_AVAILABLE_CHARACTERS));
+            if (!(available instanceof GameAvailableCharactersPacket list) || list.getCharacters().isEmpty()) {
+                return false;
+            }
+
+            String character = list.getCharacters().getFirst();
+            Packet selected = client.request(
+                    new GameSelectCharacterPacket(client.getPlayerName(), character),
+                    p -> p instanceof GameAvailableCharactersPacket l && !l.getCharacters().contains(character));
+            return selected.getType() == PacketType.GAME_AVAILABLE_CHARACTERS;
+        } finally {
+            group.selection.unlock();
+        }
+    }
+
+    /**
+     * Esegue lo script al ritmo richiesto.
+     */
+    private void walk(LoadClient client) throws IOException, InterruptedException {
+        long interval = options.rate() > 0 ? (long) (1e9 / options.rate()) : 0;
+        long next = System.nanoTime();
+
+        for (int w = 0; w < options.walks(); w++) {
+            for (String command : options.script()) {
+                if (interval == 0) {
+                    next = System.nanoTime();
+                } else {
+                    TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+                }
+
+                client.command(command, next);
+                next += interval;
+            }
+        }
+    }
+
+    private static Predicate<Packet> is(PacketType type) {
+        return p -> p.getType() == type;
+    }
+
+    /**
+     * Stato condiviso dai giocatori della stessa stanza.
+     */
+    private static final class RoomGroup {
+        final String name;
+        final int size;
+        final CountDownLatch created = new CountDownLatch(1);
+        final CountDownLatch ready;
+        final CountDownLatch finished;
+        final ReentrantLock selection = new ReentrantLock();
+        volatile boolean available;
+
+        RoomGroup(String name, int size) {
+            this.name = name;
+            this.size = size;
+            this.ready = new CountDownLatch(size);
+            this.finished = new CountDownLatch(size);
+        }
+    }
+}
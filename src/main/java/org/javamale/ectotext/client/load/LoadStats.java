@@ -0,0 +1,125 @@
+package org.javamale.ectotext.client.load;
+
+import org.javamale.ectotext.common.metrics.Histogram;
+import org.javamale.ectotext.common.packet.ErrorCode;
+import org.javamale.ectotext.common.packet.PacketType;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiche condivise da tutte le connessioni di un test di carico.
+ * <p>
+ * Raccoglie:
+ * <ul>
+ *   <li>un {@link Histogram} per ogni tipo di richiesta inviata;</li>
+ *   <li>il numero di pacchetti inviati e ricevuti;</li>
+ *   <li>le occorrenze di ciascun {@link ErrorCode} restituito dal server;</li>
+ *   <li>connessioni fallite, timeout e disconnessioni inattese.</li>
+ * </ul>
+ */
+public final class LoadStats {
+
+    private final Map<PacketType, Histogram> latencies = new EnumMap<>(PacketType.class);
+    private final Map<ErrorCode, LongAdder> errors = new ConcurrentHashMap<>();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder disconnections = new LongAdder();
+
+    /**
+     * Crea statistiche vuote, con un istogramma per ogni tipo di pacchetto.
+     */
+    public LoadStats() {
+        for (PacketType type : PacketType.values()) {
+            latencies.put(type, new Histogram());
+        }
+    }
+
+    /**
+     * Registra il tempo di andata e ritorno di una richiesta.
+     *
+     * @param request tipo della richiesta
+     * @param nanos   latenza in nanosecondi
+     */
+    public void recordLatency(PacketType request, long nanos) {
+        latencies.get(request).record(nanos / 1_000);
+    }
+
+    /** Registra un errore restituito dal server. */
+    public void recordError(ErrorCode errorCode) {
+        errors.computeIfAbsent(errorCode, k -> new LongAdder()).increment();
+    }
+
+    /** Registra un pacchetto inviato. */
+    public void recordSent() {
+        sent.increment();
+    }
+
+    /** Registra un pacchetto ricevuto. */
+    public void recordReceived() {
+        received.increment();
+    }
+
+    /** Registra una connessione non riuscita. */
+    public void recordConnectFailure() {
+        connectFailures.increment();
+    }
+
+    /** Registra una risposta non arrivata entro il timeout. */
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    /** Registra una connessione chiusa inaspettatamente dal server. */
+    public void recordDisconnection() {
+        disconnections.increment();
+    }
+
+    /**
+     * Stampa il riepilogo del test.
+     *
+     * @param out          destinazione
+     * @param elapsedNanos durata complessiva del test
+     */
+    public void print(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+
+        out.printf("%nDuration: %.1f s%n", seconds);
+        out.printf("Packets sent: %d (%.1f/s), received: %d (%.1f/s)%n",
+                sent.sum(), sent.sum() / seconds, received.sum(), received.sum() / seconds);
+        out.printf("Connect failures: %d, timeouts: %d, disconnections: %d%n",
+                connectFailures.sum(), timeouts.sum(), disconnections.sum());
+
+        out.printf("%nRound-trip latency (ms)%n");
+        out.printf("%-30s %9s %9s %8s %8s %8s %8s %8s %8s%n",
+                "request", "count", "req/s", "mean", "p50", "p90", "p99", "p99.9", "max");
+        latencies.forEach((type, histogram) -> {
+            long count = histogram.getCount();
+            if (count == 0) {
+                return;
+            }
+            out.printf("%-30s %9d %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                    type.getKey(), count, count / seconds,
+                    histogram.getMean() / 1_000,
+                    histogram.getPercentile(50) / 1_000.0,
+                    histogram.getPercentile(90) / 1_000.0,
+                    histogram.getPercentile(99) / 1_000.0,
+                    histogram.getPercentile(99.9) / 1_000.0,
+                    histogram.getMax() / 1_000.0);
+        });
+
+        if (!errors.isEmpty()) {
+            out.printf("%nError codes%n");
+            errors.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(e -> out.printf("%5d %-25s %9d%n",
+                            e.getKey().getCode(), e.getKey().name(), e.getValue().sum()));
+        }
+    }
+}
@@ -89,11 +89,13 @@ public class SocketClient extends Thread {
      *   <li>Legge continuamente messaggi JSON dal server</li>
      *   <li>Converte i messaggi in oggetti Packet</li>
      *   <li>Inoltra i pacchetti al GameClient per l'elaborazione</li>
-     *   <li>Gestisce la disconnessione in caso di errori o chiusura del server</li>
+     *   <li>In caso di errori o chiusura del server avvisa il GameClient,
+     *       che tenta di riprendere la sessione</li>
      * </ul>
      *
      * @see Packet#fromBaseJson(String)
      * @see GameClient#handleUpdate(Packet)
+     * @see GameClient#connectionLost(SocketClient)
      */
     @Override
     public void run() {
@@ -103,7 +105,7 @@ public class SocketClient extends Thread {
                     String json = in.readLine();
 
                     if (json == null) {
-                        GameClient.getInstance().disconnect();
+                        GameClient.getInstance().connectionLost(this);
                         break;
                     }
 
@@ -111,7 +113,11 @@ public class SocketClient extends Thread {
                     GameClient.getInstance().handleUpdate(update);
 
                 } catch (IOException e) {
-                    System.err.println(e.getMessage());
+                    if (!socket.isClosed()) {
+                        System.err.println(e.getMessage());
+                        GameClient.getInstance().connectionLost(this);
+                    }
+                    break;
                 }
             }
         } finally {
@@ -12,6 +12,7 @@ import org.javamale.ectotext.common.packet.impl.RoomDetailsPacket;
 import org.javamale.ectotext.common.packet.impl.RoomListPacket;
 
 import java.io.StringReader;
+import java.net.InetSocketAddress;
 import java.util.Collection;
 
 /**
@@ -160,6 +161,10 @@ public class RestAccess {
                     throw new JsonParseException("Invalid port format");
                 }
 
+                while (jsonReader.hasNext()) {
+                    jsonReader.nextName();
+                    jsonReader.skipValue();
+                }
                 jsonReader.endObject();
             }
 
@@ -171,4 +176,55 @@ public class RestAccess {
 
         return socketPort;
     }
+
+    /**
+     * Recupera l'indirizzo socket del nodo che ospita una stanza.
+     * <p>
+     * Effettua una richiesta GET all'endpoint /api/socket/port?room={roomName}.
+     * Con un server a nodo singolo la risposta non contiene l'host e viene
+     * usato quello del servizio REST.
+     * </p>
+     *
+     * @param host indirizzo del server (può essere IP o hostname)
+     * @param port porta su cui il servizio REST è in ascolto
+     * @param roomName nome della stanza a cui collegarsi
+     * @return indirizzo socket (non risolto) del nodo, o null in caso di errore
+     */
+    public static InetSocketAddress retrieveSocketAddress(String host, int port, String roomName) {
+        InetSocketAddress address = null;
+
+        try {
+            Client webClient = ClientBuilder.newClient();
+            WebTarget target = webClient.target("http://" + host + ":" + port + "/api/socket/port")
+                    .queryParam("room", roomName);
+            Response response = target.request(MediaType.APPLICATION_JSON).get();
+
+            String responseString = response.readEntity(String.class);
+
+            String nodeHost = host;
+            int socketPort = -1;
+            try(JsonReader jsonReader = new JsonReader(new StringReader(responseString))) {
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    switch (jsonReader.nextName()) {
+                        case "port" -> socketPort = jsonReader.nextInt();
+                        case "host" -> nodeHost = jsonReader.nextString();
+                        default -> jsonReader.skipValue();
+                    }
+                }
+                jsonReader.endObject();
+            }
+
+            if (socketPort > 0) {
+                address = InetSocketAddress.createUnresolved(nodeHost, socketPort);
+            }
+
+            response.close();
+            webClient.close();
+
+        } catch (Exception ignored) {
+        }
+
+        return address;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package org.javamale.ectotext.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Istogramma a bucket log-lineari (in stile HDR), sicuro per l'uso
+ * concorrente e senza lock.
+ * <p>
+ * Registra valori interi non negativi, ad esempio latenze in microsecondi
+ * o dimensioni. Ogni potenza di due è divisa in {@value #SUB_BUCKETS}
+ * bucket lineari, per un errore relativo massimo di circa il 12%, con
+ * memoria costante indipendente dal numero di campioni.
+ */
+public final class Histogram {
+
+    /** Bit dedicati ai bucket lineari di ogni potenza di due. */
+    private static final int SUB_BITS = 3;
+
+    /** Numero di bucket lineari per ogni potenza di due. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** Numero totale di bucket (copre l'intero intervallo di {@code long}). */
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra un campione.
+     *
+     * @param sample valore da registrare (i valori negativi valgono 0)
+     */
+    public void record(long sample) {
+        long value = Math.max(0, sample);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /** @return numero di campioni registrati */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** @return somma dei campioni registrati */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /** @return media dei campioni, {@code 0} se vuoto */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /** @return valore massimo registrato */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Calcola un percentile.
+     *
+     * @param percentile percentile richiesto, tra 0 e 100
+     * @return limite superiore del bucket che contiene il percentile
+     *         (mai oltre il massimo registrato)
+     */
+    public long getPercentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + sub) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -19,9 +19,26 @@ import java.util.List;
  *       che viene inviata ai client quando la partita inizia
  *       ({@link #gameIntro()}).</li>
  * </ul>
+ * <p>
+ * Le implementazioni vengono scoperte tramite {@link java.util.ServiceLoader}
+ * e devono quindi essere registrate in
+ * {@code META-INF/services/org.javamale.ectotext.common.model.GameCreator}.
+ * Il costruttore deve essere leggero: il contenuto vero e proprio va
+ * costruito solo in {@link #createGameDescription()}, invocato al primo
+ * utilizzo dell’avventura.
  */
 public interface GameCreator {
 
+    /**
+     * Restituisce l’identificatore univoco dell’avventura.
+     * <p>
+     * È il valore con cui l’avventura viene scelta alla creazione di una
+     * stanza e salvata nel database.
+     *
+     * @return identificatore stabile, in minuscolo e senza spazi
+     */
+    String getId();
+
     /**
      * Crea la descrizione statica del gioco.
      * <p>
@@ -14,6 +14,10 @@ import java.util.*;
  * </ul>
  * Fornisce metodi di query (hasX) e di mutazione (add/remove) per ciascuna
  * categoria, oltre a helper sulle collezioni var-args.
+ * <p>
+ * Lo stato è mutabile e va letto e modificato solo sotto il lock della
+ * stanza che lo ospita: le collezioni sono esposte come viste in sola
+ * lettura, così che i chiamanti non possano alterarle direttamente.
  */
 public class GameState {
 
@@ -70,9 +74,9 @@ public class GameState {
         return characters.get(name);
     }
 
-    /** @return collezione di tutti i personaggi registrati */
+    /** @return vista sola lettura di tutti i personaggi registrati */
     public Collection<Character> getCharacters() {
-        return characters.values();
+        return Collections.unmodifiableCollection(characters.values());
     }
 
     /**
@@ -85,14 +89,14 @@ public class GameState {
         return npcs.get(name);
     }
 
-    /** @return collezione di tutti gli NPC registrati */
+    /** @return vista sola lettura di tutti gli NPC registrati */
     public Collection<NPC> getNPCs() {
-        return npcs.values();
+        return Collections.unmodifiableCollection(npcs.values());
     }
 
-    /** @return collezione (live) dei flag di gioco attivi */
+    /** @return vista sola lettura dei flag di gioco attivi */
     public Collection<GameFlag> getFlags() {
-        return flags;
+        return Collections.unmodifiableSet(flags);
     }
 
     /* ------------------------------------------------------------------ */
@@ -0,0 +1,189 @@
+package org.javamale.ectotext.common.model;
+
+import java.util.*;
+
+/**
+ * Istantanea <em>immutabile</em> di un {@link GameState}.
+ * <p>
+ * Viene prodotta su richiesta, sotto il lock della stanza, da chi deve
+ * confrontare due stati o descriverli in forma canonica, ad esempio per
+ * calcolare le differenze tra lo stato prima e dopo un comando.
+ * <p>
+ * L’istantanea non contiene riferimenti a oggetti mutabili del modello:
+ * stanze e oggetti sono rappresentati dal loro nome interno.
+ * Le voci non modificate rispetto all’istantanea precedente vengono
+ * riutilizzate, così che due istantanee consecutive condividano la
+ * maggior parte della struttura.
+ */
+public final class GameStateSnapshot {
+
+    /** Identificatore univoco della partita. */
+    private final UUID uuid;
+
+    /** Progressivo dell’istantanea, incrementato a ogni cattura della stessa partita. */
+    private final long version;
+
+    /** Mappa immutabile «nome personaggio → {@link CharacterSnapshot}». */
+    private final Map<String, CharacterSnapshot> characters;
+
+    /** Mappa immutabile «nome NPC → {@link NPCSnapshot}». */
+    private final Map<String, NPCSnapshot> npcs;
+
+    /** Insieme immutabile dei flag attivi. */
+    private final Set<GameFlag> flags;
+
+    private GameStateSnapshot(UUID uuid,
+                              long version,
+                              Map<String, CharacterSnapshot> characters,
+                              Map<String, NPCSnapshot> npcs,
+                              Set<GameFlag> flags) {
+        this.uuid = uuid;
+        this.version = version;
+        this.characters = characters;
+        this.npcs = npcs;
+        this.flags = flags;
+    }
+
+    /**
+     * Crea l’istantanea dello stato indicato, riutilizzando le voci
+     * invariate di {@code previous}.
+     *
+     * @param gameState stato da fotografare
+     * @param previous  istantanea precedente, può essere {@code null}
+     * @return nuova istantanea immutabile
+     */
+    public static GameStateSnapshot of(GameState gameState, GameStateSnapshot previous) {
+        boolean sameGame = previous != null && previous.uuid.equals(gameState.getUuid());
+
+        Map<String, CharacterSnapshot> characters = new LinkedHashMap<>();
+        for (Character c : gameState.getCharacters()) {
+            CharacterSnapshot next = CharacterSnapshot.of(c);
+            CharacterSnapshot old = sameGame ? previous.characters.get(c.getName()) : null;
+            characters.put(c.getName(), next.equals(old) ? old : next);
+        }
+
+        Map<String, NPCSnapshot> npcs = new LinkedHashMap<>();
+        for (NPC n : gameState.getNPCs()) {
+            NPCSnapshot next = NPCSnapshot.of(n);
+            NPCSnapshot old = sameGame ? previous.npcs.get(n.getName()) : null;
+            npcs.put(n.getName(), next.equals(old) ? old : next);
+        }
+
+        Set<GameFlag> flags;
+        if (sameGame && previous.flags.equals(gameState.getFlags())) {
+            flags = previous.flags;
+        } else {
+            EnumSet<GameFlag> copy = EnumSet.noneOf(GameFlag.class);
+            copy.addAll(gameState.getFlags());
+            flags = Collections.unmodifiableSet(copy);
+        }
+
+        return new GameStateSnapshot(
+                gameState.getUuid(),
+                previous == null ? 0 : previous.version + 1,
+                Collections.unmodifiableMap(characters),
+                Collections.unmodifiableMap(npcs),
+                flags
+        );
+    }
+
+    /** @return l’UUID della partita */
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    /** @return progressivo dell’istantanea, utile per rilevare modifiche */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Restituisce l’istantanea di un personaggio.
+     *
+     * @param name nome del personaggio
+     * @return {@link CharacterSnapshot} o {@code null} se non presente
+     */
+    public CharacterSnapshot getCharacter(String name) {
+        return characters.get(name);
+    }
+
+    /** @return collezione immutabile dei personaggi */
+    public Collection<CharacterSnapshot> getCharacters() {
+        return characters.values();
+    }
+
+    /**
+     * Restituisce l’istantanea di un NPC.
+     *
+     * @param name nome dell’NPC
+     * @return {@link NPCSnapshot} o {@code null} se non presente
+     */
+    public NPCSnapshot getNPC(String name) {
+        return npcs.get(name);
+    }
+
+    /** @return collezione immutabile degli NPC */
+    public Collection<NPCSnapshot> getNPCs() {
+        return npcs.values();
+    }
+
+    /** @return insieme immutabile dei flag attivi */
+    public Set<GameFlag> getFlags() {
+        return flags;
+    }
+
+    /**
+     * Verifica se un flag era attivo al momento dell’istantanea.
+     *
+     * @param flag flag da controllare
+     * @return {@code true} se presente
+     */
+    public boolean hasFlag(GameFlag flag) {
+        return flags.contains(flag);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                               RECORD                                */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Istantanea immutabile di un {@link Character}.
+     *
+     * @param name        nome interno del personaggio
+     * @param displayName nome visualizzato
+     * @param roomName    nome della stanza corrente
+     * @param inventory   nomi interni degli oggetti posseduti
+     */
+    public record CharacterSnapshot(String name, String displayName, String roomName, Set<String> inventory) {
+
+        static CharacterSnapshot of(Character character) {
+            Set<String> inventory = new TreeSet<>();
+            character.getInventory().forEach(i -> inventory.add(i.getName()));
+
+            return new CharacterSnapshot(
+                    character.getName(),
+                    character.getDisplayName(),
+                    nameOf(character.getCurrentRoom()),
+                    Collections.unmodifiableSet(inventory)
+            );
+        }
+    }
+
+    /**
+     * Istantanea immutabile di un {@link NPC}.
+     *
+     * @param name        nome interno dell’NPC
+     * @param displayName nome visualizzato
+     * @param roomName    nome della stanza corrente
+     */
+    public record NPCSnapshot(String name, String displayName, String roomName) {
+
+        static NPCSnapshot of(NPC npc) {
+            return new NPCSnapshot(npc.getName(), npc.getDisplayName(), nameOf(npc.getCurrentRoom()));
+        }
+    }
+
+    private static String nameOf(Room room) {
+        return room == null ? null : room.getName();
+    }
+}
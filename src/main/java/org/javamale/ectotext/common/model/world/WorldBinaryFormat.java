@@ -0,0 +1,272 @@
+package org.javamale.ectotext.common.model.world;
+
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.world.WorldDefinition.ExitDef;
+import org.javamale.ectotext.common.model.world.WorldDefinition.IntroLine;
+import org.javamale.ectotext.common.model.world.WorldDefinition.ItemDef;
+import org.javamale.ectotext.common.model.world.WorldDefinition.RoomDef;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Formato compilato (binario) dei mondi di gioco.
+ * <p>
+ * Il file viene prodotto offline a partire dal formato JSON e caricato
+ * all’avvio mappandolo in memoria. Struttura (big-endian):
+ * <pre>
+ * int     MAGIC ("ECTW")
+ * short   VERSION
+ * int     n. stringhe, poi per ciascuna: int lunghezza + byte UTF-8
+ * int     nome del mondo (indice stringa)
+ * int     n. stanze, poi per ciascuna:
+ *           4 x int  nome, nome visualizzato, descrizione, descrizione estesa
+ *           short    n. uscite, per ciascuna: int direzione, int stanza di destinazione, flag
+ *           short    n. oggetti, per ciascuno: 3 x int stringhe, flag
+ * int     n. messaggi introduttivi, per ciascuno: int speaker (-1 = narratore), int testo
+ *
+ * flag = byte n. flag, poi int indice stringa del nome di ogni {@link GameFlag}
+ * </pre>
+ * Ogni stringa compare una sola volta nella tabella: al caricamento viene
+ * decodificata una volta e condivisa da tutti i riferimenti. Le uscite sono
+ * già espanse in entrambe le direzioni, quindi il caricamento non esegue
+ * alcuna logica di costruzione.
+ */
+public final class WorldBinaryFormat {
+
+    /** Intestazione dei file compilati ("ECTW"). */
+    public static final int MAGIC = 0x45435457;
+
+    /** Versione corrente del formato. */
+    public static final short VERSION = 1;
+
+    /** Estensione convenzionale dei mondi compilati. */
+    public static final String EXTENSION = ".ectw";
+
+    private WorldBinaryFormat() {}
+
+    /* ====================================================================== */
+    /*                               SCRITTURA                                */
+    /* ====================================================================== */
+
+    /**
+     * Serializza un mondo nel formato compilato.
+     *
+     * @param world mondo da scrivere
+     * @param out   stream di destinazione (non viene chiuso)
+     * @throws IOException in caso di errori di scrittura
+     */
+    public static void write(WorldDefinition world, OutputStream out) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        Set<String> roomNames = new HashSet<>();
+        world.rooms().forEach(room -> roomNames.add(room.name()));
+
+        // Primo passaggio: internamento delle stringhe
+        intern(strings, world.name());
+        for (RoomDef room : world.rooms()) {
+            intern(strings, room.name());
+            intern(strings, room.displayName());
+            intern(strings, room.description());
+            intern(strings, room.longDescription());
+            for (ExitDef exit : room.exits()) {
+                intern(strings, exit.dir());
+                exit.flags().forEach(f -> intern(strings, f.name()));
+            }
+            for (ItemDef item : room.items()) {
+                intern(strings, item.name());
+                intern(strings, item.displayName());
+                intern(strings, item.description());
+                item.flags().forEach(f -> intern(strings, f.name()));
+            }
+        }
+        for (IntroLine line : world.intro()) {
+            intern(strings, line.speaker());
+            intern(strings, line.text());
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+
+        data.writeInt(strings.size());
+        for (String s : strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        data.writeInt(ref(strings, world.name()));
+        data.writeInt(world.rooms().size());
+        for (RoomDef room : world.rooms()) {
+            data.writeInt(ref(strings, room.name()));
+            data.writeInt(ref(strings, room.displayName()));
+            data.writeInt(ref(strings, room.description()));
+            data.writeInt(ref(strings, room.longDescription()));
+
+            data.writeShort(room.exits().size());
+            for (ExitDef exit : room.exits()) {
+                if (!roomNames.contains(exit.room())) {
+                    throw new IllegalStateException("Unknown room in exit: " + exit.room());
+                }
+                data.writeInt(ref(strings, exit.dir()));
+                data.writeInt(ref(strings, exit.room()));
+                writeFlags(data, strings, exit.flags());
+            }
+
+            data.writeShort(room.items().size());
+            for (ItemDef item : room.items()) {
+                data.writeInt(ref(strings, item.name()));
+                data.writeInt(ref(strings, item.displayName()));
+                data.writeInt(ref(strings, item.description()));
+                writeFlags(data, strings, item.flags());
+            }
+        }
+
+        data.writeInt(world.intro().size());
+        for (IntroLine line : world.intro()) {
+            data.writeInt(ref(strings, line.speaker()));
+            data.writeInt(ref(strings, line.text()));
+        }
+        data.flush();
+    }
+
+    private static void intern(Map<String, Integer> strings, String s) {
+        if (s != null) {
+            strings.putIfAbsent(s, strings.size());
+        }
+    }
+
+    private static int ref(Map<String, Integer> strings, String s) {
+        return s == null ? -1 : strings.get(s);
+    }
+
+    private static void writeFlags(DataOutputStream data, Map<String, Integer> strings, List<GameFlag> flags) throws IOException {
+        data.writeByte(flags.size());
+        for (GameFlag flag : flags) {
+            data.writeInt(ref(strings, flag.name()));
+        }
+    }
+
+    /* ====================================================================== */
+    /*                                LETTURA                                 */
+    /* ====================================================================== */
+
+    /**
+     * Verifica se il buffer inizia con l’intestazione del formato compilato.
+     * La posizione del buffer non viene modificata.
+     *
+     * @param buffer contenuto del file
+     * @return {@code true} se si tratta di un mondo compilato
+     */
+    public static boolean isCompiled(ByteBuffer buffer) {
+        return buffer.remaining() >= Integer.BYTES && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    /**
+     * Carica un mondo compilato mappando il file in memoria.
+     *
+     * @param path file {@value #EXTENSION}
+     * @return definizione del mondo
+     * @throws IOException se il file non è leggibile o non è un mondo compilato valido
+     */
+    public static WorldDefinition map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Decodifica un mondo compilato.
+     *
+     * @param buffer contenuto del file, posizionato sull’intestazione
+     * @return definizione del mondo
+     * @throws IOException se il contenuto non è un mondo compilato valido
+     */
+    public static WorldDefinition read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a compiled world file");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported world format version: " + version);
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            String name = str(strings, buffer.getInt());
+
+            int roomCount = buffer.getInt();
+            List<RoomDef> rooms = new ArrayList<>(roomCount);
+            for (int r = 0; r < roomCount; r++) {
+                String roomName = str(strings, buffer.getInt());
+                String displayName = str(strings, buffer.getInt());
+                String description = str(strings, buffer.getInt());
+                String longDescription = str(strings, buffer.getInt());
+
+                int exitCount = buffer.getShort();
+                List<ExitDef> exits = new ArrayList<>(exitCount);
+                for (int e = 0; e < exitCount; e++) {
+                    exits.add(new ExitDef(
+                            str(strings, buffer.getInt()),
+                            str(strings, buffer.getInt()),
+                            readFlags(buffer, strings)
+                    ));
+                }
+
+                int itemCount = buffer.getShort();
+                List<ItemDef> items = new ArrayList<>(itemCount);
+                for (int i = 0; i < itemCount; i++) {
+                    items.add(new ItemDef(
+                            str(strings, buffer.getInt()),
+                            str(strings, buffer.getInt()),
+                            str(strings, buffer.getInt()),
+                            readFlags(buffer, strings)
+                    ));
+                }
+
+                rooms.add(new RoomDef(roomName, displayName, description, longDescription, exits, items));
+            }
+
+            int introCount = buffer.getInt();
+            List<IntroLine> intro = new ArrayList<>(introCount);
+            for (int i = 0; i < introCount; i++) {
+                intro.add(new IntroLine(str(strings, buffer.getInt()), str(strings, buffer.getInt())));
+            }
+
+            return new WorldDefinition(name, rooms, intro);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or corrupted world file", e);
+        }
+    }
+
+    private static String str(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    private static List<GameFlag> readFlags(ByteBuffer buffer, String[] strings) {
+        int count = buffer.get();
+        if (count == 0) {
+            return List.of();
+        }
+
+        List<GameFlag> flags = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            flags.add(GameFlag.valueOf(strings[buffer.getInt()]));
+        }
+        return flags;
+    }
+}
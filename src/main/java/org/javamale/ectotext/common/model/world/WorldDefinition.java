@@ -0,0 +1,166 @@
+package org.javamale.ectotext.common.model.world;
+
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.GameMap;
+import org.javamale.ectotext.common.model.Item;
+import org.javamale.ectotext.common.model.Room;
+import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.impl.GameDialoguePacket;
+import org.javamale.ectotext.common.packet.impl.GameNarratorPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Descrizione dichiarativa di un mondo di gioco, indipendente dal formato
+ * da cui è stata letta.
+ * <p>
+ * Contiene:
+ * <ul>
+ *   <li>il nome leggibile dell’avventura;</li>
+ *   <li>le stanze, ciascuna con le proprie uscite (già risolte in entrambe
+ *       le direzioni) e i propri oggetti, eventualmente nascosti da
+ *       {@link GameFlag};</li>
+ *   <li>la sequenza di messaggi introduttivi.</li>
+ * </ul>
+ * Viene prodotta da {@link WorldJsonReader} (formato sorgente) o da
+ * {@link WorldBinaryFormat} (formato compilato) e trasformata in
+ * {@link GameMap} con {@link #createGameMap()}.
+ *
+ * @param name  nome leggibile dell’avventura
+ * @param rooms stanze del mondo, in ordine di definizione
+ * @param intro messaggi introduttivi, in ordine di invio
+ */
+public record WorldDefinition(String name, List<RoomDef> rooms, List<IntroLine> intro) {
+
+    /**
+     * Crea una definizione immutabile.
+     */
+    public WorldDefinition {
+        rooms = List.copyOf(rooms);
+        intro = List.copyOf(intro);
+    }
+
+    /**
+     * Costruisce la mappa di gioco.
+     * <p>
+     * Le stanze vengono create e collegate direttamente, senza passare dal
+     * {@link Room.RoomBuilder}: le uscite sono già espanse in entrambe le
+     * direzioni.
+     *
+     * @return nuova {@link GameMap}
+     * @throws IllegalStateException se un’uscita punta a una stanza inesistente
+     */
+    public GameMap createGameMap() {
+        GameMap gameMap = new GameMap();
+        Room[] built = new Room[rooms.size()];
+
+        for (int i = 0; i < built.length; i++) {
+            RoomDef def = rooms.get(i);
+            built[i] = new Room(def.name(), def.displayName(), def.description(), def.longDescription());
+            gameMap.addRoom(built[i]);
+        }
+
+        for (int i = 0; i < built.length; i++) {
+            Room room = built[i];
+            for (ExitDef exit : rooms.get(i).exits()) {
+                Room target = gameMap.getRoom(exit.room());
+                if (target == null) {
+                    throw new IllegalStateException("Unknown room in exit: " + exit.room());
+                }
+                room.connectRoom(exit.dir(), target);
+                if (!exit.flags().isEmpty()) {
+                    room.addConnectionFlags(exit.dir(), exit.flags());
+                }
+            }
+            for (ItemDef itemDef : rooms.get(i).items()) {
+                Item item = new Item(itemDef.name(), itemDef.displayName(), itemDef.description());
+                room.addItem(item);
+                if (!itemDef.flags().isEmpty()) {
+                    room.addItemFlags(item, itemDef.flags());
+                }
+            }
+        }
+
+        return gameMap;
+    }
+
+    /**
+     * Costruisce i pacchetti introduttivi.
+     *
+     * @return lista immutabile di {@link Packet} da inviare in ordine
+     */
+    public List<Packet> createIntro() {
+        List<Packet> packets = new ArrayList<>(intro.size());
+        for (IntroLine line : intro) {
+            packets.add(line.speaker() == null
+                    ? new GameNarratorPacket(line.text())
+                    : new GameDialoguePacket(line.speaker(), line.text()));
+        }
+        return List.copyOf(packets);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                               RECORD                                */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Definizione di una stanza.
+     *
+     * @param name            nome interno univoco
+     * @param displayName     nome visualizzato
+     * @param description     descrizione breve
+     * @param longDescription descrizione estesa
+     * @param exits           uscite della stanza
+     * @param items           oggetti presenti nella stanza
+     */
+    public record RoomDef(String name,
+                          String displayName,
+                          String description,
+                          String longDescription,
+                          List<ExitDef> exits,
+                          List<ItemDef> items) {
+
+        public RoomDef {
+            exits = List.copyOf(exits);
+            items = List.copyOf(items);
+        }
+    }
+
+    /**
+     * Uscita in una direzione verso un’altra stanza.
+     *
+     * @param dir   direzione normalizzata (es. “north”, “12”)
+     * @param room  nome interno della stanza di destinazione
+     * @param flags flag necessari per attraversarla (vuoto se libera)
+     */
+    public record ExitDef(String dir, String room, List<GameFlag> flags) {
+
+        public ExitDef {
+            flags = List.copyOf(flags);
+        }
+    }
+
+    /**
+     * Oggetto presente in una stanza.
+     *
+     * @param name        nome interno
+     * @param displayName nome visualizzato
+     * @param description descrizione
+     * @param flags       flag necessari per vederlo (vuoto se visibile)
+     */
+    public record ItemDef(String name, String displayName, String description, List<GameFlag> flags) {
+
+        public ItemDef {
+            flags = List.copyOf(flags);
+        }
+    }
+
+    /**
+     * Messaggio introduttivo.
+     *
+     * @param speaker personaggio che parla, {@code null} per il narratore
+     * @param text    testo del messaggio
+     */
+    public record IntroLine(String speaker, String text) {}
+}
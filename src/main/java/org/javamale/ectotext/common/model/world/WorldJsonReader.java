@@ -0,0 +1,264 @@
+package org.javamale.ectotext.common.model.world;
+
+import com.google.gson.stream.JsonReader;
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.world.WorldDefinition.ExitDef;
+import org.javamale.ectotext.common.model.world.WorldDefinition.IntroLine;
+import org.javamale.ectotext.common.model.world.WorldDefinition.ItemDef;
+import org.javamale.ectotext.common.model.world.WorldDefinition.RoomDef;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Lettore del formato sorgente (JSON) dei mondi di gioco.
+ * <p>
+ * Struttura JSON di esempio:
+ * <pre>{
+ *   "name": "Incubo al Sedgewick Hotel",
+ *   "rooms": [
+ *     {
+ *       "name": "hall",
+ *       "display_name": "Hall",
+ *       "description": "Ti trovi nella hall dell'hotel.",
+ *       "long_description": "...",
+ *       "exits": [
+ *         { "dir": "east", "room": "ballroom", "back": "west", "flags": ["GHOST_BALLROOM"] }
+ *       ],
+ *       "items": [
+ *         { "name": "mocio", "display_name": "Mocio", "description": "...", "flags": [] }
+ *       ]
+ *     }
+ *   ],
+ *   "intro": [
+ *     { "text": "Benvenuto..." },
+ *     { "speaker": "Direttore", "text": "Vi prego!" }
+ *   ]
+ * }</pre>
+ * Il campo facoltativo {@code back} di un’uscita crea anche il collegamento
+ * inverso (sempre libero) dalla stanza di destinazione, come
+ * {@link org.javamale.ectotext.common.model.Room.RoomBuilder#connectRoom}.
+ */
+public final class WorldJsonReader {
+
+    private WorldJsonReader() {}
+
+    /**
+     * Legge un mondo in formato JSON.
+     *
+     * @param source sorgente JSON
+     * @return definizione del mondo con le uscite già espanse
+     * @throws IOException           in caso di errori di lettura o JSON malformato
+     * @throws IllegalStateException se compare un campo sconosciuto
+     */
+    public static WorldDefinition read(Reader source) throws IOException {
+        String name = null;
+        List<RoomDef> rooms = new ArrayList<>();
+        List<IntroLine> intro = new ArrayList<>();
+        List<PendingExit> backExits = new ArrayList<>();
+
+        try (JsonReader reader = new JsonReader(source)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                switch (field) {
+                    case "name" -> name = reader.nextString();
+                    case "rooms" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            rooms.add(readRoom(reader, backExits));
+                        }
+                        reader.endArray();
+                    }
+                    case "intro" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            intro.add(readIntroLine(reader));
+                        }
+                        reader.endArray();
+                    }
+                    default -> throw new IllegalStateException("Unexpected JSON field: " + field);
+                }
+            }
+            reader.endObject();
+        }
+
+        return new WorldDefinition(name, expandBackExits(rooms, backExits), intro);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static RoomDef readRoom(JsonReader reader, List<PendingExit> backExits) throws IOException {
+        String name = null;
+        String displayName = null;
+        String description = null;
+        String longDescription = null;
+        List<ExitDef> exits = new ArrayList<>();
+        List<ItemDef> items = new ArrayList<>();
+        Map<String, String> backs = new LinkedHashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "name"             -> name            = reader.nextString();
+                case "display_name"     -> displayName     = reader.nextString();
+                case "description"      -> description     = reader.nextString();
+                case "long_description" -> longDescription = reader.nextString();
+                case "exits" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        exits.add(readExit(reader, backs));
+                    }
+                    reader.endArray();
+                }
+                case "items" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        items.add(readItem(reader));
+                    }
+                    reader.endArray();
+                }
+                default -> throw new IllegalStateException("Unexpected JSON field: " + field);
+            }
+        }
+        reader.endObject();
+
+        Objects.requireNonNull(name, "The room name cannot be null");
+        Objects.requireNonNull(displayName, "The display name cannot be null");
+        Objects.requireNonNull(description, "The description cannot be null");
+        Objects.requireNonNull(longDescription, "The longDescription cannot be null");
+
+        for (Map.Entry<String, String> back : backs.entrySet()) {
+            backExits.add(new PendingExit(name, back.getKey(), back.getValue()));
+        }
+
+        return new RoomDef(name, displayName, description, longDescription, exits, items);
+    }
+
+    private static ExitDef readExit(JsonReader reader, Map<String, String> backs) throws IOException {
+        String dir = null;
+        String room = null;
+        String back = null;
+        List<GameFlag> flags = List.of();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "dir"   -> dir   = reader.nextString();
+                case "room"  -> room  = reader.nextString();
+                case "back"  -> back  = reader.nextString();
+                case "flags" -> flags = readFlags(reader);
+                default -> throw new IllegalStateException("Unexpected JSON field: " + field);
+            }
+        }
+        reader.endObject();
+
+        Objects.requireNonNull(dir, "The exit direction cannot be null");
+        Objects.requireNonNull(room, "The exit room cannot be null");
+
+        if (back != null) {
+            backs.put(room, back);
+        }
+        return new ExitDef(dir, room, flags);
+    }
+
+    private static ItemDef readItem(JsonReader reader) throws IOException {
+        String name = null;
+        String displayName = null;
+        String description = null;
+        List<GameFlag> flags = List.of();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "name"         -> name        = reader.nextString();
+                case "display_name" -> displayName = reader.nextString();
+                case "description"  -> description = reader.nextString();
+                case "flags"        -> flags       = readFlags(reader);
+                default -> throw new IllegalStateException("Unexpected JSON field: " + field);
+            }
+        }
+        reader.endObject();
+
+        Objects.requireNonNull(name, "The item name cannot be null");
+        return new ItemDef(name, displayName, description, flags);
+    }
+
+    private static IntroLine readIntroLine(JsonReader reader) throws IOException {
+        String speaker = null;
+        String text = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "speaker" -> speaker = reader.nextString();
+                case "text"    -> text    = reader.nextString();
+                default -> throw new IllegalStateException("Unexpected JSON field: " + field);
+            }
+        }
+        reader.endObject();
+
+        return new IntroLine(speaker, text);
+    }
+
+    private static List<GameFlag> readFlags(JsonReader reader) throws IOException {
+        List<GameFlag> flags = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            flags.add(GameFlag.valueOf(reader.nextString()));
+        }
+        reader.endArray();
+        return flags;
+    }
+
+    /**
+     * Aggiunge alle stanze di destinazione le uscite inverse dichiarate con
+     * {@code back}.
+     */
+    private static List<RoomDef> expandBackExits(List<RoomDef> rooms, List<PendingExit> backExits) {
+        if (backExits.isEmpty()) {
+            return rooms;
+        }
+
+        Map<String, List<ExitDef>> extra = new HashMap<>();
+        for (PendingExit pending : backExits) {
+            extra.computeIfAbsent(pending.to(), k -> new ArrayList<>())
+                    .add(new ExitDef(pending.dir(), pending.from(), List.of()));
+        }
+
+        List<RoomDef> expanded = new ArrayList<>(rooms.size());
+        for (RoomDef room : rooms) {
+            List<ExitDef> added = extra.remove(room.name());
+            if (added == null) {
+                expanded.add(room);
+                continue;
+            }
+
+            List<ExitDef> exits = new ArrayList<>(added);
+            exits.addAll(room.exits());
+            expanded.add(new RoomDef(room.name(), room.displayName(), room.description(),
+                    room.longDescription(), exits, room.items()));
+        }
+
+        if (!extra.isEmpty()) {
+            throw new IllegalStateException("Unknown room in exit: " + extra.keySet().iterator().next());
+        }
+        return expanded;
+    }
+
+    /**
+     * Uscita inversa in attesa di essere aggiunta alla stanza {@code to}.
+     *
+     * @param from stanza che dichiara l’uscita (destinazione dell’inversa)
+     * @param to   stanza a cui aggiungere l’inversa
+     * @param dir  direzione dell’inversa
+     */
+    private record PendingExit(String from, String to, String dir) {}
+}
@@ -0,0 +1,79 @@
+package org.javamale.ectotext.common.model.world;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Punto di accesso per il caricamento e la compilazione dei mondi di gioco.
+ * <p>
+ * Riconosce automaticamente il formato del file:
+ * <ul>
+ *   <li>mondi compilati ({@link WorldBinaryFormat}), mappati in memoria;</li>
+ *   <li>mondi sorgente in JSON ({@link WorldJsonReader}).</li>
+ * </ul>
+ */
+public final class WorldLoader {
+
+    private WorldLoader() {}
+
+    /**
+     * Carica un mondo da file, compilato o JSON.
+     *
+     * @param path file del mondo
+     * @return definizione del mondo
+     * @throws IOException se il file non è leggibile o non è valido
+     */
+    public static WorldDefinition load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (WorldBinaryFormat.isCompiled(buffer)) {
+                return WorldBinaryFormat.read(buffer);
+            }
+        }
+
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return WorldJsonReader.read(reader);
+        }
+    }
+
+    /**
+     * Carica un mondo JSON dal classpath.
+     *
+     * @param resource percorso assoluto della risorsa (es. {@code /worlds/ectotext.json})
+     * @return definizione del mondo
+     * @throws IOException se la risorsa non esiste o non è valida
+     */
+    public static WorldDefinition loadResource(String resource) throws IOException {
+        InputStream in = WorldLoader.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new FileNotFoundException("World resource not found: " + resource);
+        }
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return WorldJsonReader.read(reader);
+        }
+    }
+
+    /**
+     * Compila un mondo nel formato binario.
+     *
+     * @param source file sorgente (JSON o già compilato)
+     * @param target file {@value WorldBinaryFormat#EXTENSION} da creare o sovrascrivere
+     * @return definizione del mondo compilato
+     * @throws IOException in caso di errori di lettura o scrittura
+     */
+    public static WorldDefinition compile(Path source, Path target) throws IOException {
+        WorldDefinition world = load(source);
+        world.createGameMap(); // verifica i collegamenti prima di scrivere
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            WorldBinaryFormat.write(world, out);
+        }
+        return world;
+    }
+}
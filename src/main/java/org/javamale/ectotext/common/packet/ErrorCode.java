@@ -32,6 +32,8 @@ public enum ErrorCode {
     INVALID_PACKET(101, "Packet invalid or malformed"),
     NOT_IN_ROOM(102, "You are not in a room"),
     ALREADY_IN_ROOM(103, "You are already in a room"),
+    SERVER_DRAINING(104, "Server is shutting down"),
+    NOT_AUTHORIZED(105, "Missing or invalid credentials"),
 
     /* ----------------------- ROOM -------------------------- */
     FULL_ROOM(201, "Room already full"),
@@ -42,6 +44,10 @@ public enum ErrorCode {
     WRONG_ROOM(206, "Wrong room"),
     ROOM_NOT_CREATED(207, "Room not created"),
     ROOM_NOT_DELETED(208, "Room not deleted"),
+    GAME_NOT_AVAILABLE(209, "Game not available"),
+    SESSION_EXPIRED(210, "Session expired or unknown"),
+    ROOM_ON_OTHER_NODE(211, "Room is hosted on another node"),
+    ROOM_MIGRATING(212, "Room is moving to another node"),
 
     /* ------------------------ GAME ------------------------- */
     // Messaggi in italiano visibili al client
@@ -49,6 +55,7 @@ public enum ErrorCode {
     COMMAND_WITHOUT_ARGS(302, "Parametri mancanti"),
     CHARACTER_NOT_AVAILABLE(303, "Personaggio non disponibile"),
     CHARACTER_NOT_FOUND(304, "Personaggio non trovato"),
+    SPECTATOR_NOT_ALLOWED(305, "Gli spettatori non possono giocare"),
     NO_ROOM(310, "Non sei ancora un fantasma, non puoi attraversare i muri"),
     LOCKED_ROOM(311, "La porta è chiusa");
 
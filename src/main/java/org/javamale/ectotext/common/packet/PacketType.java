@@ -26,6 +26,7 @@ public enum PacketType {
     /* ------------------------------------------------------------- */
     OK("ok", OkPacket.class),
     ERROR("error", ErrorPacket.class),
+    SERVER_SHUTDOWN("server_shutdown", ServerShutdownPacket.class),
 
     /* ------------------------ LOBBY / ROOM ----------------------- */
     GET_ROOM_LIST("get_rooms", GetRoomListPacket.class),
@@ -34,6 +35,7 @@ public enum PacketType {
     JOIN_ROOM("join_room", JoinRoomPacket.class),
     DISCONNECT_ROOM("disconnect_room", DisconnectRoomPacket.class),
     DELETE_ROOM("delete_room", DeleteRoomPacket.class),
+    RESUME_SESSION("resume_session", ResumeSessionPacket.class),
 
     ROOM_LIST("room_list", RoomListPacket.class),
     ROOM_DETAILS("room_details", RoomDetailsPacket.class),
@@ -41,6 +43,7 @@ public enum PacketType {
     ROOM_JOINED("room_joined", RoomJoinedPacket.class),
     ROOM_DISCONNECTED("room_disconnected", RoomDisconnectedPacket.class),
     ROOM_DELETED("room_deleted", RoomDeletedPacket.class),
+    ROOM_MOVED("room_moved", RoomMovedPacket.class),
 
     CHAT_MESSAGE("chat_message", ChatMessagePacket.class),
 
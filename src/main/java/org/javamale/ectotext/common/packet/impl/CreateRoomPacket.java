@@ -15,13 +15,22 @@ import java.io.IOException;
  * <ul>
  *   <li>{@link #roomName} – nome pubblico della stanza da creare;</li>
  *   <li>{@link #roomPassword} – eventuale password richiesta per entrare
- *       (può essere {@code null} o stringa vuota se la stanza è aperta).</li>
+ *       (può essere {@code null} o stringa vuota se la stanza è aperta);</li>
+ *   <li>{@link #maxPlayers} – numero massimo di giocatori (facoltativo,
+ *       {@code 0} per usare il valore di default del server);</li>
+ *   <li>{@link #maxSpectators} – numero massimo di spettatori (facoltativo,
+ *       {@code 0} per nessuno spettatore);</li>
+ *   <li>{@link #gameId} – avventura da ospitare (facoltativo, {@code null}
+ *       per usare quella di default del server).</li>
  * </ul>
  * La serializzazione JSON ha il formato:
  * <pre>{
  *   "type": "create_room",
  *   "room_name": "SalaProva",
- *   "room_password": "1234"
+ *   "room_password": "1234",
+ *   "max_players": 3,
+ *   "max_spectators": 0,
+ *   "game_id": "ectotext"
  * }</pre>
  */
 public class CreateRoomPacket extends Packet {
@@ -32,6 +41,15 @@ public class CreateRoomPacket extends Packet {
     /** Password facoltativa per l’accesso alla stanza. */
     private String roomPassword;
 
+    /** Numero massimo di giocatori; {@code 0} indica il default del server. */
+    private int maxPlayers;
+
+    /** Numero massimo di spettatori ammessi. */
+    private int maxSpectators;
+
+    /** Identificatore dell’avventura; {@code null} indica il default del server. */
+    private String gameId;
+
     /** Costruttore vuoto richiesto per la deserializzazione via reflection. */
     public CreateRoomPacket() {
         super(PacketType.CREATE_ROOM);
@@ -49,6 +67,20 @@ public class CreateRoomPacket extends Packet {
         this.roomPassword = roomPassword;
     }
 
+    /**
+     * Costruisce un pacchetto specificando anche la capienza della stanza.
+     *
+     * @param roomName      nome pubblico della stanza
+     * @param roomPassword  password di accesso (può essere {@code null})
+     * @param maxPlayers    numero massimo di giocatori ({@code 0} = default)
+     * @param maxSpectators numero massimo di spettatori
+     */
+    public CreateRoomPacket(String roomName, String roomPassword, int maxPlayers, int maxSpectators) {
+        this(roomName, roomPassword);
+        this.maxPlayers = maxPlayers;
+        this.maxSpectators = maxSpectators;
+    }
+
     /** @return nome della stanza da creare */
     public String getRoomName() {
         return roomName;
@@ -59,6 +91,21 @@ public class CreateRoomPacket extends Packet {
         return roomPassword;
     }
 
+    /** @return numero massimo di giocatori ({@code 0} = default del server) */
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    /** @return numero massimo di spettatori */
+    public int getMaxSpectators() {
+        return maxSpectators;
+    }
+
+    /** @return identificatore dell’avventura ({@code null} = default del server) */
+    public String getGameId() {
+        return gameId;
+    }
+
     /** Aggiorna il nome della stanza. */
     public void setRoomName(String roomName) {
         this.roomName = roomName;
@@ -69,6 +116,21 @@ public class CreateRoomPacket extends Packet {
         this.roomPassword = roomPassword;
     }
 
+    /** Aggiorna il numero massimo di giocatori. */
+    public void setMaxPlayers(int maxPlayers) {
+        this.maxPlayers = maxPlayers;
+    }
+
+    /** Aggiorna il numero massimo di spettatori. */
+    public void setMaxSpectators(int maxSpectators) {
+        this.maxSpectators = maxSpectators;
+    }
+
+    /** Aggiorna l’avventura da ospitare. */
+    public void setGameId(String gameId) {
+        this.gameId = gameId;
+    }
+
     /* ====================================================================== */
     /*                       SERIALIZZAZIONE / GSON                           */
     /* ====================================================================== */
@@ -78,6 +140,11 @@ public class CreateRoomPacket extends Packet {
     protected void toJson(JsonWriter writer) throws IOException {
         writer.name("room_name").value(roomName);
         writer.name("room_password").value(roomPassword);
+        writer.name("max_players").value(maxPlayers);
+        writer.name("max_spectators").value(maxSpectators);
+        if (gameId != null) {
+            writer.name("game_id").value(gameId);
+        }
     }
 
     /** {@inheritDoc} */
@@ -88,6 +155,9 @@ public class CreateRoomPacket extends Packet {
             switch (name) {
                 case "room_name"     -> roomName     = reader.nextString();
                 case "room_password" -> roomPassword = reader.nextString();
+                case "max_players"    -> maxPlayers    = reader.nextInt();
+                case "max_spectators" -> maxSpectators = reader.nextInt();
+                case "game_id"        -> gameId        = reader.nextString();
                 default              -> throw new IllegalStateException(
                         "Unexpected JSON field: " + name);
             }
@@ -17,6 +17,11 @@ import java.io.IOException;
  *   <li>{@link #command} – stringa del comando completo (ad esempio
  *       {@code "usa chiave porta_nord"}).</li>
  * </ul>
+ * Il campo facoltativo {@link #requestId} permette al mittente di
+ * riconoscere la fine delle risposte: se è positivo, dopo le risposte del
+ * comando il server invia al solo mittente un {@link OkPacket} con lo
+ * stesso identificativo; un comando rifiutato riceve invece un
+ * {@link ErrorPacket}.
  * Esempio JSON:
  * <pre>{
  *   "type": "game_command",
@@ -32,6 +37,9 @@ public class GameCommandPacket extends Packet {
     /** Comando testuale da eseguire. */
     private String command;
 
+    /** Identificativo scelto dal mittente, 0 se non richiede conferma. */
+    private long requestId;
+
     /** Costruttore vuoto richiesto da reflection/Gson. */
     public GameCommandPacket() {
         super(PacketType.GAME_COMMAND);
@@ -69,6 +77,16 @@ public class GameCommandPacket extends Packet {
         this.command = command;
     }
 
+    /** @return identificativo della richiesta, 0 se non richiede conferma */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /** Imposta l'identificativo della richiesta (0 = nessuna conferma). */
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     /* ====================================================================== */
     /*                       SERIALIZZAZIONE / GSON                           */
     /* ====================================================================== */
@@ -78,6 +96,9 @@ public class GameCommandPacket extends Packet {
     protected void toJson(JsonWriter writer) throws IOException {
         writer.name("player_name").value(playerName);
         writer.name("command").value(command);
+        if (requestId > 0) {
+            writer.name("request_id").value(requestId);
+        }
     }
 
     /** {@inheritDoc} */
@@ -88,6 +109,7 @@ public class GameCommandPacket extends Packet {
             switch (name) {
                 case "player_name" -> playerName = reader.nextString();
                 case "command"     -> command    = reader.nextString();
+                case "request_id"  -> requestId  = reader.nextLong();
                 default            -> throw new IllegalStateException(
                         "Unexpected JSON field: " + name);
             }
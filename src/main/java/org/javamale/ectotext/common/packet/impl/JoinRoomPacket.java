@@ -18,14 +18,17 @@ import java.io.IOException;
  * <ul>
  *   <li>{@link #playerName} – nome (nickname) del giocatore che entra;</li>
  *   <li>{@link #roomName} – nome pubblico della stanza;</li>
- *   <li>{@link #roomPassword} – password (può essere {@code null} o vuota).</li>
+ *   <li>{@link #roomPassword} – password (può essere {@code null} o vuota);</li>
+ *   <li>{@link #spectator} – {@code true} per entrare come spettatore, che
+ *       riceve i messaggi della stanza ma non può giocare.</li>
  * </ul>
  * Formato JSON esemplificativo:
  * <pre>{
  *   "type": "join_room",
  *   "player_name": "Alice",
  *   "room_name": "SalaProva",
- *   "room_password": "1234"
+ *   "room_password": "1234",
+ *   "spectator": false
  * }</pre>
  */
 public class JoinRoomPacket extends Packet {
@@ -39,6 +42,9 @@ public class JoinRoomPacket extends Packet {
     /** Password della stanza (se richiesta). */
     private String roomPassword;
 
+    /** {@code true} se il client entra come spettatore. */
+    private boolean spectator;
+
     /** Costruttore vuoto necessario a Gson/Reflection per deserializzazione. */
     public JoinRoomPacket() {
         super(PacketType.JOIN_ROOM);
@@ -58,6 +64,19 @@ public class JoinRoomPacket extends Packet {
         this.roomPassword = roomPassword;
     }
 
+    /**
+     * Costruisce un pacchetto indicando se il client entra come spettatore.
+     *
+     * @param playerName   nickname del giocatore
+     * @param roomName     nome della stanza
+     * @param roomPassword password della stanza (può essere {@code null})
+     * @param spectator    {@code true} per entrare come spettatore
+     */
+    public JoinRoomPacket(String playerName, String roomName, String roomPassword, boolean spectator) {
+        this(playerName, roomName, roomPassword);
+        this.spectator = spectator;
+    }
+
     /* ------------------------------------------------------------------ */
     /*                               GETTER                               */
     /* ------------------------------------------------------------------ */
@@ -77,6 +96,11 @@ public class JoinRoomPacket extends Packet {
         return roomPassword;
     }
 
+    /** @return {@code true} se il client entra come spettatore */
+    public boolean isSpectator() {
+        return spectator;
+    }
+
     /* ------------------------------------------------------------------ */
     /*                               SETTER                               */
     /* ------------------------------------------------------------------ */
@@ -93,6 +117,10 @@ public class JoinRoomPacket extends Packet {
         this.roomPassword = roomPassword;
     }
 
+    public void setSpectator(boolean spectator) {
+        this.spectator = spectator;
+    }
+
     /* ====================================================================== */
     /*                       SERIALIZZAZIONE / GSON                           */
     /* ====================================================================== */
@@ -103,6 +131,7 @@ public class JoinRoomPacket extends Packet {
         writer.name("player_name").value(playerName);
         writer.name("room_name").value(roomName);
         writer.name("room_password").value(roomPassword);
+        writer.name("spectator").value(spectator);
     }
 
     /** {@inheritDoc} */
@@ -114,6 +143,7 @@ public class JoinRoomPacket extends Packet {
                 case "player_name"   -> playerName   = reader.nextString();
                 case "room_name"     -> roomName     = reader.nextString();
                 case "room_password" -> roomPassword = reader.nextString();
+                case "spectator"     -> spectator    = reader.nextBoolean();
                 default              -> throw new IllegalStateException(
                         "Unexpected JSON field: " + name);
             }
@@ -24,12 +24,21 @@ import java.io.IOException;
  *   "type": "ok",
  *   "ok_message": "Stanza creata con successo"
  * }</pre>
+ *
+ * <p>Come conferma di un {@link GameCommandPacket} con identificativo:</p>
+ * <pre>{
+ *   "type": "ok",
+ *   "request_id": 42
+ * }</pre>
  */
 public class OkPacket extends Packet {
 
     /** Messaggio opzionale da mostrare al client. */
     private String okMessage;
 
+    /** Identificativo del comando confermato, 0 se assente. */
+    private long requestId;
+
     /** Costruttore vuoto richiesto per deserializzazione via reflection. */
     public OkPacket() {
         super(PacketType.OK);
@@ -55,6 +64,16 @@ public class OkPacket extends Packet {
         this.okMessage = okMessage;
     }
 
+    /** @return identificativo del comando confermato, 0 se assente */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /** Imposta l'identificativo del comando confermato. */
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     /* ====================================================================== */
     /*                       SERIALIZZAZIONE / GSON                           */
     /* ====================================================================== */
@@ -63,6 +82,9 @@ public class OkPacket extends Packet {
     @Override
     protected void toJson(JsonWriter writer) throws IOException {
         writer.name("ok_message").value(okMessage);
+        if (requestId > 0) {
+            writer.name("request_id").value(requestId);
+        }
     }
 
     /** {@inheritDoc} */
@@ -72,6 +94,8 @@ public class OkPacket extends Packet {
             String name = reader.nextName();
             if ("ok_message".equals(name)) {
                 okMessage = reader.nextString();
+            } else if ("request_id".equals(name)) {
+                requestId = reader.nextLong();
             } else {
                 throw new IllegalStateException(
                         "Unexpected JSON field: " + name);
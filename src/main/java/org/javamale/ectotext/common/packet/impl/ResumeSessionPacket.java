@@ -0,0 +1,99 @@
+package org.javamale.ectotext.common.packet.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.PacketType;
+
+import java.io.IOException;
+
+/**
+ * Pacchetto inviato dal client, su una nuova connessione, per riprendere la
+ * sessione in una stanza dopo una disconnessione.
+ * <p>
+ * Campi:
+ * <ul>
+ *   <li>{@link #sessionToken} – token ricevuto in {@link RoomJoinedPacket};</li>
+ *   <li>{@link #lastReceived} – numero di pacchetti ricevuti dopo il
+ *       {@link RoomJoinedPacket} iniziale.</li>
+ * </ul>
+ * In caso di successo il server risponde con un {@link RoomJoinedPacket}
+ * seguito dai pacchetti persi; altrimenti con un errore
+ * {@code SESSION_EXPIRED}.
+ * Formato JSON:
+ * <pre>{
+ *   "type": "resume_session",
+ *   "session_token": "q2Xb9...",
+ *   "last_received": 42
+ * }</pre>
+ */
+public class ResumeSessionPacket extends Packet {
+
+    /** Token della sessione da riprendere. */
+    private String sessionToken;
+
+    /** Pacchetti ricevuti dall'ingresso nella stanza. */
+    private long lastReceived;
+
+    /** Costruttore vuoto necessario a Gson/Reflection. */
+    public ResumeSessionPacket() {
+        super(PacketType.RESUME_SESSION);
+    }
+
+    /**
+     * Costruisce la richiesta di ripresa.
+     *
+     * @param sessionToken token della sessione
+     * @param lastReceived pacchetti ricevuti dall'ingresso nella stanza
+     */
+    public ResumeSessionPacket(String sessionToken, long lastReceived) {
+        this();
+        this.sessionToken = sessionToken;
+        this.lastReceived = lastReceived;
+    }
+
+    /** @return token della sessione */
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    /** Imposta/aggiorna il token della sessione. */
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    /** @return pacchetti ricevuti dall'ingresso nella stanza */
+    public long getLastReceived() {
+        return lastReceived;
+    }
+
+    /** Imposta/aggiorna il numero di pacchetti ricevuti. */
+    public void setLastReceived(long lastReceived) {
+        this.lastReceived = lastReceived;
+    }
+
+    /* ====================================================================== */
+    /*                       SERIALIZZAZIONE / GSON                           */
+    /* ====================================================================== */
+
+    /** {@inheritDoc} */
+    @Override
+    protected void toJson(JsonWriter writer) throws IOException {
+        writer.name("session_token").value(sessionToken);
+        writer.name("last_received").value(lastReceived);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void fromJson(JsonReader reader) throws IOException {
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "session_token" -> sessionToken = reader.nextString();
+                case "last_received" -> lastReceived = reader.nextLong();
+                default              -> throw new IllegalStateException(
+                        "Unexpected JSON field: " + name);
+            }
+        }
+    }
+}
@@ -14,13 +14,18 @@ import java.io.IOException;
  * Campi:
  * <ul>
  *   <li>{@link #playerName} – nickname del giocatore appena entrato;</li>
- *   <li>{@link #roomName} – nome pubblico della stanza.</li>
+ *   <li>{@link #roomName} – nome pubblico della stanza;</li>
+ *   <li>{@link #sessionToken} – token con cui riprendere la sessione dopo
+ *       una disconnessione (assente nei pacchetti più vecchi).</li>
  * </ul>
+ * Il pacchetto viene inviato anche quando una sessione viene ripresa con
+ * {@link ResumeSessionPacket}, con lo stesso token.
  * Esempio JSON:
  * <pre>{
  *   "type": "room_joined",
  *   "player_name": "Alice",
- *   "room_name": "SalaProva"
+ *   "room_name": "SalaProva",
+ *   "session_token": "q2Xb9..."
  * }</pre>
  */
 public class RoomJoinedPacket extends Packet {
@@ -31,6 +36,9 @@ public class RoomJoinedPacket extends Packet {
     /** Nome della stanza in cui il giocatore è entrato. */
     private String roomName;
 
+    /** Token per la ripresa della sessione. */
+    private String sessionToken;
+
     /** Costruttore vuoto richiesto per deserializzazione via reflection. */
     public RoomJoinedPacket() {
         super(PacketType.ROOM_JOINED);
@@ -48,6 +56,18 @@ public class RoomJoinedPacket extends Packet {
         this.playerName = playerName;
     }
 
+    /**
+     * Costruisce il pacchetto con nome giocatore, stanza e token di sessione.
+     *
+     * @param playerName   nickname del giocatore
+     * @param roomName     nome pubblico della stanza
+     * @param sessionToken token per la ripresa della sessione
+     */
+    public RoomJoinedPacket(String playerName, String roomName, String sessionToken) {
+        this(playerName, roomName);
+        this.sessionToken = sessionToken;
+    }
+
     /** @return nome del giocatore entrato */
     public String getPlayerName() {
         return playerName;
@@ -66,6 +86,15 @@ public class RoomJoinedPacket extends Packet {
         this.roomName = roomName;
     }
 
+    /** @return token per la ripresa della sessione, o {@code null} */
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
     /* ====================================================================== */
     /*                       SERIALIZZAZIONE / GSON                           */
     /* ====================================================================== */
@@ -75,6 +104,9 @@ public class RoomJoinedPacket extends Packet {
     protected void toJson(JsonWriter writer) throws IOException {
         writer.name("player_name").value(playerName);
         writer.name("room_name").value(roomName);
+        if (sessionToken != null) {
+            writer.name("session_token").value(sessionToken);
+        }
     }
 
     /** {@inheritDoc} */
@@ -83,9 +115,10 @@ public class RoomJoinedPacket extends Packet {
         while (reader.hasNext()) {
             String name = reader.nextName();
             switch (name) {
-                case "player_name" -> playerName = reader.nextString();
-                case "room_name"   -> roomName   = reader.nextString();
-                default            -> throw new IllegalStateException(
+                case "player_name"   -> playerName   = reader.nextString();
+                case "room_name"     -> roomName     = reader.nextString();
+                case "session_token" -> sessionToken = reader.nextString();
+                default              -> throw new IllegalStateException(
                         "Unexpected JSON field: " + name);
             }
         }
@@ -13,14 +13,17 @@ import java.util.*;
  * contenente l’elenco delle stanze attualmente disponibili.
  * <p>
  * Ogni stanza è rappresentata da un {@link RoomListEntry} che riporta
- * il nome pubblico della lobby e il numero di giocatori connessi.
+ * il nome pubblico della lobby, il numero di giocatori connessi e la
+ * capienza della stanza. In un server a più nodi ogni entry indica anche
+ * l'indirizzo socket del nodo che ospita la stanza ({@code host},
+ * {@code socket_port}); i campi sono omessi con un solo nodo.
  * <p>
  * Struttura JSON di esempio:
  * <pre>{
  *   "type": "room_list",
  *   "rooms": [
- *     { "room_name": "SalaProva", "user_count": 2 },
- *     { "room_name": "Lobby2",    "user_count": 0 }
+ *     { "room_name": "SalaProva", "user_count": 2, "max_players": 3 },
+ *     { "room_name": "Lobby2",    "user_count": 0, "max_players": 8 }
  *   ]
  * }</pre>
  */
@@ -97,6 +100,11 @@ public class RoomListPacket extends Packet {
                 writer.beginObject();
                 writer.name("room_name").value(entry.name);
                 writer.name("user_count").value(entry.userCount);
+                writer.name("max_players").value(entry.maxPlayers);
+                if (entry.host != null) {
+                    writer.name("host").value(entry.host);
+                    writer.name("socket_port").value(entry.socketPort);
+                }
                 writer.endObject();
             } catch (IOException e) {
                 System.err.println(e.getMessage());
@@ -139,12 +147,18 @@ public class RoomListPacket extends Packet {
     private RoomListEntry readRoomEntry(JsonReader reader) throws IOException {
         String name = null;
         int userCount = -1;
+        int maxPlayers = 0;
+        String host = null;
+        int socketPort = 0;
 
         reader.beginObject();
         while (reader.hasNext()) {
             switch (reader.nextName()) {
                 case "room_name"  -> name      = reader.nextString();
                 case "user_count" -> userCount = reader.nextInt();
+                case "max_players" -> maxPlayers = reader.nextInt();
+                case "host"       -> host      = reader.nextString();
+                case "socket_port" -> socketPort = reader.nextInt();
                 default           -> reader.skipValue();
             }
         }
@@ -153,7 +167,7 @@ public class RoomListPacket extends Packet {
         if (name == null || userCount < 0) {
             return null;
         }
-        return new RoomListEntry(name, userCount);
+        return new RoomListEntry(name, userCount, maxPlayers, host, socketPort);
     }
 
     /* ------------------------------------------------------------------ */
@@ -164,7 +178,22 @@ public class RoomListPacket extends Packet {
      * Entry immutabile che rappresenta una stanza nella lista.
      *
      * @param name      nome pubblico della stanza
-     * @param userCount numero di giocatori presenti
+     * @param userCount  numero di giocatori presenti
+     * @param maxPlayers numero massimo di giocatori (0 se sconosciuto)
+     * @param host       host del nodo che ospita la stanza ({@code null} con un solo nodo)
+     * @param socketPort porta socket del nodo che ospita la stanza (0 se sconosciuta)
      */
-    public record RoomListEntry(String name, int userCount) {}
+    public record RoomListEntry(String name, int userCount, int maxPlayers, String host, int socketPort) {
+
+        /**
+         * Entry di una stanza ospitata dal nodo che risponde.
+         *
+         * @param name       nome pubblico della stanza
+         * @param userCount  numero di giocatori presenti
+         * @param maxPlayers numero massimo di giocatori (0 se sconosciuto)
+         */
+        public RoomListEntry(String name, int userCount, int maxPlayers) {
+            this(name, userCount, maxPlayers, null, 0);
+        }
+    }
 }
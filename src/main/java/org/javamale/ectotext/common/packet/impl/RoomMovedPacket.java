@@ -0,0 +1,102 @@
+package org.javamale.ectotext.common.packet.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.PacketType;
+
+import java.io.IOException;
+
+/**
+ * Pacchetto inviato dal server ai client di una stanza che è stata spostata
+ * su un altro nodo del cluster.
+ * <p>
+ * Campi:
+ * <ul>
+ *   <li>{@link #roomName} – nome pubblico della stanza;</li>
+ *   <li>{@link #host} – host del nodo che ora ospita la stanza;</li>
+ *   <li>{@link #socketPort} – porta socket del nuovo nodo.</li>
+ * </ul>
+ * Il client si collega al nuovo nodo e riprende la sessione con
+ * {@link ResumeSessionPacket}, usando lo stesso token e contando anche
+ * questo pacchetto tra quelli ricevuti.
+ * Esempio JSON:
+ * <pre>{
+ *   "type": "room_moved",
+ *   "room_name": "SalaProva",
+ *   "host": "localhost",
+ *   "socket_port": 6667
+ * }</pre>
+ */
+public class RoomMovedPacket extends Packet {
+
+    /** Nome della stanza spostata. */
+    private String roomName;
+
+    /** Host del nodo di destinazione. */
+    private String host;
+
+    /** Porta socket del nodo di destinazione. */
+    private int socketPort;
+
+    /** Costruttore vuoto richiesto per deserializzazione via reflection. */
+    public RoomMovedPacket() {
+        super(PacketType.ROOM_MOVED);
+    }
+
+    /**
+     * Costruisce il pacchetto con la stanza e l'indirizzo del nuovo nodo.
+     *
+     * @param roomName   nome pubblico della stanza
+     * @param host       host del nodo di destinazione
+     * @param socketPort porta socket del nodo di destinazione
+     */
+    public RoomMovedPacket(String roomName, String host, int socketPort) {
+        this();
+        this.roomName = roomName;
+        this.host = host;
+        this.socketPort = socketPort;
+    }
+
+    /** @return nome della stanza spostata */
+    public String getRoomName() {
+        return roomName;
+    }
+
+    /** @return host del nodo di destinazione */
+    public String getHost() {
+        return host;
+    }
+
+    /** @return porta socket del nodo di destinazione */
+    public int getSocketPort() {
+        return socketPort;
+    }
+
+    /* ====================================================================== */
+    /*                       SERIALIZZAZIONE / GSON                           */
+    /* ====================================================================== */
+
+    /** {@inheritDoc} */
+    @Override
+    protected void toJson(JsonWriter writer) throws IOException {
+        writer.name("room_name").value(roomName);
+        writer.name("host").value(host);
+        writer.name("socket_port").value(socketPort);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void fromJson(JsonReader reader) throws IOException {
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "room_name"   -> roomName   = reader.nextString();
+                case "host"        -> host       = reader.nextString();
+                case "socket_port" -> socketPort = reader.nextInt();
+                default            -> throw new IllegalStateException(
+                        "Unexpected JSON field: " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.javamale.ectotext.common.packet.impl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.PacketType;
+
+import java.io.IOException;
+
+/**
+ * Pacchetto di notifica inviato dal server a tutti i client quando inizia
+ * l'arresto ordinato (drain).
+ * <p>
+ * Contiene i campi:
+ * <ul>
+ *   <li>{@link #message} – messaggio da mostrare al giocatore;</li>
+ *   <li>{@link #reconnectAfterMillis} – attesa suggerita, in millisecondi,
+ *       prima di riconnettersi.</li>
+ * </ul>
+ * Dopo l'invio il server non accetta nuovi pacchetti e chiude la connessione
+ * entro il tempo massimo di drain.
+ * Formato JSON:
+ * <pre>{
+ *   "type": "server_shutdown",
+ *   "message": "Il server si sta riavviando",
+ *   "reconnect_after_ms": 5000
+ * }</pre>
+ */
+public class ServerShutdownPacket extends Packet {
+
+    /** Messaggio per il giocatore. */
+    private String message;
+
+    /** Attesa suggerita prima di riconnettersi, in millisecondi. */
+    private long reconnectAfterMillis;
+
+    /** Costruttore vuoto necessario a Gson/Reflection. */
+    public ServerShutdownPacket() {
+        super(PacketType.SERVER_SHUTDOWN);
+    }
+
+    /**
+     * Costruisce il pacchetto di notifica.
+     *
+     * @param message              messaggio per il giocatore
+     * @param reconnectAfterMillis attesa suggerita prima di riconnettersi
+     */
+    public ServerShutdownPacket(String message, long reconnectAfterMillis) {
+        this();
+        this.message = message;
+        this.reconnectAfterMillis = reconnectAfterMillis;
+    }
+
+    /** @return messaggio per il giocatore */
+    public String getMessage() {
+        return message;
+    }
+
+    /** Imposta/aggiorna il messaggio. */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    /** @return attesa suggerita prima di riconnettersi, in millisecondi */
+    public long getReconnectAfterMillis() {
+        return reconnectAfterMillis;
+    }
+
+    /** Imposta/aggiorna l'attesa suggerita prima di riconnettersi. */
+    public void setReconnectAfterMillis(long reconnectAfterMillis) {
+        this.reconnectAfterMillis = reconnectAfterMillis;
+    }
+
+    /* ====================================================================== */
+    /*                       SERIALIZZAZIONE / GSON                           */
+    /* ====================================================================== */
+
+    /** {@inheritDoc} */
+    @Override
+    protected void toJson(JsonWriter writer) throws IOException {
+        writer.name("message").value(message);
+        writer.name("reconnect_after_ms").value(reconnectAfterMillis);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void fromJson(JsonReader reader) throws IOException {
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "message"            -> message = reader.nextString();
+                case "reconnect_after_ms" -> reconnectAfterMillis = reader.nextLong();
+                default                   -> throw new IllegalStateException(
+                        "Unexpected JSON field: " + name);
+            }
+        }
+    }
+}
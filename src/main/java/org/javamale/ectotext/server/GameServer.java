@@ -1,13 +1,27 @@
 package org.javamale.ectotext.server;
 
 import com.google.gson.stream.JsonReader;
+import org.javamale.ectotext.common.packet.impl.ServerShutdownPacket;
+import org.javamale.ectotext.server.cluster.Cluster;
+import org.javamale.ectotext.server.cluster.RoomDirectory;
+import org.javamale.ectotext.server.core.GameCreatorRegistry;
+import org.javamale.ectotext.server.core.GameRoom;
 import org.javamale.ectotext.server.core.GameRoomManager;
+import org.javamale.ectotext.server.core.RoomImport;
 import org.javamale.ectotext.server.network.SocketServer;
+import org.javamale.ectotext.server.persistence.journal.EventJournal;
+import org.javamale.ectotext.server.persistence.mapped.MappedStateStore;
+import org.javamale.ectotext.server.persistence.storage.Storage;
 import org.javamale.ectotext.server.rest.RestServer;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * Server principale del gioco che gestisce tutti i servizi necessari.
@@ -18,9 +32,22 @@ import java.io.IOException;
  *   <li>Comunicazione socket per il gioco in tempo reale</li>
  *   <li>API REST per informazioni di stato</li>
  *   <li>Caricamento delle configurazioni delle stanze</li>
+ *   <li>Arresto ordinato (drain) senza perdita dei comandi in corso</li>
  * </ul>
  */
 public class GameServer {
+    /** Attesa suggerita ai client prima di riconnettersi dopo un arresto ordinato. */
+    public static final Duration RECONNECT_AFTER = Duration.ofSeconds(5);
+
+    /** Messaggio inviato ai client all'inizio dell'arresto ordinato. */
+    private static final String DRAIN_MESSAGE = "Il server si sta riavviando: riconnettiti tra qualche secondo";
+
+    /** Intervallo di controllo durante le attese dell'arresto ordinato. */
+    private static final long DRAIN_POLL_MILLIS = 10;
+
+    /** Numero massimo di voci non valide riportate nel messaggio di errore del caricamento stanze. */
+    private static final int MAX_REPORTED_ERRORS = 10;
+
     /** Gestore delle stanze di gioco. */
     private static GameRoomManager roomManager;
     
@@ -30,6 +57,9 @@ public class GameServer {
     /** Server REST per le API di stato e configurazione. */
     private static RestServer restServer;
 
+    /** Indica che è in corso l'arresto ordinato. */
+    private static volatile boolean draining;
+
     /**
      * Inizializza tutti i servizi del server con porte personalizzate.
      * Sequenza di inizializzazione:
@@ -37,6 +67,9 @@ public class GameServer {
      *   <li>Creazione del gestore delle stanze</li>
      *   <li>Avvio del server socket sulla porta specificata</li>
      *   <li>Avvio del server REST sulla porta specificata</li>
+     *   <li>Avvio della pubblicazione delle stanze agli altri nodi, in un {@link Cluster}</li>
+     *   <li>Registrazione delle stanze come destinatarie delle istantanee
+     *       periodiche dell'{@link EventJournal}</li>
      * </ol>
      *
      * @param socketPort porta per il server socket
@@ -49,6 +82,8 @@ public class GameServer {
         socketServer.start();
         restServer = new RestServer(restPort);
         restServer.start();
+        RoomDirectory.start();
+        EventJournal.setCheckpointHandler(roomManager::checkpointGameState);
     }
 
     /**
@@ -72,11 +107,70 @@ public class GameServer {
      * <ol>
      *   <li>Server socket (chiude le connessioni attive)</li>
      *   <li>Server REST (termina le richieste in corso)</li>
+     *   <li>Supporto di memorizzazione (connessione al database)</li>
      * </ol>
      */
     public static void shutdown() {
         socketServer.shutdown();
         restServer.shutdown();
+        EventJournal.close();
+        MappedStateStore.close();
+        Storage.close();
+    }
+
+    /**
+     * Avvia l'arresto ordinato del server (drain).
+     * Sequenza:
+     * <ol>
+     *   <li>Il server socket smette di accettare connessioni; i nuovi
+     *       pacchetti e la creazione di stanze via REST vengono rifiutati</li>
+     *   <li>In un {@link Cluster} gli altri nodi tolgono le stanze locali
+     *       dalla lobby</li>
+     *   <li>Ai client connessi viene inviato un {@link ServerShutdownPacket}
+     *       con l'attesa suggerita prima di riconnettersi</li>
+     *   <li>Si attende il termine dei pacchetti in elaborazione</li>
+     *   <li>Vengono salvati gli stati di gioco non ancora persistiti</li>
+     *   <li>Si attende che le code di uscita dei client siano svuotate</li>
+     * </ol>
+     * Le attese condividono il tempo massimo indicato. Le connessioni restano
+     * aperte: vanno chiuse con {@link #shutdown()}.
+     *
+     * @param timeout tempo massimo complessivo delle attese
+     * @return {@code true} se tutte le fasi si sono concluse entro il tempo massimo
+     */
+    public static boolean drain(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        draining = true;
+
+        socketServer.stopAccepting();
+        RoomDirectory.withdraw();
+        socketServer.sendToAll(new ServerShutdownPacket(DRAIN_MESSAGE, RECONNECT_AFTER.toMillis()));
+
+        boolean idle = awaitUntil(() -> socketServer.getHandlingCount() == 0, deadline);
+        if (!idle) {
+            System.err.println("Drain timeout: packets still being handled");
+        }
+
+        boolean saved = roomManager.saveAll();
+        if (!saved) {
+            System.err.println("Drain: some game states could not be saved");
+        }
+
+        boolean flushed = awaitUntil(() -> socketServer.getPendingFrames() == 0, deadline);
+        if (!flushed) {
+            System.err.println("Drain timeout: outbound queues not empty");
+        }
+
+        return idle && saved && flushed;
+    }
+
+    /**
+     * Verifica se è in corso l'arresto ordinato.
+     *
+     * @return {@code true} dopo la chiamata a {@link #drain(Duration)}
+     */
+    public static boolean isDraining() {
+        return draining;
     }
 
     /**
@@ -129,22 +223,34 @@ public class GameServer {
      * Il file JSON deve contenere un array di oggetti con i seguenti campi:
      * <ul>
      *   <li>{@code room_name}: nome univoco della stanza</li>
-     *   <li>{@code room_password}: password opzionale per l'accesso</li>
+     *   <li>{@code room_password}: password opzionale per l'accesso (vuota se assente)</li>
+     *   <li>{@code max_players}: numero massimo di giocatori (opzionale)</li>
+     *   <li>{@code max_spectators}: numero massimo di spettatori (opzionale)</li>
+     *   <li>{@code game_id}: avventura da ospitare (opzionale)</li>
      * </ul>
+     * Il file viene letto in streaming e tutte le voci vengono validate prima
+     * di creare qualunque stanza; le stanze sono poi create in blocco con
+     * {@link GameRoomManager#importGameRooms}. In un {@link Cluster} vengono
+     * create solo le stanze assegnate al nodo locale, così che tutti i nodi
+     * possano usare lo stesso file.
      *
      * @param jsonFile file JSON contenente le configurazioni delle stanze
-     * @return numero di stanze caricate con successo
-     * @throws IOException se il file non è leggibile, il formato JSON non è valido
-     *                     o una stanza con lo stesso nome esiste già
+     * @return stanze create e nomi delle stanze saltate perché già esistenti
+     * @throws IOException se il file non è leggibile, il formato JSON non è valido,
+     *                     una voce non è valida o il salvataggio delle stanze fallisce
      */
-    public static int loadGameRoomsFromJson(File jsonFile) throws IOException {
-        int roomCount = 0;
+    public static RoomImport loadGameRoomsFromJson(File jsonFile) throws IOException {
+        List<RoomImport.Entry> entries = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
 
         try (JsonReader reader = new JsonReader(new FileReader(jsonFile))) {
             reader.beginArray();
-            while (reader.hasNext()) {
+            for (int index = 0; reader.hasNext(); index++) {
                 String roomName = null;
-                String roomPassword = null;
+                String roomPassword = "";
+                int maxPlayers = GameRoom.DEFAULT_MAX_PLAYERS;
+                int maxSpectators = GameRoom.DEFAULT_MAX_SPECTATORS;
+                String gameId = GameCreatorRegistry.DEFAULT_GAME_ID;
 
                 reader.beginObject();
                 while (reader.hasNext()) {
@@ -152,21 +258,59 @@ public class GameServer {
                     switch (fieldName) {
                         case "room_name" -> roomName = reader.nextString();
                         case "room_password" -> roomPassword = reader.nextString();
+                        case "max_players" -> maxPlayers = reader.nextInt();
+                        case "max_spectators" -> maxSpectators = reader.nextInt();
+                        case "game_id" -> gameId = reader.nextString();
                         default -> reader.skipValue();
                     }
                 }
                 reader.endObject();
 
-                if(getRoomManager().createGameRoom(roomName, roomPassword)) {
-                    roomCount++;
-                } else {
-                    throw new IOException("Room " + roomName + " already exists");
+                if (roomName == null) {
+                    errors.add("Missing room_name in entry " + index);
+                } else if (!GameRoom.isValidCapacity(maxPlayers, maxSpectators)) {
+                    errors.add("Invalid capacity for room " + roomName);
+                } else if (!GameCreatorRegistry.contains(gameId)) {
+                    errors.add("Unknown game " + gameId + " for room " + roomName);
+                } else if (Cluster.isLocal(roomName)) {
+                    entries.add(new RoomImport.Entry(roomName, roomPassword, gameId, maxPlayers, maxSpectators));
                 }
             }
             reader.endArray();
         }
 
-        return roomCount;
+        if (!errors.isEmpty()) {
+            throw new IOException(errors.size() + " invalid room(s): "
+                    + String.join("; ", errors.subList(0, Math.min(errors.size(), MAX_REPORTED_ERRORS)))
+                    + (errors.size() > MAX_REPORTED_ERRORS ? "; ..." : ""));
+        }
+
+        try {
+            return getRoomManager().importGameRooms(entries);
+        } catch (SQLException e) {
+            throw new IOException("Failed to save rooms: " + e.getMessage(), e);
+        }
     }
 
-}
\ No newline at end of file
+    /**
+     * Attende che una condizione sia vera, controllandola periodicamente.
+     *
+     * @param condition condizione da attendere
+     * @param deadline  istante massimo ({@link System#nanoTime()})
+     * @return {@code true} se la condizione si è verificata entro il limite
+     */
+    private static boolean awaitUntil(BooleanSupplier condition, long deadline) {
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(DRAIN_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
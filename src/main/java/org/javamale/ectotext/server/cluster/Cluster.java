@@ -0,0 +1,386 @@
+package org.javamale.ectotext.server.cluster;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Suddivisione delle stanze tra più nodi server.
+ * <p>
+ * Ogni nodo esegue i propri {@code SocketServer} e {@code RestServer} e ospita
+ * solo le stanze che gli sono assegnate. L'assegnazione avviene per hashing
+ * consistente del nome della stanza: ogni nodo occupa {@link #VIRTUAL_NODES}
+ * punti di un anello e una stanza appartiene al primo nodo che segue l'hash
+ * del suo nome. Aggiungere o togliere un nodo sposta solo le stanze della
+ * porzione di anello interessata.
+ * <p>
+ * I nodi sono elencati in un file JSON statico, identico per tutti i nodi:
+ * <pre>{
+ *   "nodes": [
+ *     { "id": "a", "host": "localhost", "rest_port": 8080, "socket_port": 6666 },
+ *     { "id": "b", "host": "localhost", "rest_port": 8081, "socket_port": 6667 }
+ *   ]
+ * }</pre>
+ * Senza configurazione ({@link #isEnabled()} falso) il server ospita tutte le
+ * stanze come in precedenza.
+ * <p>
+ * Una stanza migrata ({@link RoomMigrator}) resta <em>fissata</em> al nodo
+ * che la ospita, indipendentemente dall'hash: il nodo di destinazione e
+ * quello di origine aggiornano subito la propria assegnazione, gli altri la
+ * apprendono dal riepilogo pubblicato in {@link RoomDirectory}. Sono fissate
+ * solo le stanze ospitate da un nodo diverso da quello indicato dall'hash, e
+ * ogni riepilogo conferma quelle del nodo che lo pubblica:
+ * <ul>
+ *   <li>una stanza che non compare più nel riepilogo del suo nodo (eliminata,
+ *       migrata altrove o ritirata insieme al nodo) torna all'hash;</li>
+ *   <li>le stanze di un nodo che smette di pubblicare tornano all'hash
+ *       quando il suo riepilogo scade ({@link #expirePlacements(long)});</li>
+ *   <li>le stanze fissate al nodo locale restano tali finché il nodo le
+ *       ospita, e vengono liberate da {@link #release(String)}.</li>
+ * </ul>
+ * <p>
+ * Gli endpoint con cui i nodi si scambiano riepiloghi e stanze sono esposti
+ * sulla stessa porta REST dei client: ogni richiesta tra nodi porta il
+ * segreto condiviso {@link #SECRET_PROPERTY} nell'intestazione
+ * {@link #SECRET_HEADER}, e le richieste senza segreto valido vengono
+ * rifiutate.
+ *
+ * @see RoomDirectory
+ */
+public final class Cluster {
+
+    /** Punti dell'anello occupati da ogni nodo. */
+    public static final int VIRTUAL_NODES = 128;
+
+    /** Tempo massimo di risposta di un altro nodo. */
+    public static final Duration PEER_TIMEOUT = Duration.ofSeconds(1);
+
+    /** Proprietà di sistema con il segreto condiviso dai nodi del cluster. */
+    public static final String SECRET_PROPERTY = "ectotext.cluster.secret";
+
+    /** Intestazione HTTP con cui un nodo presenta il segreto condiviso. */
+    public static final String SECRET_HEADER = "X-Ectotext-Cluster-Secret";
+
+    private static volatile List<ClusterNode> nodes = List.of();
+    private static volatile NavigableMap<Long, ClusterNode> ring = Collections.emptyNavigableMap();
+    private static volatile ClusterNode localNode;
+    private static volatile String secret;
+
+    /**
+     * Assegnazione di una stanza a un nodo diverso da quello indicato dall'hash.
+     *
+     * @param node  nodo che ospita la stanza
+     * @param since istante dell'ultima conferma ({@link System#nanoTime()})
+     */
+    private record Placement(ClusterNode node, long since) {}
+
+    /** Stanze fissate a un nodo diverso da quello indicato dall'hash. */
+    private static final Map<String, Placement> PLACEMENTS = new ConcurrentHashMap<>();
+
+    private Cluster() {}
+
+    /**
+     * Carica la configurazione del cluster e identifica il nodo locale.
+     *
+     * @param config file JSON con l'elenco dei nodi
+     * @param nodeId identificatore del nodo locale
+     * @throws IOException se il file non è leggibile o non è valido, se
+     *                     {@code nodeId} non è tra i nodi elencati o se
+     *                     {@link #SECRET_PROPERTY} non è impostata
+     */
+    public static synchronized void init(File config, String nodeId) throws IOException {
+        String configuredSecret = System.getProperty(SECRET_PROPERTY);
+        if (configuredSecret == null || configuredSecret.isBlank()) {
+            throw new IOException("Cluster secret not set (" + SECRET_PROPERTY + ")");
+        }
+
+        List<ClusterNode> loaded = readNodes(config);
+        if (loaded.isEmpty()) {
+            throw new IOException("No nodes in cluster config " + config);
+        }
+
+        ClusterNode local = loaded.stream()
+                .filter(node -> node.id().equals(nodeId))
+                .findFirst()
+                .orElseThrow(() -> new IOException("Node " + nodeId + " not found in cluster config " + config));
+
+        NavigableMap<Long, ClusterNode> points = new TreeMap<>();
+        for (ClusterNode node : loaded) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                points.put(hash(node.id() + "#" + i), node);
+            }
+        }
+
+        nodes = List.copyOf(loaded);
+        ring = Collections.unmodifiableNavigableMap(points);
+        secret = configuredSecret;
+        localNode = local;
+    }
+
+    /**
+     * Indica se il server fa parte di un cluster.
+     *
+     * @return {@code true} se è stata caricata una configurazione
+     */
+    public static boolean isEnabled() {
+        return localNode != null;
+    }
+
+    /**
+     * Restituisce il nodo locale.
+     *
+     * @return nodo locale, o {@code null} senza cluster
+     */
+    public static ClusterNode getLocalNode() {
+        return localNode;
+    }
+
+    /**
+     * Restituisce tutti i nodi del cluster, nell'ordine del file di configurazione.
+     *
+     * @return lista immutabile dei nodi (vuota senza cluster)
+     */
+    public static List<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Restituisce il nodo a cui è assegnata una stanza: quello a cui è
+     * fissata, altrimenti quello indicato dall'hash.
+     *
+     * @param roomName nome della stanza
+     * @return nodo proprietario, o {@code null} senza cluster
+     */
+    public static ClusterNode ownerOf(String roomName) {
+        if (roomName == null) {
+            return null;
+        }
+        Placement pinned = PLACEMENTS.get(roomName);
+        if (pinned != null) {
+            return pinned.node();
+        }
+        return hashOwner(roomName);
+    }
+
+    /**
+     * Fissa una stanza a un nodo, ad esempio dopo una migrazione. Se il nodo
+     * è già quello indicato dall'hash la stanza viene semplicemente liberata.
+     *
+     * @param roomName nome della stanza
+     * @param node     nodo che ospita la stanza
+     */
+    public static void assign(String roomName, ClusterNode node) {
+        if (node == hashOwner(roomName)) {
+            PLACEMENTS.remove(roomName);
+        } else {
+            PLACEMENTS.put(roomName, new Placement(node, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Libera una stanza fissata al nodo locale, ad esempio quando viene
+     * eliminata. Le stanze fissate a un altro nodo non vengono toccate, così
+     * che l'assegnazione al nodo di destinazione di una migrazione resti
+     * valida dopo la rimozione della copia locale.
+     *
+     * @param roomName nome della stanza
+     */
+    public static void release(String roomName) {
+        PLACEMENTS.computeIfPresent(roomName, (name, pinned) -> pinned.node() == localNode ? null : pinned);
+    }
+
+    /**
+     * Aggiorna le assegnazioni con le stanze annunciate da un altro nodo.
+     * <p>
+     * Vincoli:
+     * <ul>
+     *   <li>le stanze fissate al nodo locale non vengono mai spostate: un
+     *       riepilogo in ritardo non può sottrarre una stanza appena arrivata;</li>
+     *   <li>le stanze fissate al nodo che non compaiono nel riepilogo tornano
+     *       all'hash, salvo quelle fissate da meno di {@link #PEER_TIMEOUT}:
+     *       il riepilogo potrebbe essere partito prima che la stanza arrivasse.</li>
+     * </ul>
+     *
+     * @param node       nodo che ha pubblicato il riepilogo
+     * @param roomNames  stanze ospitate dal nodo
+     * @param receivedAt istante di ricezione del riepilogo ({@link System#nanoTime()})
+     */
+    public static void learnPlacements(ClusterNode node, Collection<String> roomNames, long receivedAt) {
+        if (node == null || node == localNode) {
+            return;
+        }
+        Set<String> hosted = new HashSet<>(roomNames);
+        for (String roomName : hosted) {
+            Placement pinned = PLACEMENTS.get(roomName);
+            if (pinned == null || pinned.node() != localNode) {
+                assign(roomName, node);
+            }
+        }
+
+        long settledBefore = receivedAt - PEER_TIMEOUT.toNanos();
+        PLACEMENTS.entrySet().removeIf(entry -> entry.getValue().node() == node
+                && !hosted.contains(entry.getKey())
+                && entry.getValue().since() - settledBefore < 0);
+    }
+
+    /**
+     * Libera le stanze fissate a nodi che non le confermano da almeno
+     * {@code maxAgeNanos}, ad esempio perché il nodo è caduto. Le stanze
+     * fissate al nodo locale non scadono.
+     *
+     * @param maxAgeNanos età massima di un'assegnazione non confermata
+     */
+    public static void expirePlacements(long maxAgeNanos) {
+        long now = System.nanoTime();
+        PLACEMENTS.values().removeIf(pinned -> pinned.node() != localNode && now - pinned.since() >= maxAgeNanos);
+    }
+
+    /**
+     * Indica se una stanza è assegnata al nodo locale.
+     *
+     * @param roomName nome della stanza
+     * @return {@code true} se la stanza è locale o il cluster non è attivo
+     */
+    public static boolean isLocal(String roomName) {
+        return !isEnabled() || ownerOf(roomName) == localNode;
+    }
+
+    /**
+     * Cerca un nodo per identificatore.
+     *
+     * @param nodeId identificatore del nodo
+     * @return nodo, o {@code null} se non fa parte del cluster
+     */
+    public static ClusterNode getNode(String nodeId) {
+        for (ClusterNode node : nodes) {
+            if (node.id().equals(nodeId)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Verifica il segreto presentato da un altro nodo.
+     * <p>
+     * Il confronto avviene in tempo costante, così che la durata della
+     * verifica non riveli quanti caratteri del segreto sono corretti.
+     * </p>
+     *
+     * @param presented valore dell'intestazione {@link #SECRET_HEADER}, o {@code null}
+     * @return {@code true} se il cluster è attivo e il segreto coincide
+     */
+    public static boolean isAuthorized(String presented) {
+        String expected = secret;
+        if (expected == null || presented == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Restituisce il segreto da presentare agli altri nodi.
+     *
+     * @return segreto condiviso, o {@code null} senza cluster
+     */
+    static String getSecret() {
+        return secret;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static List<ClusterNode> readNodes(File config) throws IOException {
+        List<ClusterNode> loaded = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+
+        try (JsonReader reader = new JsonReader(new FileReader(config))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("nodes")) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    ClusterNode node = readNode(reader);
+                    if (!ids.add(node.id())) {
+                        throw new IOException("Duplicate node " + node.id() + " in cluster config " + config);
+                    }
+                    loaded.add(node);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Invalid cluster config " + config + ": " + e.getMessage(), e);
+        }
+
+        return loaded;
+    }
+
+    private static ClusterNode readNode(JsonReader reader) throws IOException {
+        String id = null;
+        String host = null;
+        int restPort = 0;
+        int socketPort = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> id = reader.nextString();
+                case "host" -> host = reader.nextString();
+                case "rest_port" -> restPort = reader.nextInt();
+                case "socket_port" -> socketPort = reader.nextInt();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == null || host == null || restPort <= 0 || socketPort <= 0) {
+            throw new IOException("Incomplete node entry " + id + " in cluster config");
+        }
+        return new ClusterNode(id, host, restPort, socketPort);
+    }
+
+    private static ClusterNode hashOwner(String roomName) {
+        NavigableMap<Long, ClusterNode> points = ring;
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, ClusterNode> entry = points.ceilingEntry(hash(roomName));
+        return entry != null ? entry.getValue() : points.firstEntry().getValue();
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                value = (value << 8) | (digest[i] & 0xff);
+            }
+            return value;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.javamale.ectotext.server.cluster;
+
+/**
+ * Nodo di un server a più nodi, come descritto nel file di configurazione
+ * del cluster.
+ *
+ * @param id         identificatore univoco del nodo
+ * @param host       indirizzo con cui i client e gli altri nodi raggiungono il nodo
+ * @param restPort   porta del server REST del nodo
+ * @param socketPort porta del server socket del nodo
+ * @see Cluster
+ */
+public record ClusterNode(String id, String host, int restPort, int socketPort) {
+
+    /**
+     * Restituisce l'indirizzo base del servizio REST del nodo.
+     *
+     * @return URI nella forma {@code http://host:porta}
+     */
+    public String restUri() {
+        return "http://" + host + ":" + restPort;
+    }
+}
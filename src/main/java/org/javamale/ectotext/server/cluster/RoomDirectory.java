@@ -0,0 +1,286 @@
+package org.javamale.ectotext.server.cluster;
+
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.common.packet.impl.RoomListPacket;
+import org.javamale.ectotext.common.packet.impl.RoomListPacket.RoomListEntry;
+import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.core.GameRoomManager;
+import org.javamale.ectotext.server.metrics.MetricsRegistry;
+import org.javamale.ectotext.server.util.PacketFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Elenco delle stanze di tutto il cluster, usato dalla lobby.
+ * <p>
+ * Ogni nodo pubblica periodicamente agli altri un riepilogo compatto delle
+ * proprie stanze (nome, giocatori, capienza, indirizzo del nodo) con una
+ * {@code PUT /api/cluster/directory/{node_id}}. Ogni nodo conserva l'ultimo
+ * riepilogo ricevuto da ciascun altro nodo e serve l'elenco unito dalla
+ * cache, senza interrogare gli altri nodi a ogni richiesta.
+ * <p>
+ * Vincoli:
+ * <ul>
+ *   <li>un riepilogo identico al precedente non viene ripubblicato, salvo
+ *       ogni terzo di {@link #MAX_AGE_PROPERTY} per segnalare che il nodo è
+ *       ancora attivo: un nodo con stanze ferme invia solo questi rinnovi;</li>
+ *   <li>un riepilogo più vecchio di {@link #MAX_AGE_PROPERTY} viene scartato,
+ *       quindi le stanze di un nodo caduto spariscono dalla lobby entro
+ *       quel tempo e tornano al nodo indicato dall'hash;</li>
+ *   <li>un cambiamento raggiunge gli altri nodi entro
+ *       {@link #PUBLISH_PROPERTY} più il tempo di rete.</li>
+ * </ul>
+ * Configurazione tramite proprietà di sistema:
+ * <ul>
+ *   <li>{@value #PUBLISH_PROPERTY} – intervallo di pubblicazione in ms (default 2000);</li>
+ *   <li>{@value #MAX_AGE_PROPERTY} – età massima di un riepilogo in ms
+ *       (default tre volte l'intervallo di pubblicazione).</li>
+ * </ul>
+ *
+ * @see Cluster
+ */
+public final class RoomDirectory {
+
+    /** Proprietà di sistema per l'intervallo di pubblicazione (ms). */
+    public static final String PUBLISH_PROPERTY = "ectotext.directory.publishMillis";
+
+    /** Proprietà di sistema per l'età massima di un riepilogo (ms). */
+    public static final String MAX_AGE_PROPERTY = "ectotext.directory.maxAgeMillis";
+
+    private static final long PUBLISH_MILLIS = Math.max(100, Long.getLong(PUBLISH_PROPERTY, 2000));
+    private static final long MAX_AGE_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(PUBLISH_MILLIS, Long.getLong(MAX_AGE_PROPERTY, 3 * PUBLISH_MILLIS)));
+    private static final long HEARTBEAT_NANOS = MAX_AGE_NANOS / 3;
+
+    /**
+     * Ultimo riepilogo ricevuto da un nodo.
+     *
+     * @param rooms      stanze del nodo
+     * @param receivedAt istante di ricezione ({@link System#nanoTime()})
+     */
+    private record Summary(List<RoomListEntry> rooms, long receivedAt) {}
+
+    /**
+     * Elenco unito delle stanze degli altri nodi.
+     *
+     * @param rooms     stanze dei riepiloghi ancora validi
+     * @param expiresAt istante in cui scade il più vecchio dei riepiloghi usati
+     */
+    private record Merged(List<RoomListEntry> rooms, long expiresAt) {}
+
+    private static final Map<String, Summary> SUMMARIES = new ConcurrentHashMap<>();
+    private static volatile Merged merged;
+
+    // HTTP/1.1: il server REST non gestisce l'upgrade a HTTP/2 in chiaro
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Cluster.PEER_TIMEOUT)
+            .build();
+    private static final ScheduledExecutorService PUBLISHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "room-directory");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Ultimo riepilogo pubblicato, confrontato per evitare invii inutili. */
+    private static String lastPublished;
+    private static long lastPublishedAt;
+
+    private static final LongAdder PUBLISHED = MetricsRegistry.counter("ectotext_directory_publish_total",
+            "Room summaries published to the cluster", "result", "sent");
+    private static final LongAdder UNCHANGED = MetricsRegistry.counter("ectotext_directory_publish_total",
+            "Room summaries published to the cluster", "result", "unchanged");
+    private static final LongAdder FAILED = MetricsRegistry.counter("ectotext_directory_publish_failures_total",
+            "Room summaries that could not be delivered to a node");
+    private static final LongAdder BYTES = MetricsRegistry.counter("ectotext_directory_publish_bytes_total",
+            "Bytes of room summaries sent to other nodes");
+
+    private RoomDirectory() {}
+
+    /**
+     * Avvia la pubblicazione periodica del riepilogo locale.
+     * Non ha effetto se il server non fa parte di un cluster.
+     */
+    public static void start() {
+        if (Cluster.isEnabled()) {
+            PUBLISHER.scheduleWithFixedDelay(RoomDirectory::publish, 0, PUBLISH_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Interrompe la pubblicazione e annuncia agli altri nodi che il nodo
+     * locale non ospita più stanze, così che spariscano subito dalla lobby.
+     */
+    public static void withdraw() {
+        if (!Cluster.isEnabled()) {
+            return;
+        }
+        PUBLISHER.shutdownNow();
+        send(new RoomListPacket().toBaseJson()).join();
+    }
+
+    /**
+     * Registra il riepilogo pubblicato da un altro nodo e le stanze che
+     * ospita, così che le stanze migrate vengano instradate al nodo giusto.
+     *
+     * @param nodeId identificatore del nodo che pubblica
+     * @param rooms  stanze del nodo
+     */
+    public static synchronized void update(String nodeId, List<RoomListEntry> rooms) {
+        long now = System.nanoTime();
+        SUMMARIES.put(nodeId, new Summary(List.copyOf(rooms), now));
+        merged = null;
+        Cluster.learnPlacements(Cluster.getNode(nodeId), rooms.stream().map(RoomListEntry::name).toList(), now);
+    }
+
+    /**
+     * Restituisce le stanze degli altri nodi, dall'ultimo riepilogo valido di
+     * ciascuno. L'elenco unito è ricalcolato solo quando arriva un nuovo
+     * riepilogo o ne scade uno.
+     *
+     * @return stanze degli altri nodi, nell'ordine dei nodi nella configurazione
+     */
+    public static List<RoomListEntry> getRemoteRooms() {
+        Merged current = merged;
+        if (current == null || System.nanoTime() - current.expiresAt() >= 0) {
+            current = merge();
+        }
+        return current.rooms();
+    }
+
+    /**
+     * Serializza lo stato dei riepiloghi ricevuti.
+     * <p>
+     * Formato:
+     * <pre>{
+     *   "publish_ms": 2000,
+     *   "max_age_ms": 6000,
+     *   "nodes": [
+     *     { "id": "b", "rooms": 2, "age_ms": 812, "stale": false }
+     *   ]
+     * }</pre>
+     *
+     * @return documento JSON
+     */
+    public static String toJson() {
+        long now = System.nanoTime();
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("publish_ms").value(PUBLISH_MILLIS);
+            writer.name("max_age_ms").value(TimeUnit.NANOSECONDS.toMillis(MAX_AGE_NANOS));
+            writer.name("nodes").beginArray();
+            for (ClusterNode node : Cluster.getNodes()) {
+                Summary summary = SUMMARIES.get(node.id());
+                if (summary == null) {
+                    continue;
+                }
+                long age = now - summary.receivedAt();
+                writer.beginObject();
+                writer.name("id").value(node.id());
+                writer.name("rooms").value(summary.rooms().size());
+                writer.name("age_ms").value(TimeUnit.NANOSECONDS.toMillis(age));
+                writer.name("stale").value(age >= MAX_AGE_NANOS);
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static synchronized Merged merge() {
+        long now = System.nanoTime();
+        long expiresAt = now + MAX_AGE_NANOS;
+        List<RoomListEntry> rooms = new ArrayList<>();
+
+        for (ClusterNode node : Cluster.getNodes()) {
+            Summary summary = SUMMARIES.get(node.id());
+            if (summary == null || now - summary.receivedAt() >= MAX_AGE_NANOS) {
+                continue;
+            }
+            rooms.addAll(summary.rooms());
+            expiresAt = Math.min(expiresAt, summary.receivedAt() + MAX_AGE_NANOS);
+        }
+
+        merged = new Merged(List.copyOf(rooms), expiresAt);
+        return merged;
+    }
+
+    private static void publish() {
+        try {
+            // Le stanze di un nodo il cui riepilogo è scaduto tornano all'hash
+            Cluster.expirePlacements(MAX_AGE_NANOS);
+
+            GameRoomManager roomManager = GameServer.getRoomManager();
+            if (roomManager == null) {
+                return;
+            }
+
+            String json = PacketFactory.fromGameRoomList(roomManager.getGameRooms()).toBaseJson();
+            long now = System.nanoTime();
+            if (json.equals(lastPublished) && now - lastPublishedAt < HEARTBEAT_NANOS) {
+                UNCHANGED.increment();
+                return;
+            }
+
+            send(json);
+            lastPublished = json;
+            lastPublishedAt = now;
+            PUBLISHED.increment();
+        } catch (RuntimeException e) {
+            // Un errore non deve interrompere la pubblicazione periodica
+            System.err.println("Room directory publish failed: " + e.getMessage());
+        }
+    }
+
+    private static CompletableFuture<Void> send(String json) {
+        ClusterNode local = Cluster.getLocalNode();
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+
+        for (ClusterNode node : Cluster.getNodes()) {
+            if (node == local) {
+                continue;
+            }
+            HttpRequest request = HttpRequest.newBuilder(
+                            URI.create(node.restUri() + "/api/cluster/directory/" + local.id()))
+                    .timeout(Cluster.PEER_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .header(Cluster.SECRET_HEADER, Cluster.getSecret())
+                    .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+
+            BYTES.add(body.length);
+            requests.add(HTTP.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() / 100 != 2) {
+                            FAILED.increment();
+                        }
+                    }));
+        }
+
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).exceptionally(e -> null);
+    }
+}
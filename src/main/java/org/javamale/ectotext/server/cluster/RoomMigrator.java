@@ -0,0 +1,223 @@
+package org.javamale.ectotext.server.cluster;
+
+import jakarta.ws.rs.core.UriBuilder;
+import org.javamale.ectotext.common.metrics.Histogram;
+import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.core.GameRoom;
+import org.javamale.ectotext.server.core.GameRoomManager;
+import org.javamale.ectotext.server.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sposta una stanza attiva dal nodo locale a un altro nodo del
+ * {@link Cluster} senza far uscire i giocatori.
+ * <p>
+ * La migrazione avviene in quattro passi:
+ * <ol>
+ *   <li>la stanza viene bloccata: comandi, scelte dei personaggi e nuovi
+ *       ingressi ricevono {@code ROOM_MIGRATING}, la chat resta attiva;</li>
+ *   <li>stato di gioco, personaggi scelti e token di sessione
+ *       ({@link RoomTransfer}) vengono inviati al nodo di destinazione con
+ *       una {@code POST /api/cluster/rooms}, che ricrea la stanza e riserva
+ *       i posti;</li>
+ *   <li>ogni client riceve un {@code RoomMovedPacket}, si collega al nuovo
+ *       nodo e riprende la sessione con lo stesso token;</li>
+ *   <li>la stanza viene rimossa dal nodo locale e fissata al nuovo nodo.</li>
+ * </ol>
+ * Se il nodo di destinazione rifiuta la stanza, la stanza viene riaperta sul
+ * nodo locale. Se invece non risponde entro {@link Cluster#PEER_TIMEOUT},
+ * o risponde con un errore interno, l'importazione potrebbe essere avvenuta
+ * comunque: la stanza resta bloccata e il nodo locale ne chiede l'esito con
+ * una {@code POST /api/cluster/rooms/{nome}/settle?transfer=<id>}. Il nodo
+ * di destinazione conferma la stanza importata con quel
+ * {@link RoomTransfer#transferId()} oppure annulla il trasferimento, così
+ * che un invio ancora in viaggio venga rifiutato; solo allora la migrazione
+ * viene completata o la stanza riaperta. Finché il nodo di destinazione non
+ * risponde la richiesta viene ripetuta ogni {@link #SETTLE_RETRY}, e la
+ * stanza non viene mai ospitata da due nodi.
+ * <p>
+ * L'interruzione per i giocatori dura il tempo del trasferimento più una
+ * riconnessione.
+ *
+ * @see GameRoom#beginMigration()
+ * @see GameRoomManager#importGameRoom(RoomTransfer)
+ */
+public final class RoomMigrator {
+
+    /** Esito di una migrazione. */
+    public enum Result {
+        /** Stanza spostata. */
+        MIGRATED,
+        /** Stanza non ospitata dal nodo locale. */
+        ROOM_NOT_FOUND,
+        /** Nodo sconosciuto o coincidente con quello locale. */
+        INVALID_TARGET,
+        /** Migrazione della stanza già in corso. */
+        ALREADY_MIGRATING,
+        /** Il nodo di destinazione ha rifiutato la stanza. */
+        TARGET_REJECTED,
+        /** Il nodo di destinazione non ha risposto, poi ha annullato il trasferimento. */
+        TARGET_UNREACHABLE,
+        /** Esito non ancora confermato dal nodo di destinazione: la stanza resta bloccata. */
+        TARGET_UNCONFIRMED
+    }
+
+    /** Intervallo tra due richieste dell'esito di un trasferimento non confermato. */
+    public static final Duration SETTLE_RETRY = Duration.ofSeconds(2);
+
+    // HTTP/1.1: il server REST non gestisce l'upgrade a HTTP/2 in chiaro
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Cluster.PEER_TIMEOUT)
+            .build();
+    private static final ScheduledExecutorService SETTLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "room-migrator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final LongAdder MIGRATED = MetricsRegistry.counter("ectotext_room_migrations_total",
+            "Room migrations started on this node", "result", "migrated");
+    private static final LongAdder FAILED = MetricsRegistry.counter("ectotext_room_migrations_total",
+            "Room migrations started on this node", "result", "failed");
+    private static final Histogram DURATION = MetricsRegistry.summary("ectotext_room_migration_seconds",
+            "Time a migrating room is frozen", 1e6);
+
+    private RoomMigrator() {}
+
+    /**
+     * Sposta una stanza sul nodo indicato.
+     *
+     * @param roomName nome della stanza
+     * @param target   nodo di destinazione
+     * @return esito della migrazione
+     */
+    public static Result migrate(String roomName, ClusterNode target) {
+        GameRoomManager roomManager = GameServer.getRoomManager();
+        GameRoom gameRoom = roomManager == null ? null : roomManager.getGameRoom(roomName);
+        if (gameRoom == null) {
+            return Result.ROOM_NOT_FOUND;
+        }
+        if (target == null || target == Cluster.getLocalNode()) {
+            return Result.INVALID_TARGET;
+        }
+
+        long start = System.nanoTime();
+        RoomTransfer transfer = gameRoom.beginMigration();
+        if (transfer == null) {
+            return Result.ALREADY_MIGRATING;
+        }
+
+        Result result = send(transfer, target);
+        if (result == Result.TARGET_UNCONFIRMED) {
+            result = settle(transfer, target);
+        }
+        if (result == Result.TARGET_UNCONFIRMED) {
+            System.err.println("Room " + roomName + " stays frozen until node " + target.id()
+                    + " confirms transfer " + transfer.transferId());
+            SETTLER.schedule(() -> retrySettle(roomManager, gameRoom, transfer, target, start),
+                    SETTLE_RETRY.toMillis(), TimeUnit.MILLISECONDS);
+            return result;
+        }
+
+        finish(roomManager, gameRoom, target, result, start);
+        return result;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static void retrySettle(GameRoomManager roomManager, GameRoom gameRoom, RoomTransfer transfer,
+                                    ClusterNode target, long start) {
+        Result result = settle(transfer, target);
+        if (result == Result.TARGET_UNCONFIRMED) {
+            SETTLER.schedule(() -> retrySettle(roomManager, gameRoom, transfer, target, start),
+                    SETTLE_RETRY.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        System.err.println("Node " + target.id() + " settled transfer of room " + transfer.roomName()
+                + ": " + result);
+        finish(roomManager, gameRoom, target, result, start);
+    }
+
+    private static void finish(GameRoomManager roomManager, GameRoom gameRoom, ClusterNode target,
+                               Result result, long start) {
+        if (result != Result.MIGRATED) {
+            gameRoom.cancelMigration();
+            FAILED.increment();
+            return;
+        }
+
+        roomManager.completeMigration(gameRoom, target);
+        DURATION.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        MIGRATED.increment();
+    }
+
+    private static Result send(RoomTransfer transfer, ClusterNode target) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target.restUri() + "/api/cluster/rooms"))
+                .timeout(Cluster.PEER_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .header(Cluster.SECRET_HEADER, Cluster.getSecret())
+                .POST(HttpRequest.BodyPublishers.ofString(transfer.toJson(), StandardCharsets.UTF_8))
+                .build();
+
+        try {
+            HttpResponse<Void> response = HTTP.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 201) {
+                return Result.MIGRATED;
+            }
+            System.err.println("Node " + target.id() + " rejected room " + transfer.roomName()
+                    + ": HTTP " + response.statusCode());
+            // Un errore interno può arrivare a importazione avvenuta
+            return response.statusCode() >= 500 ? Result.TARGET_UNCONFIRMED : Result.TARGET_REJECTED;
+        } catch (IOException e) {
+            System.err.println("Node " + target.id() + " unreachable: " + e.getMessage());
+            return Result.TARGET_UNCONFIRMED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.TARGET_UNCONFIRMED;
+        }
+    }
+
+    private static Result settle(RoomTransfer transfer, ClusterNode target) {
+        URI uri = UriBuilder.fromUri(target.restUri())
+                .path("/api/cluster/rooms/{room_name}/settle")
+                .queryParam("transfer", transfer.transferId())
+                .build(transfer.roomName());
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Cluster.PEER_TIMEOUT)
+                .header(Cluster.SECRET_HEADER, Cluster.getSecret())
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+
+        try {
+            HttpResponse<Void> response = HTTP.send(request, HttpResponse.BodyHandlers.discarding());
+            return switch (response.statusCode()) {
+                case 204 -> Result.MIGRATED;
+                case 410 -> Result.TARGET_UNREACHABLE;
+                default -> {
+                    System.err.println("Node " + target.id() + " could not settle transfer of room "
+                            + transfer.roomName() + ": HTTP " + response.statusCode());
+                    yield Result.TARGET_UNCONFIRMED;
+                }
+            };
+        } catch (IOException e) {
+            return Result.TARGET_UNCONFIRMED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.TARGET_UNCONFIRMED;
+        }
+    }
+}
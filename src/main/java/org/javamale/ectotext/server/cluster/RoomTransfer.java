@@ -0,0 +1,461 @@
+package org.javamale.ectotext.server.cluster;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.common.model.Character;
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.GameState;
+import org.javamale.ectotext.common.model.Item;
+import org.javamale.ectotext.common.model.NPC;
+import org.javamale.ectotext.common.model.Room;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Contenuto di una stanza trasferita da un nodo all'altro durante una
+ * migrazione.
+ * <p>
+ * Comprende la configurazione della stanza, lo stato di gioco, le
+ * associazioni giocatore → personaggio e i posti occupati con il token di
+ * sessione di ciascuno, così che i client possano riprendere la sessione sul
+ * nuovo nodo. Lo stato è trasferito per nome (stanze della mappa, oggetti,
+ * flag) e ricostruito sulla descrizione dell'avventura del nodo di
+ * destinazione.
+ * <p>
+ * Ogni trasferimento ha un identificatore proprio: il nodo di destinazione
+ * lo associa alla stanza importata, così che il nodo di origine possa
+ * chiedere l'esito di un invio rimasto senza risposta.
+ * <p>
+ * Formato JSON:
+ * <pre>{
+ *   "transfer_id": "…", "room_name": "SalaProva", "room_password": "", "game_id": "ectotext",
+ *   "max_players": 3, "max_spectators": 0, "intro": false,
+ *   "state": {
+ *     "uuid": "…", "flags": ["door_open"],
+ *     "characters": [ { "name": "…", "display_name": "…", "room": "…",
+ *                       "inventory": [ { "name": "…", "display_name": "…", "description": "…" } ] } ],
+ *     "npcs": [ { "name": "…", "display_name": "…", "room": "…" } ]
+ *   },
+ *   "bindings": { "mario": "ghost" },
+ *   "seats": [ { "player": "mario", "token": "…", "spectator": false } ]
+ * }</pre>
+ *
+ * @param transferId    identificatore del trasferimento
+ * @param roomName      nome della stanza
+ * @param password      password della stanza
+ * @param gameId        identificatore dell'avventura
+ * @param maxPlayers    numero massimo di giocatori
+ * @param maxSpectators numero massimo di spettatori
+ * @param intro         {@code true} se l'introduzione non è ancora stata mostrata
+ * @param state         stato di gioco
+ * @param bindings      personaggio scelto da ciascun giocatore
+ * @param seats         giocatori e spettatori presenti
+ * @see RoomMigrator
+ */
+public record RoomTransfer(String transferId, String roomName, String password, String gameId, int maxPlayers, int maxSpectators,
+                           boolean intro, StateData state, Map<String, String> bindings, List<Seat> seats) {
+
+    /**
+     * Posto occupato nella stanza.
+     *
+     * @param playerName nickname del giocatore
+     * @param token      token della sessione da riprendere
+     * @param spectator  {@code true} se il posto è da spettatore
+     */
+    public record Seat(String playerName, String token, boolean spectator) {}
+
+    /**
+     * Stato di gioco descritto per nome.
+     *
+     * @param uuid       identificatore dello stato
+     * @param flags      chiavi dei flag attivi
+     * @param characters personaggi
+     * @param npcs       personaggi non giocanti
+     */
+    public record StateData(UUID uuid, List<String> flags, List<CharacterData> characters, List<NPCData> npcs) {}
+
+    /**
+     * Personaggio con posizione e inventario.
+     *
+     * @param name        nome del personaggio
+     * @param displayName nome visualizzato
+     * @param roomName    stanza della mappa in cui si trova
+     * @param inventory   oggetti posseduti
+     */
+    public record CharacterData(String name, String displayName, String roomName, List<ItemData> inventory) {}
+
+    /**
+     * Personaggio non giocante con posizione.
+     *
+     * @param name        nome dell'NPC
+     * @param displayName nome visualizzato
+     * @param roomName    stanza della mappa in cui si trova
+     */
+    public record NPCData(String name, String displayName, String roomName) {}
+
+    /**
+     * Oggetto di un inventario.
+     *
+     * @param name        nome dell'oggetto
+     * @param displayName nome visualizzato
+     * @param description descrizione
+     */
+    public record ItemData(String name, String displayName, String description) {}
+
+    /**
+     * Descrive per nome uno stato di gioco.
+     *
+     * @param gameState stato da descrivere
+     * @return descrizione trasferibile
+     */
+    public static StateData describe(GameState gameState) {
+        List<String> flags = new ArrayList<>();
+        for (GameFlag flag : gameState.getFlags()) {
+            flags.add(flag.getKey());
+        }
+
+        List<CharacterData> characters = new ArrayList<>();
+        for (Character character : gameState.getCharacters()) {
+            List<ItemData> inventory = new ArrayList<>();
+            for (Item item : character.getInventory()) {
+                inventory.add(new ItemData(item.getName(), item.getDisplayName(), item.getDescription()));
+            }
+            characters.add(new CharacterData(character.getName(), character.getDisplayName(),
+                    roomName(character.getCurrentRoom()), inventory));
+        }
+
+        List<NPCData> npcs = new ArrayList<>();
+        for (NPC npc : gameState.getNPCs()) {
+            npcs.add(new NPCData(npc.getName(), npc.getDisplayName(), roomName(npc.getCurrentRoom())));
+        }
+
+        return new StateData(gameState.getUuid(), flags, characters, npcs);
+    }
+
+    /**
+     * Ricostruisce lo stato di gioco sulla descrizione dell'avventura locale.
+     *
+     * @param gameDescription descrizione dell'avventura della stanza di destinazione
+     * @return stato di gioco
+     * @throws IllegalArgumentException se un flag non è riconosciuto
+     */
+    public GameState toGameState(GameDescription gameDescription) {
+        GameState gameState = new GameState(state.uuid());
+
+        for (String key : state.flags()) {
+            GameFlag flag = GameFlag.fromKey(key);
+            if (flag == null) {
+                throw new IllegalArgumentException("Unknown game flag: " + key);
+            }
+            gameState.addFlag(flag);
+        }
+
+        for (CharacterData data : state.characters()) {
+            List<Item> items = new ArrayList<>();
+            for (ItemData item : data.inventory()) {
+                items.add(new Item(item.name(), item.displayName(), item.description()));
+            }
+            gameState.addCharacter(new Character.CharacterBuilder(data.name())
+                    .setDisplayName(data.displayName())
+                    .setStartingRoom(room(gameDescription, data.roomName()))
+                    .addItems(items)
+                    .build());
+        }
+
+        for (NPCData data : state.npcs()) {
+            gameState.addNPC(new NPC(data.name(), data.displayName(), room(gameDescription, data.roomName())));
+        }
+
+        return gameState;
+    }
+
+    /**
+     * Serializza il trasferimento.
+     *
+     * @return documento JSON
+     */
+    public String toJson() {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("transfer_id").value(transferId);
+            writer.name("room_name").value(roomName);
+            writer.name("room_password").value(password);
+            writer.name("game_id").value(gameId);
+            writer.name("max_players").value(maxPlayers);
+            writer.name("max_spectators").value(maxSpectators);
+            writer.name("intro").value(intro);
+            writer.name("state");
+            writeState(writer);
+            writer.name("bindings").beginObject();
+            for (Map.Entry<String, String> binding : bindings.entrySet()) {
+                writer.name(binding.getKey()).value(binding.getValue());
+            }
+            writer.endObject();
+            writer.name("seats").beginArray();
+            for (Seat seat : seats) {
+                writer.beginObject();
+                writer.name("player").value(seat.playerName());
+                writer.name("token").value(seat.token());
+                writer.name("spectator").value(seat.spectator());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Legge un trasferimento serializzato con {@link #toJson()}.
+     *
+     * @param json documento JSON
+     * @return trasferimento
+     * @throws IOException se il documento non è valido
+     */
+    public static RoomTransfer fromJson(String json) throws IOException {
+        String transferId = null;
+        String roomName = null;
+        String password = "";
+        String gameId = null;
+        int maxPlayers = 0;
+        int maxSpectators = 0;
+        boolean intro = false;
+        StateData state = null;
+        Map<String, String> bindings = new LinkedHashMap<>();
+        List<Seat> seats = new ArrayList<>();
+
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "transfer_id" -> transferId = reader.nextString();
+                    case "room_name" -> roomName = reader.nextString();
+                    case "room_password" -> password = reader.nextString();
+                    case "game_id" -> gameId = reader.nextString();
+                    case "max_players" -> maxPlayers = reader.nextInt();
+                    case "max_spectators" -> maxSpectators = reader.nextInt();
+                    case "intro" -> intro = reader.nextBoolean();
+                    case "state" -> state = readState(reader);
+                    case "bindings" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            bindings.put(reader.nextName(), reader.nextString());
+                        }
+                        reader.endObject();
+                    }
+                    case "seats" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            seats.add(readSeat(reader));
+                        }
+                        reader.endArray();
+                    }
+                    default -> throw new IllegalStateException("Unexpected JSON field: " + name);
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        if (transferId == null || roomName == null || gameId == null || state == null) {
+            throw new IOException("Incomplete room transfer");
+        }
+        return new RoomTransfer(transferId, roomName, password, gameId, maxPlayers, maxSpectators, intro, state,
+                bindings, seats);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static String roomName(Room room) {
+        return room == null ? null : room.getName();
+    }
+
+    private static Room room(GameDescription gameDescription, String roomName) {
+        return roomName == null ? null : gameDescription.getGameMap().getRoom(roomName);
+    }
+
+    private void writeState(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("uuid").value(state.uuid().toString());
+        writer.name("flags").beginArray();
+        for (String flag : state.flags()) {
+            writer.value(flag);
+        }
+        writer.endArray();
+        writer.name("characters").beginArray();
+        for (CharacterData character : state.characters()) {
+            writer.beginObject();
+            writer.name("name").value(character.name());
+            writer.name("display_name").value(character.displayName());
+            writer.name("room").value(character.roomName());
+            writer.name("inventory").beginArray();
+            for (ItemData item : character.inventory()) {
+                writer.beginObject();
+                writer.name("name").value(item.name());
+                writer.name("display_name").value(item.displayName());
+                writer.name("description").value(item.description());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("npcs").beginArray();
+        for (NPCData npc : state.npcs()) {
+            writer.beginObject();
+            writer.name("name").value(npc.name());
+            writer.name("display_name").value(npc.displayName());
+            writer.name("room").value(npc.roomName());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private static StateData readState(JsonReader reader) throws IOException {
+        UUID uuid = null;
+        List<String> flags = new ArrayList<>();
+        List<CharacterData> characters = new ArrayList<>();
+        List<NPCData> npcs = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "uuid" -> uuid = UUID.fromString(reader.nextString());
+                case "flags" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        flags.add(reader.nextString());
+                    }
+                    reader.endArray();
+                }
+                case "characters" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        characters.add(readCharacter(reader));
+                    }
+                    reader.endArray();
+                }
+                case "npcs" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        npcs.add(readNPC(reader));
+                    }
+                    reader.endArray();
+                }
+                default -> throw new IllegalStateException("Unexpected JSON field: " + name);
+            }
+        }
+        reader.endObject();
+        return new StateData(uuid != null ? uuid : UUID.randomUUID(), flags, characters, npcs);
+    }
+
+    private static CharacterData readCharacter(JsonReader reader) throws IOException {
+        String name = null;
+        String displayName = null;
+        String roomName = null;
+        List<ItemData> inventory = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "name" -> name = reader.nextString();
+                case "display_name" -> displayName = nextNullableString(reader);
+                case "room" -> roomName = nextNullableString(reader);
+                case "inventory" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        inventory.add(readItem(reader));
+                    }
+                    reader.endArray();
+                }
+                default -> throw new IllegalStateException("Unexpected JSON field: " + field);
+            }
+        }
+        reader.endObject();
+        return new CharacterData(name, displayName, roomName, inventory);
+    }
+
+    private static NPCData readNPC(JsonReader reader) throws IOException {
+        String name = null;
+        String displayName = null;
+        String roomName = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "name" -> name = reader.nextString();
+                case "display_name" -> displayName = nextNullableString(reader);
+                case "room" -> roomName = nextNullableString(reader);
+                default -> throw new IllegalStateException("Unexpected JSON field: " + field);
+            }
+        }
+        reader.endObject();
+        return new NPCData(name, displayName, roomName);
+    }
+
+    private static ItemData readItem(JsonReader reader) throws IOException {
+        String name = null;
+        String displayName = null;
+        String description = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "name" -> name = reader.nextString();
+                case "display_name" -> displayName = nextNullableString(reader);
+                case "description" -> description = nextNullableString(reader);
+                default -> throw new IllegalStateException("Unexpected JSON field: " + field);
+            }
+        }
+        reader.endObject();
+        return new ItemData(name, displayName, description);
+    }
+
+    private static Seat readSeat(JsonReader reader) throws IOException {
+        String playerName = null;
+        String token = null;
+        boolean spectator = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "player" -> playerName = reader.nextString();
+                case "token" -> token = reader.nextString();
+                case "spectator" -> spectator = reader.nextBoolean();
+                default -> throw new IllegalStateException("Unexpected JSON field: " + field);
+            }
+        }
+        reader.endObject();
+        return new Seat(playerName, token, spectator);
+    }
+
+    private static String nextNullableString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
@@ -0,0 +1,118 @@
+package org.javamale.ectotext.server.core;
+
+import org.javamale.ectotext.common.model.GameCreator;
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.impl.EctoTextCreator;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro delle avventure ({@link GameCreator}) disponibili sul server.
+ * <p>
+ * Le implementazioni vengono scoperte con {@link ServiceLoader} alla prima
+ * richiesta. Per ciascuna avventura:
+ * <ul>
+ *   <li>la {@link GameDescription} viene costruita solo al primo utilizzo,
+ *       così che i pacchetti di contenuti mai scelti non abbiano costi
+ *       all'avvio né in memoria;</li>
+ *   <li>la descrizione costruita viene condivisa da tutte le stanze che
+ *       ospitano la stessa avventura, essendo statica.</li>
+ * </ul>
+ *
+ * @see GameCreator
+ * @see GameEngine
+ */
+public final class GameCreatorRegistry {
+
+    /** Identificatore dell'avventura usata quando la stanza non ne specifica una. */
+    public static final String DEFAULT_GAME_ID = EctoTextCreator.ID;
+
+    /** Descrizioni già costruite, indicizzate per identificatore dell'avventura. */
+    private static final Map<String, GameDescription> descriptions = new ConcurrentHashMap<>();
+
+    private GameCreatorRegistry() {}
+
+    /**
+     * Holder inizializzato alla prima richiesta: la scansione dei provider
+     * avviene una sola volta e solo se il registro viene usato.
+     */
+    private static final class Holder {
+        private static final Map<String, GameCreator> CREATORS = loadCreators();
+    }
+
+    /**
+     * Scopre le implementazioni di {@link GameCreator} registrate.
+     *
+     * @return mappa immutabile «identificatore → creator», in ordine di scoperta
+     */
+    private static Map<String, GameCreator> loadCreators() {
+        Map<String, GameCreator> creators = new LinkedHashMap<>();
+
+        for (GameCreator creator : ServiceLoader.load(GameCreator.class)) {
+            if (creators.putIfAbsent(creator.getId(), creator) != null) {
+                System.err.println("Duplicate game id ignored: " + creator.getId());
+            }
+        }
+
+        return Collections.unmodifiableMap(creators);
+    }
+
+    /**
+     * Elenca gli identificatori delle avventure disponibili.
+     *
+     * @return insieme immutabile degli identificatori
+     */
+    public static Set<String> getGameIds() {
+        return Holder.CREATORS.keySet();
+    }
+
+    /**
+     * Verifica se un'avventura è disponibile.
+     *
+     * @param gameId identificatore dell'avventura
+     * @return {@code true} se esiste un creator registrato con quell'identificatore
+     */
+    public static boolean contains(String gameId) {
+        return gameId != null && Holder.CREATORS.containsKey(gameId);
+    }
+
+    /**
+     * Restituisce il creator di un'avventura.
+     *
+     * @param gameId identificatore dell'avventura
+     * @return creator registrato
+     * @throws IllegalArgumentException se l'avventura non è disponibile
+     */
+    public static GameCreator getCreator(String gameId) {
+        GameCreator creator = gameId == null ? null : Holder.CREATORS.get(gameId);
+        if (creator == null) {
+            throw new IllegalArgumentException("Unknown game: " + gameId);
+        }
+        return creator;
+    }
+
+    /**
+     * Restituisce la descrizione condivisa di un'avventura, costruendola al
+     * primo accesso.
+     *
+     * @param gameId identificatore dell'avventura
+     * @return descrizione statica dell'avventura
+     * @throws IllegalArgumentException se l'avventura non è disponibile
+     */
+    public static GameDescription getGameDescription(String gameId) {
+        GameCreator creator = getCreator(gameId);
+        return descriptions.computeIfAbsent(gameId, id -> creator.createGameDescription());
+    }
+
+    /**
+     * Crea un nuovo motore di gioco per l'avventura indicata.
+     *
+     * @param gameId identificatore dell'avventura
+     * @return motore con stato iniziale e descrizione condivisa
+     * @throws IllegalArgumentException se l'avventura non è disponibile
+     */
+    public static GameEngine createGameEngine(String gameId) {
+        return new GameEngine(getCreator(gameId), getGameDescription(gameId));
+    }
+}
@@ -6,6 +6,7 @@ import org.javamale.ectotext.common.packet.ErrorCode;
 import org.javamale.ectotext.common.packet.Packet;
 import org.javamale.ectotext.common.packet.impl.ErrorPacket;
 import org.javamale.ectotext.common.packet.impl.GameNarratorPacket;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
 
 import java.util.*;
 
@@ -55,31 +56,51 @@ public class GameEngine {
      */
     private final Map<String, Character> playerCharacters;
 
+    /**
+     * Indice inverso «nome personaggio → giocatore».
+     * Mantenuto insieme a {@link #playerCharacters} per verificare in tempo
+     * costante se un personaggio è già stato scelto.
+     */
+    private final Map<String, String> characterPlayers;
+
     /**
      * Flag che indica se il gioco è nella fase introduttiva.
      * Durante questa fase vengono mostrati i messaggi di benvenuto.
      */
     private boolean intro;
 
+    /**
+     * Inizializza un nuovo motore di gioco con una descrizione dedicata.
+     *
+     * @param gameCreator factory per la creazione degli elementi di gioco
+     * @throws IllegalArgumentException se gameCreator è null
+     * @see #GameEngine(GameCreator, GameDescription)
+     */
+    public GameEngine(GameCreator gameCreator) {
+        this(gameCreator, gameCreator.createGameDescription());
+    }
+
     /**
      * Inizializza un nuovo motore di gioco.
      * Questo costruttore:
      * <ul>
-     *   <li>Crea la descrizione del gioco tramite il creator</li>
+     *   <li>Utilizza la descrizione del gioco fornita, eventualmente condivisa</li>
      *   <li>Inizializza lo stato di default</li>
      *   <li>Prepara il registro dei giocatori</li>
      *   <li>Attiva la fase introduttiva</li>
      * </ul>
      *
      * @param gameCreator factory per la creazione degli elementi di gioco
-     * @throws IllegalArgumentException se gameCreator è null
+     * @param gameDescription descrizione statica prodotta da {@code gameCreator}
+     * @see GameCreatorRegistry#getGameDescription(String)
      */
-    public GameEngine(GameCreator gameCreator) {
+    public GameEngine(GameCreator gameCreator, GameDescription gameDescription) {
         this.gameCreator = gameCreator;
-        this.gameDescription = gameCreator.createGameDescription();
+        this.gameDescription = gameDescription;
         this.gameState = gameCreator.createDefaultGameState(gameDescription);
 
         this.playerCharacters = new HashMap<>();
+        this.characterPlayers = new HashMap<>();
         this.intro = true;
     }
 
@@ -112,6 +133,12 @@ public class GameEngine {
      */
     public void setGameState(GameState gameState) {
         this.gameState = gameState;
+
+        // Riallinea le associazioni ai personaggi del nuovo stato
+        playerCharacters.replaceAll((player, character) -> gameState.getCharacter(character.getName()));
+        playerCharacters.values().removeIf(Objects::isNull);
+        characterPlayers.clear();
+        playerCharacters.forEach((player, character) -> characterPlayers.put(character.getName(), player));
     }
 
     /**
@@ -157,8 +184,9 @@ public class GameEngine {
      * L'operazione fallisce se:
      * <ul>
      *   <li>Il personaggio non esiste</li>
-     *   <li>Il personaggio è già stato scelto</li>
+     *   <li>Il personaggio è già stato scelto da un altro giocatore</li>
      * </ul>
+     * Se il giocatore aveva già un personaggio, questo torna disponibile.
      *
      * @param playerName identificatore del giocatore
      * @param characterName nome del personaggio scelto
@@ -169,7 +197,17 @@ public class GameEngine {
         if (character == null) {
             return false;
         }
-        playerCharacters.put(playerName, character);
+
+        String owner = characterPlayers.get(character.getName());
+        if (owner != null && !owner.equals(playerName)) {
+            return false;
+        }
+
+        Character previous = playerCharacters.put(playerName, character);
+        if (previous != null) {
+            characterPlayers.remove(previous.getName());
+        }
+        characterPlayers.put(character.getName(), playerName);
         return true;
     }
 
@@ -177,9 +215,15 @@ public class GameEngine {
      * Rimuove l'associazione di un giocatore al suo personaggio.
      *
      * @param playerName identificatore del giocatore
+     * @return {@code true} se il giocatore aveva un personaggio associato
      */
-    public synchronized void disconnectPlayer(String playerName) {
-        playerCharacters.remove(playerName);
+    public synchronized boolean disconnectPlayer(String playerName) {
+        Character character = playerCharacters.remove(playerName);
+        if (character == null) {
+            return false;
+        }
+        characterPlayers.remove(character.getName());
+        return true;
     }
 
     /**
@@ -188,6 +232,28 @@ public class GameEngine {
      */
     public synchronized void disconnectAllPlayers() {
         playerCharacters.clear();
+        characterPlayers.clear();
+    }
+
+    /**
+     * Cerca il giocatore che controlla un personaggio.
+     *
+     * @param characterName nome del personaggio
+     * @return nome del giocatore, o {@code null} se il personaggio è libero
+     */
+    public synchronized String findPlayerByCharacter(String characterName) {
+        return characterPlayers.get(characterName);
+    }
+
+    /**
+     * Restituisce il personaggio scelto da ciascun giocatore.
+     *
+     * @return copia delle associazioni nickname → nome del personaggio
+     */
+    public synchronized Map<String, String> getPlayerCharacters() {
+        Map<String, String> bindings = new HashMap<>();
+        playerCharacters.forEach((player, character) -> bindings.put(player, character.getName()));
+        return bindings;
     }
 
     /**
@@ -196,7 +262,7 @@ public class GameEngine {
      * @return collezione immutabile dei personaggi disponibili
      */
     public synchronized Collection<Character> getAvailableCharacters() {
-        return gameState.getCharacters().stream().filter(c -> !playerCharacters.containsValue(c)).toList();
+        return gameState.getCharacters().stream().filter(c -> !characterPlayers.containsKey(c.getName())).toList();
     }
 
     /**
@@ -239,6 +305,11 @@ public class GameEngine {
 
         intro = false;
 
-        return gameDescription.getGameCommands().get(command).execute(character, gameDescription, gameState, tokens);
+        long start = System.nanoTime();
+        try {
+            return gameDescription.getGameCommands().get(command).execute(character, gameDescription, gameState, tokens);
+        } finally {
+            ServerMetrics.command(command, System.nanoTime() - start);
+        }
     }
 }
\ No newline at end of file
@@ -2,33 +2,43 @@ package org.javamale.ectotext.server.core;
 
 import org.javamale.ectotext.common.model.CommandHandler;
 import org.javamale.ectotext.common.model.GameState;
-import org.javamale.ectotext.common.model.impl.EctoTextCreator;
 import org.javamale.ectotext.common.packet.ErrorCode;
 import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.PacketType;
 import org.javamale.ectotext.common.packet.impl.*;
 import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.cluster.RoomTransfer;
 import org.javamale.ectotext.server.contracts.UpdateHandler;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
 import org.javamale.ectotext.server.network.ClientHandler;
-import org.javamale.ectotext.server.persistence.DbManager;
+import org.javamale.ectotext.server.network.Session;
+import org.javamale.ectotext.server.network.SessionManager;
 import org.javamale.ectotext.server.persistence.dao.GameStateDAO;
-import org.javamale.ectotext.server.util.DAOFactory;
+import org.javamale.ectotext.server.persistence.storage.Storage;
+import org.javamale.ectotext.server.trace.Trace.Stage;
+import org.javamale.ectotext.server.trace.Tracer;
 import org.javamale.ectotext.server.util.PacketFactory;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Rappresenta una stanza di gioco multigiocatore con gestione dello stato e delle comunicazioni.
  * Questa classe implementa:
  * <ul>
- *   <li>Gestione dei giocatori connessi (max {@value #MAX_PLAYERS})</li>
+ *   <li>Gestione dei giocatori connessi (capienza configurabile, predefinita {@value #DEFAULT_MAX_PLAYERS})</li>
+ *   <li>Gestione degli spettatori, che ricevono i broadcast ma non possono giocare</li>
  *   <li>Protezione della stanza tramite password</li>
  *   <li>Comunicazione in tempo reale tra i giocatori</li>
  *   <li>Persistenza dello stato di gioco</li>
  *   <li>Gestione del ciclo di vita dei personaggi</li>
+ *   <li>Migrazione verso un altro nodo del cluster</li>
  * </ul>
  *
  * @see UpdateHandler
@@ -37,9 +47,26 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class GameRoom implements UpdateHandler {
     /** 
-     * Limite massimo di giocatori ammessi nella stanza.
+     * Limite predefinito di giocatori ammessi nella stanza.
      */
-    public static final int MAX_PLAYERS = 3;
+    public static final int DEFAULT_MAX_PLAYERS = 3;
+
+    /**
+     * Limite predefinito di spettatori ammessi nella stanza.
+     */
+    public static final int DEFAULT_MAX_SPECTATORS = 0;
+
+    /** Proprietà di sistema con il numero massimo di giocatori accettato alla creazione di una stanza. */
+    public static final String PLAYERS_LIMIT_PROPERTY = "ectotext.room.playersLimit";
+
+    /** Proprietà di sistema con il numero massimo di spettatori accettato alla creazione di una stanza. */
+    public static final String SPECTATORS_LIMIT_PROPERTY = "ectotext.room.spectatorsLimit";
+
+    /** Limite predefinito dei giocatori per stanza. */
+    public static final int DEFAULT_PLAYERS_LIMIT = 16;
+
+    /** Limite predefinito degli spettatori per stanza. */
+    public static final int DEFAULT_SPECTATORS_LIMIT = 64;
 
     /** 
      * Identificatore univoco della stanza.
@@ -51,12 +78,86 @@ public class GameRoom implements UpdateHandler {
      */
     private final String password;
 
+    /**
+     * Identificatore dell'avventura ospitata dalla stanza.
+     * @see GameCreatorRegistry
+     */
+    private final String gameId;
+
+    /**
+     * Numero massimo di giocatori ammessi.
+     */
+    private final int maxPlayers;
+
+    /**
+     * Numero massimo di spettatori ammessi.
+     */
+    private final int maxSpectators;
+
     /** 
      * Registro thread-safe dei giocatori attivi.
      * La chiave è il nickname del giocatore, il valore è il suo handler di comunicazione.
      */
     private final Map<String, ClientHandler> players;
 
+    /**
+     * Indice inverso thread-safe «handler del client → nickname».
+     * Mantenuto insieme a {@link #players} per risolvere il mittente di ogni
+     * pacchetto in tempo costante.
+     */
+    private final Map<ClientHandler, String> playerNames;
+
+    /**
+     * Registro thread-safe degli spettatori.
+     * Gli spettatori ricevono i broadcast ma non possono inviare comandi di gioco.
+     */
+    private final Map<String, ClientHandler> spectators;
+
+    /**
+     * Destinatari dei broadcast (giocatori e spettatori).
+     * Ricostruito a ogni ingresso o uscita, così che l'invio non debba
+     * iterare sulle mappe concorrenti.
+     */
+    private volatile ClientHandler[] recipients = new ClientHandler[0];
+
+    /**
+     * Posti dei giocatori arrivati con una migrazione e non ancora ripresi.
+     * La chiave è il nickname, il valore la sessione adottata da riprendere.
+     */
+    private final Map<String, Session> reservedPlayers;
+
+    /**
+     * Posti degli spettatori arrivati con una migrazione e non ancora ripresi.
+     */
+    private final Map<String, Session> reservedSpectators;
+
+    /**
+     * Sessioni dei posti riservati, che registrano i broadcast finché il
+     * client non le riprende. Ricostruito insieme a {@link #recipients}.
+     */
+    private volatile Session[] pendingSessions = new Session[0];
+
+    /**
+     * Indica che la stanza sta per essere trasferita su un altro nodo: i
+     * pacchetti che modificano lo stato vengono rifiutati.
+     */
+    private volatile boolean migrating;
+
+    /**
+     * Identificatore del trasferimento con cui la stanza è arrivata da un
+     * altro nodo, o {@code null} se è stata creata sul nodo locale.
+     */
+    private volatile String transferId;
+
+    /**
+     * Pacchetto dei personaggi disponibili, costruito alla prima richiesta e
+     * invalidato solo quando cambia una selezione.
+     */
+    private volatile GameAvailableCharactersPacket availableCharactersPacket;
+
+    /** Lock che serializza costruzione e invalidazione di {@link #availableCharactersPacket}. */
+    private final Object availableCharactersLock = new Object();
+
     /** 
      * Motore che gestisce la logica di gioco della stanza.
      * @see GameEngine
@@ -64,21 +165,85 @@ public class GameRoom implements UpdateHandler {
     private GameEngine gameEngine;
 
     /**
-     * Crea una nuova stanza di gioco.
+     * Indica che lo stato di gioco è cambiato dall'ultimo salvataggio riuscito.
+     * Protetto dal lock della stanza.
+     */
+    private boolean dirty;
+
+    /**
+     * Crea una nuova stanza di gioco con la capienza predefinita.
+     *
+     * @param name identificatore univoco della stanza
+     * @param password chiave di accesso alla stanza
+     * @see #GameRoom(String, String, int, int)
+     */
+    public GameRoom(String name, String password) {
+        this(name, password, DEFAULT_MAX_PLAYERS, DEFAULT_MAX_SPECTATORS);
+    }
+
+    /**
+     * Crea una nuova stanza di gioco che ospita l'avventura predefinita.
+     *
+     * @param name identificatore univoco della stanza
+     * @param password chiave di accesso alla stanza
+     * @param maxPlayers numero massimo di giocatori (almeno 1)
+     * @param maxSpectators numero massimo di spettatori (0 per disabilitarli)
+     * @throws IllegalArgumentException se le capienze non sono valide
+     * @see #GameRoom(String, String, String, int, int)
+     */
+    public GameRoom(String name, String password, int maxPlayers, int maxSpectators) {
+        this(name, password, GameCreatorRegistry.DEFAULT_GAME_ID, maxPlayers, maxSpectators);
+    }
+
+    /**
+     * Crea una nuova stanza di gioco che ospita l'avventura indicata.
      * Inizializza:
      * <ul>
-     *   <li>Registro dei giocatori thread-safe</li>
-     *   <li>Motore di gioco con regole predefinite</li>
+     *   <li>Registri dei giocatori e degli spettatori thread-safe</li>
+     *   <li>Motore di gioco dell'avventura scelta</li>
      * </ul>
      *
      * @param name identificatore univoco della stanza
      * @param password chiave di accesso alla stanza
+     * @param gameId identificatore dell'avventura
+     * @param maxPlayers numero massimo di giocatori (almeno 1)
+     * @param maxSpectators numero massimo di spettatori (0 per disabilitarli)
+     * @throws IllegalArgumentException se le capienze non sono valide o l'avventura non esiste
      */
-    public GameRoom(String name, String password) {
+    public GameRoom(String name, String password, String gameId, int maxPlayers, int maxSpectators) {
+        if (maxPlayers < 1 || maxSpectators < 0) {
+            throw new IllegalArgumentException("Invalid room capacity: " + maxPlayers + "/" + maxSpectators);
+        }
+
         this.name = name;
         this.password = password;
-        this.players = new ConcurrentHashMap<>(3);
-        gameEngine = new GameEngine(new EctoTextCreator());
+        this.gameId = gameId;
+        this.maxPlayers = maxPlayers;
+        this.maxSpectators = maxSpectators;
+        this.players = new ConcurrentHashMap<>();
+        this.playerNames = new ConcurrentHashMap<>();
+        this.spectators = new ConcurrentHashMap<>();
+        this.reservedPlayers = new ConcurrentHashMap<>();
+        this.reservedSpectators = new ConcurrentHashMap<>();
+        gameEngine = GameCreatorRegistry.createGameEngine(gameId);
+    }
+
+    /**
+     * Verifica le capienze richieste per una nuova stanza.
+     * <p>
+     * Le capienze arrivano dai client (socket e REST) e dal file delle
+     * stanze: oltre a essere positive non devono superare i limiti del
+     * server, {@link #PLAYERS_LIMIT_PROPERTY} e
+     * {@link #SPECTATORS_LIMIT_PROPERTY}.
+     * </p>
+     *
+     * @param maxPlayers    numero massimo di giocatori richiesto
+     * @param maxSpectators numero massimo di spettatori richiesto
+     * @return {@code true} se entrambe le capienze sono accettabili
+     */
+    public static boolean isValidCapacity(int maxPlayers, int maxSpectators) {
+        return maxPlayers >= 1 && maxPlayers <= Integer.getInteger(PLAYERS_LIMIT_PROPERTY, DEFAULT_PLAYERS_LIMIT)
+                && maxSpectators >= 0 && maxSpectators <= Integer.getInteger(SPECTATORS_LIMIT_PROPERTY, DEFAULT_SPECTATORS_LIMIT);
     }
 
     /**
@@ -99,6 +264,42 @@ public class GameRoom implements UpdateHandler {
         return password;
     }
 
+    /**
+     * Ottiene l'identificatore dell'avventura ospitata.
+     *
+     * @return identificatore registrato in {@link GameCreatorRegistry}
+     */
+    public String getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Ottiene il numero massimo di giocatori ammessi.
+     *
+     * @return capienza della stanza
+     */
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    /**
+     * Ottiene il numero massimo di spettatori ammessi.
+     *
+     * @return capienza riservata agli spettatori
+     */
+    public int getMaxSpectators() {
+        return maxSpectators;
+    }
+
+    /**
+     * Conta gli spettatori attualmente connessi.
+     *
+     * @return numero di spettatori presenti
+     */
+    public int getSpectatorCount() {
+        return spectators.size();
+    }
+
     /**
      * Conta i giocatori attualmente connessi.
      *
@@ -137,6 +338,48 @@ public class GameRoom implements UpdateHandler {
         return players.get(name);
     }
 
+    /**
+     * Verifica se un nickname è già usato da un giocatore o da uno spettatore.
+     *
+     * @param name nickname da verificare
+     * @return {@code true} se il nickname è occupato
+     */
+    public boolean isNameTaken(String name) {
+        return players.containsKey(name) || spectators.containsKey(name)
+                || reservedPlayers.containsKey(name) || reservedSpectators.containsKey(name);
+    }
+
+    /**
+     * Indica se la stanza è in corso di migrazione verso un altro nodo.
+     *
+     * @return {@code true} se la stanza non accetta modifiche
+     */
+    public boolean isMigrating() {
+        return migrating;
+    }
+
+    /**
+     * Restituisce l'identificatore del trasferimento con cui la stanza è
+     * stata importata.
+     *
+     * @return identificatore, o {@code null} se la stanza non è stata importata
+     * @see RoomTransfer#transferId()
+     */
+    public String getTransferId() {
+        return transferId;
+    }
+
+    /**
+     * Verifica se un client è entrato nella stanza come spettatore.
+     *
+     * @param client handler del client
+     * @return {@code true} se il client è uno spettatore
+     */
+    public boolean isSpectator(ClientHandler client) {
+        String clientName = findPlayerName(client);
+        return clientName != null && spectators.get(clientName) == client;
+    }
+
     /**
      * Recupera i messaggi introduttivi della stanza.
      *
@@ -148,15 +391,18 @@ public class GameRoom implements UpdateHandler {
     }
 
     /**
-     * Ripristina lo stato del gioco dal database.
+     * Ripristina lo stato del gioco dal supporto di memorizzazione ({@link Storage}).
      * <p>
      * Se non esiste uno stato salvato, la stanza rimane nello stato iniziale.
+     * Se una migrazione dello schema del database sta ancora copiando i dati
+     * in background, quelli della stanza vengono copiati prima della lettura.
      * </p>
      *
      * @throws SQLException in caso di errori di accesso al database
      */
     public void retrieveGameState() throws SQLException {
-        GameStateDAO gameStateDAO = DAOFactory.createGameStateDAO(DbManager.getConnection(), gameEngine.getGameDescription());
+        Storage.get().prepareRoom(name);
+        GameStateDAO gameStateDAO = Storage.get().createGameStateDAO(gameEngine.getGameDescription());
         GameState gameState = gameStateDAO.get(name);
 
         if (gameState == null) {
@@ -181,7 +427,7 @@ public class GameRoom implements UpdateHandler {
      * Aggiunge un nuovo giocatore alla stanza.
      * L'operazione fallisce se:
      * <ul>
-     *   <li>La stanza è piena ({@value #MAX_PLAYERS} giocatori)</li>
+     *   <li>La stanza è piena ({@link #getMaxPlayers()} giocatori)</li>
      *   <li>Il nickname è già in uso</li>
      * </ul>
      *
@@ -190,13 +436,105 @@ public class GameRoom implements UpdateHandler {
      * @return {@code true} se l'aggiunta ha successo
      */
     public synchronized boolean addPlayer(String playerName, ClientHandler client) {
-        if (players.size() < MAX_PLAYERS && !players.containsKey(playerName)) {
+        if (!migrating && players.size() + reservedPlayers.size() < maxPlayers && !isNameTaken(playerName)) {
             players.put(playerName, client);
+            register(playerName, client);
             return true;
         }
         return false;
     }
 
+    /**
+     * Aggiunge un nuovo spettatore alla stanza.
+     * L'operazione fallisce se:
+     * <ul>
+     *   <li>I posti per gli spettatori sono esauriti ({@link #getMaxSpectators()})</li>
+     *   <li>Il nickname è già in uso</li>
+     * </ul>
+     *
+     * @param spectatorName nickname del nuovo spettatore
+     * @param client handler di comunicazione del client
+     * @return {@code true} se l'aggiunta ha successo
+     */
+    public synchronized boolean addSpectator(String spectatorName, ClientHandler client) {
+        if (!migrating && spectators.size() + reservedSpectators.size() < maxSpectators
+                && !isNameTaken(spectatorName)) {
+            spectators.put(spectatorName, client);
+            register(spectatorName, client);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Completa l'ingresso di un giocatore o spettatore già inserito nel
+     * proprio registro: apre la sessione riprendibile, invia il
+     * {@link RoomJoinedPacket} con il token e solo allora lo rende
+     * destinatario dei broadcast, così che ogni messaggio successivo passi
+     * dalla sessione.
+     * Va invocato con il lock della stanza già acquisito.
+     *
+     * @param playerName nickname del giocatore
+     * @param client handler di comunicazione del client
+     */
+    private void register(String playerName, ClientHandler client) {
+        playerNames.put(client, playerName);
+        SessionManager.open(name, playerName, client,
+                token -> new RoomJoinedPacket(playerName, name, token).toBaseJson());
+        ServerMetrics.packetsOut(PacketType.ROOM_JOINED, 1);
+        rebuildRecipients();
+    }
+
+    /**
+     * Riprende la sessione di un giocatore (o spettatore) su una nuova
+     * connessione.
+     * <p>
+     * Il client riceve un {@link RoomJoinedPacket} seguito dai messaggi persi
+     * e prende il posto della connessione precedente, che viene chiusa se
+     * ancora aperta. Personaggio e stato di gioco non cambiano.
+     * Un posto riservato da una migrazione viene occupato dalla connessione.
+     * </p>
+     *
+     * @param session sessione da riprendere
+     * @param client nuova connessione
+     * @param lastReceived messaggi già ricevuti dal client
+     * @return {@code false} se il giocatore non è più nella stanza o i
+     *         messaggi persi non sono più disponibili
+     * @see Session#resume(ClientHandler, long, String)
+     */
+    public synchronized boolean resumePlayer(Session session, ClientHandler client, long lastReceived) {
+        String playerName = session.getPlayerName();
+        boolean spectator = spectators.containsKey(playerName) || reservedSpectators.containsKey(playerName);
+        Map<String, ClientHandler> registry = spectator ? spectators : players;
+        Map<String, Session> reservations = spectator ? reservedSpectators : reservedPlayers;
+        ClientHandler previous = registry.get(playerName);
+        if (previous == null && reservations.get(playerName) != session) {
+            return false;
+        }
+
+        String greeting = new RoomJoinedPacket(playerName, name, session.getToken()).toBaseJson();
+        if (!session.resume(client, lastReceived, greeting)) {
+            return false;
+        }
+        ServerMetrics.packetsOut(PacketType.ROOM_JOINED, 1);
+
+        reservations.remove(playerName);
+        registry.put(playerName, client);
+        if (previous != null) {
+            playerNames.remove(previous);
+        }
+        playerNames.put(client, playerName);
+        rebuildRecipients();
+        client.setUpdateHandler(this);
+
+        if (previous == null) {
+            broadcastPacket(new RoomDetailsPacket(name, getPlayerNames()));
+        } else if (previous != client) {
+            previous.close();
+        }
+        return true;
+    }
+
     /**
      * Cerca il nickname associato a un client.
      *
@@ -204,11 +542,81 @@ public class GameRoom implements UpdateHandler {
      * @return nickname del giocatore, o {@code null} se non trovato
      */
     public String findPlayerName(ClientHandler client) {
-        return players.entrySet().stream()
-                .filter(e -> e.getValue().equals(client))
-                .map(Map.Entry::getKey)
-                .findFirst()
-                .orElse(null);
+        return client == null ? null : playerNames.get(client);
+    }
+
+    /**
+     * Rimuove il giocatore (o lo spettatore) dai registri.
+     *
+     * @param playerName nickname del giocatore
+     * @return handler del client rimosso, o {@code null} se non presente
+     */
+    private synchronized ClientHandler unregisterPlayer(String playerName) {
+        if (playerName == null) {
+            return null;
+        }
+
+        ClientHandler client = players.remove(playerName);
+        if (client == null) {
+            client = spectators.remove(playerName);
+        }
+        if (client != null) {
+            playerNames.remove(client);
+            rebuildRecipients();
+            SessionManager.close(client);
+        }
+        return client;
+    }
+
+    /**
+     * Ricostruisce l'elenco dei destinatari dei broadcast.
+     * Va invocato con il lock della stanza già acquisito.
+     */
+    private void rebuildRecipients() {
+        ClientHandler[] next = new ClientHandler[players.size() + spectators.size()];
+        int i = 0;
+        for (ClientHandler c : players.values()) {
+            next[i++] = c;
+        }
+        for (ClientHandler c : spectators.values()) {
+            next[i++] = c;
+        }
+        recipients = i == next.length ? next : Arrays.copyOf(next, i);
+
+        List<Session> pending = new ArrayList<>(reservedPlayers.values());
+        pending.addAll(reservedSpectators.values());
+        pendingSessions = pending.toArray(new Session[0]);
+    }
+
+    /**
+     * Restituisce il pacchetto dei personaggi disponibili.
+     * <p>
+     * Il pacchetto viene ricostruito solo dopo una modifica delle selezioni.
+     * </p>
+     *
+     * @return pacchetto con i nomi dei personaggi non ancora scelti
+     */
+    public GameAvailableCharactersPacket getAvailableCharactersPacket() {
+        GameAvailableCharactersPacket packet = availableCharactersPacket;
+        if (packet == null) {
+            synchronized (availableCharactersLock) {
+                packet = availableCharactersPacket;
+                if (packet == null) {
+                    packet = PacketFactory.fromGameAvailableCharacters(gameEngine.getAvailableCharacters());
+                    availableCharactersPacket = packet;
+                }
+            }
+        }
+        return packet;
+    }
+
+    /**
+     * Invalida il pacchetto dei personaggi disponibili dopo un cambio di selezione.
+     */
+    private void invalidateAvailableCharacters() {
+        synchronized (availableCharactersLock) {
+            availableCharactersPacket = null;
+        }
     }
 
     /**
@@ -217,7 +625,7 @@ public class GameRoom implements UpdateHandler {
      * @param playerName nickname del giocatore da rimuovere
      */
     public void removePlayer(String playerName) {
-        ClientHandler client = players.remove(playerName);
+        ClientHandler client = unregisterPlayer(playerName);
 
         if (client != null) {
             client.close();
@@ -237,25 +645,49 @@ public class GameRoom implements UpdateHandler {
      * @param playerName nickname del giocatore da disconnettere
      */
     public void disconnectPlayer(String playerName) {
-        ClientHandler client = players.remove(playerName);
+        ClientHandler client = unregisterPlayer(playerName);
 
-        gameEngine.disconnectPlayer(playerName);
+        if (playerName != null && gameEngine.disconnectPlayer(playerName)) {
+            invalidateAvailableCharacters();
+        }
 
         if (client != null) {
             client.setUpdateHandler(GameServer.getRoomManager());
             client.sendMessage(new RoomDisconnectedPacket(name));
         }
         broadcastPacket(new RoomDetailsPacket(name, getPlayerNames()));
-        broadcastPacket(PacketFactory.fromGameAvailableCharacters(gameEngine.getAvailableCharacters()));
+        broadcastPacket(getAvailableCharactersPacket());
     }
 
     /**
-     * Invia un pacchetto a tutti i giocatori connessi.
+     * Invia un pacchetto a tutti i giocatori e agli spettatori connessi.
+     * <p>
+     * Il pacchetto viene serializzato una sola volta e lo stesso frame viene
+     * accodato a ogni destinatario: l'invio effettivo avviene sul thread di
+     * scrittura di ciascun client, quindi un client lento non rallenta gli altri.
+     * Le sessioni dei posti riservati da una migrazione registrano il frame
+     * per inviarlo alla ripresa.
+     * </p>
      *
      * @param packet pacchetto da trasmettere
+     * @see ClientHandler#sendFrame(String)
      */
     public void broadcastPacket(Packet packet) {
-        players.values().forEach(c -> c.sendMessage(packet));
+        ClientHandler[] targets = recipients;
+        Session[] pending = pendingSessions;
+        if (targets.length == 0 && pending.length == 0) {
+            return;
+        }
+
+        String frame = packet.toBaseJson();
+        for (ClientHandler c : targets) {
+            c.sendFrame(frame);
+        }
+        for (Session session : pending) {
+            session.deliver(frame);
+        }
+        ServerMetrics.packetsOut(packet.getType(), targets.length);
+        ServerMetrics.broadcast(targets.length);
     }
 
     /**
@@ -264,7 +696,8 @@ public class GameRoom implements UpdateHandler {
      * <ul>
      *   <li>Verifica la validità del comando</li>
      *   <li>Esegue il comando tramite il motore di gioco</li>
-     *   <li>Distribuisce le risposte ai client interessati</li>
+     *   <li>Distribuisce le risposte ai client interessati e, se il comando
+     *       ha un identificativo, conferma al mittente che sono terminate</li>
      *   <li>Persiste il nuovo stato di gioco</li>
      * </ul>
      *
@@ -272,9 +705,16 @@ public class GameRoom implements UpdateHandler {
      * @param packet pacchetto contenente il comando
      */
     public synchronized void handleGameCommand(ClientHandler client, GameCommandPacket packet) {
+        Tracer.mark(Stage.QUEUE);
+        if (migrating) {
+            client.sendMessage(new ErrorPacket(ErrorCode.ROOM_MIGRATING));
+            return;
+        }
         packet.setPlayerName(findPlayerName(client));
+        Tracer.annotate(name, packet.getPlayerName(), packet.getCommand());
 
         List<CommandHandler.CommandResponse> commandResponseList = gameEngine.handleCommand(packet.getPlayerName(), packet.getCommand());
+        Tracer.mark(Stage.HANDLE);
 
         if (commandResponseList == null || commandResponseList.isEmpty()) {
             client.sendMessage(new ErrorPacket(ErrorCode.COMMAND_NOT_AVAILABLE));
@@ -288,13 +728,95 @@ public class GameRoom implements UpdateHandler {
                 client.sendMessage(commandResponse.getPacket());
             }
         }
+        if (packet.getRequestId() > 0) {
+            OkPacket ack = new OkPacket();
+            ack.setRequestId(packet.getRequestId());
+            client.sendMessage(ack);
+        }
+        Tracer.mark(Stage.ENCODE);
 
-        GameStateDAO gameStateDAO = DAOFactory.createGameStateDAO(DbManager.getConnection(), gameEngine.getGameDescription());
+        dirty = true;
+        saveGameState(packet.getPlayerName(), packet.getCommand());
+        Tracer.mark(Stage.PERSIST);
+    }
+
+    /**
+     * Salva lo stato di gioco se è cambiato dall'ultimo salvataggio riuscito.
+     * <p>
+     * Lo stato viene salvato dopo ogni comando; se il salvataggio fallisce
+     * la stanza resta da salvare e il tentativo viene ripetuto al comando
+     * successivo o all'arresto del server.
+     * </p>
+     *
+     * @return {@code true} se lo stato su database è aggiornato
+     */
+    public synchronized boolean saveGameState() {
+        return saveGameState(null, null);
+    }
+
+    /**
+     * Salva lo stato di gioco indicando il comando che lo ha modificato,
+     * conservato dalle persistenze che registrano la cronologia.
+     *
+     * @param playerName giocatore che ha inviato il comando, o {@code null}
+     * @param command    comando eseguito, o {@code null}
+     * @return {@code true} se lo stato salvato è aggiornato
+     */
+    private synchronized boolean saveGameState(String playerName, String command) {
+        if (!dirty) {
+            return true;
+        }
+
+        GameStateDAO gameStateDAO = Storage.get().createGameStateDAO(gameEngine.getGameDescription());
         try {
-            gameStateDAO.save(name, gameEngine.getGameState());
+            gameStateDAO.save(name, gameEngine.getGameState(), playerName, command);
+            dirty = false;
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
+        return !dirty;
+    }
+
+    /**
+     * Consolida lo stato salvato della stanza, così che la persistenza possa
+     * scartare la cronologia dei comandi precedenti.
+     * <p>
+     * Se l'ultimo salvataggio non è riuscito lo stato viene prima salvato.
+     * </p>
+     *
+     * @return {@code true} se lo stato salvato è aggiornato e consolidato
+     * @see GameStateDAO#checkpoint(String, GameState)
+     */
+    public synchronized boolean checkpointGameState() {
+        if (!saveGameState()) {
+            return false;
+        }
+
+        GameStateDAO gameStateDAO = Storage.get().createGameStateDAO(gameEngine.getGameDescription());
+        try {
+            gameStateDAO.checkpoint(name, gameEngine.getGameState());
+            return true;
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Elimina lo stato di gioco salvato della stanza.
+     *
+     * @return {@code true} se lo stato è stato eliminato
+     */
+    public synchronized boolean deleteGameState() {
+        GameStateDAO gameStateDAO = Storage.get().createGameStateDAO(gameEngine.getGameDescription());
+        try {
+            gameStateDAO.delete(gameEngine.getGameState());
+            dirty = false;
+            return true;
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
     }
 
     /**
@@ -313,6 +835,11 @@ public class GameRoom implements UpdateHandler {
      */
     @Override
     public void onUpdate(ClientHandler client, Packet update) {
+        if (migrating && update != null && changesState(update.getType())) {
+            client.sendMessage(new ErrorPacket(ErrorCode.ROOM_MIGRATING));
+            return;
+        }
+
         switch (update.getType()) {
             case DELETE_ROOM -> {
                 DeleteRoomPacket deleteRoomPacket = (DeleteRoomPacket) update;
@@ -328,7 +855,8 @@ public class GameRoom implements UpdateHandler {
                 }
 
                 broadcastPacket(new RoomDeletedPacket(name));
-                getPlayerNames().forEach(this::disconnectPlayer);
+                List.copyOf(spectators.keySet()).forEach(this::disconnectPlayer);
+                List.copyOf(getPlayerNames()).forEach(this::disconnectPlayer);
 
             }
             case DISCONNECT_ROOM -> disconnectPlayer(findPlayerName(client));
@@ -349,38 +877,233 @@ public class GameRoom implements UpdateHandler {
                 broadcastPacket(chatMessagePacket);
             }
 
-            case GAME_COMMAND -> handleGameCommand(client, (GameCommandPacket) update);
-            case GAME_SELECT_CHARACTER -> {
-                GameSelectCharacterPacket gameSelectCharacterPacket = (GameSelectCharacterPacket) update;
-
-                String playerName = findPlayerName(client);
-                String character = gameSelectCharacterPacket.getCharacter();
+            case GAME_COMMAND -> {
+                if (isSpectator(client)) {
+                    client.sendMessage(new ErrorPacket(ErrorCode.SPECTATOR_NOT_ALLOWED));
+                    return;
+                }
 
-                if (gameEngine.connectPlayer(playerName, character)) {
-                    broadcastPacket(PacketFactory.fromGameAvailableCharacters(gameEngine.getAvailableCharacters()));
-                } else {
-                    client.sendMessage(new ErrorPacket(ErrorCode.CHARACTER_NOT_AVAILABLE));
+                handleGameCommand(client, (GameCommandPacket) update);
+            }
+            case GAME_SELECT_CHARACTER -> {
+                if (isSpectator(client)) {
+                    client.sendMessage(new ErrorPacket(ErrorCode.SPECTATOR_NOT_ALLOWED));
+                    return;
                 }
+
+                selectCharacter(client, (GameSelectCharacterPacket) update);
             }
-            case GAME_GET_AVAILABLE_CHARACTERS -> client.sendMessage(PacketFactory.fromGameAvailableCharacters(gameEngine.getAvailableCharacters()));
+            case GAME_GET_AVAILABLE_CHARACTERS -> client.sendMessage(getAvailableCharactersPacket());
 
-            case JOIN_ROOM, CREATE_ROOM, GET_ROOM_LIST -> client.sendMessage(new ErrorPacket(ErrorCode.ALREADY_IN_ROOM));
+            case JOIN_ROOM, CREATE_ROOM, GET_ROOM_LIST, RESUME_SESSION ->
+                    client.sendMessage(new ErrorPacket(ErrorCode.ALREADY_IN_ROOM));
             case null -> client.sendMessage(new ErrorPacket(ErrorCode.INVALID_PACKET));
             default -> client.sendMessage(new ErrorPacket(ErrorCode.UNRECOGNIZED_PACKET));
         }
     }
 
+    /**
+     * Associa al giocatore il personaggio scelto.
+     * Eseguito con il lock della stanza, così che la scelta non possa
+     * sfuggire all'istantanea di una migrazione.
+     *
+     * @param client client che ha scelto il personaggio
+     * @param packet pacchetto con il personaggio scelto
+     */
+    private synchronized void selectCharacter(ClientHandler client, GameSelectCharacterPacket packet) {
+        if (migrating) {
+            client.sendMessage(new ErrorPacket(ErrorCode.ROOM_MIGRATING));
+            return;
+        }
+
+        if (gameEngine.connectPlayer(findPlayerName(client), packet.getCharacter())) {
+            invalidateAvailableCharacters();
+            broadcastPacket(getAvailableCharactersPacket());
+        } else {
+            client.sendMessage(new ErrorPacket(ErrorCode.CHARACTER_NOT_AVAILABLE));
+        }
+    }
+
+    /**
+     * Indica se un tipo di pacchetto modifica la stanza o lo stato di gioco
+     * e va quindi rifiutato durante una migrazione.
+     *
+     * @param type tipo del pacchetto
+     * @return {@code true} per comandi, scelte, uscite ed eliminazione
+     */
+    private static boolean changesState(PacketType type) {
+        return switch (type) {
+            case GAME_COMMAND, GAME_SELECT_CHARACTER, DISCONNECT_ROOM, DELETE_ROOM -> true;
+            case null, default -> false;
+        };
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                             MIGRAZIONE                              */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Blocca la stanza e ne cattura il contenuto da trasferire su un altro
+     * nodo.
+     * <p>
+     * Da questo momento comandi, scelte dei personaggi, uscite e nuovi
+     * ingressi vengono rifiutati con {@link ErrorCode#ROOM_MIGRATING}; la
+     * chat continua a funzionare. La stanza va poi chiusa con
+     * {@link #completeMigration(String, int)} o riaperta con
+     * {@link #cancelMigration()}.
+     * </p>
+     *
+     * @return contenuto della stanza, o {@code null} se la migrazione è già in corso
+     */
+    public synchronized RoomTransfer beginMigration() {
+        if (migrating) {
+            return null;
+        }
+        migrating = true;
+
+        List<RoomTransfer.Seat> seats = new ArrayList<>();
+        players.forEach((playerName, client) -> addSeat(seats, playerName, client.getSession(), false));
+        spectators.forEach((playerName, client) -> addSeat(seats, playerName, client.getSession(), true));
+        reservedPlayers.forEach((playerName, session) -> addSeat(seats, playerName, session, false));
+        reservedSpectators.forEach((playerName, session) -> addSeat(seats, playerName, session, true));
+
+        return new RoomTransfer(UUID.randomUUID().toString(), name, password, gameId, maxPlayers, maxSpectators,
+                gameEngine.isIntro(), RoomTransfer.describe(gameEngine.getGameState()),
+                gameEngine.getPlayerCharacters(), seats);
+    }
+
+    /**
+     * Riapre la stanza dopo una migrazione non riuscita.
+     */
+    public synchronized void cancelMigration() {
+        migrating = false;
+    }
+
+    /**
+     * Chiude la stanza dopo che il nodo di destinazione l'ha importata.
+     * <p>
+     * Ogni client riceve, come ultimo messaggio della sessione, un
+     * {@link RoomMovedPacket} con l'indirizzo del nuovo nodo; le sessioni
+     * vengono chiuse e le connessioni tornano al {@link GameRoomManager}.
+     * I giocatori disconnessi in quel momento perdono la sessione.
+     * </p>
+     *
+     * @param host       host del nodo di destinazione
+     * @param socketPort porta socket del nodo di destinazione
+     */
+    public synchronized void completeMigration(String host, int socketPort) {
+        ClientHandler[] targets = recipients;
+        String frame = new RoomMovedPacket(name, host, socketPort).toBaseJson();
+        for (ClientHandler c : targets) {
+            c.sendFrame(frame);
+            SessionManager.close(c);
+            c.setUpdateHandler(GameServer.getRoomManager());
+        }
+        ServerMetrics.packetsOut(PacketType.ROOM_MOVED, targets.length);
+
+        for (Session session : pendingSessions) {
+            SessionManager.close(session);
+        }
+
+        players.clear();
+        spectators.clear();
+        playerNames.clear();
+        reservedPlayers.clear();
+        reservedSpectators.clear();
+        rebuildRecipients();
+        gameEngine.disconnectAllPlayers();
+    }
+
+    /**
+     * Ripristina una stanza trasferita da un altro nodo.
+     * <p>
+     * Lo stato di gioco e le scelte dei personaggi vengono ricostruiti; per
+     * ogni posto viene adottata la sessione del nodo di origine, che il
+     * client riprende con lo stesso token. Un posto non ripreso entro il
+     * periodo di grazia viene liberato.
+     * </p>
+     * <p>
+     * Lo stato viene salvato prima di adottare le sessioni: se il salvataggio
+     * fallisce il nodo di origine conserva l'unica copia della stanza e non
+     * deve eliminarla.
+     * </p>
+     *
+     * @param transfer contenuto della stanza
+     * @throws IllegalArgumentException se lo stato non è compatibile con l'avventura
+     * @throws IllegalStateException se il salvataggio dello stato fallisce
+     */
+    public synchronized void restore(RoomTransfer transfer) {
+        transferId = transfer.transferId();
+        gameEngine.setGameState(transfer.toGameState(gameEngine.getGameDescription()));
+        gameEngine.setIntro(transfer.intro());
+        transfer.bindings().forEach(gameEngine::connectPlayer);
+        invalidateAvailableCharacters();
+
+        dirty = true;
+        if (!saveGameState()) {
+            throw new IllegalStateException("Failed to save the state of room " + name);
+        }
+
+        for (RoomTransfer.Seat seat : transfer.seats()) {
+            Session session = SessionManager.adopt(seat.token(), name, seat.playerName(),
+                    () -> releaseSeat(seat.playerName()));
+            if (session != null) {
+                (seat.spectator() ? reservedSpectators : reservedPlayers).put(seat.playerName(), session);
+            }
+        }
+        rebuildRecipients();
+    }
+
+    /**
+     * Libera il posto riservato di un giocatore che non ha ripreso la
+     * sessione dopo una migrazione.
+     *
+     * @param playerName nickname del giocatore
+     */
+    private synchronized void releaseSeat(String playerName) {
+        if (reservedPlayers.remove(playerName) == null && reservedSpectators.remove(playerName) == null) {
+            return;
+        }
+        rebuildRecipients();
+
+        if (gameEngine.disconnectPlayer(playerName)) {
+            invalidateAvailableCharacters();
+            broadcastPacket(getAvailableCharactersPacket());
+        }
+        broadcastPacket(new RoomDetailsPacket(name, getPlayerNames()));
+    }
+
+    /**
+     * Aggiunge un posto al contenuto da trasferire, se ha una sessione.
+     */
+    private static void addSeat(List<RoomTransfer.Seat> seats, String playerName, Session session, boolean spectator) {
+        if (session != null) {
+            seats.add(new RoomTransfer.Seat(playerName, session.getToken(), spectator));
+        }
+    }
+
     /**
      * Gestisce la disconnessione improvvisa di un client.
      * <p>
-     * Rimuove il giocatore e notifica gli altri partecipanti.
+     * Se il client ha una sessione riprendibile il posto resta occupato per
+     * il periodo di grazia di {@link SessionManager}; scaduto il periodo, o
+     * in assenza di sessione, il giocatore viene rimosso e gli altri
+     * partecipanti vengono notificati.
      * </p>
      *
      * @param client client disconnesso
      */
     @Override
     public void onDisconnect(ClientHandler client) {
-        removePlayer(findPlayerName(client));
+        String playerName = findPlayerName(client);
+        if (playerName != null && SessionManager.suspend(client, () -> {
+            removePlayer(playerName);
+            broadcastPacket(new RoomDetailsPacket(name, getPlayerNames()));
+        })) {
+            return;
+        }
+
+        removePlayer(playerName);
         broadcastPacket(new RoomDetailsPacket(name, getPlayerNames()));
     }
 }
\ No newline at end of file
@@ -3,17 +3,30 @@ package org.javamale.ectotext.server.core;
 import org.javamale.ectotext.common.packet.ErrorCode;
 import org.javamale.ectotext.common.packet.Packet;
 import org.javamale.ectotext.common.packet.impl.*;
+import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.cluster.Cluster;
+import org.javamale.ectotext.server.cluster.ClusterNode;
+import org.javamale.ectotext.server.cluster.RoomTransfer;
 import org.javamale.ectotext.server.contracts.UpdateHandler;
 import org.javamale.ectotext.server.network.ClientHandler;
-import org.javamale.ectotext.server.persistence.DbManager;
+import org.javamale.ectotext.server.network.Session;
+import org.javamale.ectotext.server.network.SessionManager;
 import org.javamale.ectotext.server.persistence.dao.GameRoomDAO;
-import org.javamale.ectotext.server.persistence.dao.impl.GameRoomDAOImpl;
+import org.javamale.ectotext.server.persistence.storage.Storage;
+import org.javamale.ectotext.server.trace.Trace.Stage;
+import org.javamale.ectotext.server.trace.Tracer;
 import org.javamale.ectotext.server.util.PacketFactory;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Gestore centrale delle stanze di gioco del server.
@@ -39,12 +52,30 @@ public class GameRoomManager implements UpdateHandler {
     /**
      * Mappatura thread-safe tra nomi delle stanze e relative istanze.
      * <p>
-     * La mappa viene sincronizzata esplicitamente per le operazioni di modifica
-     * attraverso i metodi pubblici della classe.
+     * Le operazioni composte (importazioni e migrazioni) sono sincronizzate
+     * sul gestore; la mappa è comunque concorrente perché viene letta e
+     * percorsa anche da thread esterni, come la pubblicazione del riepilogo
+     * del cluster e i servizi REST.
      * </p>
      */
     private final Map<String, GameRoom> gameRooms;
 
+    /** Numero massimo di trasferimenti annullati ricordati. */
+    private static final int ABORTED_TRANSFERS_LIMIT = 1024;
+
+    /**
+     * Trasferimenti annullati dal nodo di origine prima dell'importazione:
+     * un invio che arriva in ritardo viene rifiutato. Protetti dal lock del
+     * gestore; i più vecchi vengono dimenticati oltre
+     * {@link #ABORTED_TRANSFERS_LIMIT}.
+     */
+    private final Set<String> abortedTransfers = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > ABORTED_TRANSFERS_LIMIT;
+        }
+    });
+
     /**
      * Inizializza il manager e carica le stanze esistenti dal database.
      * Durante l'inizializzazione:
@@ -52,16 +83,23 @@ public class GameRoomManager implements UpdateHandler {
      *   <li>Viene creata una nuova mappa vuota per le stanze</li>
      *   <li>Vengono caricate tutte le stanze dal database</li>
      *   <li>Viene ripristinato lo stato di gioco di ogni stanza</li>
+     *   <li>Le stanze che l'hash assegna a un altro nodo, arrivate con una
+     *       migrazione, vengono fissate al nodo locale</li>
      * </ul>
      *
      * @throws RuntimeException se si verificano errori critici nell'accesso al database
      */
     public GameRoomManager() {
-        this.gameRooms = new HashMap<>();
-        GameRoomDAO gameRoomDAO = new GameRoomDAOImpl(DbManager.getConnection());
+        this.gameRooms = new ConcurrentHashMap<>();
+        GameRoomDAO gameRoomDAO = Storage.get().createGameRoomDAO();
 
         try {
             for (GameRoom room : gameRoomDAO.getAll()) {
+                if (!Cluster.isLocal(room.getName())) {
+                    System.err.println("Room " + room.getName() + " is assigned to node "
+                            + Cluster.ownerOf(room.getName()).id() + ", pinned to this node");
+                    Cluster.assign(room.getName(), Cluster.getLocalNode());
+                }
                 room.retrieveGameState();
                 gameRooms.put(room.getName(), room);
             }
@@ -70,13 +108,30 @@ public class GameRoomManager implements UpdateHandler {
         }
     }
 
+    /**
+     * Attende che il gestore abbia terminato l'elaborazione in corso.
+     * <p>
+     * Tutti i pacchetti dei client fuori da una stanza sono serializzati sul
+     * lock di questo oggetto: il tempo di attesa misura il ritardo con cui
+     * verrebbe servito un nuovo pacchetto.
+     * </p>
+     */
+    public synchronized void awaitIdle() {
+        // Nessuna operazione: conta solo l'acquisizione del lock
+    }
+
     /**
      * Ottiene tutte le stanze di gioco attualmente attive.
+     * <p>
+     * La vista può essere percorsa da qualsiasi thread anche mentre le stanze
+     * vengono create o rimosse: riflette le modifiche concorrenti senza mai
+     * lanciare {@link java.util.ConcurrentModificationException}.
+     * </p>
      *
-     * @return collezione immutabile delle stanze attive
+     * @return vista non modificabile delle stanze attive
      */
     public Collection<GameRoom> getGameRooms() {
-        return gameRooms.values();
+        return Collections.unmodifiableCollection(gameRooms.values());
     }
 
     /**
@@ -101,15 +156,49 @@ public class GameRoomManager implements UpdateHandler {
      * @param roomName nome univoco della nuova stanza
      * @param roomPassword password di accesso alla stanza
      * @return {@code true} se la stanza è stata creata, {@code false} se esiste già o si sono verificati errori
+     * @see #createGameRoom(String, String, int, int)
      */
     public boolean createGameRoom(String roomName, String roomPassword) {
-        if (gameRooms.containsKey(roomName)) {
+        return createGameRoom(roomName, roomPassword, GameRoom.DEFAULT_MAX_PLAYERS, GameRoom.DEFAULT_MAX_SPECTATORS);
+    }
+
+    /**
+     * Crea una nuova stanza di gioco con capienza personalizzata.
+     *
+     * @param roomName nome univoco della nuova stanza
+     * @param roomPassword password di accesso alla stanza
+     * @param maxPlayers numero massimo di giocatori (almeno 1)
+     * @param maxSpectators numero massimo di spettatori (0 per disabilitarli)
+     * @return {@code true} se la stanza è stata creata, {@code false} se esiste già o si sono verificati errori
+     * @throws IllegalArgumentException se le capienze non sono valide
+     */
+    public boolean createGameRoom(String roomName, String roomPassword, int maxPlayers, int maxSpectators) {
+        return createGameRoom(roomName, roomPassword, GameCreatorRegistry.DEFAULT_GAME_ID, maxPlayers, maxSpectators);
+    }
+
+    /**
+     * Crea una nuova stanza di gioco che ospita l'avventura indicata.
+     *
+     * @param roomName nome univoco della nuova stanza
+     * @param roomPassword password di accesso alla stanza
+     * @param gameId identificatore dell'avventura registrata in {@link GameCreatorRegistry}
+     * @param maxPlayers numero massimo di giocatori (almeno 1)
+     * @param maxSpectators numero massimo di spettatori (0 per disabilitarli)
+     * @return {@code true} se la stanza è stata creata, {@code false} se esiste già, il server è in
+     *         arresto, la stanza è assegnata a un altro nodo del {@link Cluster} o si sono verificati errori
+     * @throws IllegalArgumentException se le capienze non sono valide o l'avventura non esiste
+     */
+    public boolean createGameRoom(String roomName, String roomPassword, String gameId, int maxPlayers, int maxSpectators) {
+        if (!GameRoom.isValidCapacity(maxPlayers, maxSpectators)) {
+            throw new IllegalArgumentException("Invalid room capacity: " + maxPlayers + "/" + maxSpectators);
+        }
+        if (GameServer.isDraining() || gameRooms.containsKey(roomName) || !Cluster.isLocal(roomName)) {
             return false;
         }
 
-        GameRoomDAO gameRoomDAO = new GameRoomDAOImpl(DbManager.getConnection());
+        GameRoomDAO gameRoomDAO = Storage.get().createGameRoomDAO();
 
-        GameRoom gameRoom = new GameRoom(roomName, roomPassword);
+        GameRoom gameRoom = new GameRoom(roomName, roomPassword, gameId, maxPlayers, maxSpectators);
 
         try {
             gameRoomDAO.add(gameRoom);
@@ -122,12 +211,64 @@ public class GameRoomManager implements UpdateHandler {
         return true;
     }
 
+    /**
+     * Crea in blocco le stanze indicate, pensato per il provisioning di
+     * molte stanze all'avvio. Rispetto a chiamare
+     * {@link #createGameRoom(String, String, String, int, int)} per ciascuna:
+     * <ul>
+     *   <li>Le stanze con un nome già presente sul server o in una voce
+     *       precedente vengono saltate e riportate, senza interrompere
+     *       l'importazione</li>
+     *   <li>Le istanze di {@link GameRoom}, ognuna con il proprio motore di
+     *       gioco, sono costruite in parallelo</li>
+     *   <li>Le stanze sono salvate con {@link GameRoomDAO#addAll} in un'unica
+     *       transazione: in caso di errore non ne viene creata nessuna</li>
+     * </ul>
+     * Le voci devono essere già validate (capienze e avventura) e assegnate
+     * al nodo locale del {@link Cluster}.
+     *
+     * @param entries stanze da creare, nell'ordine del file di configurazione
+     * @return numero di stanze create e nomi dei duplicati saltati
+     * @throws SQLException se il salvataggio delle stanze fallisce
+     * @throws IllegalStateException se il server è in arresto
+     */
+    public synchronized RoomImport importGameRooms(List<RoomImport.Entry> entries) throws SQLException {
+        if (GameServer.isDraining()) {
+            throw new IllegalStateException("Server is draining");
+        }
+
+        List<RoomImport.Entry> accepted = new ArrayList<>(entries.size());
+        List<String> duplicates = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (RoomImport.Entry entry : entries) {
+            if (gameRooms.containsKey(entry.roomName()) || !names.add(entry.roomName())) {
+                duplicates.add(entry.roomName());
+            } else {
+                accepted.add(entry);
+            }
+        }
+
+        // La descrizione di ogni avventura è creata una volta sola, prima dei thread paralleli
+        accepted.stream().map(RoomImport.Entry::gameId).distinct().forEach(GameCreatorRegistry::getGameDescription);
+        List<GameRoom> rooms = accepted.parallelStream()
+                .map(e -> new GameRoom(e.roomName(), e.password(), e.gameId(), e.maxPlayers(), e.maxSpectators()))
+                .toList();
+
+        Storage.get().createGameRoomDAO().addAll(rooms);
+        for (GameRoom room : rooms) {
+            gameRooms.put(room.getName(), room);
+        }
+
+        return new RoomImport(rooms.size(), duplicates);
+    }
+
     /**
      * Rimuove una stanza di gioco esistente.
      * La rimozione include:
      * <ul>
      *   <li>Eliminazione della stanza dal database</li>
      *   <li>Rimozione della stanza dalla mappatura in memoria</li>
+     *   <li>Rilascio dell'eventuale assegnazione della stanza al nodo locale</li>
      * </ul>
      *
      * @param roomName nome della stanza da rimuovere
@@ -138,11 +279,15 @@ public class GameRoomManager implements UpdateHandler {
             return false;
         }
 
-        GameRoomDAO gameRoomDAO = new GameRoomDAOImpl(DbManager.getConnection());
+        GameRoomDAO gameRoomDAO = Storage.get().createGameRoomDAO();
 
         try {
             gameRoomDAO.delete(roomName);
-            gameRooms.remove(roomName);
+            GameRoom removed = gameRooms.remove(roomName);
+            if (removed != null) {
+                removed.deleteGameState();
+            }
+            Cluster.release(roomName);
         } catch (SQLException e) {
             System.err.println(e.getMessage());
             return false;
@@ -151,6 +296,142 @@ public class GameRoomManager implements UpdateHandler {
         return true;
     }
 
+    /**
+     * Crea una stanza trasferita da un altro nodo del cluster e la fissa al
+     * nodo locale.
+     * <p>
+     * L'importazione è idempotente: un secondo invio dello stesso
+     * trasferimento riesce senza ricreare la stanza. Un trasferimento già
+     * annullato con {@link #settleImport(String, String)} viene rifiutato.
+     * </p>
+     *
+     * @param transfer contenuto della stanza
+     * @return {@code true} se la stanza è stata importata e il suo stato salvato,
+     *         {@code false} se esiste già, il trasferimento è stato annullato, il
+     *         server è in arresto, l'avventura non esiste, lo stato non è valido
+     *         o non è stato possibile salvarlo
+     * @see GameRoom#restore(RoomTransfer)
+     */
+    public synchronized boolean importGameRoom(RoomTransfer transfer) {
+        String roomName = transfer.roomName();
+        if (isImported(roomName, transfer.transferId())) {
+            return true;
+        }
+        if (abortedTransfers.contains(transfer.transferId()) || GameServer.isDraining() || gameRooms.containsKey(roomName)
+                || !GameCreatorRegistry.contains(transfer.gameId())
+                || !GameRoom.isValidCapacity(transfer.maxPlayers(), transfer.maxSpectators())) {
+            return false;
+        }
+
+        GameRoomDAO gameRoomDAO = Storage.get().createGameRoomDAO();
+        GameRoom gameRoom;
+        try {
+            gameRoom = new GameRoom(roomName, transfer.password(), transfer.gameId(),
+                    transfer.maxPlayers(), transfer.maxSpectators());
+            gameRoomDAO.add(gameRoom);
+        } catch (IllegalArgumentException | SQLException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+
+        try {
+            gameRoom.restore(transfer);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.err.println(e.getMessage());
+            try {
+                gameRoomDAO.delete(roomName);
+            } catch (SQLException ex) {
+                System.err.println(ex.getMessage());
+            }
+            return false;
+        }
+
+        Cluster.assign(roomName, Cluster.getLocalNode());
+        gameRooms.put(roomName, gameRoom);
+        return true;
+    }
+
+    /**
+     * Stabilisce l'esito di un trasferimento per il nodo di origine, che non
+     * ha ricevuto risposta all'invio.
+     * <p>
+     * Se la stanza è stata importata con quel trasferimento l'esito resta
+     * positivo; altrimenti il trasferimento viene annullato e un invio
+     * ancora in viaggio sarà rifiutato. Essendo sincronizzato con
+     * {@link #importGameRoom(RoomTransfer)}, l'esito non può cambiare dopo la
+     * risposta.
+     * </p>
+     *
+     * @param roomName   nome della stanza
+     * @param transferId identificatore del trasferimento
+     * @return {@code true} se la stanza è stata importata, {@code false} se il
+     *         trasferimento è annullato
+     */
+    public synchronized boolean settleImport(String roomName, String transferId) {
+        if (isImported(roomName, transferId)) {
+            return true;
+        }
+        abortedTransfers.add(transferId);
+        return false;
+    }
+
+    /**
+     * Verifica se una stanza è stata importata con il trasferimento indicato.
+     */
+    private boolean isImported(String roomName, String transferId) {
+        GameRoom gameRoom = gameRooms.get(roomName);
+        return gameRoom != null && transferId.equals(gameRoom.getTransferId());
+    }
+
+    /**
+     * Chiude una stanza importata da un altro nodo: i client vengono
+     * reindirizzati, la stanza viene rimossa e fissata al nuovo nodo.
+     *
+     * @param gameRoom stanza bloccata con {@link GameRoom#beginMigration()}
+     * @param target   nodo che ora ospita la stanza
+     */
+    public synchronized void completeMigration(GameRoom gameRoom, ClusterNode target) {
+        Cluster.assign(gameRoom.getName(), target);
+        gameRoom.completeMigration(target.host(), target.socketPort());
+        removeGameRoom(gameRoom.getName());
+    }
+
+    /**
+     * Salva lo stato di gioco di tutte le stanze modificate dall'ultimo
+     * salvataggio riuscito.
+     * <p>
+     * Ogni salvataggio attende il termine del comando in corso nella stanza.
+     * </p>
+     *
+     * @return {@code true} se tutti gli stati sono stati salvati
+     * @see GameRoom#saveGameState()
+     */
+    public boolean saveAll() {
+        List<GameRoom> rooms;
+        synchronized (this) {
+            rooms = new ArrayList<>(gameRooms.values());
+        }
+
+        boolean saved = true;
+        for (GameRoom room : rooms) {
+            saved &= room.saveGameState();
+        }
+        return saved;
+    }
+
+    /**
+     * Consolida lo stato salvato di una stanza.
+     *
+     * @param roomName nome della stanza
+     * @see GameRoom#checkpointGameState()
+     */
+    public void checkpointGameState(String roomName) {
+        GameRoom room = gameRooms.get(roomName);
+        if (room != null) {
+            room.checkpointGameState();
+        }
+    }
+
     /**
      * Gestisce i pacchetti di rete ricevuti dai client non ancora in una stanza.
      * Gestisce le seguenti operazioni:
@@ -169,48 +450,89 @@ public class GameRoomManager implements UpdateHandler {
      */
     @Override
     public synchronized void onUpdate(ClientHandler client, Packet update) {
+        Tracer.mark(Stage.QUEUE);
         switch (update) {
             case JoinRoomPacket joinRoomPacket -> {
                 String playerName = joinRoomPacket.getPlayerName();
                 String roomName = joinRoomPacket.getRoomName();
                 String roomPassword = joinRoomPacket.getRoomPassword();
 
+                if (!Cluster.isLocal(roomName)) {
+                    client.sendMessage(new ErrorPacket(ErrorCode.ROOM_ON_OTHER_NODE));
+                    return;
+                }
+
                 GameRoom gameRoom = gameRooms.get(roomName);
                 if (gameRoom == null) {
                     client.sendMessage(new ErrorPacket(ErrorCode.ROOM_NOT_FOUND));
                     return;
                 }
 
+                if (gameRoom.isMigrating()) {
+                    client.sendMessage(new ErrorPacket(ErrorCode.ROOM_MIGRATING));
+                    return;
+                }
+
                 if (!gameRoom.checkPassword(roomPassword)) {
                     client.sendMessage(new ErrorPacket(ErrorCode.WRONG_ROOM_PASSWORD));
                     return;
                 }
 
-                if(gameRoom.getPlayer(playerName) != null) {
+                if(gameRoom.isNameTaken(playerName)) {
                     client.sendMessage(new ErrorPacket(ErrorCode.NICKNAME_ALREADY_USED));
                     return;
                 }
 
-                if (!gameRoom.addPlayer(playerName, client)) {
+                boolean joined = joinRoomPacket.isSpectator()
+                        ? gameRoom.addSpectator(playerName, client)
+                        : gameRoom.addPlayer(playerName, client);
+
+                if (!joined) {
                     client.sendMessage(new ErrorPacket(ErrorCode.FULL_ROOM));
                     return;
                 }
 
                 client.setUpdateHandler(gameRoom);
-                client.sendMessage(new RoomJoinedPacket(playerName, roomName));
                 gameRoom.broadcastPacket(new RoomDetailsPacket(gameRoom.getName(), gameRoom.getPlayerNames()));
                 gameRoom.getIntro().forEach(client::sendMessage);
             }
+            case ResumeSessionPacket resumeSessionPacket -> {
+                Session session = SessionManager.find(resumeSessionPacket.getSessionToken());
+                GameRoom gameRoom = session == null ? null : gameRooms.get(session.getRoomName());
+
+                if (gameRoom == null
+                        || !gameRoom.resumePlayer(session, client, resumeSessionPacket.getLastReceived())) {
+                    client.sendMessage(new ErrorPacket(ErrorCode.SESSION_EXPIRED));
+                }
+            }
             case CreateRoomPacket createRoomPacket -> {
                 String roomName = createRoomPacket.getRoomName();
                 String roomPassword = createRoomPacket.getRoomPassword();
+                int maxPlayers = createRoomPacket.getMaxPlayers() > 0
+                        ? createRoomPacket.getMaxPlayers()
+                        : GameRoom.DEFAULT_MAX_PLAYERS;
+                int maxSpectators = createRoomPacket.getMaxSpectators();
+                String gameId = createRoomPacket.getGameId() != null
+                        ? createRoomPacket.getGameId()
+                        : GameCreatorRegistry.DEFAULT_GAME_ID;
+
+                if (!Cluster.isLocal(roomName)) {
+                    client.sendMessage(new ErrorPacket(ErrorCode.ROOM_ON_OTHER_NODE));
+                    return;
+                }
 
                 if(gameRooms.containsKey(roomName)) {
                     client.sendMessage(new ErrorPacket(ErrorCode.ROOM_ALREADY_EXISTS));
                     return;
                 }
 
-                if(!createGameRoom(roomName, roomPassword)) {
+                if (!GameCreatorRegistry.contains(gameId)) {
+                    client.sendMessage(new ErrorPacket(ErrorCode.GAME_NOT_AVAILABLE));
+                    return;
+                }
+
+                if(!GameRoom.isValidCapacity(maxPlayers, maxSpectators)
+                        || !createGameRoom(roomName, roomPassword, gameId, maxPlayers, maxSpectators)) {
                     client.sendMessage(new ErrorPacket(ErrorCode.ROOM_NOT_CREATED));
                     return;
                 }
@@ -220,6 +542,11 @@ public class GameRoomManager implements UpdateHandler {
             case GetRoomDetailsPacket roomDetailsPacket -> {
                 String roomName = roomDetailsPacket.getRoomName();
 
+                if (!Cluster.isLocal(roomName)) {
+                    client.sendMessage(new ErrorPacket(ErrorCode.ROOM_ON_OTHER_NODE));
+                    return;
+                }
+
                 GameRoom gameRoom = gameRooms.get(roomName);
 
                 if (gameRoom == null) {
@@ -0,0 +1,29 @@
+package org.javamale.ectotext.server.core;
+
+import java.util.List;
+
+/**
+ * Esito di un'importazione massiva di stanze con
+ * {@link GameRoomManager#importGameRooms(List)}.
+ * <p>
+ * Le stanze il cui nome esiste già, sul server o in una voce precedente
+ * dell'importazione, non interrompono l'operazione: vengono saltate e
+ * riportate in {@link #duplicates()}.
+ * </p>
+ *
+ * @param created    numero di stanze create
+ * @param duplicates nomi delle stanze saltate perché già esistenti, nell'ordine delle voci
+ */
+public record RoomImport(int created, List<String> duplicates) {
+
+    /**
+     * Configurazione di una stanza da importare, già validata.
+     *
+     * @param roomName      nome univoco della stanza
+     * @param password      password di accesso, vuota se la stanza non è protetta
+     * @param gameId        identificatore dell'avventura registrata in {@link GameCreatorRegistry}
+     * @param maxPlayers    numero massimo di giocatori (almeno 1)
+     * @param maxSpectators numero massimo di spettatori (0 per disabilitarli)
+     */
+    public record Entry(String roomName, String password, String gameId, int maxPlayers, int maxSpectators) {}
+}
@@ -0,0 +1,283 @@
+package org.javamale.ectotext.server.health;
+
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.core.GameRoomManager;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
+import org.javamale.ectotext.server.network.SocketServer;
+import org.javamale.ectotext.server.persistence.storage.Storage;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Verifiche sullo stato dei componenti del server, usate dalle sonde di
+ * liveness e readiness.
+ * <p>
+ * Le verifiche sono:
+ * <ul>
+ *   <li>{@code socket_acceptor} – il thread di accettazione è attivo;</li>
+ *   <li>{@code event_loop} – ritardo con cui il {@link GameRoomManager}
+ *       servirebbe un nuovo pacchetto;</li>
+ *   <li>{@code database} – latenza della verifica del supporto di memorizzazione
+ *       ({@link Storage}), una query su H2 salvo il supporto nello heap;</li>
+ *   <li>{@code persistence_backlog} – salvataggi dello stato di gioco in corso;</li>
+ *   <li>{@code heap} – frazione di heap ancora disponibile;</li>
+ *   <li>{@code rooms} – numero di stanze attive (solo informativa);</li>
+ *   <li>{@code draining} – il server non è in arresto ordinato.</li>
+ * </ul>
+ * La liveness considera solo le prime due: un loro fallimento indica un
+ * processo da riavviare. La readiness le considera tutte e indica se il nodo
+ * può ricevere nuovi giocatori.
+ * <p>
+ * I risultati sono conservati per {@link #TTL_PROPERTY} millisecondi, così
+ * che sonde frequenti non carichino il server. Le verifiche che possono
+ * bloccarsi (database ed event loop) sono eseguite su un thread virtuale con
+ * un tempo massimo; se la verifica precedente è ancora bloccata non ne viene
+ * avviata un'altra.
+ */
+public final class HealthMonitor {
+
+    /** Proprietà di sistema per la durata della cache dei risultati (ms). */
+    public static final String TTL_PROPERTY = "ectotext.health.ttlMillis";
+
+    /** Proprietà di sistema per il tempo massimo di una singola verifica (ms). */
+    public static final String TIMEOUT_PROPERTY = "ectotext.health.timeoutMillis";
+
+    /** Ritardo massimo accettato per l'event loop (ms). */
+    public static final long MAX_EVENT_LOOP_LAG_MILLIS = 500;
+
+    /** Latenza massima accettata per il database (ms). */
+    public static final long MAX_DATABASE_LATENCY_MILLIS = 500;
+
+    /** Numero massimo di salvataggi in corso. */
+    public static final int MAX_PERSISTENCE_BACKLOG = 32;
+
+    /** Frazione minima di heap libera. */
+    public static final double MIN_HEAP_FREE = 0.1;
+
+    /**
+     * Esito di una singola verifica.
+     *
+     * @param name   nome del componente
+     * @param up     {@code true} se il componente è in salute
+     * @param metric nome del valore misurato (es. {@code latency_ms})
+     * @param value  valore misurato
+     * @param error  descrizione del problema, {@code null} se assente
+     */
+    public record Check(String name, boolean up, String metric, double value, String error) {}
+
+    /**
+     * Esito complessivo di una sonda.
+     *
+     * @param up        {@code true} se tutte le verifiche sono riuscite
+     * @param checkedAt istante in cui le verifiche sono state eseguite
+     * @param checks    esiti delle singole verifiche
+     */
+    public record Report(boolean up, Instant checkedAt, List<Check> checks) {
+
+        /**
+         * Serializza l'esito in JSON.
+         * <p>
+         * Formato:
+         * <pre>{
+         *   "status": "UP",
+         *   "checked_at": "2024-05-01T10:15:30.123Z",
+         *   "checks": {
+         *     "database": { "status": "UP", "latency_ms": 0.4 },
+         *     "heap": { "status": "DOWN", "free_ratio": 0.04, "error": "..." }
+         *   }
+         * }</pre>
+         *
+         * @return documento JSON
+         */
+        public String toJson() {
+            StringWriter out = new StringWriter();
+            try (JsonWriter writer = new JsonWriter(out)) {
+                writer.beginObject();
+                writer.name("status").value(status(up));
+                writer.name("checked_at").value(checkedAt.toString());
+                writer.name("checks").beginObject();
+                for (Check check : checks) {
+                    writer.name(check.name()).beginObject();
+                    writer.name("status").value(status(check.up()));
+                    if (check.value() == Math.rint(check.value())) {
+                        writer.name(check.metric()).value((long) check.value());
+                    } else {
+                        writer.name(check.metric()).value(check.value());
+                    }
+                    if (check.error() != null) {
+                        writer.name("error").value(check.error());
+                    }
+                    writer.endObject();
+                }
+                writer.endObject();
+                writer.endObject();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return out.toString();
+        }
+
+        private static String status(boolean up) {
+            return up ? "UP" : "DOWN";
+        }
+    }
+
+    private static final long TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong(TTL_PROPERTY, 1000));
+    private static final long TIMEOUT_MILLIS = Long.getLong(TIMEOUT_PROPERTY, 1000);
+
+    private static final Probe DATABASE = new Probe();
+    private static final Probe EVENT_LOOP = new Probe();
+
+    private static Report live;
+    private static long liveAt;
+    private static Report ready;
+    private static long readyAt;
+
+    private HealthMonitor() {}
+
+    /**
+     * Esegue (o restituisce dalla cache) la sonda di liveness.
+     *
+     * @return esito delle verifiche sul processo
+     */
+    public static synchronized Report live() {
+        long now = System.nanoTime();
+        if (live == null || now - liveAt >= TTL_NANOS) {
+            live = report(List.of(socketAcceptor(), eventLoop()));
+            liveAt = now;
+        }
+        return live;
+    }
+
+    /**
+     * Esegue (o restituisce dalla cache) la sonda di readiness.
+     *
+     * @return esito delle verifiche su tutti i componenti
+     */
+    public static synchronized Report ready() {
+        long now = System.nanoTime();
+        if (ready == null || now - readyAt >= TTL_NANOS) {
+            ready = report(List.of(socketAcceptor(), eventLoop(), database(), persistenceBacklog(), heap(), rooms(),
+                    draining()));
+            readyAt = now;
+        }
+        return ready;
+    }
+
+    /* ====================================================================== */
+    /*                                VERIFICHE                               */
+    /* ====================================================================== */
+
+    private static Check socketAcceptor() {
+        SocketServer socketServer = GameServer.getSocketServer();
+        boolean up = socketServer != null && socketServer.isAccepting();
+        return new Check("socket_acceptor", up, "clients", up ? socketServer.getClientCount() : 0,
+                up ? null : "Socket acceptor is not running");
+    }
+
+    private static Check eventLoop() {
+        GameRoomManager roomManager = GameServer.getRoomManager();
+        if (roomManager == null) {
+            return new Check("event_loop", false, "lag_ms", 0, "Room manager not initialized");
+        }
+        return timed("event_loop", "lag_ms", EVENT_LOOP, MAX_EVENT_LOOP_LAG_MILLIS, () -> {
+            roomManager.awaitIdle();
+            return null;
+        });
+    }
+
+    private static Check database() {
+        return timed("database", "latency_ms", DATABASE, MAX_DATABASE_LATENCY_MILLIS, () -> {
+            Storage.get().ping((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(TIMEOUT_MILLIS)));
+            return null;
+        });
+    }
+
+    private static Check persistenceBacklog() {
+        int inFlight = ServerMetrics.getGameStateSavesInFlight();
+        boolean up = inFlight <= MAX_PERSISTENCE_BACKLOG;
+        return new Check("persistence_backlog", up, "saves_in_flight", inFlight,
+                up ? null : "Too many game state saves in flight");
+    }
+
+    private static Check heap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        double free = 1 - (double) used / runtime.maxMemory();
+        boolean up = free >= MIN_HEAP_FREE;
+        return new Check("heap", up, "free_ratio", free, up ? null : "Heap almost exhausted");
+    }
+
+    private static Check rooms() {
+        GameRoomManager roomManager = GameServer.getRoomManager();
+        return new Check("rooms", true, "count", roomManager == null ? 0 : roomManager.getGameRooms().size(), null);
+    }
+
+    private static Check draining() {
+        boolean draining = GameServer.isDraining();
+        return new Check("draining", !draining, "draining", draining ? 1 : 0,
+                draining ? "Server is shutting down" : null);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static Report report(List<Check> checks) {
+        boolean up = checks.stream().allMatch(Check::up);
+        return new Report(up, Instant.now(), checks);
+    }
+
+    private static Check timed(String name, String metric, Probe probe, long maxMillis, Callable<Void> task) {
+        try {
+            double millis = probe.run(task) / 1e6;
+            boolean up = millis <= maxMillis;
+            return new Check(name, up, metric, millis, up ? null : "Above " + maxMillis + " ms");
+        } catch (TimeoutException e) {
+            return new Check(name, false, metric, probe.pendingNanos() / 1e6, "No response");
+        } catch (ExecutionException e) {
+            return new Check(name, false, metric, 0, String.valueOf(e.getCause().getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Check(name, false, metric, 0, "Interrupted");
+        }
+    }
+
+    /**
+     * Verifica eseguita su un thread virtuale, con al più un'esecuzione in
+     * corso: una verifica bloccata non genera altri thread bloccati.
+     * Usata solo da metodi sincronizzati di {@link HealthMonitor}.
+     */
+    private static final class Probe {
+        private FutureTask<Void> pending;
+        private long startedAt;
+
+        /**
+         * @param task verifica da eseguire
+         * @return durata della verifica in nanosecondi
+         */
+        long run(Callable<Void> task) throws InterruptedException, ExecutionException, TimeoutException {
+            if (pending == null || pending.isDone()) {
+                pending = new FutureTask<>(task);
+                startedAt = System.nanoTime();
+                Thread.ofVirtual().name("health-probe").start(pending);
+            }
+            pending.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            return System.nanoTime() - startedAt;
+        }
+
+        /** @return tempo trascorso dall'avvio della verifica in corso */
+        long pendingNanos() {
+            return System.nanoTime() - startedAt;
+        }
+    }
+}
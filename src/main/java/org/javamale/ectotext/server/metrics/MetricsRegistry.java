@@ -0,0 +1,273 @@
+package org.javamale.ectotext.server.metrics;
+
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.common.metrics.Histogram;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registro delle metriche del server.
+ * <p>
+ * Le metriche sono raggruppate in famiglie (stesso nome, tipo e
+ * descrizione) e distinte da etichette. Sono supportati tre tipi:
+ * <ul>
+ *   <li>{@link Type#COUNTER} – contatori monotoni ({@link LongAdder});</li>
+ *   <li>{@link Type#GAUGE} – valori istantanei, letti da un
+ *       {@link LongSupplier} al momento dell'esportazione;</li>
+ *   <li>{@link Type#SUMMARY} – distribuzioni ({@link Histogram}), esportate
+ *       con conteggio, somma e quantili.</li>
+ * </ul>
+ * La registrazione va fatta una volta e lo strumento restituito va
+ * conservato: l'aggiornamento non attraversa il registro ed è privo di lock.
+ * L'esportazione è disponibile in JSON e nel formato testuale di Prometheus.
+ */
+public final class MetricsRegistry {
+
+    /** Tipi di metrica supportati. */
+    public enum Type { COUNTER, GAUGE, SUMMARY }
+
+    /** Quantili esportati per le metriche {@link Type#SUMMARY}. */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /** Nomi dei quantili nell'esportazione JSON. */
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+    private MetricsRegistry() {}
+
+    /* ====================================================================== */
+    /*                              REGISTRAZIONE                             */
+    /* ====================================================================== */
+
+    /**
+     * Registra (o recupera) un contatore.
+     *
+     * @param name   nome della metrica
+     * @param help   descrizione
+     * @param labels coppie chiave/valore delle etichette
+     * @return contatore da incrementare
+     * @throws IllegalArgumentException se il nome è già registrato con un altro tipo
+     */
+    public static LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER, 1).child(labels, LongAdder::new);
+    }
+
+    /**
+     * Registra un valore istantaneo, calcolato a ogni esportazione.
+     *
+     * @param name   nome della metrica
+     * @param help   descrizione
+     * @param value  funzione che restituisce il valore corrente
+     * @param labels coppie chiave/valore delle etichette
+     * @throws IllegalArgumentException se il nome è già registrato con un altro tipo
+     */
+    public static void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.GAUGE, 1).child(labels, () -> value);
+    }
+
+    /**
+     * Registra (o recupera) una distribuzione.
+     *
+     * @param name   nome della metrica
+     * @param help   descrizione
+     * @param unit   valore di un campione corrispondente a un'unità esportata
+     *               (es. {@code 1e6} per registrare microsecondi ed esportare secondi)
+     * @param labels coppie chiave/valore delle etichette
+     * @return istogramma su cui registrare i campioni
+     * @throws IllegalArgumentException se il nome è già registrato con un altro tipo
+     */
+    public static Histogram summary(String name, String help, double unit, String... labels) {
+        return (Histogram) family(name, help, Type.SUMMARY, unit).child(labels, Histogram::new);
+    }
+
+    /* ====================================================================== */
+    /*                              ESPORTAZIONE                              */
+    /* ====================================================================== */
+
+    /**
+     * Esporta tutte le metriche nel formato testuale di Prometheus
+     * (versione 0.0.4).
+     *
+     * @return testo da servire con content type {@code text/plain; version=0.0.4}
+     */
+    public static String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Family family : FAMILIES.values()) {
+            sb.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            sb.append("# TYPE ").append(family.name).append(' ')
+                    .append(family.type.name().toLowerCase(Locale.ROOT)).append('\n');
+
+            for (Child child : family.children.values()) {
+                switch (family.type) {
+                    case COUNTER -> sample(sb, family.name, child.labels(), null,
+                            ((LongAdder) child.metric()).sum());
+                    case GAUGE -> sample(sb, family.name, child.labels(), null,
+                            ((LongSupplier) child.metric()).getAsLong());
+                    case SUMMARY -> {
+                        Histogram histogram = (Histogram) child.metric();
+                        for (double q : QUANTILES) {
+                            sample(sb, family.name, child.labels(), "quantile=\"" + q + "\"",
+                                    histogram.getPercentile(q * 100) / family.unit);
+                        }
+                        sample(sb, family.name + "_sum", child.labels(), null, histogram.getSum() / family.unit);
+                        sample(sb, family.name + "_count", child.labels(), null, histogram.getCount());
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Esporta tutte le metriche in JSON.
+     * <p>
+     * Formato:
+     * <pre>{
+     *   "ectotext_packets_in_total": {
+     *     "type": "counter",
+     *     "help": "...",
+     *     "samples": [ { "labels": { "type": "game_command" }, "value": 42 } ]
+     *   },
+     *   "ectotext_command_duration_seconds": {
+     *     "type": "summary",
+     *     "help": "...",
+     *     "samples": [ { "labels": { "verb": "vai" }, "count": 10, "sum": 0.02,
+     *                    "mean": 0.002, "max": 0.004, "p50": 0.002, "p90": 0.003,
+     *                    "p99": 0.004, "p999": 0.004 } ]
+     *   }
+     * }</pre>
+     *
+     * @return documento JSON
+     */
+    public static String toJson() {
+        StringWriter out = new StringWriter(4096);
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            for (Family family : FAMILIES.values()) {
+                writer.name(family.name).beginObject();
+                writer.name("type").value(family.type.name().toLowerCase(Locale.ROOT));
+                writer.name("help").value(family.help);
+                writer.name("samples").beginArray();
+
+                for (Child child : family.children.values()) {
+                    writer.beginObject();
+                    writer.name("labels").beginObject();
+                    for (int i = 0; i < child.labels().size(); i += 2) {
+                        writer.name(child.labels().get(i)).value(child.labels().get(i + 1));
+                    }
+                    writer.endObject();
+
+                    switch (family.type) {
+                        case COUNTER -> writer.name("value").value(((LongAdder) child.metric()).sum());
+                        case GAUGE -> writer.name("value").value(((LongSupplier) child.metric()).getAsLong());
+                        case SUMMARY -> {
+                            Histogram histogram = (Histogram) child.metric();
+                            writer.name("count").value(histogram.getCount());
+                            writer.name("sum").value(histogram.getSum() / family.unit);
+                            writer.name("mean").value(histogram.getMean() / family.unit);
+                            writer.name("max").value(histogram.getMax() / family.unit);
+                            for (int q = 0; q < QUANTILES.length; q++) {
+                                writer.name(QUANTILE_NAMES[q])
+                                        .value(histogram.getPercentile(QUANTILES[q] * 100) / family.unit);
+                            }
+                        }
+                    }
+                    writer.endObject();
+                }
+
+                writer.endArray();
+                writer.endObject();
+            }
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static Family family(String name, String help, Type type, double unit) {
+        Family family = FAMILIES.computeIfAbsent(name, n -> new Family(n, help, type, unit));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " already registered as " + family.type);
+        }
+        return family;
+    }
+
+    private static void sample(StringBuilder sb, String name, List<String> labels, String extra, double value) {
+        sb.append(name);
+        if (!labels.isEmpty() || extra != null) {
+            sb.append('{');
+            for (int i = 0; i < labels.size(); i += 2) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(labels.get(i)).append("=\"").append(escape(labels.get(i + 1))).append('"');
+            }
+            if (extra != null) {
+                if (!labels.isEmpty()) {
+                    sb.append(',');
+                }
+                sb.append(extra);
+            }
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Famiglia di metriche con lo stesso nome.
+     */
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final double unit;
+        final Map<String, Child> children = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, Type type, double unit) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.unit = unit;
+        }
+
+        Object child(String[] labels, Supplier<Object> factory) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("Labels must be key/value pairs");
+            }
+            return children.computeIfAbsent(String.join("\u0000", labels),
+                    k -> new Child(List.of(labels), factory.get())).metric();
+        }
+    }
+
+    /**
+     * Singola serie di una famiglia.
+     *
+     * @param labels coppie chiave/valore delle etichette
+     * @param metric strumento ({@link LongAdder}, {@link LongSupplier} o {@link Histogram})
+     */
+    private record Child(List<String> labels, Object metric) {}
+}
@@ -0,0 +1,182 @@
+package org.javamale.ectotext.server.metrics;
+
+import org.javamale.ectotext.common.metrics.Histogram;
+import org.javamale.ectotext.common.packet.ErrorCode;
+import org.javamale.ectotext.common.packet.PacketType;
+import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.network.SocketServer;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Metriche applicative del server, registrate in {@link MetricsRegistry}.
+ * <p>
+ * Tutti gli strumenti sono creati una sola volta; i metodi di
+ * registrazione sono chiamati dai punti caldi del server e non acquisiscono
+ * lock:
+ * <ul>
+ *   <li>pacchetti ricevuti e inviati per {@link PacketType};</li>
+ *   <li>errori inviati ai client per {@link ErrorCode};</li>
+ *   <li>durata dei comandi di gioco per verbo;</li>
+ *   <li>durata del salvataggio dello stato di gioco e salvataggi in corso;</li>
+ *   <li>numero di destinatari di ogni broadcast;</li>
+ *   <li>connessioni aperte e frame in attesa di invio (letti dal
+ *       {@link SocketServer} al momento dell'esportazione).</li>
+ * </ul>
+ */
+public final class ServerMetrics {
+
+    private static final String PREFIX = "ectotext_";
+
+    /** Microsecondi in un secondo: le durate sono registrate in µs ed esportate in secondi. */
+    private static final double MICROS = 1e6;
+
+    private static final Map<PacketType, LongAdder> PACKETS_IN = new EnumMap<>(PacketType.class);
+    private static final Map<PacketType, LongAdder> PACKETS_OUT = new EnumMap<>(PacketType.class);
+    private static final Map<ErrorCode, LongAdder> ERRORS = new EnumMap<>(ErrorCode.class);
+    private static final Map<String, Histogram> COMMANDS = new ConcurrentHashMap<>();
+
+    private static final LongAdder INVALID_PACKETS = MetricsRegistry.counter(PREFIX + "packets_invalid_total",
+            "Packets received that could not be decoded");
+    private static final LongAdder SLOW_CLIENTS = MetricsRegistry.counter(PREFIX + "slow_clients_closed_total",
+            "Connections closed because the outbound queue was full");
+    private static final Histogram GAME_STATE_SAVE = MetricsRegistry.summary(PREFIX + "game_state_save_seconds",
+            "Time spent saving a game state", MICROS);
+    private static final AtomicInteger SAVES_IN_FLIGHT = new AtomicInteger();
+    private static final Histogram BROADCAST_FANOUT = MetricsRegistry.summary(PREFIX + "broadcast_recipients",
+            "Recipients of each room broadcast", 1);
+
+    static {
+        for (PacketType type : PacketType.values()) {
+            PACKETS_IN.put(type, MetricsRegistry.counter(PREFIX + "packets_in_total",
+                    "Packets received from clients", "type", type.getKey()));
+            PACKETS_OUT.put(type, MetricsRegistry.counter(PREFIX + "packets_out_total",
+                    "Packets sent to clients", "type", type.getKey()));
+        }
+        for (ErrorCode code : ErrorCode.values()) {
+            ERRORS.put(code, MetricsRegistry.counter(PREFIX + "errors_total",
+                    "Error packets sent to clients", "code", String.valueOf(code.getCode()), "name", code.name()));
+        }
+
+        MetricsRegistry.gauge(PREFIX + "connections_open", "Open client connections",
+                () -> fromSocketServer(SocketServer::getClientCount));
+        MetricsRegistry.gauge(PREFIX + "outbound_queue_frames", "Frames waiting to be written, summed over all clients",
+                () -> fromSocketServer(SocketServer::getPendingFrames));
+        MetricsRegistry.gauge(PREFIX + "outbound_queue_frames_max", "Frames waiting to be written on the most backlogged client",
+                () -> fromSocketServer(SocketServer::getMaxPendingFrames));
+        MetricsRegistry.gauge(PREFIX + "game_state_saves_in_flight", "Game state saves started and not yet completed",
+                SAVES_IN_FLIGHT::get);
+        MetricsRegistry.gauge(PREFIX + "rooms", "Active game rooms",
+                () -> GameServer.getRoomManager() == null ? 0 : GameServer.getRoomManager().getGameRooms().size());
+    }
+
+    private ServerMetrics() {}
+
+    /**
+     * Garantisce la registrazione di tutte le metriche, anche di quelle non
+     * ancora aggiornate.
+     */
+    public static void register() {
+        // La registrazione avviene nell'inizializzatore statico
+    }
+
+    /**
+     * Registra un pacchetto ricevuto.
+     *
+     * @param type tipo del pacchetto, {@code null} se non decodificabile
+     */
+    public static void packetIn(PacketType type) {
+        if (type == null) {
+            INVALID_PACKETS.increment();
+        } else {
+            PACKETS_IN.get(type).increment();
+        }
+    }
+
+    /**
+     * Registra pacchetti inviati.
+     *
+     * @param type  tipo del pacchetto
+     * @param count numero di destinatari
+     */
+    public static void packetsOut(PacketType type, int count) {
+        PACKETS_OUT.get(type).add(count);
+    }
+
+    /**
+     * Registra un errore inviato a un client.
+     *
+     * @param code codice dell'errore
+     */
+    public static void error(ErrorCode code) {
+        if (code != null) {
+            ERRORS.get(code).increment();
+        }
+    }
+
+    /**
+     * Registra l'esecuzione di un comando di gioco.
+     *
+     * @param verb  parola chiave del comando
+     * @param nanos durata in nanosecondi
+     */
+    public static void command(String verb, long nanos) {
+        COMMANDS.computeIfAbsent(verb, v -> MetricsRegistry.summary(PREFIX + "command_duration_seconds",
+                "Time spent executing a game command", MICROS, "verb", v))
+                .record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Registra l'inizio del salvataggio di uno stato di gioco.
+     * Deve essere seguito da {@link #gameStateSaved(long)}.
+     */
+    public static void gameStateSaveStarted() {
+        SAVES_IN_FLIGHT.incrementAndGet();
+    }
+
+    /**
+     * Registra il termine del salvataggio di uno stato di gioco.
+     *
+     * @param nanos durata in nanosecondi
+     */
+    public static void gameStateSaved(long nanos) {
+        SAVES_IN_FLIGHT.decrementAndGet();
+        GAME_STATE_SAVE.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Ottiene il numero di salvataggi in corso. Poiché la connessione a H2 è
+     * condivisa, i salvataggi concorrenti si accodano: il valore misura
+     * l'arretrato della persistenza.
+     *
+     * @return salvataggi iniziati e non ancora terminati
+     */
+    public static int getGameStateSavesInFlight() {
+        return SAVES_IN_FLIGHT.get();
+    }
+
+    /**
+     * Registra un broadcast.
+     *
+     * @param recipients numero di destinatari
+     */
+    public static void broadcast(int recipients) {
+        BROADCAST_FANOUT.record(recipients);
+    }
+
+    /** Registra la chiusura di un client troppo lento. */
+    public static void slowClientClosed() {
+        SLOW_CLIENTS.increment();
+    }
+
+    private static long fromSocketServer(ToLongFunction<SocketServer> value) {
+        SocketServer socketServer = GameServer.getSocketServer();
+        return socketServer == null ? 0 : value.applyAsLong(socketServer);
+    }
+}
@@ -1,12 +1,24 @@
 package org.javamale.ectotext.server.network;
 
+import org.javamale.ectotext.common.packet.ErrorCode;
 import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.impl.ErrorPacket;
 import org.javamale.ectotext.server.GameServer;
 import org.javamale.ectotext.server.contracts.UpdateHandler;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
+import org.javamale.ectotext.server.trace.Trace;
+import org.javamale.ectotext.server.trace.Trace.Stage;
+import org.javamale.ectotext.server.trace.Tracer;
 
 import java.io.*;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Gestore della comunicazione con un singolo client connesso al server.
@@ -17,6 +29,17 @@ import java.net.SocketException;
  *   <li>Notifica gli eventi di comunicazione attraverso un {@link UpdateHandler}</li>
  *   <li>Gestisce la disconnessione ordinata del client</li>
  * </ul>
+ * <p>
+ * I messaggi in uscita vengono accodati e scritti da un thread dedicato,
+ * che svuota la coda a blocchi ed esegue un solo flush per blocco.
+ * Un client che non consuma abbastanza in fretta da tenere la coda sotto
+ * {@value #MAX_PENDING_FRAMES} messaggi viene disconnesso.
+ * </p>
+ * <p>
+ * Ogni pacchetto ricevuto viene tracciato con {@link Tracer}: la traccia
+ * si chiude quando l'ultima risposta accodata al mittente è stata scritta
+ * sul socket.
+ * </p>
  *
  * @see UpdateHandler
  * @see Packet
@@ -24,6 +47,11 @@ import java.net.SocketException;
  */
 public class ClientHandler extends Thread {
 
+    /**
+     * Numero massimo di messaggi in attesa di invio per un singolo client.
+     */
+    public static final int MAX_PENDING_FRAMES = 1024;
+
     /**
      * Socket TCP per la comunicazione con il client.
      * Viene chiuso quando la connessione termina o il client si disconnette.
@@ -44,10 +72,50 @@ public class ClientHandler extends Thread {
 
     /**
      * Stream di output bufferizzato per l'invio dei messaggi al client.
-     * Configurato per l'auto-flush dopo ogni messaggio.
+     * Utilizzato esclusivamente dal thread di scrittura, che esegue il flush
+     * al termine di ogni blocco di messaggi.
      */
     private final PrintWriter out;
 
+    /**
+     * Coda limitata dei messaggi JSON in attesa di invio.
+     */
+    private final BlockingQueue<String> outbound;
+
+    /**
+     * Thread virtuale che svuota {@link #outbound} sul socket.
+     */
+    private final Thread writer;
+
+    /**
+     * Numero di messaggi accodati dall'apertura della connessione.
+     * Protetto dal lock su {@link #outbound}.
+     */
+    private long enqueuedFrames;
+
+    /**
+     * Numero di messaggi scritti sul socket dall'apertura della connessione.
+     * Aggiornato solo dal thread di scrittura.
+     */
+    private volatile long flushedFrames;
+
+    /**
+     * Tracce in attesa della scrittura delle risposte, in ordine di arrivo.
+     */
+    private final Queue<Trace> awaitingFlush = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Indica che un pacchetto ricevuto è in elaborazione.
+     * Letto durante l'arresto ordinato per attendere i comandi in corso.
+     */
+    private volatile boolean handling;
+
+    /**
+     * Sessione del giocatore nella stanza corrente, {@code null} fuori da
+     * una stanza. Se presente, i messaggi passano dalla sessione.
+     */
+    private volatile Session session;
+
     /**
      * Crea un nuovo handler per gestire la comunicazione con un client.
      * <p>
@@ -65,7 +133,9 @@ public class ClientHandler extends Thread {
         this.updateHandler = updateHandler;
 
         this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())), true);
+        this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())));
+        this.outbound = new LinkedBlockingQueue<>(MAX_PENDING_FRAMES);
+        this.writer = Thread.ofVirtual().name("client-writer-", socket.getPort()).unstarted(this::writeLoop);
     }
 
     /**
@@ -86,18 +156,165 @@ public class ClientHandler extends Thread {
     /**
      * Invia un pacchetto al client.
      * <p>
-     * Il pacchetto viene serializzato in JSON e inviato in modo thread-safe.
-     * L'invio è sincronizzato per evitare interferenze tra thread multipli.
+     * Il pacchetto viene serializzato in JSON e accodato per l'invio.
      * </p>
      *
      * @param packet pacchetto da inviare
      * @throws NullPointerException se packet è null
      * @see Packet#toBaseJson()
+     * @see #sendFrame(String)
      */
     public void sendMessage(Packet packet) {
-        synchronized (out) {
-            String json = packet.toBaseJson();
-            out.println(json);
+        ServerMetrics.packetsOut(packet.getType(), 1);
+        if (packet instanceof ErrorPacket errorPacket) {
+            ServerMetrics.error(errorPacket.getErrorCode());
+        }
+        sendFrame(packet.toBaseJson());
+    }
+
+    /**
+     * Accoda un messaggio già serializzato per l'invio al client.
+     * <p>
+     * Non blocca il chiamante: permette di serializzare una sola volta i
+     * pacchetti destinati a più client. Se la coda è piena il client è
+     * considerato troppo lento e la connessione viene chiusa.
+     * Se il client ha una {@link Session}, il messaggio viene registrato e
+     * consegnato alla connessione corrente della sessione.
+     * </p>
+     *
+     * @param frame pacchetto in formato JSON su singola riga
+     */
+    public void sendFrame(String frame) {
+        Session current = session;
+        if (current != null) {
+            current.deliver(frame);
+        } else {
+            enqueue(frame);
+        }
+    }
+
+    /**
+     * Accoda un messaggio direttamente su questa connessione, senza passare
+     * dalla sessione.
+     *
+     * @param frame pacchetto in formato JSON su singola riga
+     */
+    void enqueue(String frame) {
+        long sequence;
+        synchronized (outbound) {
+            sequence = outbound.offer(frame) ? ++enqueuedFrames : 0;
+        }
+
+        if (sequence == 0) {
+            System.err.println("Client " + socket.getRemoteSocketAddress() + " is too slow, closing connection");
+            ServerMetrics.slowClientClosed();
+            close();
+            return;
+        }
+
+        Trace trace = Tracer.current();
+        if (trace != null && trace.getClient() == this) {
+            trace.setFlushSequence(sequence);
+        }
+    }
+
+    /**
+     * Restituisce la sessione del giocatore nella stanza corrente.
+     *
+     * @return sessione, o {@code null} fuori da una stanza
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Imposta la sessione attraverso cui passano i messaggi.
+     *
+     * @param session sessione, o {@code null} per inviare direttamente
+     */
+    void setSession(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Ottiene il numero di messaggi in attesa di invio.
+     *
+     * @return dimensione corrente della coda di uscita
+     */
+    public int getPendingFrames() {
+        return outbound.size();
+    }
+
+    /**
+     * Verifica se un pacchetto ricevuto da questo client è in elaborazione.
+     *
+     * @return {@code true} se l'handler degli eventi sta elaborando un pacchetto
+     */
+    public boolean isHandling() {
+        return handling;
+    }
+
+    /**
+     * Loop del thread di scrittura.
+     * Attende il primo messaggio disponibile, preleva tutti quelli già in
+     * coda e li scrive con un unico flush.
+     */
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>();
+        try {
+            while (!socket.isClosed()) {
+                batch.add(outbound.take());
+                outbound.drainTo(batch);
+
+                for (String frame : batch) {
+                    out.println(frame);
+                }
+                out.flush();
+                flushedFrames += batch.size();
+                batch.clear();
+                completeFlushed();
+
+                if (out.checkError()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Chiude le tracce le cui risposte sono già state scritte sul socket.
+     * Può essere chiamato sia dal thread di lettura sia da quello di
+     * scrittura: ogni traccia viene chiusa una sola volta.
+     */
+    private void completeFlushed() {
+        Trace trace;
+        while ((trace = awaitingFlush.peek()) != null && trace.getFlushSequence() <= flushedFrames) {
+            if (awaitingFlush.remove(trace)) {
+                trace.mark(Stage.FLUSH);
+                Tracer.finish(trace);
+            }
+        }
+    }
+
+    /**
+     * Chiude la traccia di un pacchetto elaborato: subito se non ha prodotto
+     * risposte per il mittente, altrimenti dopo la loro scrittura.
+     *
+     * @param trace traccia del pacchetto
+     */
+    private void complete(Trace trace) {
+        Tracer.clear();
+        // I comandi di gioco marcano la fine dell'elaborazione prima di codifica e salvataggio
+        if (!trace.isMarked(Stage.HANDLE)) {
+            trace.mark(Stage.HANDLE);
+        }
+        if (trace.getFlushSequence() == 0) {
+            Tracer.finish(trace);
+        } else {
+            awaitingFlush.add(trace);
+            completeFlushed();
         }
     }
 
@@ -119,6 +336,7 @@ public class ClientHandler extends Thread {
             throw new RuntimeException(e);
         }
         this.interrupt();
+        writer.interrupt();
     }
 
     /**
@@ -128,6 +346,8 @@ public class ClientHandler extends Thread {
      *   <li>Legge continuamente pacchetti JSON dal client</li>
      *   <li>Deserializza i pacchetti ricevuti</li>
      *   <li>Notifica l'UpdateHandler per ogni pacchetto</li>
+     *   <li>Rifiuta i pacchetti con {@link ErrorCode#SERVER_DRAINING} durante
+     *       l'arresto ordinato del server</li>
      *   <li>Gestisce disconnessioni e errori di comunicazione</li>
      * </ul>
      *
@@ -144,6 +364,7 @@ public class ClientHandler extends Thread {
      */
     @Override
     public void run() {
+        writer.start();
         try {
             while (!Thread.currentThread().isInterrupted()) {
                 try {
@@ -155,8 +376,22 @@ public class ClientHandler extends Thread {
                         break;
                     }
 
+                    Trace trace = Tracer.start(this);
                     Packet update = Packet.fromBaseJson(json);
-                    updateHandler.onUpdate(this, update);
+                    trace.mark(Stage.DECODE);
+                    trace.setType(update == null ? null : update.getType());
+                    ServerMetrics.packetIn(trace.getType());
+                    handling = true;
+                    try {
+                        if (GameServer.isDraining()) {
+                            sendMessage(new ErrorPacket(ErrorCode.SERVER_DRAINING));
+                        } else {
+                            updateHandler.onUpdate(this, update);
+                        }
+                    } finally {
+                        handling = false;
+                        complete(trace);
+                    }
                 } catch (SocketException e) {
                     System.err.println(e.getMessage());
                     updateHandler.onDisconnect(this);
@@ -166,6 +401,7 @@ public class ClientHandler extends Thread {
                 }
             }
         } finally {
+            writer.interrupt();
             try {
                 socket.close();
             } catch (IOException e) {
@@ -0,0 +1,186 @@
+package org.javamale.ectotext.server.network;
+
+/**
+ * Sessione di un giocatore in una stanza, sopravvive alla connessione TCP.
+ * <p>
+ * Tutti i messaggi destinati al giocatore passano dalla sessione, che:
+ * <ul>
+ *   <li>li numera e ne conserva gli ultimi in un buffer circolare;</li>
+ *   <li>li accoda al {@link ClientHandler} corrente, se la connessione è
+ *       attiva;</li>
+ *   <li>dopo una disconnessione continua a registrarli, così che alla
+ *       ripresa ({@link #resume}) il client riceva quelli persi.</li>
+ * </ul>
+ * Il numero d'ordine conta i messaggi inviati dopo il pacchetto di ingresso
+ * nella stanza, che non è registrato: il client conta allo stesso modo i
+ * pacchetti ricevuti e lo comunica al momento della ripresa.
+ * <p>
+ * Una sessione <em>adottata</em> ({@link SessionManager#adopt}) arriva da
+ * un altro nodo con una stanza migrata: non conosce quanti messaggi il client
+ * abbia già ricevuto, quindi alla prima ripresa il conteggio del client
+ * diventa la base della numerazione e vengono inviati tutti i messaggi
+ * registrati nel frattempo.
+ *
+ * @see SessionManager
+ */
+public final class Session {
+
+    private final String token;
+    private final String roomName;
+    private final String playerName;
+    private final String[] frames;
+
+    /** Numero d'ordine dell'ultimo messaggio registrato. */
+    private long sequence;
+
+    /** Connessione corrente, {@code null} se il client è disconnesso. */
+    private ClientHandler client;
+
+    /** Incrementato a ogni cambio di connessione, per le scadenze. */
+    private long generation;
+
+    private boolean expired;
+
+    /** Messaggi ricevuti dal client prima del primo registrato qui. */
+    private long base;
+
+    /** {@code true} finché una sessione adottata non viene ripresa. */
+    private boolean adopted;
+
+    Session(String token, String roomName, String playerName, int capacity) {
+        this.token = token;
+        this.roomName = roomName;
+        this.playerName = playerName;
+        this.frames = new String[capacity];
+    }
+
+    Session(String token, String roomName, String playerName, int capacity, boolean adopted) {
+        this(token, roomName, playerName, capacity);
+        this.adopted = adopted;
+    }
+
+    /** @return token della sessione */
+    public String getToken() {
+        return token;
+    }
+
+    /** @return nome della stanza */
+    public String getRoomName() {
+        return roomName;
+    }
+
+    /** @return nickname del giocatore */
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * Associa la sessione a una connessione, inviando per primo il
+     * messaggio di ingresso (non registrato).
+     *
+     * @param client   connessione del giocatore
+     * @param greeting messaggio di ingresso nella stanza
+     */
+    synchronized void attach(ClientHandler client, String greeting) {
+        client.enqueue(greeting);
+        this.client = client;
+        client.setSession(this);
+        generation++;
+    }
+
+    /**
+     * Registra un messaggio e lo accoda alla connessione corrente.
+     * Dopo la chiusura della sessione il messaggio viene ignorato.
+     *
+     * @param frame messaggio JSON su singola riga
+     */
+    public synchronized void deliver(String frame) {
+        if (expired) {
+            return;
+        }
+        sequence++;
+        frames[(int) (sequence % frames.length)] = frame;
+        if (client != null) {
+            client.enqueue(frame);
+        }
+    }
+
+    /**
+     * Separa la sessione da una connessione terminata.
+     *
+     * @param client connessione terminata
+     * @return generazione da passare a {@link #expireIfDetached(long)},
+     *         o -1 se la sessione non era associata a questa connessione
+     */
+    public synchronized long detach(ClientHandler client) {
+        if (expired || this.client != client) {
+            return -1;
+        }
+        this.client = null;
+        return ++generation;
+    }
+
+    /**
+     * Riprende la sessione su una nuova connessione.
+     * <p>
+     * Invia il messaggio di ingresso seguito da quelli con numero d'ordine
+     * successivo a {@code lastReceived}; i messaggi consegnati nel frattempo
+     * da altri thread sono accodati dopo. Per una sessione adottata ancora
+     * mai ripresa {@code lastReceived} fissa la base della numerazione.
+     * </p>
+     *
+     * @param client       nuova connessione
+     * @param lastReceived messaggi già ricevuti dal client
+     * @param greeting     messaggio di ingresso nella stanza
+     * @return {@code false} se la sessione è scaduta o i messaggi persi non
+     *         sono più nel buffer
+     */
+    public synchronized boolean resume(ClientHandler client, long lastReceived, String greeting) {
+        if (expired || lastReceived < 0) {
+            return false;
+        }
+        long received = adopted ? 0 : lastReceived - base;
+        if (received < 0 || received > sequence || sequence - received > frames.length) {
+            return false;
+        }
+        if (adopted) {
+            base = lastReceived;
+            adopted = false;
+        }
+
+        client.enqueue(greeting);
+        for (long seq = received + 1; seq <= sequence; seq++) {
+            client.enqueue(frames[(int) (seq % frames.length)]);
+        }
+        this.client = client;
+        client.setSession(this);
+        generation++;
+        return true;
+    }
+
+    /**
+     * Fa scadere la sessione se è ancora disconnessa dalla generazione indicata.
+     *
+     * @param generation valore restituito da {@link #detach(ClientHandler)}
+     * @return {@code true} se la sessione è scaduta
+     */
+    synchronized boolean expireIfDetached(long generation) {
+        if (expired || client != null || this.generation != generation) {
+            return false;
+        }
+        expired = true;
+        return true;
+    }
+
+    /**
+     * Chiude la sessione: i messaggi successivi vanno direttamente alla
+     * connessione, se ancora attiva.
+     */
+    synchronized void expire() {
+        expired = true;
+        if (client != null && client.getSession() == this) {
+            client.setSession(null);
+        }
+        client = null;
+    }
+}
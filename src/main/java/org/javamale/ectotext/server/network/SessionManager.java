@@ -0,0 +1,184 @@
+package org.javamale.ectotext.server.network;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Registro delle sessioni riprendibili dei giocatori.
+ * <p>
+ * All'ingresso in una stanza ogni giocatore riceve una {@link Session}
+ * identificata da un token casuale. Se la connessione cade, la sessione
+ * resta valida per {@link #getGracePeriod()}: il posto e il personaggio
+ * restano occupati e i messaggi persi vengono conservati (al massimo
+ * {@link #getReplayCapacity()}). Scaduto il periodo di grazia viene eseguita
+ * l'azione di rimozione indicata dalla stanza.
+ * <p>
+ * Configurazione tramite proprietà di sistema:
+ * <ul>
+ *   <li>{@value #GRACE_PROPERTY} – periodo di grazia in secondi (default 60);</li>
+ *   <li>{@value #REPLAY_PROPERTY} – messaggi conservati per giocatore
+ *       (default 256, al massimo metà di {@link ClientHandler#MAX_PENDING_FRAMES}).</li>
+ * </ul>
+ */
+public final class SessionManager {
+
+    /** Proprietà di sistema per il periodo di grazia (secondi). */
+    public static final String GRACE_PROPERTY = "ectotext.session.graceSeconds";
+
+    /** Proprietà di sistema per la dimensione del buffer di replay. */
+    public static final String REPLAY_PROPERTY = "ectotext.session.replayFrames";
+
+    private static final Duration GRACE_PERIOD = Duration.ofSeconds(Long.getLong(GRACE_PROPERTY, 60));
+    private static final int REPLAY_CAPACITY = Math.clamp(Integer.getInteger(REPLAY_PROPERTY, 256),
+            1, ClientHandler.MAX_PENDING_FRAMES / 2);
+
+    private static final Map<String, Session> SESSIONS = new ConcurrentHashMap<>();
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ScheduledExecutorService EXPIRY = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "session-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SessionManager() {}
+
+    /** @return tempo per cui una sessione disconnessa resta riprendibile */
+    public static Duration getGracePeriod() {
+        return GRACE_PERIOD;
+    }
+
+    /** @return messaggi conservati per ogni sessione */
+    public static int getReplayCapacity() {
+        return REPLAY_CAPACITY;
+    }
+
+    /**
+     * Apre una sessione per un giocatore appena entrato in una stanza.
+     * <p>
+     * Il messaggio di ingresso viene costruito con il token della nuova
+     * sessione e inviato prima di ogni altro messaggio registrato.
+     * </p>
+     *
+     * @param roomName   nome della stanza
+     * @param playerName nickname del giocatore
+     * @param client     connessione del giocatore
+     * @param greeting   funzione che, dato il token, restituisce il messaggio di ingresso
+     * @return sessione aperta
+     */
+    public static Session open(String roomName, String playerName, ClientHandler client,
+                               Function<String, String> greeting) {
+        Session session = new Session(newToken(), roomName, playerName, REPLAY_CAPACITY);
+        SESSIONS.put(session.getToken(), session);
+        session.attach(client, greeting.apply(session.getToken()));
+        return session;
+    }
+
+    /**
+     * Adotta la sessione di un giocatore arrivato con una stanza migrata da
+     * un altro nodo.
+     * <p>
+     * La sessione mantiene il token originale e resta disconnessa finché il
+     * client non la riprende; scaduto il periodo di grazia viene eseguita
+     * l'azione indicata.
+     * </p>
+     *
+     * @param token      token della sessione sul nodo di origine
+     * @param roomName   nome della stanza
+     * @param playerName nickname del giocatore
+     * @param onExpire   azione eseguita se la sessione non viene ripresa in tempo
+     * @return sessione adottata, o {@code null} se il token è già in uso
+     */
+    public static Session adopt(String token, String roomName, String playerName, Runnable onExpire) {
+        Session session = new Session(token, roomName, playerName, REPLAY_CAPACITY, true);
+        if (SESSIONS.putIfAbsent(token, session) != null) {
+            return null;
+        }
+
+        EXPIRY.schedule(() -> {
+            if (session.expireIfDetached(0)) {
+                SESSIONS.remove(token);
+                onExpire.run();
+            }
+        }, GRACE_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+        return session;
+    }
+
+    /**
+     * Cerca una sessione attiva.
+     *
+     * @param token token della sessione
+     * @return sessione, o {@code null} se sconosciuta o scaduta
+     */
+    public static Session find(String token) {
+        return token == null ? null : SESSIONS.get(token);
+    }
+
+    /**
+     * Separa la sessione di una connessione terminata e pianifica la scadenza.
+     *
+     * @param client   connessione terminata
+     * @param onExpire azione eseguita se la sessione non viene ripresa in tempo
+     * @return {@code true} se la connessione aveva una sessione riprendibile
+     */
+    public static boolean suspend(ClientHandler client, Runnable onExpire) {
+        Session session = client.getSession();
+        if (session == null) {
+            return false;
+        }
+
+        long generation = session.detach(client);
+        if (generation < 0) {
+            return false;
+        }
+
+        EXPIRY.schedule(() -> {
+            if (session.expireIfDetached(generation)) {
+                SESSIONS.remove(session.getToken());
+                onExpire.run();
+            }
+        }, GRACE_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Chiude la sessione associata a una connessione, se presente.
+     * Usato quando il giocatore lascia la stanza o la stanza viene eliminata.
+     *
+     * @param client connessione del giocatore
+     */
+    public static void close(ClientHandler client) {
+        Session session = client.getSession();
+        if (session != null) {
+            SESSIONS.remove(session.getToken());
+            session.expire();
+        }
+    }
+
+    /**
+     * Chiude una sessione non associata a una connessione, ad esempio quella
+     * di un giocatore disconnesso quando la sua stanza lascia il nodo.
+     *
+     * @param session sessione da chiudere
+     */
+    public static void close(Session session) {
+        SESSIONS.remove(session.getToken());
+        session.expire();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -1,6 +1,8 @@
 package org.javamale.ectotext.server.network;
 
+import org.javamale.ectotext.common.packet.Packet;
 import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
 
 import java.io.IOException;
 import java.net.ServerSocket;
@@ -76,6 +78,108 @@ public class SocketServer extends Thread {
         return PORT;
     }
 
+    /**
+     * Verifica che il server stia accettando nuove connessioni.
+     *
+     * @return {@code true} se il thread di accettazione è attivo e il socket è aperto
+     */
+    public boolean isAccepting() {
+        return isAlive() && !serverSocket.isClosed();
+    }
+
+    /**
+     * Ottiene il numero di client attualmente connessi.
+     *
+     * @return numero di connessioni aperte
+     */
+    public int getClientCount() {
+        synchronized (clients) {
+            return clients.size();
+        }
+    }
+
+    /**
+     * Ottiene il numero totale di messaggi in attesa di invio.
+     *
+     * @return somma delle code di uscita di tutti i client
+     * @see ClientHandler#getPendingFrames()
+     */
+    public long getPendingFrames() {
+        synchronized (clients) {
+            long total = 0;
+            for (ClientHandler client : clients) {
+                total += client.getPendingFrames();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Ottiene la coda di uscita più lunga tra i client connessi.
+     *
+     * @return numero di messaggi in attesa sul client più lento
+     * @see ClientHandler#getPendingFrames()
+     */
+    public int getMaxPendingFrames() {
+        synchronized (clients) {
+            int max = 0;
+            for (ClientHandler client : clients) {
+                max = Math.max(max, client.getPendingFrames());
+            }
+            return max;
+        }
+    }
+
+    /**
+     * Ottiene il numero di client con un pacchetto in elaborazione.
+     *
+     * @return numero di pacchetti in elaborazione
+     * @see ClientHandler#isHandling()
+     */
+    public int getHandlingCount() {
+        synchronized (clients) {
+            int count = 0;
+            for (ClientHandler client : clients) {
+                if (client.isHandling()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Invia un pacchetto a tutti i client connessi.
+     * Il pacchetto viene serializzato una sola volta.
+     *
+     * @param packet pacchetto da inviare
+     */
+    public void sendToAll(Packet packet) {
+        String frame = packet.toBaseJson();
+        ClientHandler[] recipients;
+        synchronized (clients) {
+            recipients = clients.toArray(new ClientHandler[0]);
+        }
+
+        ServerMetrics.packetsOut(packet.getType(), recipients.length);
+        for (ClientHandler client : recipients) {
+            client.sendFrame(frame);
+        }
+    }
+
+    /**
+     * Smette di accettare nuove connessioni, lasciando aperte quelle attive.
+     * Usato all'inizio dell'arresto ordinato.
+     */
+    public void stopAccepting() {
+        this.interrupt();
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
     /**
      * Arresta il server in modo ordinato.
      * Questo metodo:
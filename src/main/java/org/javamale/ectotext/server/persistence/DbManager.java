@@ -1,5 +1,8 @@
 package org.javamale.ectotext.server.persistence;
 
+import org.javamale.ectotext.server.persistence.migration.MigrationRunner;
+import org.javamale.ectotext.server.persistence.storage.Storage;
+
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -10,8 +13,8 @@ import java.sql.Statement;
  * Classe DbManager.
  * <p>
  * Responsabilità principale di DbManager: gestire la connessione al database H2,
- * assicurare l’unicità dell’istanza tramite pattern Singleton e creare le tabelle
- * al primo avvio se il database non esiste.
+ * assicurare l’unicità dell’istanza tramite pattern Singleton e portare lo schema
+ * all'ultima versione con {@link MigrationRunner} a ogni apertura.
  * </p>
  */
 public class DbManager {
@@ -24,10 +27,15 @@ public class DbManager {
      * Connessione al database.
      */
     private final Connection con;
+    /**
+     * Proprietà di sistema per il percorso base del database, usata per
+     * separare i database di più nodi sulla stessa macchina.
+     */
+    public static final String DB_PATH_PROPERTY = "ectotext.db.path";
     /**
      * Percorso base del database.
      */
-    private static final String DB_PATH = "./ectotextdb";
+    private static final String DB_PATH = System.getProperty(DB_PATH_PROPERTY, "./ectotextdb");
     /**
      * File fisico del database H2.
      */
@@ -38,21 +46,36 @@ public class DbManager {
     private static final String DB_FILE_TRACE = DB_PATH + ".trace.db";
 
     /**
-     * Costruttore privato per Singleton. Inizializza la connessione e crea le tabelle se necessario.
-     *
-     * @throws SQLException se la connessione o il setup fallisce
+     * URL JDBC del database: su file, oppure in memoria con il supporto
+     * {@link Storage#H2_MEMORY}, nel qual caso il database viene eliminato
+     * alla chiusura dell'ultima connessione. Chiusura esplicita con close():
+     * l'arresto ordinato salva gli stati di gioco dopo che la JVM ha iniziato
+     * la terminazione.
      */
-    private DbManager() throws SQLException {
-        String url = "jdbc:h2:" + DB_PATH;
-        String user = "sa";
-        String password = "";
+    private static final String DB_URL = (Storage.H2_MEMORY.equals(Storage.configuredName())
+            ? "jdbc:h2:mem:ectotext" : "jdbc:h2:" + DB_PATH) + ";DB_CLOSE_ON_EXIT=FALSE";
+    private static final String DB_USER = "sa";
+    private static final String DB_PASSWORD = "";
 
-        boolean dbExists = new File(DB_FILE).exists();
+    /**
+     * Migrazioni dello schema applicate all'apertura del database.
+     */
+    private final MigrationRunner migrations;
 
-        con = DriverManager.getConnection(url, user, password);
+    /**
+     * Costruttore privato per Singleton. Inizializza la connessione e porta
+     * lo schema all'ultima versione; l'eventuale recupero dei dati
+     * dell'ultima migrazione prosegue in background su una seconda connessione.
+     *
+     * @throws SQLException se la connessione o la migrazione fallisce
+     */
+    private DbManager() throws SQLException {
+        con = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
 
-        if (!dbExists) {
-            setupDatabase();
+        migrations = new MigrationRunner(con, MigrationRunner.MIGRATIONS);
+        migrations.migrate();
+        if (migrations.hasPendingBackfill()) {
+            migrations.startBackfill(DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD));
         }
     }
 
@@ -76,6 +99,34 @@ public class DbManager {
         return instance;
     }
 
+    /**
+     * Chiude la connessione singleton, se aperta.
+     * Una chiamata successiva a {@link #getInstance()} riapre il database.
+     */
+    public static void close() {
+        synchronized (DbManager.class) {
+            if (instance == null) {
+                return;
+            }
+            instance.migrations.close();
+            try {
+                instance.con.close();
+            } catch (SQLException e) {
+                System.err.println(e.getMessage());
+            }
+            instance = null;
+        }
+    }
+
+    /**
+     * Restituisce il percorso base del database, senza estensione.
+     *
+     * @return percorso configurato con {@link #DB_PATH_PROPERTY}
+     */
+    public static String getDbPath() {
+        return DB_PATH;
+    }
+
     /**
      * Restituisce la Connection singleton a H2.
      *
@@ -95,60 +146,52 @@ public class DbManager {
     }
 
     /**
-     * Esegue la creazione delle tabelle del database (se non esistono già).
+     * Verifica che il database risponda eseguendo una query banale sulla
+     * connessione condivisa.
      *
-     * @throws SQLException se la creazione delle tabelle fallisce
+     * @param timeoutSeconds tempo massimo di esecuzione della query
+     * @throws SQLException se la query fallisce o supera il tempo massimo
+     */
+    public static void ping(int timeoutSeconds) throws SQLException {
+        try (Statement statement = getConnection().createStatement()) {
+            statement.setQueryTimeout(timeoutSeconds);
+            statement.execute("SELECT 1");
+        }
+    }
+
+    /**
+     * Rende subito leggibili nel nuovo schema i dati di una stanza, se il
+     * recupero in background dell'ultima migrazione non li ha ancora copiati.
+     * Va chiamato prima di leggere lo stato di gioco di una stanza.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @throws SQLException se la copia dei dati fallisce
+     */
+    public static void prepareRoom(String gameRoomName) throws SQLException {
+        getInstance().migrations.prepareRoom(gameRoomName);
+    }
+
+    /**
+     * Esegue le migrazioni dello schema non ancora applicate.
+     *
+     * @throws SQLException se una migrazione fallisce
      */
     public void setupDatabase() throws SQLException {
-        String sqlCreateTables = """
-            CREATE TABLE IF NOT EXISTS game_rooms (
-                gr_name VARCHAR(30) PRIMARY KEY,
-                gr_password VARCHAR(30) NOT NULL
-            );
-            
-            CREATE TABLE IF NOT EXISTS game_states (
-                id UUID PRIMARY KEY,
-                gr_name VARCHAR(30),
-                FOREIGN KEY (gr_name) REFERENCES game_rooms(gr_name) ON UPDATE CASCADE ON DELETE CASCADE
-            );
-            
-            CREATE TABLE IF NOT EXISTS game_flags (
-                game_state_id UUID NOT NULL,
-                flag_key VARCHAR(100) NOT NULL,
-                PRIMARY KEY (game_state_id, flag_key),
-                FOREIGN KEY (game_state_id) REFERENCES game_states(id) ON UPDATE CASCADE ON DELETE CASCADE
-            );
-            
-            CREATE TABLE IF NOT EXISTS characters (
-                game_state_id UUID NOT NULL,
-                character_name VARCHAR(100) NOT NULL,
-                character_display_name VARCHAR(100) NOT NULL,
-                character_current_room VARCHAR(100) NOT NULL,
-                PRIMARY KEY (game_state_id, character_name),
-                FOREIGN KEY (game_state_id) REFERENCES game_states(id) ON UPDATE CASCADE ON DELETE CASCADE
-            );
-            
-            CREATE TABLE IF NOT EXISTS npcs (
-                game_state_id UUID NOT NULL,
-                npc_name VARCHAR(100) NOT NULL,
-                npc_display_name VARCHAR(100) NOT NULL,
-                npc_current_room VARCHAR(100) NOT NULL,
-                PRIMARY KEY (game_state_id, npc_name),
-                FOREIGN KEY (game_state_id) REFERENCES game_states(id) ON UPDATE CASCADE ON DELETE CASCADE
-            );
-            
-            CREATE TABLE IF NOT EXISTS character_inventories (
-                game_state_id UUID NOT NULL,
-                character_name VARCHAR(100) NOT NULL,
-                item_name VARCHAR(100) NOT NULL,
-                item_display_name VARCHAR(100) NOT NULL,
-                item_description VARCHAR(100) NOT NULL,
-                PRIMARY KEY (game_state_id, character_name, item_name),
-                FOREIGN KEY (game_state_id, character_name) REFERENCES characters(game_state_id, character_name) ON UPDATE CASCADE ON DELETE CASCADE
-            );
-            """;
-        Statement stmt = con.createStatement();
-        stmt.executeUpdate(sqlCreateTables);
+        migrations.migrate();
+    }
+
+    /**
+     * Crea le tabelle sulla connessione indicata applicando tutte le
+     * migrazioni, compreso il recupero dei dati. Permette di preparare
+     * database diversi da quello principale, ad esempio un'istanza H2 in memoria.
+     *
+     * @param connection connessione al database da preparare
+     * @throws SQLException se la creazione delle tabelle fallisce
+     */
+    public static void setupDatabase(Connection connection) throws SQLException {
+        MigrationRunner runner = new MigrationRunner(connection, MigrationRunner.MIGRATIONS);
+        runner.migrate();
+        runner.completeBackfill();
     }
 
     /**
@@ -0,0 +1,255 @@
+package org.javamale.ectotext.server.persistence.cache;
+
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.GameState;
+import org.javamale.ectotext.server.metrics.MetricsRegistry;
+import org.javamale.ectotext.server.persistence.journal.JournalCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache in memoria dell'ultimo stato di gioco salvato di ogni stanza.
+ * <p>
+ * Gli stati sono conservati codificati con {@link JournalCodec}, quindi
+ * immutabili e di dimensione nota: ogni lettura ricostruisce una copia
+ * indipendente, che il motore di gioco può modificare senza alterare la cache.
+ * </p>
+ * La memoria occupata è limitata in byte, non in numero di stanze:
+ * <ul>
+ *   <li>il limite è {@value #DEFAULT_MAX_BYTES} byte, configurabile con
+ *       {@value #MAX_BYTES_PROPERTY}; {@code 0} disattiva la cache;</li>
+ *   <li>superato il limite vengono scartate le stanze usate meno di recente;</li>
+ *   <li>uno stato più grande dell'intero limite non viene conservato.</li>
+ * </ul>
+ * Letture riuscite, letture mancate e stanze scartate sono esportate come
+ * metriche insieme alla memoria occupata. Ogni connessione al database ha la
+ * propria cache ({@link #of(Connection)}), condivisa dai DAO che la usano.
+ */
+public final class GameStateCache {
+
+    /** Proprietà di sistema con la memoria massima della cache, in byte. */
+    public static final String MAX_BYTES_PROPERTY = "ectotext.stateCache.maxBytes";
+
+    /** Memoria massima predefinita: 8 MiB. */
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * Stima dell'occupazione di una voce oltre allo stato codificato:
+     * intestazioni dell'array e della chiave, nodo della mappa.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private static final LongAdder HITS = MetricsRegistry.counter("ectotext_game_state_cache_hits_total",
+            "Game state reads served by the in-memory cache");
+    private static final LongAdder MISSES = MetricsRegistry.counter("ectotext_game_state_cache_misses_total",
+            "Game state reads not found in the in-memory cache");
+    private static final LongAdder EVICTIONS = MetricsRegistry.counter("ectotext_game_state_cache_evictions_total",
+            "Game states evicted from the in-memory cache to stay within its memory limit");
+
+    /** Cache create, per le metriche di occupazione. */
+    private static final Set<GameStateCache> CACHES = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /** Cache delle connessioni, create al primo utilizzo. */
+    private static final Map<Connection, GameStateCache> BY_CONNECTION =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    static {
+        MetricsRegistry.gauge("ectotext_game_state_cache_bytes", "Estimated memory used by the game state cache",
+                () -> sum(GameStateCache::getBytes));
+        MetricsRegistry.gauge("ectotext_game_state_cache_entries", "Game states held by the game state cache",
+                () -> sum(GameStateCache::size));
+    }
+
+    private final long maxBytes;
+
+    /** Stati codificati per stanza, in ordine di accesso. */
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * Crea una cache con il limite di memoria configurato con
+     * {@value #MAX_BYTES_PROPERTY}.
+     */
+    public GameStateCache() {
+        this(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Crea una cache con il limite di memoria indicato.
+     *
+     * @param maxBytes memoria massima in byte, {@code 0} per disattivarla
+     */
+    public GameStateCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        CACHES.add(this);
+    }
+
+    /**
+     * Restituisce la cache degli stati salvati tramite una connessione,
+     * creandola al primo utilizzo con il limite configurato.
+     *
+     * @param connection connessione al database
+     * @return cache condivisa della connessione
+     */
+    public static GameStateCache of(Connection connection) {
+        return BY_CONNECTION.computeIfAbsent(connection, c -> new GameStateCache());
+    }
+
+    /**
+     * Restituisce una copia dell'ultimo stato salvato di una stanza.
+     *
+     * @param roomName        nome della stanza
+     * @param gameDescription descrizione dell'avventura, per risolvere le stanze
+     * @return copia dello stato, o {@code null} se la stanza non è in cache
+     */
+    public GameState get(String roomName, GameDescription gameDescription) {
+        if (maxBytes == 0) {
+            return null;
+        }
+
+        byte[] state;
+        synchronized (this) {
+            state = entries.get(roomName);
+        }
+        if (state == null) {
+            MISSES.increment();
+            return null;
+        }
+
+        try {
+            GameState gameState = JournalCodec.decodeState(
+                    new DataInputStream(new ByteArrayInputStream(state)), gameDescription);
+            HITS.increment();
+            return gameState;
+        } catch (IOException e) {
+            System.err.println("Cached game state of " + roomName + " is not readable: " + e.getMessage());
+            remove(roomName);
+            MISSES.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Registra lo stato appena salvato di una stanza, scartando le stanze
+     * usate meno di recente se il limite di memoria viene superato.
+     *
+     * @param roomName  nome della stanza
+     * @param gameState stato salvato
+     */
+    public void put(String roomName, GameState gameState) {
+        if (maxBytes == 0) {
+            return;
+        }
+
+        byte[] state = JournalCodec.encodeState(gameState);
+        synchronized (this) {
+            release(roomName, entries.remove(roomName));
+            if (weight(roomName, state) > maxBytes) {
+                return;
+            }
+            entries.put(roomName, state);
+            bytes += weight(roomName, state);
+
+            Iterator<Map.Entry<String, byte[]>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, byte[]> entry = eldest.next();
+                eldest.remove();
+                bytes -= weight(entry.getKey(), entry.getValue());
+                EVICTIONS.increment();
+            }
+        }
+    }
+
+    /**
+     * Rimuove lo stato di una stanza.
+     *
+     * @param roomName nome della stanza
+     */
+    public synchronized void remove(String roomName) {
+        release(roomName, entries.remove(roomName));
+    }
+
+    /**
+     * Rimuove lo stato con l'UUID indicato, in qualunque stanza si trovi.
+     *
+     * @param uuid UUID dello stato di gioco
+     */
+    public synchronized void remove(UUID uuid) {
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, byte[]> entry = it.next();
+            if (uuid.equals(uuidOf(entry.getValue()))) {
+                it.remove();
+                bytes -= weight(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /** Svuota la cache. */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /** @return memoria stimata occupata dagli stati, in byte */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /** @return numero di stanze in cache */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** @return memoria massima della cache, in byte */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private void release(String roomName, byte[] state) {
+        if (state != null) {
+            bytes -= weight(roomName, state);
+        }
+    }
+
+    private static long weight(String roomName, byte[] state) {
+        return state.length + 2L * roomName.length() + ENTRY_OVERHEAD_BYTES;
+    }
+
+    /** Legge l'UUID in testa a uno stato codificato da {@link JournalCodec#encodeState}. */
+    private static UUID uuidOf(byte[] state) {
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            msb = (msb << 8) | (state[i] & 0xFF);
+            lsb = (lsb << 8) | (state[Long.BYTES + i] & 0xFF);
+        }
+        return new UUID(msb, lsb);
+    }
+
+    private static long sum(ToLongFunction<GameStateCache> value) {
+        List<GameStateCache> caches;
+        synchronized (CACHES) {
+            caches = List.copyOf(CACHES);
+        }
+        return caches.stream().mapToLong(value).sum();
+    }
+}
@@ -4,7 +4,6 @@ import org.javamale.ectotext.common.model.Character;
 
 import java.sql.SQLException;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Interfaccia CharacterDAO.
@@ -18,27 +17,27 @@ public interface CharacterDAO {
     /**
      * Inserisce o aggiorna un oggetto Character associato a uno specifico stato di gioco.
      *
-     * @param gameStateID Identificativo univoco dello stato di gioco.
+     * @param gameStateID Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @param character   Oggetto Character da inserire o aggiornare.
      * @throws SQLException in caso di errori di accesso al database.
      */
-    void merge(UUID gameStateID, Character character) throws SQLException;
+    void merge(int gameStateID, Character character) throws SQLException;
 
     /**
      * Elimina un oggetto Character associato a uno stato di gioco.
      *
-     * @param gameStateID Identificativo univoco dello stato di gioco.
+     * @param gameStateID Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @param character   Oggetto Character da eliminare.
      * @throws SQLException in caso di errori di accesso al database.
      */
-    void delete(UUID gameStateID, Character character) throws SQLException;
+    void delete(int gameStateID, Character character) throws SQLException;
 
     /**
      * Restituisce la lista di tutti i Character associati a uno stato di gioco.
      *
-     * @param gameStateID Identificativo univoco dello stato di gioco.
+     * @param gameStateID Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @return Lista di oggetti Character relativi allo stato di gioco specificato.
      * @throws SQLException in caso di errori di accesso al database.
      */
-    List<Character> getAll(UUID gameStateID) throws SQLException;
+    List<Character> getAll(int gameStateID) throws SQLException;
 }
@@ -4,7 +4,6 @@ import org.javamale.ectotext.common.model.GameFlag;
 
 import java.sql.SQLException;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Interfaccia GameFlagDAO.
@@ -18,27 +17,27 @@ public interface GameFlagDAO {
     /**
      * Inserisce o aggiorna un oggetto GameFlag associato a uno specifico stato di gioco.
      *
-     * @param gameStateID Identificativo univoco dello stato di gioco.
+     * @param gameStateID Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @param gameFlag    Oggetto GameFlag da inserire o aggiornare.
      * @throws SQLException in caso di errori di accesso al database.
      */
-    void merge(UUID gameStateID, GameFlag gameFlag) throws SQLException;
+    void merge(int gameStateID, GameFlag gameFlag) throws SQLException;
 
     /**
      * Elimina un oggetto GameFlag associato a uno stato di gioco.
      *
-     * @param gameStateID Identificativo univoco dello stato di gioco.
+     * @param gameStateID Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @param gameFlag    Oggetto GameFlag da eliminare.
      * @throws SQLException in caso di errori di accesso al database.
      */
-    void delete(UUID gameStateID, GameFlag gameFlag) throws SQLException;
+    void delete(int gameStateID, GameFlag gameFlag) throws SQLException;
 
     /**
      * Restituisce la lista di tutti i GameFlag associati a uno stato di gioco.
      *
-     * @param gameStateID Identificativo univoco dello stato di gioco.
+     * @param gameStateID Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @return Lista di oggetti GameFlag relativi allo stato di gioco specificato.
      * @throws SQLException in caso di errori di accesso al database.
      */
-    List<GameFlag> getAll(UUID gameStateID) throws SQLException;
+    List<GameFlag> getAll(int gameStateID) throws SQLException;
 }
@@ -3,6 +3,7 @@ package org.javamale.ectotext.server.persistence.dao;
 import org.javamale.ectotext.server.core.GameRoom;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -22,6 +23,15 @@ public interface GameRoomDAO {
      */
     void add(GameRoom gameRoom) throws SQLException;
 
+    /**
+     * Aggiunge più stanze di gioco al database in un'unica transazione:
+     * se l'inserimento di una stanza fallisce non ne viene aggiunta nessuna.
+     *
+     * @param gameRooms Stanze da aggiungere, con nomi distinti.
+     * @throws SQLException in caso di errori di accesso al database o se una stanza esiste già.
+     */
+    void addAll(Collection<GameRoom> gameRooms) throws SQLException;
+
     /**
      * Elimina una stanza di gioco dal database tramite il suo nome.
      *
@@ -22,6 +22,37 @@ public interface GameStateDAO {
      */
     void save(String gameRoomName, GameState gameState) throws SQLException;
 
+    /**
+     * Salva lo stato della partita dopo un comando di gioco.
+     * <p>
+     * Le implementazioni che registrano la cronologia della partita possono
+     * conservare anche il comando; quella predefinita lo ignora.
+     * </p>
+     *
+     * @param gameRoomName Nome della stanza di gioco.
+     * @param gameState    Oggetto GameState da salvare.
+     * @param playerName   Giocatore che ha inviato il comando.
+     * @param command      Comando eseguito.
+     * @throws SQLException in caso di errori di accesso al database.
+     */
+    default void save(String gameRoomName, GameState gameState, String playerName, String command) throws SQLException {
+        save(gameRoomName, gameState);
+    }
+
+    /**
+     * Rende lo stato già salvato di una stanza indipendente dalla cronologia
+     * dei comandi, ad esempio scrivendone un'istantanea completa.
+     * <p>
+     * Le implementazioni che non conservano una cronologia non fanno nulla.
+     * </p>
+     *
+     * @param gameRoomName Nome della stanza di gioco.
+     * @param gameState    Oggetto GameState salvato per ultimo.
+     * @throws SQLException in caso di errori di accesso al database.
+     */
+    default void checkpoint(String gameRoomName, GameState gameState) throws SQLException {
+    }
+
     /**
      * Elimina lo stato della partita dal database.
      *
@@ -4,7 +4,6 @@ import org.javamale.ectotext.common.model.NPC;
 
 import java.sql.SQLException;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Interfaccia NPCDAO.
@@ -18,27 +17,27 @@ public interface NPCDAO {
     /**
      * Inserisce o aggiorna un NPC associato a uno specifico stato di gioco.
      *
-     * @param gameStateID  Identificativo univoco dello stato di gioco.
+     * @param gameStateID  Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @param npc          NPC da inserire o aggiornare.
      * @throws SQLException In caso di errore durante le operazioni sul database.
      */
-    void merge(UUID gameStateID, NPC npc) throws SQLException;
+    void merge(int gameStateID, NPC npc) throws SQLException;
 
     /**
      * Elimina un NPC associato a uno specifico stato di gioco.
      *
-     * @param gameStateID  Identificativo univoco dello stato di gioco.
+     * @param gameStateID  Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @param npc          NPC da eliminare.
      * @throws SQLException In caso di errore durante le operazioni sul database.
      */
-    void delete(UUID gameStateID, NPC npc) throws SQLException;
+    void delete(int gameStateID, NPC npc) throws SQLException;
 
     /**
      * Restituisce tutti gli NPC associati a uno specifico stato di gioco.
      *
-     * @param gameStateID  Identificativo univoco dello stato di gioco.
+     * @param gameStateID  Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @return Lista degli NPC presenti nello stato di gioco indicato.
      * @throws SQLException In caso di errore durante le operazioni sul database.
      */
-    List<NPC> getAll(UUID gameStateID) throws SQLException;
+    List<NPC> getAll(int gameStateID) throws SQLException;
 }
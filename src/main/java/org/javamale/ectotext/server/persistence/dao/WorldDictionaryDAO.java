@@ -0,0 +1,71 @@
+package org.javamale.ectotext.server.persistence.dao;
+
+import org.javamale.ectotext.common.model.Character;
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.Item;
+import org.javamale.ectotext.common.model.NPC;
+
+import java.sql.SQLException;
+
+/**
+ * Interfaccia WorldDictionaryDAO.
+ * <p>
+ * Responsabilità principale di WorldDictionaryDAO: assegnare gli identificatori
+ * interi dei dati statici del mondo (tabelle {@code world_*}), usati come
+ * chiavi compatte nelle tabelle dello stato mutabile. Un valore non ancora
+ * presente viene inserito al primo utilizzo.
+ * </p>
+ */
+public interface WorldDictionaryDAO {
+
+    /**
+     * Restituisce l'identificatore di una stanza del mondo.
+     *
+     * @param roomName Nome della stanza.
+     * @return Identificatore della stanza.
+     * @throws SQLException in caso di errori di accesso al database.
+     */
+    int roomId(String roomName) throws SQLException;
+
+    /**
+     * Restituisce l'identificatore di un personaggio (nome e nome visualizzato).
+     *
+     * @param character Personaggio.
+     * @return Identificatore del personaggio.
+     * @throws SQLException in caso di errori di accesso al database.
+     */
+    int characterId(Character character) throws SQLException;
+
+    /**
+     * Restituisce l'identificatore di un NPC (nome e nome visualizzato).
+     *
+     * @param npc NPC.
+     * @return Identificatore dell'NPC.
+     * @throws SQLException in caso di errori di accesso al database.
+     */
+    int npcId(NPC npc) throws SQLException;
+
+    /**
+     * Restituisce l'identificatore di un oggetto (nome, nome visualizzato e descrizione).
+     *
+     * @param item Oggetto.
+     * @return Identificatore dell'oggetto.
+     * @throws SQLException in caso di errori di accesso al database.
+     */
+    int itemId(Item item) throws SQLException;
+
+    /**
+     * Restituisce l'identificatore di un flag di gioco.
+     *
+     * @param gameFlag Flag di gioco.
+     * @return Identificatore del flag.
+     * @throws SQLException in caso di errori di accesso al database.
+     */
+    int flagId(GameFlag gameFlag) throws SQLException;
+
+    /**
+     * Scarta gli identificatori tenuti in memoria, da chiamare dopo il
+     * rollback di una transazione che potrebbe averne inseriti di nuovi.
+     */
+    void invalidate();
+}
@@ -6,6 +6,7 @@ import org.javamale.ectotext.common.model.Item;
 import org.javamale.ectotext.common.model.Room;
 import org.javamale.ectotext.server.persistence.dao.CharacterDAO;
 import org.javamale.ectotext.server.persistence.dao.InventoryDAO;
+import org.javamale.ectotext.server.persistence.dao.WorldDictionaryDAO;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -13,7 +14,6 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Classe CharacterDAOImpl.
@@ -39,56 +39,63 @@ public class CharacterDAOImpl implements CharacterDAO {
      */
     private final GameDescription gameDescription;
 
+    /**
+     * Dizionario degli identificatori di personaggi e stanze.
+     */
+    private final WorldDictionaryDAO dictionary;
+
     /**
      * Costruttore.
      *
      * @param con             connessione al database
      * @param inventoryDAO    DAO per gestire l'inventario del personaggio
+     * @param dictionary      dizionario dei dati statici del mondo
      * @param gameDescription descrizione della mappa e delle entità del gioco
      */
-    public CharacterDAOImpl(Connection con, InventoryDAO inventoryDAO, GameDescription gameDescription) {
+    public CharacterDAOImpl(Connection con, InventoryDAO inventoryDAO, WorldDictionaryDAO dictionary,
+                            GameDescription gameDescription) {
         this.con = con;
         this.inventoryDAO = inventoryDAO;
+        this.dictionary = dictionary;
         this.gameDescription = gameDescription;
     }
 
     /**
      * Salva o aggiorna un personaggio nel database, compreso l'inventario.
      *
-     * @param gameStateID id dello stato di gioco
+     * @param gameStateID id compatto dello stato di gioco ({@code gs_id})
      * @param character   personaggio da salvare/aggiornare
      * @throws SQLException in caso di errore SQL
      */
     @Override
-    public void merge(UUID gameStateID, Character character) throws SQLException {
+    public void merge(int gameStateID, Character character) throws SQLException {
         String sql = """
-            merge into characters (
-                game_state_id, character_name, character_display_name, character_current_room
-            ) values (?, ?, ?, ?)
+            merge into state_characters (gs_id, character_id, room_id)
+            values (?, ?, ?)
         """;
 
         boolean autoCommit = con.getAutoCommit();
         con.setAutoCommit(false);
 
         try {
-            List<Item> previous = inventoryDAO.getAll(gameStateID, character.getName());
+            int characterID = dictionary.characterId(character);
+            List<Item> previous = inventoryDAO.getAll(gameStateID, characterID);
 
             try (PreparedStatement ps = con.prepareStatement(sql)) {
-                ps.setObject(1, gameStateID);
-                ps.setString(2, character.getName());
-                ps.setString(3, character.getDisplayName());
-                ps.setString(4, character.getCurrentRoom().getName());
+                ps.setInt(1, gameStateID);
+                ps.setInt(2, characterID);
+                ps.setInt(3, dictionary.roomId(character.getCurrentRoom().getName()));
                 ps.executeUpdate();
             }
 
             for (Item item : previous) {
                 if(!character.hasItem(item.getName())){
-                    inventoryDAO.delete(gameStateID, character.getName(), item);
+                    inventoryDAO.delete(gameStateID, characterID, item);
                 }
             }
 
             for (Item item : character.getInventory()) {
-                inventoryDAO.merge(gameStateID, character.getName(), item);
+                inventoryDAO.merge(gameStateID, characterID, item);
             }
 
             //con.commit();
@@ -104,17 +111,17 @@ public class CharacterDAOImpl implements CharacterDAO {
     /**
      * Elimina un personaggio dal database.
      *
-     * @param gameStateID id dello stato di gioco
+     * @param gameStateID id compatto dello stato di gioco ({@code gs_id})
      * @param character   personaggio da eliminare
      * @throws SQLException in caso di errore SQL
      */
     @Override
-    public void delete(UUID gameStateID, Character character) throws SQLException {
-        String sql = "delete from characters where game_state_id = ? and character_name = ?";
+    public void delete(int gameStateID, Character character) throws SQLException {
+        String sql = "delete from state_characters where gs_id = ? and character_id = ?";
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
-            ps.setString(2, character.getName());
+            ps.setInt(1, gameStateID);
+            ps.setInt(2, dictionary.characterId(character));
             ps.executeUpdate();
         }
     }
@@ -122,34 +129,36 @@ public class CharacterDAOImpl implements CharacterDAO {
     /**
      * Restituisce la lista di tutti i personaggi associati a uno stato di gioco.
      *
-     * @param gameStateID id dello stato di gioco
+     * @param gameStateID id compatto dello stato di gioco ({@code gs_id})
      * @return lista di personaggi
      * @throws SQLException in caso di errore SQL
      */
     @Override
-    public List<Character> getAll(UUID gameStateID) throws SQLException {
+    public List<Character> getAll(int gameStateID) throws SQLException {
         String sql = """
-            select character_name, character_display_name, character_current_room
-            from characters
-            where game_state_id = ?
+            select s.character_id, w.character_name, w.character_display_name, r.room_name
+            from state_characters s
+            join world_characters w on w.character_id = s.character_id
+            join world_rooms r on r.room_id = s.room_id
+            where s.gs_id = ?
         """;
 
         List<Character> characters = new ArrayList<>();
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
+            ps.setInt(1, gameStateID);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     String name = rs.getString("character_name");
                     String displayName = rs.getString("character_display_name");
-                    String roomName = rs.getString("character_current_room");
+                    String roomName = rs.getString("room_name");
 
                     Room room = gameDescription.getGameMap().getRoom(roomName);
                     Character.CharacterBuilder builder = new Character.CharacterBuilder(name)
                             .setDisplayName(displayName)
                             .setStartingRoom(room);
 
-                    List<Item> inventory = inventoryDAO.getAll(gameStateID, name);
+                    List<Item> inventory = inventoryDAO.getAll(gameStateID, rs.getInt("character_id"));
                     builder.addItems(inventory);
 
                     characters.add(builder.build());
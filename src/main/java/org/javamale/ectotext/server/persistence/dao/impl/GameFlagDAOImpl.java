@@ -2,6 +2,7 @@ package org.javamale.ectotext.server.persistence.dao.impl;
 
 import org.javamale.ectotext.common.model.GameFlag;
 import org.javamale.ectotext.server.persistence.dao.GameFlagDAO;
+import org.javamale.ectotext.server.persistence.dao.WorldDictionaryDAO;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -9,7 +10,6 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Classe GameFlagDAOImpl.
@@ -25,28 +25,35 @@ public class GameFlagDAOImpl implements GameFlagDAO {
      */
     private final Connection con;
 
+    /**
+     * Dizionario degli identificatori dei flag.
+     */
+    private final WorldDictionaryDAO dictionary;
+
     /**
      * Costruttore.
      *
-     * @param con connessione al database
+     * @param con        connessione al database
+     * @param dictionary dizionario dei dati statici del mondo
      */
-    public GameFlagDAOImpl(Connection con) {
+    public GameFlagDAOImpl(Connection con, WorldDictionaryDAO dictionary) {
         this.con = con;
+        this.dictionary = dictionary;
     }
 
     /**
      * Inserisce o aggiorna (upsert) un flag di gioco associato a uno stato di gioco.
      *
-     * @param gameStateID identificatore dello stato di gioco (UUID)
+     * @param gameStateID identificatore compatto dello stato di gioco ({@code gs_id})
      * @param gameFlag    flag di gioco da aggiungere o aggiornare
      * @throws SQLException in caso di errore SQL
      */
     @Override
-    public void merge(UUID gameStateID, GameFlag gameFlag) throws SQLException {
-        String sql = "merge into game_flags (game_state_id, flag_key) values (?, ?)";
+    public void merge(int gameStateID, GameFlag gameFlag) throws SQLException {
+        String sql = "merge into state_flags (gs_id, flag_id) values (?, ?)";
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
-            ps.setString(2, gameFlag.getKey());
+            ps.setInt(1, gameStateID);
+            ps.setInt(2, dictionary.flagId(gameFlag));
             ps.executeUpdate();
         }
     }
@@ -54,16 +61,16 @@ public class GameFlagDAOImpl implements GameFlagDAO {
     /**
      * Rimuove un flag di gioco associato a uno stato di gioco.
      *
-     * @param gameStateID identificatore dello stato di gioco (UUID)
+     * @param gameStateID identificatore compatto dello stato di gioco ({@code gs_id})
      * @param gameFlag    flag di gioco da rimuovere
      * @throws SQLException in caso di errore SQL
      */
     @Override
-    public void delete(UUID gameStateID, GameFlag gameFlag) throws SQLException {
-        String sql = "delete from game_flags where game_state_id = ? and flag_key = ?";
+    public void delete(int gameStateID, GameFlag gameFlag) throws SQLException {
+        String sql = "delete from state_flags where gs_id = ? and flag_id = ?";
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
-            ps.setString(2, gameFlag.getKey());
+            ps.setInt(1, gameStateID);
+            ps.setInt(2, dictionary.flagId(gameFlag));
             ps.executeUpdate();
         }
     }
@@ -71,17 +78,21 @@ public class GameFlagDAOImpl implements GameFlagDAO {
     /**
      * Recupera tutti i flag di gioco associati a uno stato di gioco.
      *
-     * @param gameStateID identificatore dello stato di gioco (UUID)
+     * @param gameStateID identificatore compatto dello stato di gioco ({@code gs_id})
      * @return lista di flag di gioco (GameFlag)
      * @throws SQLException in caso di errore SQL
      */
     @Override
-    public List<GameFlag> getAll(UUID gameStateID) throws SQLException {
-        String sql = "select flag_key from game_flags where game_state_id = ?";
+    public List<GameFlag> getAll(int gameStateID) throws SQLException {
+        String sql = """
+            select w.flag_key
+            from state_flags s join world_flags w on w.flag_id = s.flag_id
+            where s.gs_id = ?
+        """;
         List<GameFlag> flags = new ArrayList<>();
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
+            ps.setInt(1, gameStateID);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     String key = rs.getString("flag_key");
@@ -1,6 +1,7 @@
 package org.javamale.ectotext.server.persistence.dao.impl;
 
 import org.javamale.ectotext.server.core.GameRoom;
+import org.javamale.ectotext.server.persistence.cache.GameStateCache;
 import org.javamale.ectotext.server.persistence.dao.GameRoomDAO;
 
 import java.sql.Connection;
@@ -8,6 +9,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -19,6 +21,22 @@ import java.util.List;
  */
 public class GameRoomDAOImpl implements GameRoomDAO {
 
+    /**
+     * Query di inserimento di una stanza.
+     */
+    private static final String SQL_INSERT =
+            "insert into game_rooms(gr_name, gr_password, gr_max_players, gr_max_spectators, gr_game) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Numero di stanze inserite da ogni statement di {@link #addAll(Collection)}.
+     */
+    private static final int ROWS_PER_INSERT = 100;
+
+    /**
+     * Query di inserimento di {@value #ROWS_PER_INSERT} stanze.
+     */
+    private static final String SQL_INSERT_ROWS = SQL_INSERT + ", (?, ?, ?, ?, ?)".repeat(ROWS_PER_INSERT - 1);
+
     /**
      * Connessione al database.
      */
@@ -41,16 +59,56 @@ public class GameRoomDAOImpl implements GameRoomDAO {
      */
     @Override
     public void add(GameRoom gameRoom) throws SQLException {
-        String query = "insert into game_rooms(gr_name, gr_password) VALUES (?, ?)";
-        try (PreparedStatement ps = con.prepareStatement(query)) {
-            ps.setString(1, gameRoom.getName());
-            ps.setString(2, gameRoom.getPassword());
+        try (PreparedStatement ps = con.prepareStatement(SQL_INSERT)) {
+            bindGameRoom(ps, 0, gameRoom);
             ps.executeUpdate();
         }
     }
 
+    /**
+     * Aggiunge più stanze di gioco in un'unica transazione. Le stanze sono
+     * inserite {@value #ROWS_PER_INSERT} alla volta con un solo statement:
+     * con H2 incorporato non ci sono viaggi di rete da risparmiare e il costo
+     * è dominato dall'esecuzione di ogni statement, che un batch JDBC non
+     * riduce.
+     *
+     * @param gameRooms stanze da aggiungere
+     * @throws SQLException in caso di errore SQL; la transazione viene annullata
+     */
+    @Override
+    public void addAll(Collection<GameRoom> gameRooms) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (PreparedStatement rows = con.prepareStatement(SQL_INSERT_ROWS);
+             PreparedStatement row = con.prepareStatement(SQL_INSERT)) {
+            List<GameRoom> chunk = new ArrayList<>(ROWS_PER_INSERT);
+            for (GameRoom gameRoom : gameRooms) {
+                chunk.add(gameRoom);
+                if (chunk.size() == ROWS_PER_INSERT) {
+                    for (int i = 0; i < ROWS_PER_INSERT; i++) {
+                        bindGameRoom(rows, i, chunk.get(i));
+                    }
+                    rows.executeUpdate();
+                    chunk.clear();
+                }
+            }
+            for (GameRoom gameRoom : chunk) {
+                bindGameRoom(row, 0, gameRoom);
+                row.executeUpdate();
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
     /**
      * Elimina una stanza di gioco dal database, identificata dal suo nome.
+     * Lo stato di gioco della stanza viene eliminato a cascata e rimosso
+     * dalla {@link GameStateCache} della connessione.
      *
      * @param roomName nome della stanza da eliminare
      * @throws SQLException in caso di errore SQL
@@ -62,6 +120,7 @@ public class GameRoomDAOImpl implements GameRoomDAO {
             ps.setString(1, roomName);
             ps.executeUpdate();
         }
+        GameStateCache.of(con).remove(roomName);
     }
 
     /**
@@ -80,8 +139,7 @@ public class GameRoomDAOImpl implements GameRoomDAO {
                 if (!rs.next()) {
                     return null;
                 }
-                String password = rs.getString("gr_password");
-                return new GameRoom(roomName, password);
+                return readGameRoom(rs);
             }
         }
     }
@@ -100,12 +158,45 @@ public class GameRoomDAOImpl implements GameRoomDAO {
         try (PreparedStatement ps = con.prepareStatement(query);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
-                String roomName = rs.getString("gr_name");
-                String password = rs.getString("gr_password");
-                gameRooms.add(new GameRoom(roomName, password));
+                gameRooms.add(readGameRoom(rs));
             }
         }
 
         return gameRooms;
     }
+
+    /**
+     * Imposta i parametri di una riga di uno statement di inserimento con i
+     * dati della stanza.
+     *
+     * @param ps       statement di inserimento
+     * @param row      indice della riga nello statement, da 0
+     * @param gameRoom stanza da inserire
+     * @throws SQLException in caso di errore SQL
+     */
+    private static void bindGameRoom(PreparedStatement ps, int row, GameRoom gameRoom) throws SQLException {
+        int base = row * 5;
+        ps.setString(base + 1, gameRoom.getName());
+        ps.setString(base + 2, gameRoom.getPassword());
+        ps.setInt(base + 3, gameRoom.getMaxPlayers());
+        ps.setInt(base + 4, gameRoom.getMaxSpectators());
+        ps.setString(base + 5, gameRoom.getGameId());
+    }
+
+    /**
+     * Costruisce una {@link GameRoom} dalla riga corrente del ResultSet.
+     *
+     * @param rs ResultSet posizionato sulla riga da leggere
+     * @return stanza di gioco corrispondente
+     * @throws SQLException in caso di errore SQL
+     */
+    private GameRoom readGameRoom(ResultSet rs) throws SQLException {
+        return new GameRoom(
+                rs.getString("gr_name"),
+                rs.getString("gr_password"),
+                rs.getString("gr_game"),
+                rs.getInt("gr_max_players"),
+                rs.getInt("gr_max_spectators")
+        );
+    }
 }
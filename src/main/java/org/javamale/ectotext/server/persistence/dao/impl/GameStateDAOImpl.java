@@ -1,9 +1,12 @@
 package org.javamale.ectotext.server.persistence.dao.impl;
 
 import org.javamale.ectotext.common.model.Character;
+import org.javamale.ectotext.common.model.GameDescription;
 import org.javamale.ectotext.common.model.GameFlag;
 import org.javamale.ectotext.common.model.GameState;
 import org.javamale.ectotext.common.model.NPC;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
+import org.javamale.ectotext.server.persistence.cache.GameStateCache;
 import org.javamale.ectotext.server.persistence.dao.*;
 
 import java.sql.Connection;
@@ -15,6 +18,9 @@ import java.util.UUID;
 /**
  * Implementazione di GameStateDAO per la gestione dello stato della partita sul database.
  * Gestisce la persistenza e il recupero di flag, personaggi e NPC associati ad uno stato di gioco.
+ * L'ultimo stato salvato di ogni stanza è tenuto in una {@link GameStateCache}: le letture
+ * e lo stato precedente usato dal salvataggio per calcolare le differenze vengono dalla
+ * memoria quando possibile.
  */
 public class GameStateDAOImpl implements GameStateDAO {
     /**
@@ -37,6 +43,21 @@ public class GameStateDAOImpl implements GameStateDAO {
      */
     private final NPCDAO npcDAO;
 
+    /**
+     * Dizionario dei dati statici del mondo condiviso dai DAO.
+     */
+    private final WorldDictionaryDAO dictionary;
+
+    /**
+     * Cache degli ultimi stati salvati, condivisa dai DAO della stessa connessione.
+     */
+    private final GameStateCache cache;
+
+    /**
+     * Descrizione dell'avventura, per ricostruire gli stati in cache.
+     */
+    private final GameDescription gameDescription;
+
     /**
      * Costruisce un nuovo GameStateDAOImpl.
      *
@@ -44,12 +65,19 @@ public class GameStateDAOImpl implements GameStateDAO {
      * @param gameFlagDAO   DAO per i flag di gioco
      * @param characterDAO  DAO per i personaggi
      * @param npcDAO        DAO per gli NPC
+     * @param dictionary    dizionario dei dati statici usato dagli altri DAO
+     * @param cache         cache degli ultimi stati salvati
+     * @param gameDescription descrizione dell'avventura
      */
-    public GameStateDAOImpl(Connection connection, GameFlagDAO gameFlagDAO, CharacterDAO characterDAO, NPCDAO npcDAO) {
+    public GameStateDAOImpl(Connection connection, GameFlagDAO gameFlagDAO, CharacterDAO characterDAO, NPCDAO npcDAO,
+                            WorldDictionaryDAO dictionary, GameStateCache cache, GameDescription gameDescription) {
         this.con = connection;
         this.gameFlagDAO = gameFlagDAO;
         this.characterDAO = characterDAO;
         this.npcDAO = npcDAO;
+        this.dictionary = dictionary;
+        this.cache = cache;
+        this.gameDescription = gameDescription;
     }
 
     /**
@@ -61,11 +89,20 @@ public class GameStateDAOImpl implements GameStateDAO {
      */
     @Override
     public void save(String gameRoomName, GameState gameState) throws SQLException {
-        String sql = "merge into GAME_STATES(id, gr_name) values (?, ?)";
+        String sql = "merge into GAME_STATES(id, gr_name) key(id) values (?, ?)";
 
-        boolean autoCommit = con.getAutoCommit();
-        con.setAutoCommit(false);
+        ServerMetrics.gameStateSaveStarted();
+        long start = System.nanoTime();
+        boolean autoCommit;
+        try {
+            autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+        } catch (SQLException e) {
+            ServerMetrics.gameStateSaved(System.nanoTime() - start);
+            throw e;
+        }
 
+        boolean saved = false;
         try {
             UUID id = gameState.getUuid();
 
@@ -76,48 +113,62 @@ public class GameStateDAOImpl implements GameStateDAO {
                 ps.setString(2, gameRoomName);
                 ps.executeUpdate();
             }
+            int stateID = findStateID(id);
 
             // Rimuovi elementi che non sono più presenti nello stato aggiornato
             if (previous != null) {
                 for (GameFlag f : previous.getFlags()) {
                     if (!gameState.hasFlag(f)) {
-                        gameFlagDAO.delete(id, f);
+                        gameFlagDAO.delete(stateID, f);
                     }
                 }
 
                 for (Character c : previous.getCharacters()) {
                     if (!gameState.hasCharacter(c)) {
-                        characterDAO.delete(id, c);
+                        characterDAO.delete(stateID, c);
                     }
                 }
 
                 for (NPC n : previous.getNPCs()) {
                     if (!gameState.hasNPC(n)) {
-                        npcDAO.delete(id, n);
+                        npcDAO.delete(stateID, n);
                     }
                 }
             }
 
             // Inserisci/aggiorna i dati correnti
             for (GameFlag f : gameState.getFlags()) {
-                gameFlagDAO.merge(id, f);
+                gameFlagDAO.merge(stateID, f);
             }
 
             for (Character c : gameState.getCharacters()) {
-                characterDAO.merge(id, c);
+                characterDAO.merge(stateID, c);
             }
 
             for (NPC n : gameState.getNPCs()) {
-                npcDAO.merge(id, n);
+                npcDAO.merge(stateID, n);
             }
 
             //con.commit();
+            saved = true;
 
         } catch (SQLException e) {
             con.rollback();
+            dictionary.invalidate();
             throw e;
         } finally {
-            con.setAutoCommit(autoCommit);
+            try {
+                con.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                // Esito del commit sconosciuto: la cache non deve fare da riferimento
+                cache.remove(gameRoomName);
+                throw e;
+            } finally {
+                ServerMetrics.gameStateSaved(System.nanoTime() - start);
+            }
+        }
+        if (saved) {
+            cache.put(gameRoomName, gameState);
         }
     }
 
@@ -134,10 +185,12 @@ public class GameStateDAOImpl implements GameStateDAO {
             ps.setObject(1, gameState.getUuid());
             ps.executeUpdate();
         }
+        cache.remove(gameState.getUuid());
     }
 
     /**
-     * Recupera lo stato di gioco associato ad una specifica stanza di gioco.
+     * Recupera lo stato di gioco associato ad una specifica stanza di gioco,
+     * dalla cache se presente, altrimenti dal database registrandolo in cache.
      *
      * @param gameRoomName nome della stanza di gioco
      * @return oggetto GameState trovato oppure null se non esiste
@@ -145,18 +198,22 @@ public class GameStateDAOImpl implements GameStateDAO {
      */
     @Override
     public GameState get(String gameRoomName) throws SQLException {
-        String sql = "select id from GAME_STATES where gr_name = ?";
+        String sql = "select id, gs_id from GAME_STATES where gr_name = ?";
 
-        GameState gameState = null;
+        GameState gameState = cache.get(gameRoomName, gameDescription);
+        if (gameState != null) {
+            return gameState;
+        }
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
             ps.setString(1, gameRoomName);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    UUID gameStateID = (UUID) rs.getObject("id");
+                    UUID gameStateUUID = (UUID) rs.getObject("id");
+                    int gameStateID = rs.getInt("gs_id");
 
-                    gameState = new GameState(gameStateID);
+                    gameState = new GameState(gameStateUUID);
 
                     gameFlagDAO.getAll(gameStateID).forEach(gameState::addFlag);
                     characterDAO.getAll(gameStateID).forEach(gameState::addCharacter);
@@ -165,6 +222,25 @@ public class GameStateDAOImpl implements GameStateDAO {
             }
         }
 
+        if (gameState != null) {
+            cache.put(gameRoomName, gameState);
+        }
         return gameState;
     }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private int findStateID(UUID id) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("select gs_id from GAME_STATES where id = ?")) {
+            ps.setObject(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Game state " + id + " not found");
+                }
+                return rs.getInt(1);
+            }
+        }
+    }
 }
@@ -0,0 +1,108 @@
+package org.javamale.ectotext.server.persistence.dao.impl;
+
+import org.javamale.ectotext.server.core.GameRoom;
+import org.javamale.ectotext.server.persistence.dao.GameRoomDAO;
+import org.javamale.ectotext.server.persistence.storage.HeapStore;
+import org.javamale.ectotext.server.persistence.storage.HeapStore.RoomRecord;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Implementazione di GameRoomDAO basata su un {@link HeapStore}.
+ * Come {@link GameRoomDAOImpl} restituisce a ogni lettura nuove istanze di
+ * {@link GameRoom}; un nome già usato è riportato come {@link SQLException}.
+ */
+public class HeapGameRoomDAO implements GameRoomDAO {
+    /**
+     * Archivio delle stanze condiviso.
+     */
+    private final HeapStore store;
+
+    /**
+     * Costruisce un nuovo HeapGameRoomDAO.
+     *
+     * @param store archivio delle stanze
+     */
+    public HeapGameRoomDAO(HeapStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Aggiunge una nuova stanza di gioco.
+     *
+     * @param gameRoom oggetto GameRoom da aggiungere
+     * @throws SQLException se esiste già una stanza con lo stesso nome
+     */
+    @Override
+    public void add(GameRoom gameRoom) throws SQLException {
+        RoomRecord room = new RoomRecord(gameRoom.getName(), gameRoom.getPassword(), gameRoom.getGameId(),
+                gameRoom.getMaxPlayers(), gameRoom.getMaxSpectators());
+        if (!store.addRoom(room)) {
+            throw new SQLException("Game room " + gameRoom.getName() + " already exists");
+        }
+    }
+
+    /**
+     * Aggiunge più stanze di gioco; se un nome è già usato le stanze aggiunte
+     * fino a quel punto vengono rimosse.
+     *
+     * @param gameRooms stanze da aggiungere
+     * @throws SQLException se esiste già una stanza con lo stesso nome
+     */
+    @Override
+    public void addAll(Collection<GameRoom> gameRooms) throws SQLException {
+        List<String> added = new ArrayList<>(gameRooms.size());
+        for (GameRoom gameRoom : gameRooms) {
+            try {
+                add(gameRoom);
+            } catch (SQLException e) {
+                added.forEach(store::deleteRoom);
+                throw e;
+            }
+            added.add(gameRoom.getName());
+        }
+    }
+
+    /**
+     * Elimina una stanza di gioco e il suo stato.
+     *
+     * @param roomName nome della stanza da eliminare
+     */
+    @Override
+    public void delete(String roomName) {
+        store.deleteRoom(roomName);
+    }
+
+    /**
+     * Restituisce la stanza di gioco con il nome indicato.
+     *
+     * @param roomName nome della stanza da recuperare
+     * @return oggetto GameRoom trovato o null se non esiste
+     */
+    @Override
+    public GameRoom get(String roomName) {
+        RoomRecord room = store.getRoom(roomName);
+        return room == null ? null : toGameRoom(room);
+    }
+
+    /**
+     * Restituisce tutte le stanze di gioco, ordinate per nome.
+     *
+     * @return lista di oggetti GameRoom
+     */
+    @Override
+    public List<GameRoom> getAll() {
+        List<GameRoom> gameRooms = new ArrayList<>();
+        for (RoomRecord room : store.getRooms()) {
+            gameRooms.add(toGameRoom(room));
+        }
+        return gameRooms;
+    }
+
+    private static GameRoom toGameRoom(RoomRecord room) {
+        return new GameRoom(room.name(), room.password(), room.gameId(), room.maxPlayers(), room.maxSpectators());
+    }
+}
@@ -0,0 +1,90 @@
+package org.javamale.ectotext.server.persistence.dao.impl;
+
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.GameState;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
+import org.javamale.ectotext.server.persistence.dao.GameStateDAO;
+import org.javamale.ectotext.server.persistence.journal.JournalCodec;
+import org.javamale.ectotext.server.persistence.storage.HeapStore;
+import org.javamale.ectotext.server.persistence.storage.HeapStore.StateRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Implementazione di GameStateDAO basata su un {@link HeapStore}.
+ * Gli stati sono salvati codificati con {@link JournalCodec}: la copia
+ * salvata resta indipendente dallo stato che il motore di gioco continua a
+ * modificare, come avviene con il database.
+ */
+public class HeapGameStateDAO implements GameStateDAO {
+    /**
+     * Archivio degli stati condiviso.
+     */
+    private final HeapStore store;
+
+    /**
+     * Descrizione del gioco, usata per ricostruire gli stati.
+     */
+    private final GameDescription gameDescription;
+
+    /**
+     * Costruisce un nuovo HeapGameStateDAO.
+     *
+     * @param store           archivio degli stati
+     * @param gameDescription descrizione del gioco della stanza
+     */
+    public HeapGameStateDAO(HeapStore store, GameDescription gameDescription) {
+        this.store = store;
+        this.gameDescription = gameDescription;
+    }
+
+    /**
+     * Salva lo stato di gioco di una stanza, sostituendo il precedente.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @param gameState    stato della partita da salvare
+     */
+    @Override
+    public void save(String gameRoomName, GameState gameState) {
+        ServerMetrics.gameStateSaveStarted();
+        long start = System.nanoTime();
+        try {
+            store.putState(gameRoomName, new StateRecord(gameState.getUuid(), JournalCodec.encodeState(gameState)));
+        } finally {
+            ServerMetrics.gameStateSaved(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Elimina lo stato di gioco indicato.
+     *
+     * @param gameState stato della partita da eliminare
+     */
+    @Override
+    public void delete(GameState gameState) {
+        store.deleteState(gameState.getUuid());
+    }
+
+    /**
+     * Ricostruisce lo stato di gioco salvato di una stanza.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @return stato letto oppure null se non esiste
+     * @throws SQLException se lo stato salvato non è valido
+     */
+    @Override
+    public GameState get(String gameRoomName) throws SQLException {
+        StateRecord state = store.getState(gameRoomName);
+        if (state == null) {
+            return null;
+        }
+        try {
+            return JournalCodec.decodeState(new DataInputStream(new ByteArrayInputStream(state.state())), gameDescription);
+        } catch (IOException e) {
+            throw new SQLException("Heap state store read failed: " + e.getMessage(), e);
+        }
+    }
+}
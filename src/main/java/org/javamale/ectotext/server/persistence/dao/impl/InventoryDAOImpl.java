@@ -2,6 +2,7 @@ package org.javamale.ectotext.server.persistence.dao.impl;
 
 import org.javamale.ectotext.common.model.Item;
 import org.javamale.ectotext.server.persistence.dao.InventoryDAO;
+import org.javamale.ectotext.server.persistence.dao.WorldDictionaryDAO;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -9,7 +10,6 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Implementazione DAO per la gestione dell'inventario dei personaggi all'interno di uno stato di gioco.
@@ -21,37 +21,42 @@ public class InventoryDAOImpl implements InventoryDAO {
      */
     private final Connection con;
 
+    /**
+     * Dizionario degli identificatori degli oggetti.
+     */
+    private final WorldDictionaryDAO dictionary;
+
     /**
      * Costruisce un nuovo InventoryDAOImpl.
-     * @param con connessione da usare per le operazioni sul database.
+     * @param con        connessione da usare per le operazioni sul database.
+     * @param dictionary dizionario dei dati statici del mondo.
      */
-    public InventoryDAOImpl(Connection con) {
+    public InventoryDAOImpl(Connection con, WorldDictionaryDAO dictionary) {
         this.con = con;
+        this.dictionary = dictionary;
     }
 
     /**
      * Inserisce o aggiorna un oggetto nell'inventario di un personaggio per uno specifico stato di gioco.
-     * Se già presente aggiorna i dati, altrimenti lo inserisce.
+     * Nome, nome visualizzato e descrizione dell'oggetto restano nella tabella
+     * {@code world_items}: la riga dell'inventario contiene solo identificatori interi.
      *
-     * @param gameStateID    identificatore univoco dello stato di gioco
-     * @param characterName  nome del personaggio
+     * @param gameStateID    identificatore compatto dello stato di gioco ({@code gs_id})
+     * @param characterID    identificatore del personaggio
      * @param item           oggetto da inserire o aggiornare nell'inventario
      * @throws SQLException  in caso di errori SQL
      */
     @Override
-    public void merge(UUID gameStateID, String characterName, Item item) throws SQLException {
+    public void merge(int gameStateID, int characterID, Item item) throws SQLException {
         String sql = """
-            merge into character_inventories (
-                game_state_id, character_name, item_name, item_display_name, item_description
-            ) values (?, ?, ?, ?, ?)
+            merge into state_inventories (gs_id, character_id, item_id)
+            values (?, ?, ?)
         """;
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
-            ps.setString(2, characterName);
-            ps.setString(3, item.getName());
-            ps.setString(4, item.getDisplayName());
-            ps.setString(5, item.getDescription());
+            ps.setInt(1, gameStateID);
+            ps.setInt(2, characterID);
+            ps.setInt(3, dictionary.itemId(item));
             ps.executeUpdate();
         }
     }
@@ -59,22 +64,22 @@ public class InventoryDAOImpl implements InventoryDAO {
     /**
      * Rimuove un oggetto dall'inventario di un personaggio.
      *
-     * @param gameStateID    identificatore dello stato di gioco
-     * @param characterName  nome del personaggio
+     * @param gameStateID    identificatore compatto dello stato di gioco ({@code gs_id})
+     * @param characterID    identificatore del personaggio
      * @param item           oggetto da eliminare dall'inventario
      * @throws SQLException  in caso di errori SQL
      */
     @Override
-    public void delete(UUID gameStateID, String characterName, Item item) throws SQLException {
+    public void delete(int gameStateID, int characterID, Item item) throws SQLException {
         String sql = """
-            delete from character_inventories
-            where game_state_id = ? and character_name = ? and item_name = ?
+            delete from state_inventories
+            where gs_id = ? and character_id = ? and item_id = ?
         """;
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
-            ps.setString(2, characterName);
-            ps.setString(3, item.getName());
+            ps.setInt(1, gameStateID);
+            ps.setInt(2, characterID);
+            ps.setInt(3, dictionary.itemId(item));
             ps.executeUpdate();
         }
     }
@@ -82,24 +87,24 @@ public class InventoryDAOImpl implements InventoryDAO {
     /**
      * Recupera tutti gli oggetti nell'inventario di un personaggio per uno specifico stato di gioco.
      *
-     * @param gameStateID    identificatore dello stato di gioco
-     * @param characterName  nome del personaggio
+     * @param gameStateID    identificatore compatto dello stato di gioco ({@code gs_id})
+     * @param characterID    identificatore del personaggio
      * @return lista degli oggetti posseduti dal personaggio
      * @throws SQLException  in caso di errori SQL
      */
     @Override
-    public List<Item> getAll(UUID gameStateID, String characterName) throws SQLException {
+    public List<Item> getAll(int gameStateID, int characterID) throws SQLException {
         String sql = """
-            SELECT item_name, item_display_name, item_description
-            FROM character_inventories
-            WHERE game_state_id = ? AND character_name = ?
+            SELECT w.item_name, w.item_display_name, w.item_description
+            FROM state_inventories s JOIN world_items w ON w.item_id = s.item_id
+            WHERE s.gs_id = ? AND s.character_id = ?
         """;
 
         List<Item> items = new ArrayList<>();
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
-            ps.setString(2, characterName);
+            ps.setInt(1, gameStateID);
+            ps.setInt(2, characterID);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     String name = rs.getString("item_name");
@@ -0,0 +1,124 @@
+package org.javamale.ectotext.server.persistence.dao.impl;
+
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.GameState;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
+import org.javamale.ectotext.server.persistence.dao.GameStateDAO;
+import org.javamale.ectotext.server.persistence.journal.EventJournal;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Implementazione di GameStateDAO basata sul {@link EventJournal}.
+ * Ogni salvataggio aggiunge al giornale le sole differenze rispetto al
+ * salvataggio precedente; gli errori di I/O vengono riportati come
+ * {@link SQLException} per restare intercambiabile con {@link GameStateDAOImpl}.
+ */
+public class JournalGameStateDAO implements GameStateDAO {
+    /**
+     * Giornale degli eventi condiviso.
+     */
+    private final EventJournal journal;
+
+    /**
+     * Descrizione del gioco, usata per ricostruire gli stati.
+     */
+    private final GameDescription gameDescription;
+
+    /**
+     * Costruisce un nuovo JournalGameStateDAO.
+     *
+     * @param journal         giornale degli eventi
+     * @param gameDescription descrizione del gioco della stanza
+     */
+    public JournalGameStateDAO(EventJournal journal, GameDescription gameDescription) {
+        this.journal = journal;
+        this.gameDescription = gameDescription;
+    }
+
+    /**
+     * Registra lo stato di gioco di una stanza senza un comando associato.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @param gameState    stato della partita da salvare
+     * @throws SQLException se il giornale non può essere scritto
+     */
+    @Override
+    public void save(String gameRoomName, GameState gameState) throws SQLException {
+        save(gameRoomName, gameState, null, null);
+    }
+
+    /**
+     * Registra lo stato di gioco di una stanza insieme al comando che lo ha prodotto.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @param gameState    stato della partita da salvare
+     * @param playerName   giocatore che ha inviato il comando
+     * @param command      comando eseguito
+     * @throws SQLException se il giornale non può essere scritto
+     */
+    @Override
+    public void save(String gameRoomName, GameState gameState, String playerName, String command) throws SQLException {
+        ServerMetrics.gameStateSaveStarted();
+        long start = System.nanoTime();
+        try {
+            journal.record(gameRoomName, gameState, playerName, command);
+        } catch (IOException e) {
+            throw new SQLException("Event journal write failed", e);
+        } finally {
+            ServerMetrics.gameStateSaved(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Scrive l'istantanea della stanza se ha eventi non ancora coperti.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @param gameState    stato della partita registrato per ultimo
+     * @throws SQLException se l'istantanea non può essere scritta
+     */
+    @Override
+    public void checkpoint(String gameRoomName, GameState gameState) throws SQLException {
+        try {
+            journal.checkpoint(gameRoomName, gameState);
+        } catch (IOException e) {
+            throw new SQLException("Event journal snapshot failed", e);
+        }
+    }
+
+    /**
+     * Elimina dal giornale lo stato di gioco indicato.
+     *
+     * @param gameState stato della partita da eliminare
+     * @throws SQLException se il giornale non può essere scritto
+     */
+    @Override
+    public void delete(GameState gameState) throws SQLException {
+        String gameRoomName = journal.findRoom(gameState);
+        if (gameRoomName == null) {
+            return;
+        }
+        try {
+            journal.drop(gameRoomName);
+        } catch (IOException e) {
+            throw new SQLException("Event journal write failed", e);
+        }
+    }
+
+    /**
+     * Ricostruisce lo stato di gioco di una stanza dall'ultima istantanea e dagli eventi successivi.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @return stato ricostruito oppure null se non esiste
+     * @throws SQLException se il giornale non può essere letto
+     */
+    @Override
+    public GameState get(String gameRoomName) throws SQLException {
+        try {
+            return journal.load(gameRoomName, gameDescription);
+        } catch (IOException e) {
+            throw new SQLException("Event journal read failed", e);
+        }
+    }
+}
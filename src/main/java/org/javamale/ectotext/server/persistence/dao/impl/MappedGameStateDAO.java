@@ -0,0 +1,94 @@
+package org.javamale.ectotext.server.persistence.dao.impl;
+
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.GameState;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
+import org.javamale.ectotext.server.persistence.dao.GameStateDAO;
+import org.javamale.ectotext.server.persistence.mapped.MappedStateStore;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Implementazione di GameStateDAO basata sul {@link MappedStateStore}.
+ * Ogni stanza occupa un record a dimensione fissa in un file mappato in
+ * memoria; gli errori di I/O vengono riportati come {@link SQLException}
+ * per restare intercambiabile con {@link GameStateDAOImpl}.
+ */
+public class MappedGameStateDAO implements GameStateDAO {
+    /**
+     * Archivio degli stati condiviso.
+     */
+    private final MappedStateStore store;
+
+    /**
+     * Descrizione del gioco, usata per ricostruire gli stati.
+     */
+    private final GameDescription gameDescription;
+
+    /**
+     * Costruisce un nuovo MappedGameStateDAO.
+     *
+     * @param store           archivio degli stati
+     * @param gameDescription descrizione del gioco della stanza
+     */
+    public MappedGameStateDAO(MappedStateStore store, GameDescription gameDescription) {
+        this.store = store;
+        this.gameDescription = gameDescription;
+    }
+
+    /**
+     * Scrive lo stato di gioco di una stanza nel suo record.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @param gameState    stato della partita da salvare
+     * @throws SQLException se lo stato non può essere scritto
+     */
+    @Override
+    public void save(String gameRoomName, GameState gameState) throws SQLException {
+        ServerMetrics.gameStateSaveStarted();
+        long start = System.nanoTime();
+        try {
+            store.save(gameRoomName, gameState);
+        } catch (IOException e) {
+            throw new SQLException("Mapped state store write failed: " + e.getMessage(), e);
+        } finally {
+            ServerMetrics.gameStateSaved(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Libera il record dello stato di gioco indicato.
+     *
+     * @param gameState stato della partita da eliminare
+     * @throws SQLException se il record non può essere scritto
+     */
+    @Override
+    public void delete(GameState gameState) throws SQLException {
+        String gameRoomName = store.findRoom(gameState.getUuid());
+        if (gameRoomName == null) {
+            return;
+        }
+        try {
+            store.delete(gameRoomName);
+        } catch (IOException e) {
+            throw new SQLException("Mapped state store write failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Legge lo stato di gioco di una stanza dal suo record.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @return stato letto oppure null se non esiste
+     * @throws SQLException se il record non è valido
+     */
+    @Override
+    public GameState get(String gameRoomName) throws SQLException {
+        try {
+            return store.get(gameRoomName, gameDescription);
+        } catch (IOException e) {
+            throw new SQLException("Mapped state store read failed: " + e.getMessage(), e);
+        }
+    }
+}
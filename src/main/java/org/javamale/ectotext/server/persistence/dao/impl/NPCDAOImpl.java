@@ -4,6 +4,7 @@ import org.javamale.ectotext.common.model.GameDescription;
 import org.javamale.ectotext.common.model.NPC;
 import org.javamale.ectotext.common.model.Room;
 import org.javamale.ectotext.server.persistence.dao.NPCDAO;
+import org.javamale.ectotext.server.persistence.dao.WorldDictionaryDAO;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -11,7 +12,6 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Implementazione concreta dell'interfaccia {@link NPCDAO} per la gestione degli NPC nel database.
@@ -28,35 +28,41 @@ public class NPCDAOImpl implements NPCDAO {
      */
     private final GameDescription gameDescription;
 
+    /**
+     * Dizionario degli identificatori di NPC e stanze.
+     */
+    private final WorldDictionaryDAO dictionary;
+
     /**
      * Costruisce un nuovo oggetto NPCDAOImpl.
      * @param con             Connessione al database da utilizzare.
+     * @param dictionary      Dizionario dei dati statici del mondo.
      * @param gameDescription Descrizione del gioco corrente.
      */
-    public NPCDAOImpl(Connection con, GameDescription gameDescription) {
+    public NPCDAOImpl(Connection con, WorldDictionaryDAO dictionary, GameDescription gameDescription) {
         this.con = con;
+        this.dictionary = dictionary;
         this.gameDescription = gameDescription;
     }
 
     /**
      * Inserisce o aggiorna un NPC nel database per uno specifico stato di gioco.
      *
-     * @param gameStateID Identificativo univoco dello stato di gioco.
+     * @param gameStateID Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @param npc         Oggetto NPC da salvare o aggiornare.
      * @throws SQLException in caso di errori SQL.
      */
     @Override
-    public void merge(UUID gameStateID, NPC npc) throws SQLException {
+    public void merge(int gameStateID, NPC npc) throws SQLException {
         String sql = """
-            merge into npcs (game_state_id, npc_name, npc_display_name, npc_current_room)
-            values (?, ?, ?, ?)
+            merge into state_npcs (gs_id, npc_id, room_id)
+            values (?, ?, ?)
         """;
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
-            ps.setString(2, npc.getName());
-            ps.setString(3, npc.getDisplayName());
-            ps.setString(4, npc.getCurrentRoom().getName());
+            ps.setInt(1, gameStateID);
+            ps.setInt(2, dictionary.npcId(npc));
+            ps.setInt(3, dictionary.roomId(npc.getCurrentRoom().getName()));
             ps.executeUpdate();
         }
     }
@@ -64,17 +70,17 @@ public class NPCDAOImpl implements NPCDAO {
     /**
      * Cancella un NPC dal database relativo a uno stato di gioco specifico.
      *
-     * @param gameStateID Identificativo dello stato di gioco.
+     * @param gameStateID Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @param npc         Oggetto NPC da eliminare.
      * @throws SQLException in caso di errori SQL.
      */
     @Override
-    public void delete(UUID gameStateID, NPC npc) throws SQLException {
-        String sql = "delete from npcs where game_state_id = ? and npc_name = ?";
+    public void delete(int gameStateID, NPC npc) throws SQLException {
+        String sql = "delete from state_npcs where gs_id = ? and npc_id = ?";
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
-            ps.setString(2, npc.getName());
+            ps.setInt(1, gameStateID);
+            ps.setInt(2, dictionary.npcId(npc));
             ps.executeUpdate();
         }
     }
@@ -82,23 +88,29 @@ public class NPCDAOImpl implements NPCDAO {
     /**
      * Restituisce la lista di tutti gli NPC relativi a uno specifico stato di gioco.
      *
-     * @param gameStateID Identificativo dello stato di gioco.
+     * @param gameStateID Identificativo compatto dello stato di gioco ({@code gs_id}).
      * @return Lista degli oggetti NPC trovati.
      * @throws SQLException in caso di errori SQL.
      */
     @Override
-    public List<NPC> getAll(UUID gameStateID) throws SQLException {
-        String sql = "select npc_name, npc_display_name, npc_current_room from npcs where game_state_id = ?";
+    public List<NPC> getAll(int gameStateID) throws SQLException {
+        String sql = """
+            select w.npc_name, w.npc_display_name, r.room_name
+            from state_npcs s
+            join world_npcs w on w.npc_id = s.npc_id
+            join world_rooms r on r.room_id = s.room_id
+            where s.gs_id = ?
+        """;
 
         List<NPC> npcs = new ArrayList<>();
 
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setObject(1, gameStateID);
+            ps.setInt(1, gameStateID);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     String name = rs.getString("npc_name");
                     String displayName = rs.getString("npc_display_name");
-                    String roomName = rs.getString("npc_current_room");
+                    String roomName = rs.getString("room_name");
 
                     Room room = gameDescription.getGameMap().getRoom(roomName);
                     npcs.add(new NPC(name, displayName, room));
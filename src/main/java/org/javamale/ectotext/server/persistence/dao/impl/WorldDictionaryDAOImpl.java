@@ -0,0 +1,156 @@
+package org.javamale.ectotext.server.persistence.dao.impl;
+
+import org.javamale.ectotext.common.model.Character;
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.Item;
+import org.javamale.ectotext.common.model.NPC;
+import org.javamale.ectotext.server.persistence.dao.WorldDictionaryDAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementazione di WorldDictionaryDAO sul database.
+ * <p>
+ * Al primo utilizzo legge per intero le tabelle {@code world_*}, che
+ * contengono solo i dati statici del mondo e restano piccole; in seguito
+ * risponde dalla memoria e interroga il database solo per i valori che non
+ * conosce, cercandoli e, se mancano, inserendoli. Un'istanza è condivisa da
+ * tutti i DAO della stessa connessione (vedi {@code DAOFactory}).
+ * </p>
+ */
+public class WorldDictionaryDAOImpl implements WorldDictionaryDAO {
+    /**
+     * Connessione al database.
+     */
+    private final Connection con;
+
+    /**
+     * Identificatori per tabella, indicizzati dai valori delle colonne che
+     * formano la chiave naturale; {@code null} finché non vengono letti.
+     */
+    private Map<String, Map<List<String>, Integer>> ids;
+
+    /**
+     * Costruisce un nuovo WorldDictionaryDAOImpl.
+     *
+     * @param con connessione da usare per le operazioni sul database.
+     */
+    public WorldDictionaryDAOImpl(Connection con) {
+        this.con = con;
+    }
+
+    @Override
+    public int roomId(String roomName) throws SQLException {
+        return id("world_rooms", "room_id", List.of("room_name"), List.of(roomName));
+    }
+
+    @Override
+    public int characterId(Character character) throws SQLException {
+        return id("world_characters", "character_id", List.of("character_name", "character_display_name"),
+                List.of(character.getName(), character.getDisplayName()));
+    }
+
+    @Override
+    public int npcId(NPC npc) throws SQLException {
+        return id("world_npcs", "npc_id", List.of("npc_name", "npc_display_name"),
+                List.of(npc.getName(), npc.getDisplayName()));
+    }
+
+    @Override
+    public int itemId(Item item) throws SQLException {
+        return id("world_items", "item_id", List.of("item_name", "item_display_name", "item_description"),
+                List.of(item.getName(), item.getDisplayName(), item.getDescription()));
+    }
+
+    @Override
+    public int flagId(GameFlag gameFlag) throws SQLException {
+        return id("world_flags", "flag_id", List.of("flag_key"), List.of(gameFlag.getKey()));
+    }
+
+    @Override
+    public synchronized void invalidate() {
+        ids = null;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private synchronized int id(String table, String idColumn, List<String> columns, List<String> key) throws SQLException {
+        if (ids == null) {
+            ids = new HashMap<>();
+        }
+        Map<List<String>, Integer> tableIds = ids.get(table);
+        if (tableIds == null) {
+            tableIds = load(table, idColumn, columns);
+            ids.put(table, tableIds);
+        }
+
+        Integer id = tableIds.get(key);
+        if (id == null) {
+            // Il valore può essere stato inserito da un'altra connessione, ad
+            // esempio dal recupero dei dati di una migrazione
+            id = find(table, idColumn, columns, key);
+            if (id == null) {
+                id = insert(table, columns, key);
+            }
+            tableIds.put(key, id);
+        }
+        return id;
+    }
+
+    private Integer find(String table, String idColumn, List<String> columns, List<String> key) throws SQLException {
+        String sql = "select " + idColumn + " from " + table + " where "
+                + String.join(" and ", columns.stream().map(c -> c + " = ?").toList());
+
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            for (int i = 0; i < key.size(); i++) {
+                ps.setString(i + 1, key.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    private Map<List<String>, Integer> load(String table, String idColumn, List<String> columns) throws SQLException {
+        String sql = "select " + idColumn + ", " + String.join(", ", columns) + " from " + table;
+
+        Map<List<String>, Integer> tableIds = new HashMap<>();
+        try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                String[] key = new String[columns.size()];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = rs.getString(i + 2);
+                }
+                tableIds.put(List.of(key), rs.getInt(1));
+            }
+        }
+        return tableIds;
+    }
+
+    private int insert(String table, List<String> columns, List<String> key) throws SQLException {
+        String sql = "insert into " + table + " (" + String.join(", ", columns) + ") values ("
+                + String.join(", ", columns.stream().map(c -> "?").toList()) + ")";
+
+        try (PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < key.size(); i++) {
+                ps.setString(i + 1, key.get(i));
+            }
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No id generated for " + table);
+                }
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,784 @@
+package org.javamale.ectotext.server.persistence.journal;
+
+import org.javamale.ectotext.common.metrics.Histogram;
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.GameState;
+import org.javamale.ectotext.common.model.GameStateSnapshot;
+import org.javamale.ectotext.server.metrics.MetricsRegistry;
+import org.javamale.ectotext.server.persistence.DbManager;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Giornale degli eventi di gioco: alternativa al salvataggio per righe del
+ * {@link org.javamale.ectotext.server.persistence.dao.impl.GameStateDAOImpl}.
+ * <p>
+ * Ogni salvataggio aggiunge in coda un record con le sole differenze
+ * rispetto al salvataggio precedente della stessa stanza, invece di
+ * rileggere e riscrivere tutte le righe dello stato:
+ * <ul>
+ *   <li>i record sono scritti in file di segmento
+ *       ({@code segment-<lsn>.log}) da un unico thread che raccoglie le
+ *       richieste di tutte le stanze e le rende durevoli con una sola
+ *       {@code force} per gruppo (<em>group commit</em>);</li>
+ *   <li>ogni {@value #DEFAULT_SNAPSHOT_EVERY} eventi (configurabile) lo
+ *       stato completo della stanza viene scritto in un'istantanea
+ *       ({@code snapshots/<stanza>.snap}) sostituita atomicamente;</li>
+ *   <li>i segmenti più vecchi vengono eliminati quando tutti i loro eventi
+ *       sono coperti da un'istantanea;</li>
+ *   <li>ogni {@value #DEFAULT_CHECKPOINT_MILLIS} ms (configurabile) le stanze
+ *       con eventi non coperti in un segmento già chiuso vengono segnalate al
+ *       gestore impostato con {@link #setCheckpointHandler}, che ne chiede
+ *       l'istantanea con {@link #checkpoint}: una stanza rimasta inattiva
+ *       prima di raggiungere la soglia di eventi non trattiene così i
+ *       segmenti all'infinito;</li>
+ *   <li>all'avvio le istantanee vengono lette e i segmenti scansionati: un
+ *       record incompleto o con checksum errato chiude la lettura del suo
+ *       segmento, gli eventi successivi all'istantanea vengono riapplicati
+ *       al primo {@link #load} della stanza.</li>
+ * </ul>
+ * Ogni record ha la forma {@code [int lunghezza][int crc32][long lsn]
+ * [byte tipo][UTF stanza][dati]}, dove lunghezza e checksum si riferiscono
+ * ai campi successivi. Il numero di sequenza ({@code lsn}) cresce in modo
+ * monotono su tutte le stanze.
+ * <p>
+ * I metodi per una stessa stanza devono essere invocati da un solo thread
+ * alla volta, come avviene sotto il lock della {@code GameRoom}.
+ *
+ * @see JournalCodec
+ */
+public final class EventJournal {
+
+    /** Proprietà di sistema con la directory del giornale. */
+    public static final String DIR_PROPERTY = "ectotext.journal.dir";
+
+    /** Proprietà di sistema con la dimensione oltre la quale si apre un nuovo segmento. */
+    public static final String SEGMENT_BYTES_PROPERTY = "ectotext.journal.segmentBytes";
+
+    /** Proprietà di sistema con il numero di eventi tra due istantanee della stessa stanza. */
+    public static final String SNAPSHOT_EVERY_PROPERTY = "ectotext.journal.snapshotEvery";
+
+    /** Dimensione predefinita di un segmento: 8 MiB. */
+    public static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+
+    /** Numero predefinito di eventi tra due istantanee. */
+    public static final int DEFAULT_SNAPSHOT_EVERY = 500;
+
+    /** Proprietà di sistema con l'intervallo tra due controlli delle stanze in ritardo. */
+    public static final String CHECKPOINT_MILLIS_PROPERTY = "ectotext.journal.checkpointMillis";
+
+    /** Intervallo predefinito tra due controlli delle stanze in ritardo. */
+    public static final long DEFAULT_CHECKPOINT_MILLIS = 60_000;
+
+    private static final byte EVENT = 1;
+    private static final byte DROP = 2;
+    private static final int MIN_RECORD_BYTES = Long.BYTES + 1 + Short.BYTES;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final int SNAPSHOT_MAGIC = 0x45435453;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private static final LongAdder APPENDS = MetricsRegistry.counter("ectotext_journal_records_total",
+            "Records appended to the event journal");
+    private static final LongAdder BYTES = MetricsRegistry.counter("ectotext_journal_bytes_total",
+            "Bytes appended to the event journal");
+    private static final LongAdder FSYNCS = MetricsRegistry.counter("ectotext_journal_fsync_total",
+            "Group commits forced to disk by the event journal");
+    private static final LongAdder SNAPSHOTS = MetricsRegistry.counter("ectotext_journal_snapshots_total",
+            "Room snapshots written by the event journal");
+    private static final Histogram BATCH = MetricsRegistry.summary("ectotext_journal_batch_records",
+            "Records made durable by each group commit", 1);
+    private static final Histogram COMMIT = MetricsRegistry.summary("ectotext_journal_commit_seconds",
+            "Time from append to durable write", 1e6);
+
+    private static volatile EventJournal instance;
+
+    /** Gestore che scrive l'istantanea di una stanza in ritardo, o {@code null}. */
+    private static volatile Consumer<String> checkpointHandler;
+
+    private final Path dir;
+    private final Path snapshotsDir;
+    private final long segmentBytes;
+    private final int snapshotEvery;
+
+    /** Protegge l'assegnazione degli lsn e l'ordine della coda. */
+    private final Object appendLock = new Object();
+    private long nextLsn;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final ScheduledExecutorService checkpointer;
+    private volatile boolean closed;
+
+    /** Segmento aperto, usato solo dal thread scrittore. */
+    private FileChannel segment;
+    private long segmentSize;
+
+    /** Segmenti per lsn iniziale, con l'ultimo lsn scritto per ogni stanza. */
+    private final TreeMap<Long, Map<String, Long>> segments = new TreeMap<>();
+
+    /** Lsn fino al quale gli eventi di ogni stanza non servono più. */
+    private final Map<String, Long> covered = new ConcurrentHashMap<>();
+
+    /** Stanze lette dal disco all'avvio e non ancora caricate. */
+    private final Map<String, Recovered> recovered = new ConcurrentHashMap<>();
+
+    /** Ultimo stato registrato per ogni stanza. */
+    private final Map<String, RoomLog> rooms = new ConcurrentHashMap<>();
+
+    private EventJournal() throws IOException {
+        this.dir = Path.of(System.getProperty(DIR_PROPERTY, DbManager.getDbPath() + "-journal"));
+        this.snapshotsDir = dir.resolve("snapshots");
+        this.segmentBytes = Long.getLong(SEGMENT_BYTES_PROPERTY, DEFAULT_SEGMENT_BYTES);
+        this.snapshotEvery = Math.max(1, Integer.getInteger(SNAPSHOT_EVERY_PROPERTY, DEFAULT_SNAPSHOT_EVERY));
+
+        Files.createDirectories(snapshotsDir);
+        recover();
+        openSegment(nextLsn);
+
+        this.writer = Thread.ofPlatform().name("event-journal").daemon().start(this::writeLoop);
+
+        long checkpointMillis = Math.max(1, Long.getLong(CHECKPOINT_MILLIS_PROPERTY, DEFAULT_CHECKPOINT_MILLIS));
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "event-journal-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.checkpointer.scheduleWithFixedDelay(this::checkpointLagging,
+                checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Restituisce il giornale, aprendolo e recuperandolo al primo utilizzo.
+     *
+     * @return istanza del giornale
+     */
+    public static EventJournal getInstance() {
+        if (instance == null) {
+            synchronized (EventJournal.class) {
+                if (instance == null) {
+                    try {
+                        instance = new EventJournal();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Rende durevoli i record in coda e chiude il giornale, se aperto.
+     * Una chiamata successiva a {@link #getInstance()} lo riapre.
+     */
+    public static void close() {
+        synchronized (EventJournal.class) {
+            if (instance == null) {
+                return;
+            }
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * Imposta il gestore delle stanze in ritardo.
+     * <p>
+     * Il gestore riceve il nome di una stanza i cui eventi trattengono un
+     * segmento chiuso e deve invocare {@link #checkpoint} con lo stato della
+     * stanza, rispettando il lock della stanza come per {@link #record}.
+     * </p>
+     *
+     * @param handler gestore delle stanze in ritardo, o {@code null} per nessuno
+     */
+    public static void setCheckpointHandler(Consumer<String> handler) {
+        checkpointHandler = handler;
+    }
+
+    /**
+     * Chiude il giornale ed elimina la sua directory (usato per reset).
+     */
+    public static synchronized void reset() {
+        close();
+        Path dir = Path.of(System.getProperty(DIR_PROPERTY, DbManager.getDbPath() + "-journal"));
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile eliminare il giornale degli eventi.", e);
+        }
+    }
+
+    /**
+     * Registra lo stato corrente di una stanza.
+     * <p>
+     * Se la stanza ha già uno stato registrato con gli stessi personaggi e
+     * NPC viene aggiunto un evento con le differenze; altrimenti viene
+     * scritta un'istantanea completa. Il metodo ritorna quando il record è
+     * durevole.
+     *
+     * @param roomName   nome della stanza
+     * @param gameState  stato da registrare
+     * @param playerName giocatore che ha causato la modifica, o {@code null}
+     * @param command    comando che ha causato la modifica, o {@code null}
+     * @throws IOException se il record non può essere scritto
+     */
+    public void record(String roomName, GameState gameState, String playerName, String command) throws IOException {
+        RoomLog log = rooms.get(roomName);
+        GameStateSnapshot current = GameStateSnapshot.of(gameState, log == null ? null : log.baseline);
+
+        if (log == null || !JournalCodec.sameShape(log.baseline, current)) {
+            writeSnapshot(roomName, gameState, reserveLsn());
+            rooms.put(roomName, new RoomLog(current));
+            return;
+        }
+
+        byte[] payload = JournalCodec.encodeEvent(playerName, command, log.baseline, current, gameState);
+        if (payload == null) {
+            return;
+        }
+        long lsn = append(EVENT, roomName, payload);
+        log.baseline = current;
+
+        if (++log.sinceSnapshot >= snapshotEvery) {
+            writeSnapshot(roomName, gameState, lsn);
+            log.sinceSnapshot = 0;
+        }
+    }
+
+    /**
+     * Ricostruisce lo stato di una stanza dall'ultima istantanea e dagli
+     * eventi successivi.
+     *
+     * @param roomName        nome della stanza
+     * @param gameDescription descrizione dell'avventura della stanza
+     * @return stato ricostruito, o {@code null} se la stanza non ha stato registrato
+     * @throws IOException se l'istantanea o un evento non sono validi
+     */
+    public GameState load(String roomName, GameDescription gameDescription) throws IOException {
+        Recovered tail = recovered.remove(roomName);
+        Path file = snapshotFile(roomName);
+        if (tail != null && tail.dropped) {
+            Files.deleteIfExists(file);
+            return null;
+        }
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        GameState gameState;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            readSnapshotHeader(in);
+            byte[] state = new byte[in.readInt()];
+            int crc = in.readInt();
+            in.readFully(state);
+            if (crc != crc(state, 0, state.length)) {
+                throw new IOException("Corrupted journal snapshot: " + file);
+            }
+            gameState = JournalCodec.decodeState(new DataInputStream(new ByteArrayInputStream(state)), gameDescription);
+        }
+
+        int replayed = 0;
+        if (tail != null) {
+            for (byte[] event : tail.events) {
+                JournalCodec.applyEvent(event, gameState, gameDescription);
+                replayed++;
+            }
+        }
+
+        RoomLog log = new RoomLog(GameStateSnapshot.of(gameState, null));
+        log.sinceSnapshot = replayed;
+        rooms.put(roomName, log);
+        return gameState;
+    }
+
+    /**
+     * Scrive l'istantanea di una stanza con eventi non ancora coperti, così
+     * che i segmenti che li contengono possano essere eliminati.
+     * <p>
+     * Lo stato deve essere quello dell'ultimo {@link #record} della stanza;
+     * se la stanza non ha eventi successivi alla sua istantanea il metodo non
+     * scrive nulla.
+     * </p>
+     *
+     * @param roomName  nome della stanza
+     * @param gameState stato registrato della stanza
+     * @throws IOException se l'istantanea non può essere scritta
+     */
+    public void checkpoint(String roomName, GameState gameState) throws IOException {
+        RoomLog log = rooms.get(roomName);
+        if (log == null || log.sinceSnapshot == 0) {
+            return;
+        }
+        writeSnapshot(roomName, gameState, reserveLsn());
+        log.sinceSnapshot = 0;
+    }
+
+    /**
+     * Elimina lo stato registrato di una stanza.
+     *
+     * @param roomName nome della stanza
+     * @throws IOException se il record di eliminazione non può essere scritto
+     */
+    public void drop(String roomName) throws IOException {
+        recovered.remove(roomName);
+        if (rooms.remove(roomName) == null && !Files.exists(snapshotFile(roomName))) {
+            return;
+        }
+        long lsn = append(DROP, roomName, new byte[0]);
+        Files.deleteIfExists(snapshotFile(roomName));
+        covered.merge(roomName, lsn, Math::max);
+        compact();
+    }
+
+    /**
+     * Cerca la stanza a cui è associato uno stato di gioco registrato.
+     *
+     * @param gameState stato di gioco
+     * @return nome della stanza, o {@code null} se lo stato non è registrato
+     */
+    public String findRoom(GameState gameState) {
+        for (Map.Entry<String, RoomLog> entry : rooms.entrySet()) {
+            if (entry.getValue().baseline.getUuid().equals(gameState.getUuid())) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              SCRITTURA                              */
+    /* ------------------------------------------------------------------ */
+
+    private long reserveLsn() {
+        synchronized (appendLock) {
+            return nextLsn++;
+        }
+    }
+
+    private long append(byte kind, String roomName, byte[] payload) throws IOException {
+        Pending pending;
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IOException("Event journal closed");
+            }
+            pending = new Pending(nextLsn++, encodeRecord(nextLsn - 1, kind, roomName, payload), roomName, System.nanoTime());
+            queue.add(pending);
+        }
+
+        try {
+            pending.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the event journal", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+        return pending.lsn;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Pending first = queue.take();
+                if (first == Pending.STOP) {
+                    return;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                boolean stop = batch.remove(Pending.STOP);
+                writeBatch(batch);
+                batch.clear();
+                if (stop) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        try {
+            if (segmentSize >= segmentBytes) {
+                rollSegment(batch.getFirst().lsn);
+            }
+            ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+            long bytes = 0;
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.wrap(batch.get(i).record);
+                bytes += batch.get(i).record.length;
+            }
+            long written = 0;
+            while (written < bytes) {
+                written += segment.write(buffers);
+            }
+            segment.force(false);
+            segmentSize += bytes;
+
+            synchronized (segments) {
+                Map<String, Long> lastLsn = segments.lastEntry().getValue();
+                for (Pending pending : batch) {
+                    lastLsn.put(pending.roomName, pending.lsn);
+                }
+            }
+            APPENDS.add(batch.size());
+            BYTES.add(bytes);
+            FSYNCS.increment();
+            BATCH.record(batch.size());
+
+            long now = System.nanoTime();
+            for (Pending pending : batch) {
+                COMMIT.record(TimeUnit.NANOSECONDS.toMicros(now - pending.enqueued));
+                pending.done.complete(null);
+            }
+        } catch (IOException e) {
+            System.err.println("Event journal write failed: " + e.getMessage());
+            for (Pending pending : batch) {
+                pending.done.completeExceptionally(e);
+            }
+            // Il segmento può contenere un record parziale: si prosegue su uno nuovo
+            try {
+                rollSegment(batch.getLast().lsn + 1);
+            } catch (IOException ex) {
+                System.err.println("Event journal roll failed: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void rollSegment(long baseLsn) throws IOException {
+        try {
+            segment.close();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+        openSegment(baseLsn);
+    }
+
+    private void openSegment(long baseLsn) throws IOException {
+        segment = FileChannel.open(segmentFile(baseLsn),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = segment.size();
+        synchronized (segments) {
+            segments.putIfAbsent(baseLsn, new HashMap<>());
+        }
+    }
+
+    private void writeSnapshot(String roomName, GameState gameState, long lsn) throws IOException {
+        byte[] state = JournalCodec.encodeState(gameState);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(state.length + 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(lsn);
+            out.writeUTF(roomName);
+            out.writeInt(state.length);
+            out.writeInt(crc(state, 0, state.length));
+            out.write(state);
+        }
+
+        Path file = snapshotFile(roomName);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        SNAPSHOTS.increment();
+
+        covered.merge(roomName, lsn, Math::max);
+        compact();
+    }
+
+    /**
+     * Elimina, dal più vecchio, i segmenti chiusi i cui eventi sono tutti
+     * coperti da un'istantanea o da un'eliminazione.
+     */
+    private void compact() {
+        List<Long> obsolete = new ArrayList<>();
+        synchronized (segments) {
+            Iterator<Map.Entry<Long, Map<String, Long>>> it = segments.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Map<String, Long>> entry = it.next();
+                if (entry.getKey().equals(segments.lastKey()) || !isCovered(entry.getValue())) {
+                    break;
+                }
+                obsolete.add(entry.getKey());
+                it.remove();
+            }
+        }
+        for (long baseLsn : obsolete) {
+            try {
+                Files.deleteIfExists(segmentFile(baseLsn));
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Segnala al gestore le stanze con eventi non coperti nei segmenti chiusi.
+     */
+    private void checkpointLagging() {
+        Consumer<String> handler = checkpointHandler;
+        if (handler == null || closed) {
+            return;
+        }
+
+        Set<String> lagging = new HashSet<>();
+        synchronized (segments) {
+            for (Map<String, Long> lastLsn : segments.headMap(segments.lastKey()).values()) {
+                for (Map.Entry<String, Long> entry : lastLsn.entrySet()) {
+                    if (entry.getValue() > covered.getOrDefault(entry.getKey(), -1L)) {
+                        lagging.add(entry.getKey());
+                    }
+                }
+            }
+        }
+
+        for (String roomName : lagging) {
+            try {
+                handler.accept(roomName);
+            } catch (RuntimeException e) {
+                System.err.println("Event journal checkpoint of room " + roomName + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean isCovered(Map<String, Long> lastLsn) {
+        for (Map.Entry<String, Long> entry : lastLsn.entrySet()) {
+            if (entry.getValue() > covered.getOrDefault(entry.getKey(), -1L)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void shutdown() {
+        checkpointer.shutdownNow();
+        synchronized (appendLock) {
+            closed = true;
+            queue.add(Pending.STOP);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                              RECUPERO                               */
+    /* ------------------------------------------------------------------ */
+
+    private void recover() throws IOException {
+        long lastLsn = -1;
+
+        Map<String, Long> snapshotLsn = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(snapshotsDir, "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    SnapshotHeader header = readSnapshotHeader(in);
+                    snapshotLsn.put(header.roomName, header.lsn);
+                    covered.put(header.roomName, header.lsn);
+                    lastLsn = Math.max(lastLsn, header.lsn);
+                } catch (IOException e) {
+                    System.err.println("Skipping journal snapshot " + file + ": " + e.getMessage());
+                }
+            }
+        }
+
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                bases.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        bases.sort(null);
+
+        for (long base : bases) {
+            // Un segmento vuoto aperto dopo un errore fissa comunque il prossimo lsn
+            lastLsn = Math.max(lastLsn, base - 1);
+            Map<String, Long> roomLsn = new HashMap<>();
+            segments.put(base, roomLsn);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(segmentFile(base)))) {
+                DataInputStream data = new DataInputStream(in);
+                Record record;
+                while ((record = readRecord(data)) != null) {
+                    lastLsn = Math.max(lastLsn, record.lsn);
+                    roomLsn.put(record.roomName, record.lsn);
+                    if (record.kind == DROP) {
+                        covered.merge(record.roomName, record.lsn, Math::max);
+                    }
+                    Long snapshot = snapshotLsn.get(record.roomName);
+                    if (snapshot == null || record.lsn <= snapshot) {
+                        continue;
+                    }
+                    Recovered room = recovered.computeIfAbsent(record.roomName, r -> new Recovered());
+                    if (record.kind == DROP) {
+                        room.events.clear();
+                        room.dropped = true;
+                    } else if (!room.dropped) {
+                        room.events.add(record.payload);
+                    }
+                }
+            }
+        }
+
+        nextLsn = lastLsn + 1;
+        if (!recovered.isEmpty() || !snapshotLsn.isEmpty()) {
+            System.out.println("Event journal recovered " + snapshotLsn.size() + " snapshots, next lsn " + nextLsn);
+        }
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException {
+        int length;
+        int crc;
+        byte[] body;
+        try {
+            length = in.readInt();
+            crc = in.readInt();
+            if (length < MIN_RECORD_BYTES || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            body = new byte[length];
+            in.readFully(body);
+        } catch (EOFException e) {
+            // Coda del segmento troncata da un arresto improvviso
+            return null;
+        }
+        if (crc != crc(body, 0, body.length)) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        long lsn = buffer.getLong();
+        byte kind = buffer.get();
+        int nameLength = Short.toUnsignedInt(buffer.getShort());
+        String roomName = new String(body, buffer.position(), nameLength, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + nameLength);
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        return new Record(lsn, kind, roomName, payload);
+    }
+
+    private static byte[] encodeRecord(long lsn, byte kind, String roomName, byte[] payload) {
+        byte[] name = roomName.getBytes(StandardCharsets.UTF_8);
+        int length = Long.BYTES + 1 + Short.BYTES + name.length + payload.length;
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + length);
+        buffer.putInt(length).putInt(0)
+                .putLong(lsn).put(kind).putShort((short) name.length).put(name).put(payload);
+        byte[] record = buffer.array();
+        ByteBuffer.wrap(record).putInt(Integer.BYTES, crc(record, 2 * Integer.BYTES, length));
+        return record;
+    }
+
+    private static SnapshotHeader readSnapshotHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a journal snapshot");
+        }
+        long lsn = in.readLong();
+        return new SnapshotHeader(lsn, in.readUTF());
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private Path segmentFile(long baseLsn) {
+        return dir.resolve(SEGMENT_PREFIX + String.format("%020d", baseLsn) + SEGMENT_SUFFIX);
+    }
+
+    private Path snapshotFile(String roomName) {
+        return snapshotsDir.resolve(HexFormat.of().formatHex(roomName.getBytes(StandardCharsets.UTF_8)) + SNAPSHOT_SUFFIX);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                          STRUTTURE INTERNE                          */
+    /* ------------------------------------------------------------------ */
+
+    /** Record in attesa del thread scrittore. */
+    private record Pending(long lsn, byte[] record, String roomName, long enqueued, CompletableFuture<Void> done) {
+        static final Pending STOP = new Pending(-1, new byte[0], "", 0);
+
+        Pending(long lsn, byte[] record, String roomName, long enqueued) {
+            this(lsn, record, roomName, enqueued, new CompletableFuture<>());
+        }
+    }
+
+    /** Record letto da un segmento. */
+    private record Record(long lsn, byte kind, String roomName, byte[] payload) {}
+
+    /** Intestazione di un'istantanea. */
+    private record SnapshotHeader(long lsn, String roomName) {}
+
+    /** Eventi di una stanza successivi alla sua istantanea, letti all'avvio. */
+    private static final class Recovered {
+        final List<byte[]> events = new ArrayList<>();
+        boolean dropped;
+    }
+
+    /** Ultimo stato registrato di una stanza. */
+    private static final class RoomLog {
+        GameStateSnapshot baseline;
+        int sinceSnapshot;
+
+        RoomLog(GameStateSnapshot baseline) {
+            this.baseline = baseline;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.javamale.ectotext.server.persistence.journal;
+
+import org.javamale.ectotext.common.model.Character;
+import org.javamale.ectotext.common.model.Entity;
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.GameState;
+import org.javamale.ectotext.common.model.GameStateSnapshot;
+import org.javamale.ectotext.common.model.GameStateSnapshot.CharacterSnapshot;
+import org.javamale.ectotext.common.model.GameStateSnapshot.NPCSnapshot;
+import org.javamale.ectotext.common.model.Item;
+import org.javamale.ectotext.common.model.NPC;
+import org.javamale.ectotext.common.model.Room;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Codifica binaria degli eventi e delle istantanee del {@link EventJournal}.
+ * <p>
+ * Un evento contiene il giocatore, il comando e solo le differenze rispetto
+ * allo stato salvato in precedenza:
+ * <ul>
+ *   <li>flag aggiunti e rimossi;</li>
+ *   <li>personaggi modificati: nome visualizzato, stanza, oggetti presi
+ *       (con nome visualizzato e descrizione) e oggetti lasciati;</li>
+ *   <li>NPC modificati: nome visualizzato e stanza.</li>
+ * </ul>
+ * Un'istantanea contiene l'intero stato. Le stanze della mappa sono indicate
+ * per nome e risolte sulla descrizione dell'avventura al caricamento; la
+ * stessa codifica è usata dalla {@code GameStateCache} per tenere in memoria
+ * gli stati salvati.
+ */
+public final class JournalCodec {
+
+    private JournalCodec() {}
+
+    /**
+     * Indica se due istantanee descrivono la stessa partita con gli stessi
+     * personaggi e NPC, quindi se la seconda è esprimibile come differenza
+     * dalla prima.
+     */
+    static boolean sameShape(GameStateSnapshot baseline, GameStateSnapshot current) {
+        if (!baseline.getUuid().equals(current.getUuid())
+                || baseline.getCharacters().size() != current.getCharacters().size()
+                || baseline.getNPCs().size() != current.getNPCs().size()) {
+            return false;
+        }
+        for (CharacterSnapshot c : current.getCharacters()) {
+            if (baseline.getCharacter(c.name()) == null) {
+                return false;
+            }
+        }
+        for (NPCSnapshot n : current.getNPCs()) {
+            if (baseline.getNPC(n.name()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Codifica un evento.
+     *
+     * @param playerName giocatore che ha inviato il comando, o {@code null}
+     * @param command    comando eseguito, o {@code null}
+     * @param baseline   stato salvato in precedenza
+     * @param current    stato da salvare
+     * @param gameState  stato corrente, da cui leggere i dettagli degli oggetti presi
+     * @return evento codificato, o {@code null} se non c'è nulla da registrare
+     */
+    static byte[] encodeEvent(String playerName, String command, GameStateSnapshot baseline,
+                              GameStateSnapshot current, GameState gameState) {
+        Set<GameFlag> added = EnumSet.noneOf(GameFlag.class);
+        Set<GameFlag> removed = EnumSet.noneOf(GameFlag.class);
+        if (baseline.getFlags() != current.getFlags()) {
+            added.addAll(current.getFlags());
+            added.removeAll(baseline.getFlags());
+            removed.addAll(baseline.getFlags());
+            removed.removeAll(current.getFlags());
+        }
+
+        List<CharacterSnapshot> characters = new ArrayList<>();
+        for (CharacterSnapshot c : current.getCharacters()) {
+            if (!c.equals(baseline.getCharacter(c.name()))) {
+                characters.add(c);
+            }
+        }
+        List<NPCSnapshot> npcs = new ArrayList<>();
+        for (NPCSnapshot n : current.getNPCs()) {
+            if (!n.equals(baseline.getNPC(n.name()))) {
+                npcs.add(n);
+            }
+        }
+
+        if (command == null && added.isEmpty() && removed.isEmpty() && characters.isEmpty() && npcs.isEmpty()) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeNullable(out, playerName);
+            writeNullable(out, command);
+            writeFlags(out, added);
+            writeFlags(out, removed);
+
+            out.writeShort(characters.size());
+            for (CharacterSnapshot c : characters) {
+                CharacterSnapshot previous = baseline.getCharacter(c.name());
+                out.writeUTF(c.name());
+                writeNullable(out, c.displayName());
+                writeNullable(out, c.roomName());
+
+                List<Item> taken = new ArrayList<>();
+                for (Item item : gameState.getCharacter(c.name()).getInventory()) {
+                    if (!previous.inventory().contains(item.getName())) {
+                        taken.add(item);
+                    }
+                }
+                out.writeShort(taken.size());
+                for (Item item : taken) {
+                    writeItem(out, item);
+                }
+
+                List<String> dropped = new ArrayList<>();
+                for (String itemName : previous.inventory()) {
+                    if (!c.inventory().contains(itemName)) {
+                        dropped.add(itemName);
+                    }
+                }
+                out.writeShort(dropped.size());
+                for (String itemName : dropped) {
+                    out.writeUTF(itemName);
+                }
+            }
+
+            out.writeShort(npcs.size());
+            for (NPCSnapshot n : npcs) {
+                out.writeUTF(n.name());
+                writeNullable(out, n.displayName());
+                writeNullable(out, n.roomName());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Applica un evento a uno stato di gioco.
+     *
+     * @param payload         evento codificato con {@link #encodeEvent}
+     * @param gameState       stato da aggiornare
+     * @param gameDescription descrizione dell'avventura, per risolvere le stanze
+     * @throws IOException se l'evento non è valido o non corrisponde allo stato
+     */
+    static void applyEvent(byte[] payload, GameState gameState, GameDescription gameDescription) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        readNullable(in);
+        readNullable(in);
+        readFlags(in).forEach(gameState::addFlag);
+        readFlags(in).forEach(gameState::removeFlag);
+
+        int characters = in.readUnsignedShort();
+        for (int i = 0; i < characters; i++) {
+            String name = in.readUTF();
+            Character character = gameState.getCharacter(name);
+            if (character == null) {
+                throw new IOException("Unknown character in journal event: " + name);
+            }
+            character.setDisplayName(readNullable(in));
+            moveTo(character, room(gameDescription, readNullable(in)));
+
+            int taken = in.readUnsignedShort();
+            for (int j = 0; j < taken; j++) {
+                character.addItem(readItem(in));
+            }
+            int dropped = in.readUnsignedShort();
+            for (int j = 0; j < dropped; j++) {
+                character.removeItem(in.readUTF());
+            }
+        }
+
+        int npcs = in.readUnsignedShort();
+        for (int i = 0; i < npcs; i++) {
+            String name = in.readUTF();
+            NPC npc = gameState.getNPC(name);
+            if (npc == null) {
+                throw new IOException("Unknown NPC in journal event: " + name);
+            }
+            npc.setDisplayName(readNullable(in));
+            moveTo(npc, room(gameDescription, readNullable(in)));
+        }
+    }
+
+    /**
+     * Legge giocatore e comando di un evento.
+     *
+     * @param payload evento codificato con {@link #encodeEvent}
+     * @return array di due elementi: giocatore e comando (possono essere {@code null})
+     * @throws IOException se l'evento non è valido
+     */
+    static String[] readCommand(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        return new String[]{readNullable(in), readNullable(in)};
+    }
+
+    /**
+     * Codifica l'intero stato di gioco.
+     *
+     * @param gameState stato da codificare
+     * @return istantanea codificata
+     */
+    public static byte[] encodeState(GameState gameState) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            UUID uuid = gameState.getUuid();
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            writeFlags(out, gameState.getFlags());
+
+            out.writeShort(gameState.getCharacters().size());
+            for (Character c : gameState.getCharacters()) {
+                out.writeUTF(c.getName());
+                writeNullable(out, c.getDisplayName());
+                writeNullable(out, roomName(c.getCurrentRoom()));
+                out.writeShort(c.getInventory().size());
+                for (Item item : c.getInventory()) {
+                    writeItem(out, item);
+                }
+            }
+
+            out.writeShort(gameState.getNPCs().size());
+            for (NPC n : gameState.getNPCs()) {
+                out.writeUTF(n.getName());
+                writeNullable(out, n.getDisplayName());
+                writeNullable(out, roomName(n.getCurrentRoom()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Ricostruisce uno stato di gioco da un'istantanea.
+     *
+     * @param in              istantanea codificata con {@link #encodeState}
+     * @param gameDescription descrizione dell'avventura, per risolvere le stanze
+     * @return stato di gioco
+     * @throws IOException se l'istantanea non è valida
+     */
+    public static GameState decodeState(DataInput in, GameDescription gameDescription) throws IOException {
+        GameState gameState = new GameState(new UUID(in.readLong(), in.readLong()));
+        gameState.addFlags(readFlags(in));
+
+        int characters = in.readUnsignedShort();
+        for (int i = 0; i < characters; i++) {
+            Character.CharacterBuilder builder = new Character.CharacterBuilder(in.readUTF())
+                    .setDisplayName(readNullable(in))
+                    .setStartingRoom(room(gameDescription, readNullable(in)));
+            int items = in.readUnsignedShort();
+            for (int j = 0; j < items; j++) {
+                builder.addItem(readItem(in));
+            }
+            gameState.addCharacter(builder.build());
+        }
+
+        int npcs = in.readUnsignedShort();
+        for (int i = 0; i < npcs; i++) {
+            gameState.addNPC(new NPC(in.readUTF(), readNullable(in), room(gameDescription, readNullable(in))));
+        }
+        return gameState;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static void writeFlags(DataOutput out, Collection<GameFlag> flags) throws IOException {
+        out.writeShort(flags.size());
+        for (GameFlag flag : flags) {
+            out.writeUTF(flag.getKey());
+        }
+    }
+
+    private static List<GameFlag> readFlags(DataInput in) throws IOException {
+        int count = in.readUnsignedShort();
+        List<GameFlag> flags = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            GameFlag flag = GameFlag.fromKey(key);
+            if (flag == null) {
+                throw new IOException("Unknown game flag in journal: " + key);
+            }
+            flags.add(flag);
+        }
+        return flags;
+    }
+
+    private static void writeItem(DataOutput out, Item item) throws IOException {
+        out.writeUTF(item.getName());
+        writeNullable(out, item.getDisplayName());
+        writeNullable(out, item.getDescription());
+    }
+
+    private static Item readItem(DataInput in) throws IOException {
+        return new Item(in.readUTF(), readNullable(in), readNullable(in));
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static String roomName(Room room) {
+        return room == null ? null : room.getName();
+    }
+
+    private static Room room(GameDescription gameDescription, String roomName) {
+        return roomName == null ? null : gameDescription.getGameMap().getRoom(roomName);
+    }
+
+    private static void moveTo(Entity entity, Room room) {
+        if (!Objects.equals(entity.getCurrentRoom(), room)) {
+            entity.move(room);
+        }
+    }
+}
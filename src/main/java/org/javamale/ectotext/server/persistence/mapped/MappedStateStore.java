@@ -0,0 +1,562 @@
+package org.javamale.ectotext.server.persistence.mapped;
+
+import org.javamale.ectotext.common.model.Character;
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.GameState;
+import org.javamale.ectotext.common.model.Item;
+import org.javamale.ectotext.common.model.NPC;
+import org.javamale.ectotext.common.model.Room;
+import org.javamale.ectotext.server.metrics.MetricsRegistry;
+import org.javamale.ectotext.server.persistence.DbManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Archivio degli stati di gioco in record a dimensione fissa dentro un file
+ * mappato in memoria, alternativo al database per gli stati di gioco.
+ * <p>
+ * Il file {@code <percorso>.map} è diviso in slot di dimensione fissa, uno
+ * per stanza, indirizzati da un indice «stanza → slot» ricostruito all'avvio
+ * con una lettura sequenziale del file. Ogni slot contiene:
+ * <ul>
+ *   <li>la bitmask dei flag attivi;</li>
+ *   <li>per ogni personaggio: nome, nome visualizzato, stanza e bitset
+ *       degli oggetti nell'inventario;</li>
+ *   <li>per ogni NPC: nome, nome visualizzato e stanza.</li>
+ * </ul>
+ * Nomi, oggetti e flag sono scritti come identificatori numerici assegnati
+ * dallo {@link StateDictionary} ({@code <percorso>.dict}).
+ * <p>
+ * Un salvataggio è una scrittura nella regione mappata, senza chiamate di
+ * sistema: la metà inattiva dello slot viene sovrascritta con una versione
+ * più alta, così un record scritto a metà non sostituisce quello valido.
+ * Un thread di sfondo rende durevoli le regioni modificate ogni
+ * {@value #DEFAULT_FORCE_MILLIS} ms (configurabile); la chiusura le rende
+ * durevoli tutte. In caso di arresto improvviso del sistema operativo si
+ * possono quindi perdere gli ultimi salvataggi dell'intervallo.
+ */
+public final class MappedStateStore {
+
+    /** Proprietà di sistema con il percorso dei file, senza estensione. */
+    public static final String PATH_PROPERTY = "ectotext.mapped.path";
+
+    /** Proprietà di sistema con la dimensione di uno slot per un nuovo archivio. */
+    public static final String SLOT_BYTES_PROPERTY = "ectotext.mapped.slotBytes";
+
+    /** Proprietà di sistema con l'intervallo tra due {@code force} delle regioni modificate. */
+    public static final String FORCE_MILLIS_PROPERTY = "ectotext.mapped.forceMillis";
+
+    /** Dimensione predefinita di uno slot: due metà da 2 KiB. */
+    public static final int DEFAULT_SLOT_BYTES = 4096;
+
+    /** Intervallo predefinito tra due {@code force}. */
+    public static final long DEFAULT_FORCE_MILLIS = 1000;
+
+    private static final int FILE_MAGIC = 0x45435453;
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CHUNK_SLOTS = 256;
+
+    private static final int HALF_MAGIC = 0x534C4F54;
+    private static final int HALF_HEADER_BYTES = 3 * Integer.BYTES;
+    private static final byte USED = 1;
+    private static final byte FREE = 2;
+
+    private static final LongAdder FORCES = MetricsRegistry.counter("ectotext_mapped_force_total",
+            "Mapped regions forced to disk by the game state store");
+
+    private static volatile MappedStateStore instance;
+
+    static {
+        MetricsRegistry.gauge("ectotext_mapped_slots_used", "Game state slots in use in the mapped store",
+                () -> instance == null ? 0 : instance.usedSlots());
+    }
+
+    private final FileChannel channel;
+    private final StateDictionary dictionary;
+    private final int slotBytes;
+
+    /** Regioni mappate, ognuna di {@link #CHUNK_SLOTS} slot. */
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final BitSet dirtyChunks = new BitSet();
+
+    /** Stato in memoria degli slot. */
+    private final List<SlotInfo> slots = new ArrayList<>();
+    private final Map<String, Integer> index = new HashMap<>();
+    private final Deque<Integer> free = new ArrayDeque<>();
+
+    private final ScheduledExecutorService flusher;
+
+    private MappedStateStore() throws IOException {
+        String path = System.getProperty(PATH_PROPERTY, DbManager.getDbPath() + "-states");
+        Path mapFile = Path.of(path + ".map");
+        if (mapFile.getParent() != null) {
+            Files.createDirectories(mapFile.getParent());
+        }
+
+        channel = FileChannel.open(mapFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        slotBytes = readOrWriteHeader();
+        dictionary = new StateDictionary(Path.of(path + ".dict"));
+        scan();
+
+        long forceMillis = Long.getLong(FORCE_MILLIS_PROPERTY, DEFAULT_FORCE_MILLIS);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mapped-state-force");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::forceDirty, forceMillis, forceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Restituisce l'archivio, aprendolo e indicizzandolo al primo utilizzo.
+     *
+     * @return istanza dell'archivio
+     */
+    public static MappedStateStore getInstance() {
+        if (instance == null) {
+            synchronized (MappedStateStore.class) {
+                if (instance == null) {
+                    try {
+                        instance = new MappedStateStore();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Rende durevoli le regioni modificate e chiude l'archivio, se aperto.
+     * Una chiamata successiva a {@link #getInstance()} lo riapre.
+     */
+    public static void close() {
+        synchronized (MappedStateStore.class) {
+            if (instance == null) {
+                return;
+            }
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * Chiude l'archivio ed elimina i suoi file (usato per reset).
+     */
+    public static synchronized void reset() {
+        close();
+        String path = System.getProperty(PATH_PROPERTY, DbManager.getDbPath() + "-states");
+        try {
+            Files.deleteIfExists(Path.of(path + ".map"));
+            Files.deleteIfExists(Path.of(path + ".dict"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile eliminare l'archivio degli stati.", e);
+        }
+    }
+
+    /**
+     * Scrive lo stato di una stanza nel suo slot, assegnandone uno libero
+     * se la stanza non ne ha.
+     *
+     * @param roomName  nome della stanza
+     * @param gameState stato da salvare
+     * @throws IOException se lo stato non entra nello slot o il dizionario non può essere scritto
+     */
+    public void save(String roomName, GameState gameState) throws IOException {
+        byte[] body = encode(gameState);
+        dictionary.flush();
+
+        synchronized (this) {
+            Integer slot = index.get(roomName);
+            if (slot != null) {
+                writeHalf(slot, USED, roomName, gameState.getUuid(), body);
+                return;
+            }
+            slot = allocate();
+            try {
+                writeHalf(slot, USED, roomName, gameState.getUuid(), body);
+            } catch (IOException e) {
+                free.addFirst(slot);
+                throw e;
+            }
+            index.put(roomName, slot);
+        }
+    }
+
+    /**
+     * Legge lo stato di una stanza dal suo slot.
+     *
+     * @param roomName        nome della stanza
+     * @param gameDescription descrizione dell'avventura, per risolvere le stanze
+     * @return stato letto, o {@code null} se la stanza non ha uno slot
+     * @throws IOException se il record non è valido
+     */
+    public GameState get(String roomName, GameDescription gameDescription) throws IOException {
+        ByteBuffer record;
+        UUID uuid;
+        synchronized (this) {
+            Integer slot = index.get(roomName);
+            if (slot == null) {
+                return null;
+            }
+            SlotInfo info = slots.get(slot);
+            record = readHalf(slot, info.half);
+            if (record == null) {
+                throw new IOException("Corrupted game state slot for room " + roomName);
+            }
+            uuid = info.uuid;
+        }
+        return decode(record, uuid, gameDescription);
+    }
+
+    /**
+     * Libera lo slot di una stanza.
+     *
+     * @param roomName nome della stanza
+     * @throws IOException se lo slot non può essere scritto
+     */
+    public synchronized void delete(String roomName) throws IOException {
+        Integer slot = index.remove(roomName);
+        if (slot == null) {
+            return;
+        }
+        writeHalf(slot, FREE, roomName, slots.get(slot).uuid, new byte[0]);
+        free.addFirst(slot);
+    }
+
+    /**
+     * Cerca la stanza a cui è associato uno stato di gioco salvato.
+     *
+     * @param uuid identificatore dello stato
+     * @return nome della stanza, o {@code null} se lo stato non è salvato
+     */
+    public synchronized String findRoom(UUID uuid) {
+        for (Map.Entry<String, Integer> entry : index.entrySet()) {
+            if (uuid.equals(slots.get(entry.getValue()).uuid)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                           CODIFICA DEI RECORD                        */
+    /* ------------------------------------------------------------------ */
+
+    private byte[] encode(GameState gameState) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(slotBytes / 2);
+        try {
+            BitSet flags = new BitSet();
+            for (GameFlag flag : gameState.getFlags()) {
+                flags.set(dictionary.flagId(flag));
+            }
+            putBits(out, flags);
+
+            out.putShort((short) gameState.getCharacters().size());
+            for (Character c : gameState.getCharacters()) {
+                out.putInt(dictionary.stringId(c.getName()));
+                out.putInt(dictionary.stringId(c.getDisplayName()));
+                out.putInt(dictionary.stringId(roomName(c.getCurrentRoom())));
+                BitSet inventory = new BitSet();
+                for (Item item : c.getInventory()) {
+                    inventory.set(dictionary.itemId(item));
+                }
+                putBits(out, inventory);
+            }
+
+            out.putShort((short) gameState.getNPCs().size());
+            for (NPC n : gameState.getNPCs()) {
+                out.putInt(dictionary.stringId(n.getName()));
+                out.putInt(dictionary.stringId(n.getDisplayName()));
+                out.putInt(dictionary.stringId(roomName(n.getCurrentRoom())));
+            }
+        } catch (BufferOverflowException e) {
+            throw new IOException("Game state does not fit in a " + slotBytes + "-byte slot", e);
+        }
+
+        byte[] body = new byte[out.position()];
+        out.flip().get(body);
+        return body;
+    }
+
+    private GameState decode(ByteBuffer in, UUID uuid, GameDescription gameDescription) {
+        GameState gameState = new GameState(uuid);
+        BitSet flags = getBits(in);
+        for (int id = flags.nextSetBit(0); id >= 0; id = flags.nextSetBit(id + 1)) {
+            GameFlag flag = dictionary.flag(id);
+            if (flag != null) {
+                gameState.addFlag(flag);
+            }
+        }
+
+        int characters = in.getShort();
+        for (int i = 0; i < characters; i++) {
+            Character.CharacterBuilder builder = new Character.CharacterBuilder(dictionary.string(in.getInt()))
+                    .setDisplayName(dictionary.string(in.getInt()))
+                    .setStartingRoom(room(gameDescription, dictionary.string(in.getInt())));
+            BitSet inventory = getBits(in);
+            for (int id = inventory.nextSetBit(0); id >= 0; id = inventory.nextSetBit(id + 1)) {
+                builder.addItem(dictionary.item(id));
+            }
+            gameState.addCharacter(builder.build());
+        }
+
+        int npcs = in.getShort();
+        for (int i = 0; i < npcs; i++) {
+            gameState.addNPC(new NPC(dictionary.string(in.getInt()), dictionary.string(in.getInt()),
+                    room(gameDescription, dictionary.string(in.getInt()))));
+        }
+        return gameState;
+    }
+
+    private static void putBits(ByteBuffer out, BitSet bits) {
+        long[] words = bits.toLongArray();
+        out.putShort((short) words.length);
+        for (long word : words) {
+            out.putLong(word);
+        }
+    }
+
+    private static BitSet getBits(ByteBuffer in) {
+        long[] words = new long[in.getShort()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.getLong();
+        }
+        return BitSet.valueOf(words);
+    }
+
+    private static String roomName(Room room) {
+        return room == null ? null : room.getName();
+    }
+
+    private static Room room(GameDescription gameDescription, String roomName) {
+        return roomName == null ? null : gameDescription.getGameMap().getRoom(roomName);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                             GESTIONE SLOT                            */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Scrive la metà inattiva di uno slot con una versione più alta.
+     * Forma: {@code [int magic][int lunghezza][int crc32][long versione]
+     * [byte stato][long uuid][long uuid][UTF stanza][record]}.
+     */
+    private void writeHalf(int slot, byte status, String roomName, UUID uuid, byte[] body) throws IOException {
+        SlotInfo info = slots.get(slot);
+        byte[] name = roomName.getBytes(StandardCharsets.UTF_8);
+        int length = Long.BYTES + 1 + 2 * Long.BYTES + Short.BYTES + name.length + body.length;
+        if (HALF_HEADER_BYTES + length > slotBytes / 2) {
+            throw new IOException("Game state does not fit in a " + slotBytes + "-byte slot");
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.putLong(info.version + 1).put(status)
+                .putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits())
+                .putShort((short) name.length).put(name).put(body);
+        byte[] bytes = payload.array();
+
+        int half = info.version == 0 ? 0 : 1 - info.half;
+        MappedByteBuffer chunk = chunks.get(slot / CHUNK_SLOTS);
+        int offset = (slot % CHUNK_SLOTS) * slotBytes + half * (slotBytes / 2);
+        // Il magic viene scritto per ultimo: una metà incompleta non è mai valida
+        chunk.putInt(offset, 0);
+        chunk.putInt(offset + Integer.BYTES, length);
+        chunk.putInt(offset + 2 * Integer.BYTES, crc(bytes));
+        chunk.put(offset + HALF_HEADER_BYTES, bytes);
+        chunk.putInt(offset, HALF_MAGIC);
+        dirtyChunks.set(slot / CHUNK_SLOTS);
+
+        info.version++;
+        info.half = half;
+        info.uuid = uuid;
+    }
+
+    /**
+     * Legge una metà di uno slot posizionandosi sul record.
+     *
+     * @return buffer posizionato dopo il nome della stanza, o {@code null} se la metà non è valida
+     */
+    private ByteBuffer readHalf(int slot, int half) {
+        MappedByteBuffer chunk = chunks.get(slot / CHUNK_SLOTS);
+        int offset = (slot % CHUNK_SLOTS) * slotBytes + half * (slotBytes / 2);
+        if (chunk.getInt(offset) != HALF_MAGIC) {
+            return null;
+        }
+        int length = chunk.getInt(offset + Integer.BYTES);
+        if (length <= 0 || length > slotBytes / 2 - HALF_HEADER_BYTES) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        chunk.get(offset + HALF_HEADER_BYTES, bytes);
+        if (chunk.getInt(offset + 2 * Integer.BYTES) != crc(bytes)) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        record.position(Long.BYTES + 1 + 2 * Long.BYTES);
+        record.position(record.position() + Short.BYTES + Short.toUnsignedInt(record.getShort(record.position())));
+        return record;
+    }
+
+    /**
+     * Legge tutti gli slot in ordine e ricostruisce l'indice delle stanze.
+     */
+    private void scan() throws IOException {
+        long chunkBytes = (long) CHUNK_SLOTS * slotBytes;
+        long chunkCount = (channel.size() - HEADER_BYTES + chunkBytes - 1) / chunkBytes;
+        for (int c = 0; c < chunkCount; c++) {
+            mapChunk(false);
+        }
+
+        for (int slot = 0; slot < slots.size(); slot++) {
+            SlotInfo info = slots.get(slot);
+            ByteBuffer best = null;
+            for (int half = 0; half < 2; half++) {
+                ByteBuffer record = readHalf(slot, half);
+                if (record != null && (best == null || record.getLong(0) > best.getLong(0))) {
+                    best = record;
+                    info.half = half;
+                }
+            }
+            if (best == null) {
+                free.addLast(slot);
+                continue;
+            }
+            info.version = best.getLong(0);
+            info.uuid = new UUID(best.getLong(Long.BYTES + 1), best.getLong(2 * Long.BYTES + 1));
+            int nameOffset = 3 * Long.BYTES + 1;
+            int nameLength = Short.toUnsignedInt(best.getShort(nameOffset));
+            String roomName = new String(best.array(), nameOffset + Short.BYTES, nameLength, StandardCharsets.UTF_8);
+
+            if (best.get(Long.BYTES) == USED) {
+                index.put(roomName, slot);
+            } else {
+                free.addLast(slot);
+            }
+        }
+        if (!index.isEmpty()) {
+            System.out.println("Mapped state store indexed " + index.size() + " rooms in " + slots.size() + " slots");
+        }
+    }
+
+    private int allocate() throws IOException {
+        if (free.isEmpty()) {
+            mapChunk(true);
+        }
+        return free.removeFirst();
+    }
+
+    /**
+     * Mappa la regione successiva del file, estendendolo se necessario.
+     *
+     * @param empty {@code true} se la regione è nuova e i suoi slot sono liberi
+     */
+    private void mapChunk(boolean empty) throws IOException {
+        long chunkBytes = (long) CHUNK_SLOTS * slotBytes;
+        long offset = HEADER_BYTES + chunks.size() * chunkBytes;
+        chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, offset, chunkBytes));
+        int first = slots.size();
+        for (int i = 0; i < CHUNK_SLOTS; i++) {
+            slots.add(new SlotInfo());
+        }
+        if (empty) {
+            for (int i = first; i < slots.size(); i++) {
+                free.addLast(i);
+            }
+        }
+    }
+
+    private int readOrWriteHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (channel.size() == 0) {
+            int configured = Integer.getInteger(SLOT_BYTES_PROPERTY, DEFAULT_SLOT_BYTES);
+            header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(configured).rewind();
+            channel.write(header, 0);
+            channel.force(true);
+            return configured;
+        }
+
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < 3 * Integer.BYTES || header.getInt() != FILE_MAGIC || header.getInt() != FILE_VERSION) {
+            throw new IOException("Not a game state store: " + channel);
+        }
+        int stored = header.getInt();
+        Integer configured = Integer.getInteger(SLOT_BYTES_PROPERTY);
+        if (configured != null && configured != stored) {
+            System.err.println("Ignoring " + SLOT_BYTES_PROPERTY + "=" + configured
+                    + ": the existing store uses " + stored + "-byte slots");
+        }
+        return stored;
+    }
+
+    private void forceDirty() {
+        List<MappedByteBuffer> dirty = new ArrayList<>();
+        synchronized (this) {
+            for (int c = dirtyChunks.nextSetBit(0); c >= 0; c = dirtyChunks.nextSetBit(c + 1)) {
+                dirty.add(chunks.get(c));
+            }
+            dirtyChunks.clear();
+        }
+        for (MappedByteBuffer chunk : dirty) {
+            chunk.force();
+            FORCES.increment();
+        }
+    }
+
+    private synchronized int usedSlots() {
+        return index.size();
+    }
+
+    private void shutdown() {
+        flusher.shutdownNow();
+        forceDirty();
+        try {
+            dictionary.close();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /** Stato in memoria di uno slot. */
+    private static final class SlotInfo {
+        /** Versione della metà valida più recente, 0 se lo slot non è mai stato scritto. */
+        long version;
+        /** Metà che contiene la versione più recente. */
+        int half;
+        /** Stato di gioco contenuto nello slot. */
+        UUID uuid;
+    }
+}
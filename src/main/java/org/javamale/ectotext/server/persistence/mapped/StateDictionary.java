@@ -0,0 +1,279 @@
+package org.javamale.ectotext.server.persistence.mapped;
+
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.Item;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Dizionario append-only del {@link MappedStateStore}.
+ * <p>
+ * Assegna un identificatore numerico stabile a ogni valore che non può
+ * stare in un record a layout fisso:
+ * <ul>
+ *   <li>stringhe (nomi di stanze, personaggi e NPC, nomi visualizzati);</li>
+ *   <li>oggetti, identificati dalla terna nome, nome visualizzato e
+ *       descrizione, usati come posizioni dei bitset degli inventari;</li>
+ *   <li>flag di gioco, usati come posizioni della bitmask dei flag.</li>
+ * </ul>
+ * Ogni voce è scritta come {@code [int lunghezza][int crc32][byte tipo][dati]};
+ * gli identificatori sono assegnati per tipo in ordine di file, quindi non
+ * cambiano tra un avvio e l'altro. Una voce incompleta in coda al file viene
+ * ignorata e sovrascritta.
+ */
+final class StateDictionary {
+
+    private static final byte STRING = 1;
+    private static final byte ITEM = 2;
+    private static final byte FLAG = 3;
+
+    /** Terna che identifica un oggetto. */
+    private record ItemKey(String name, String displayName, String description) {}
+
+    private final FileChannel channel;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<ItemKey> items = new ArrayList<>();
+    private final Map<ItemKey, Integer> itemIds = new HashMap<>();
+    private final List<GameFlag> flags = new ArrayList<>();
+    private final Map<GameFlag, Integer> flagIds = new HashMap<>();
+
+    /** Voci aggiunte e non ancora scritte su disco. */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /**
+     * Apre il dizionario e ne legge le voci.
+     *
+     * @param file file del dizionario
+     * @throws IOException se il file non può essere aperto o letto
+     */
+    StateDictionary(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid = load();
+        channel.truncate(valid);
+        channel.position(valid);
+    }
+
+    /**
+     * Restituisce l'identificatore di una stringa, aggiungendola se nuova.
+     *
+     * @param value stringa, o {@code null}
+     * @return identificatore, o {@code -1} per {@code null}
+     */
+    synchronized int stringId(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = addString(value);
+            append(STRING, out -> out.writeUTF(value));
+        }
+        return id;
+    }
+
+    /**
+     * Restituisce l'identificatore di un oggetto, aggiungendolo se nuovo.
+     *
+     * @param item oggetto
+     * @return identificatore
+     */
+    synchronized int itemId(Item item) {
+        ItemKey key = new ItemKey(item.getName(), item.getDisplayName(), item.getDescription());
+        Integer id = itemIds.get(key);
+        if (id == null) {
+            int name = stringId(key.name());
+            int displayName = stringId(key.displayName());
+            int description = stringId(key.description());
+            id = addItem(key);
+            append(ITEM, out -> {
+                out.writeInt(name);
+                out.writeInt(displayName);
+                out.writeInt(description);
+            });
+        }
+        return id;
+    }
+
+    /**
+     * Restituisce l'identificatore di un flag, aggiungendolo se nuovo.
+     *
+     * @param flag flag di gioco
+     * @return identificatore
+     */
+    synchronized int flagId(GameFlag flag) {
+        Integer id = flagIds.get(flag);
+        if (id == null) {
+            id = addFlag(flag);
+            append(FLAG, out -> out.writeUTF(flag.getKey()));
+        }
+        return id;
+    }
+
+    /**
+     * @param id identificatore restituito da {@link #stringId}
+     * @return stringa, o {@code null} per {@code -1}
+     */
+    synchronized String string(int id) {
+        return id < 0 ? null : strings.get(id);
+    }
+
+    /**
+     * @param id identificatore restituito da {@link #itemId}
+     * @return nuova istanza dell'oggetto
+     */
+    synchronized Item item(int id) {
+        ItemKey key = items.get(id);
+        return new Item(key.name(), key.displayName(), key.description());
+    }
+
+    /**
+     * @param id identificatore restituito da {@link #flagId}
+     * @return flag, o {@code null} se il flag non esiste più nel gioco
+     */
+    synchronized GameFlag flag(int id) {
+        return flags.get(id);
+    }
+
+    /**
+     * Rende durevoli le voci aggiunte. Va chiamato prima di scrivere un
+     * record che le usa.
+     *
+     * @throws IOException se la scrittura fallisce
+     */
+    synchronized void flush() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        long start = channel.position();
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Le voci restano in attesa e verranno riscritte dallo stesso punto
+            channel.position(start);
+            throw e;
+        }
+        pending.reset();
+    }
+
+    /**
+     * Rende durevoli le voci aggiunte e chiude il file.
+     *
+     * @throws IOException se la scrittura fallisce
+     */
+    synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private int addString(String value) {
+        strings.add(value);
+        stringIds.put(value, strings.size() - 1);
+        return strings.size() - 1;
+    }
+
+    private int addItem(ItemKey key) {
+        items.add(key);
+        itemIds.put(key, items.size() - 1);
+        return items.size() - 1;
+    }
+
+    private int addFlag(GameFlag flag) {
+        flags.add(flag);
+        if (flag != null) {
+            flagIds.put(flag, flags.size() - 1);
+        }
+        return flags.size() - 1;
+    }
+
+    /** Scrittura del contenuto di una voce. */
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(byte kind, EntryWriter writer) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(32);
+            try (DataOutputStream out = new DataOutputStream(body)) {
+                out.writeByte(kind);
+                writer.write(out);
+            }
+            byte[] bytes = body.toByteArray();
+            DataOutputStream out = new DataOutputStream(pending);
+            out.writeInt(bytes.length);
+            out.writeInt(crc(bytes));
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long load() throws IOException {
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        long valid = 0;
+        while (true) {
+            byte[] body;
+            try {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || length > 1 << 20) {
+                    return valid;
+                }
+                body = new byte[length];
+                in.readFully(body);
+                if (crc != crc(body)) {
+                    return valid;
+                }
+            } catch (EOFException e) {
+                return valid;
+            }
+
+            DataInputStream entry = new DataInputStream(new ByteArrayInputStream(body));
+            switch (entry.readByte()) {
+                case STRING -> addString(entry.readUTF());
+                case ITEM -> addItem(new ItemKey(string(entry.readInt()), string(entry.readInt()), string(entry.readInt())));
+                case FLAG -> addFlag(GameFlag.fromKey(entry.readUTF()));
+                default -> {
+                    return valid;
+                }
+            }
+            valid += 2 * Integer.BYTES + body.length;
+        }
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
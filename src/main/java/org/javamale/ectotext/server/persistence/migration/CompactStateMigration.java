@@ -0,0 +1,330 @@
+package org.javamale.ectotext.server.persistence.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Versione 2: dati statici del mondo nelle tabelle {@code world_*} e stato
+ * mutabile con chiavi intere nelle tabelle {@code state_*}.
+ * <ul>
+ *   <li>{@link #migrate} crea le nuove tabelle, aggiunge {@code gs_id} a
+ *       {@code game_states} e l'indice {@code game_states_gr_name}; se esistono
+ *       le vecchie tabelle registra in {@code state_backfill} gli stati da
+ *       copiare;</li>
+ *   <li>il recupero copia a lotti gli stati registrati dalle vecchie tabelle
+ *       ({@code game_flags}, {@code characters}, {@code npcs},
+ *       {@code character_inventories}) e li rimuove da {@code state_backfill}
+ *       nella stessa transazione;</li>
+ *   <li>{@link #prepareRoom} copia subito gli stati ancora registrati di una
+ *       stanza che sta per essere caricata;</li>
+ *   <li>{@link #finish} elimina le vecchie tabelle e {@code state_backfill}.</li>
+ * </ul>
+ */
+final class CompactStateMigration implements Migration {
+
+    /**
+     * Stati ancora da copiare, in ordine di creazione.
+     */
+    private static final String SQL_PENDING_STATES = """
+            SELECT id FROM game_states
+            WHERE gs_id IN (SELECT gs_id FROM state_backfill ORDER BY gs_id LIMIT ?)
+            """;
+
+    /**
+     * Stati di una stanza ancora da copiare.
+     */
+    private static final String SQL_PENDING_ROOM_STATES = """
+            SELECT s.id FROM game_states s
+            JOIN state_backfill b ON b.gs_id = s.gs_id
+            WHERE s.gr_name = ?
+            """;
+
+    /**
+     * Copia di un gruppo di stati: prima i dati statici mancanti, poi le righe
+     * degli stati, infine la rimozione degli stati da {@code state_backfill}.
+     * Ogni istruzione ha come unico parametro l'array degli UUID degli stati;
+     * le righe copiate restano nelle vecchie tabelle fino a {@link #finish}.
+     */
+    private static final List<String> SQL_COPY_STATE = List.of(
+            """
+            INSERT INTO world_rooms (room_name)
+                SELECT DISTINCT room_name FROM (
+                    SELECT character_current_room AS room_name FROM characters WHERE game_state_id = ANY(?1)
+                    UNION SELECT npc_current_room FROM npcs WHERE game_state_id = ANY(?1)
+                ) WHERE room_name NOT IN (SELECT room_name FROM world_rooms)
+            """,
+            """
+            INSERT INTO world_characters (character_name, character_display_name)
+                SELECT DISTINCT character_name, character_display_name FROM characters c
+                WHERE c.game_state_id = ANY(?1) AND NOT EXISTS (SELECT 1 FROM world_characters w
+                    WHERE w.character_name = c.character_name AND w.character_display_name = c.character_display_name)
+            """,
+            """
+            INSERT INTO world_npcs (npc_name, npc_display_name)
+                SELECT DISTINCT npc_name, npc_display_name FROM npcs n
+                WHERE n.game_state_id = ANY(?1) AND NOT EXISTS (SELECT 1 FROM world_npcs w
+                    WHERE w.npc_name = n.npc_name AND w.npc_display_name = n.npc_display_name)
+            """,
+            """
+            INSERT INTO world_items (item_name, item_display_name, item_description)
+                SELECT DISTINCT item_name, item_display_name, item_description FROM character_inventories i
+                WHERE i.game_state_id = ANY(?1) AND NOT EXISTS (SELECT 1 FROM world_items w
+                    WHERE w.item_name = i.item_name AND w.item_display_name = i.item_display_name
+                    AND w.item_description = i.item_description)
+            """,
+            """
+            INSERT INTO world_flags (flag_key)
+                SELECT DISTINCT flag_key FROM game_flags
+                WHERE game_state_id = ANY(?1) AND flag_key NOT IN (SELECT flag_key FROM world_flags)
+            """,
+            """
+            INSERT INTO state_flags (gs_id, flag_id)
+                SELECT s.gs_id, w.flag_id FROM game_flags f
+                JOIN game_states s ON s.id = f.game_state_id
+                JOIN world_flags w ON w.flag_key = f.flag_key
+                WHERE f.game_state_id = ANY(?1)
+            """,
+            """
+            INSERT INTO state_characters (gs_id, character_id, room_id)
+                SELECT s.gs_id, w.character_id, r.room_id FROM characters c
+                JOIN game_states s ON s.id = c.game_state_id
+                JOIN world_characters w ON w.character_name = c.character_name
+                    AND w.character_display_name = c.character_display_name
+                JOIN world_rooms r ON r.room_name = c.character_current_room
+                WHERE c.game_state_id = ANY(?1)
+            """,
+            """
+            INSERT INTO state_npcs (gs_id, npc_id, room_id)
+                SELECT s.gs_id, w.npc_id, r.room_id FROM npcs n
+                JOIN game_states s ON s.id = n.game_state_id
+                JOIN world_npcs w ON w.npc_name = n.npc_name AND w.npc_display_name = n.npc_display_name
+                JOIN world_rooms r ON r.room_name = n.npc_current_room
+                WHERE n.game_state_id = ANY(?1)
+            """,
+            """
+            INSERT INTO state_inventories (gs_id, character_id, item_id)
+                SELECT s.gs_id, c.character_id, w.item_id FROM character_inventories i
+                JOIN game_states s ON s.id = i.game_state_id
+                JOIN characters old ON old.game_state_id = i.game_state_id AND old.character_name = i.character_name
+                JOIN world_characters c ON c.character_name = old.character_name
+                    AND c.character_display_name = old.character_display_name
+                JOIN world_items w ON w.item_name = i.item_name AND w.item_display_name = i.item_display_name
+                    AND w.item_description = i.item_description
+                WHERE i.game_state_id = ANY(?1)
+            """,
+            """
+            DELETE FROM state_backfill
+                WHERE gs_id IN (SELECT gs_id FROM game_states WHERE id = ANY(?1))
+            """);
+
+    @Override
+    public int version() {
+        return 2;
+    }
+
+    @Override
+    public String description() {
+        return "compact state tables and static world data";
+    }
+
+    @Override
+    public void migrate(Connection con) throws SQLException {
+        String sqlCreateTables = """
+            CREATE TABLE IF NOT EXISTS world_rooms (
+                room_id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                room_name VARCHAR(100) NOT NULL UNIQUE
+            );
+
+            CREATE TABLE IF NOT EXISTS world_characters (
+                character_id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                character_name VARCHAR(100) NOT NULL,
+                character_display_name VARCHAR(100) NOT NULL,
+                UNIQUE (character_name, character_display_name)
+            );
+
+            CREATE TABLE IF NOT EXISTS world_npcs (
+                npc_id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                npc_name VARCHAR(100) NOT NULL,
+                npc_display_name VARCHAR(100) NOT NULL,
+                UNIQUE (npc_name, npc_display_name)
+            );
+
+            CREATE TABLE IF NOT EXISTS world_items (
+                item_id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                item_name VARCHAR(100) NOT NULL,
+                item_display_name VARCHAR(100) NOT NULL,
+                item_description VARCHAR(1000) NOT NULL,
+                UNIQUE (item_name, item_display_name, item_description)
+            );
+
+            CREATE TABLE IF NOT EXISTS world_flags (
+                flag_id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                flag_key VARCHAR(100) NOT NULL UNIQUE
+            );
+
+            ALTER TABLE game_states ADD COLUMN IF NOT EXISTS gs_id INT GENERATED BY DEFAULT AS IDENTITY;
+            ALTER TABLE game_states ADD CONSTRAINT IF NOT EXISTS game_states_gs_id UNIQUE (gs_id);
+            CREATE INDEX IF NOT EXISTS game_states_gr_name ON game_states(gr_name, gs_id);
+
+            CREATE TABLE IF NOT EXISTS state_flags (
+                gs_id INT NOT NULL,
+                flag_id INT NOT NULL,
+                PRIMARY KEY (gs_id, flag_id),
+                FOREIGN KEY (gs_id) REFERENCES game_states(gs_id) ON DELETE CASCADE,
+                FOREIGN KEY (flag_id) REFERENCES world_flags(flag_id)
+            );
+
+            CREATE TABLE IF NOT EXISTS state_characters (
+                gs_id INT NOT NULL,
+                character_id INT NOT NULL,
+                room_id INT NOT NULL,
+                PRIMARY KEY (gs_id, character_id),
+                FOREIGN KEY (gs_id) REFERENCES game_states(gs_id) ON DELETE CASCADE,
+                FOREIGN KEY (character_id) REFERENCES world_characters(character_id),
+                FOREIGN KEY (room_id) REFERENCES world_rooms(room_id)
+            );
+
+            CREATE TABLE IF NOT EXISTS state_npcs (
+                gs_id INT NOT NULL,
+                npc_id INT NOT NULL,
+                room_id INT NOT NULL,
+                PRIMARY KEY (gs_id, npc_id),
+                FOREIGN KEY (gs_id) REFERENCES game_states(gs_id) ON DELETE CASCADE,
+                FOREIGN KEY (npc_id) REFERENCES world_npcs(npc_id),
+                FOREIGN KEY (room_id) REFERENCES world_rooms(room_id)
+            );
+
+            CREATE TABLE IF NOT EXISTS state_inventories (
+                gs_id INT NOT NULL,
+                character_id INT NOT NULL,
+                item_id INT NOT NULL,
+                PRIMARY KEY (gs_id, character_id, item_id),
+                FOREIGN KEY (gs_id, character_id) REFERENCES state_characters(gs_id, character_id) ON DELETE CASCADE,
+                FOREIGN KEY (item_id) REFERENCES world_items(item_id)
+            );
+            """;
+        String sqlCreateBackfill = """
+            CREATE TABLE IF NOT EXISTS state_backfill (
+                gs_id INT PRIMARY KEY,
+                FOREIGN KEY (gs_id) REFERENCES game_states(gs_id) ON DELETE CASCADE
+            );
+
+            INSERT INTO state_backfill (gs_id)
+                SELECT gs_id FROM game_states s
+                WHERE NOT EXISTS (SELECT 1 FROM state_characters c WHERE c.gs_id = s.gs_id)
+                  AND NOT EXISTS (SELECT 1 FROM state_backfill b WHERE b.gs_id = s.gs_id);
+            """;
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate(sqlCreateTables);
+            if (tableExists(con, "GAME_FLAGS")) {
+                stmt.executeUpdate(sqlCreateBackfill);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasBackfill() {
+        return true;
+    }
+
+    @Override
+    public int backfill(Connection con, int batchSize) throws SQLException {
+        if (!tableExists(con, "STATE_BACKFILL")) {
+            return 0;
+        }
+
+        List<UUID> pending = new ArrayList<>(batchSize);
+        try (PreparedStatement ps = con.prepareStatement(SQL_PENDING_STATES)) {
+            ps.setInt(1, batchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    pending.add((UUID) rs.getObject(1));
+                }
+            }
+        }
+        copyStates(con, pending);
+        return pending.size();
+    }
+
+    @Override
+    public boolean isRoomPending(Connection con, String gameRoomName) throws SQLException {
+        return tableExists(con, "STATE_BACKFILL") && !pendingRoomStates(con, gameRoomName).isEmpty();
+    }
+
+    @Override
+    public void prepareRoom(Connection con, String gameRoomName) throws SQLException {
+        if (tableExists(con, "STATE_BACKFILL")) {
+            copyStates(con, pendingRoomStates(con, gameRoomName));
+        }
+    }
+
+    @Override
+    public void finish(Connection con) throws SQLException {
+        String sqlDropLegacyTables = """
+            DROP TABLE IF EXISTS character_inventories;
+            DROP TABLE IF EXISTS characters;
+            DROP TABLE IF EXISTS npcs;
+            DROP TABLE IF EXISTS game_flags;
+            DROP TABLE IF EXISTS state_backfill;
+            """;
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate(sqlDropLegacyTables);
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static List<UUID> pendingRoomStates(Connection con, String gameRoomName) throws SQLException {
+        List<UUID> states = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(SQL_PENDING_ROOM_STATES)) {
+            ps.setString(1, gameRoomName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    states.add((UUID) rs.getObject(1));
+                }
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Copia gli stati indicati in un'unica transazione.
+     */
+    private static void copyStates(Connection con, List<UUID> states) throws SQLException {
+        if (states.isEmpty()) {
+            return;
+        }
+
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try {
+            UUID[] ids = states.toArray(UUID[]::new);
+            for (String sql : SQL_COPY_STATE) {
+                try (PreparedStatement ps = con.prepareStatement(sql)) {
+                    ps.setObject(1, ids);
+                    ps.executeUpdate();
+                }
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static boolean tableExists(Connection con, String tableName) throws SQLException {
+        try (ResultSet rs = con.getMetaData().getTables(null, null, tableName, new String[] {"TABLE"})) {
+            return rs.next();
+        }
+    }
+}
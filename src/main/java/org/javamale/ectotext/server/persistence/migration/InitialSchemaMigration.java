@@ -0,0 +1,88 @@
+package org.javamale.ectotext.server.persistence.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Versione 1: lo schema originale, con i dati dei personaggi, degli NPC e
+ * degli inventari salvati per esteso in ogni stato di gioco.
+ * <p>
+ * Le istruzioni sono idempotenti: su un database creato prima del
+ * versionamento dello schema si limitano ad aggiungere le colonne delle
+ * stanze introdotte in seguito.
+ * </p>
+ */
+final class InitialSchemaMigration implements Migration {
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public String description() {
+        return "initial schema";
+    }
+
+    @Override
+    public void migrate(Connection con) throws SQLException {
+        String sqlCreateTables = """
+            CREATE TABLE IF NOT EXISTS game_rooms (
+                gr_name VARCHAR(30) PRIMARY KEY,
+                gr_password VARCHAR(30) NOT NULL,
+                gr_max_players INT NOT NULL DEFAULT 3,
+                gr_max_spectators INT NOT NULL DEFAULT 0,
+                gr_game VARCHAR(50) NOT NULL DEFAULT 'ectotext'
+            );
+
+            ALTER TABLE game_rooms ADD COLUMN IF NOT EXISTS gr_max_players INT NOT NULL DEFAULT 3;
+            ALTER TABLE game_rooms ADD COLUMN IF NOT EXISTS gr_max_spectators INT NOT NULL DEFAULT 0;
+            ALTER TABLE game_rooms ADD COLUMN IF NOT EXISTS gr_game VARCHAR(50) NOT NULL DEFAULT 'ectotext';
+
+            CREATE TABLE IF NOT EXISTS game_states (
+                id UUID PRIMARY KEY,
+                gr_name VARCHAR(30),
+                FOREIGN KEY (gr_name) REFERENCES game_rooms(gr_name) ON UPDATE CASCADE ON DELETE CASCADE
+            );
+
+            CREATE TABLE IF NOT EXISTS game_flags (
+                game_state_id UUID NOT NULL,
+                flag_key VARCHAR(100) NOT NULL,
+                PRIMARY KEY (game_state_id, flag_key),
+                FOREIGN KEY (game_state_id) REFERENCES game_states(id) ON UPDATE CASCADE ON DELETE CASCADE
+            );
+
+            CREATE TABLE IF NOT EXISTS characters (
+                game_state_id UUID NOT NULL,
+                character_name VARCHAR(100) NOT NULL,
+                character_display_name VARCHAR(100) NOT NULL,
+                character_current_room VARCHAR(100) NOT NULL,
+                PRIMARY KEY (game_state_id, character_name),
+                FOREIGN KEY (game_state_id) REFERENCES game_states(id) ON UPDATE CASCADE ON DELETE CASCADE
+            );
+
+            CREATE TABLE IF NOT EXISTS npcs (
+                game_state_id UUID NOT NULL,
+                npc_name VARCHAR(100) NOT NULL,
+                npc_display_name VARCHAR(100) NOT NULL,
+                npc_current_room VARCHAR(100) NOT NULL,
+                PRIMARY KEY (game_state_id, npc_name),
+                FOREIGN KEY (game_state_id) REFERENCES game_states(id) ON UPDATE CASCADE ON DELETE CASCADE
+            );
+
+            CREATE TABLE IF NOT EXISTS character_inventories (
+                game_state_id UUID NOT NULL,
+                character_name VARCHAR(100) NOT NULL,
+                item_name VARCHAR(100) NOT NULL,
+                item_display_name VARCHAR(100) NOT NULL,
+                item_description VARCHAR(100) NOT NULL,
+                PRIMARY KEY (game_state_id, character_name, item_name),
+                FOREIGN KEY (game_state_id, character_name) REFERENCES characters(game_state_id, character_name) ON UPDATE CASCADE ON DELETE CASCADE
+            );
+            """;
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate(sqlCreateTables);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.javamale.ectotext.server.persistence.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Interfaccia Migration.
+ * <p>
+ * Responsabilità principale di Migration: descrivere un passo di evoluzione
+ * dello schema del database, identificato da un numero di versione crescente
+ * ed eseguito una sola volta da {@link MigrationRunner}.
+ * </p>
+ * Un passo si divide in due parti:
+ * <ul>
+ *   <li>{@link #migrate}: modifiche dello schema eseguite all'avvio, prima
+ *       che il database venga usato; devono essere rapide e idempotenti;</li>
+ *   <li>un eventuale recupero dei dati ({@link #hasBackfill()}), eseguito a
+ *       lotti in background mentre il server è già in funzione. Finché non
+ *       termina, {@link #prepareRoom} deve rendere subito leggibili i dati di
+ *       una stanza, così che il caricamento delle stanze non debba attendere.</li>
+ * </ul>
+ */
+public interface Migration {
+
+    /**
+     * @return versione dello schema raggiunta con questo passo
+     */
+    int version();
+
+    /**
+     * @return descrizione breve del passo, registrata in {@code schema_version}
+     */
+    String description();
+
+    /**
+     * Applica le modifiche dello schema. Viene chiamato all'avvio se la
+     * versione non è ancora registrata; deve poter essere ripetuto se un
+     * avvio precedente è stato interrotto.
+     *
+     * @param con connessione al database
+     * @throws SQLException in caso di errori di accesso al database
+     */
+    void migrate(Connection con) throws SQLException;
+
+    /**
+     * @return {@code true} se il passo prevede un recupero dei dati a lotti
+     */
+    default boolean hasBackfill() {
+        return false;
+    }
+
+    /**
+     * Recupera un lotto di dati, in una transazione propria.
+     *
+     * @param con       connessione dedicata al recupero
+     * @param batchSize numero massimo di unità da recuperare
+     * @return unità recuperate, {@code 0} quando non resta nulla
+     * @throws SQLException in caso di errori di accesso al database
+     */
+    default int backfill(Connection con, int batchSize) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * Indica se i dati di una stanza attendono ancora il recupero. Viene
+     * chiamato senza attendere il lotto in corso, sulla connessione principale.
+     *
+     * @param con          connessione al database
+     * @param gameRoomName nome della stanza di gioco
+     * @return {@code true} se occorre chiamare {@link #prepareRoom}
+     * @throws SQLException in caso di errori di accesso al database
+     */
+    default boolean isRoomPending(Connection con, String gameRoomName) throws SQLException {
+        return false;
+    }
+
+    /**
+     * Rende leggibili nel nuovo schema i dati di una stanza non ancora
+     * recuperati. Viene chiamato prima di leggere lo stato della stanza
+     * finché il recupero non è terminato.
+     *
+     * @param con          connessione al database
+     * @param gameRoomName nome della stanza di gioco
+     * @throws SQLException in caso di errori di accesso al database
+     */
+    default void prepareRoom(Connection con, String gameRoomName) throws SQLException {
+    }
+
+    /**
+     * Conclude il passo al termine del recupero, ad esempio eliminando le
+     * tabelle non più usate.
+     *
+     * @param con connessione al database
+     * @throws SQLException in caso di errori di accesso al database
+     */
+    default void finish(Connection con) throws SQLException {
+    }
+}
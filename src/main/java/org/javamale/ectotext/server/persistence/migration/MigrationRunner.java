@@ -0,0 +1,284 @@
+package org.javamale.ectotext.server.persistence.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Esegue in ordine i passi di migrazione dello schema del database.
+ * <p>
+ * Le versioni applicate sono registrate nella tabella {@code schema_version}
+ * con l'istante di applicazione e quello di completamento; un passo con
+ * recupero dei dati resta aperto ({@code completed_at} nullo) finché il
+ * recupero non termina, anche attraverso più riavvii.
+ * </p>
+ * All'avvio ({@link #migrate()}):
+ * <ul>
+ *   <li>vengono applicati i passi con versione superiore a quella registrata;</li>
+ *   <li>il recupero di un passo viene completato subito se ne seguono altri,
+ *       che potrebbero dipendere dal suo esito;</li>
+ *   <li>il recupero dell'ultimo passo resta da eseguire: {@link #startBackfill}
+ *       lo avvia in background a lotti di {@value #DEFAULT_BATCH_SIZE} unità
+ *       ({@value #BATCH_SIZE_PROPERTY}), con una pausa di
+ *       {@value #DEFAULT_PAUSE_MILLIS} ms ({@value #PAUSE_MILLIS_PROPERTY})
+ *       tra un lotto e l'altro, mentre {@link #prepareRoom} rende subito
+ *       leggibile una stanza che deve essere caricata.</li>
+ * </ul>
+ */
+public final class MigrationRunner {
+
+    /** Proprietà di sistema per il numero di unità recuperate per lotto. */
+    public static final String BATCH_SIZE_PROPERTY = "ectotext.migration.batchSize";
+    /** Proprietà di sistema per la pausa tra due lotti, in millisecondi. */
+    public static final String PAUSE_MILLIS_PROPERTY = "ectotext.migration.pauseMillis";
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int DEFAULT_PAUSE_MILLIS = 10;
+
+    /**
+     * Passi di migrazione dello schema, in ordine di versione.
+     */
+    public static final List<Migration> MIGRATIONS = List.of(
+            new InitialSchemaMigration(),
+            new CompactStateMigration());
+
+    private final Connection con;
+    private final List<Migration> migrations;
+    private final int batchSize = Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+    private final long pauseMillis = Long.getLong(PAUSE_MILLIS_PROPERTY, DEFAULT_PAUSE_MILLIS);
+
+    /** Passo con recupero ancora da completare, o {@code null}. */
+    private volatile Migration pending;
+    /** Connessione dedicata al recupero in background. */
+    private Connection backfillCon;
+    private Thread backfillThread;
+    /**
+     * Segnale di arresto del recupero. Il thread non viene interrotto: un
+     * interrupt durante una scrittura chiuderebbe il file del database.
+     */
+    private final CountDownLatch stop = new CountDownLatch(1);
+
+    /**
+     * Prepara l'esecuzione dei passi indicati.
+     *
+     * @param con        connessione principale al database
+     * @param migrations passi di migrazione
+     */
+    public MigrationRunner(Connection con, List<Migration> migrations) {
+        this.con = con;
+        this.migrations = migrations.stream().sorted(Comparator.comparingInt(Migration::version)).toList();
+    }
+
+    /**
+     * Applica i passi mancanti.
+     *
+     * @return versione dello schema raggiunta
+     * @throws SQLException se un passo fallisce
+     */
+    public synchronized int migrate() throws SQLException {
+        String sqlVersionTable = """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                version INT PRIMARY KEY,
+                description VARCHAR(200),
+                applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                completed_at TIMESTAMP
+            );
+            ALTER TABLE schema_version ADD COLUMN IF NOT EXISTS description VARCHAR(200);
+            ALTER TABLE schema_version ADD COLUMN IF NOT EXISTS completed_at TIMESTAMP;
+            """;
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate(sqlVersionTable);
+        }
+
+        int current = 0;
+        List<Integer> open = new ArrayList<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, completed_at FROM schema_version ORDER BY version")) {
+            while (rs.next()) {
+                current = rs.getInt(1);
+                if (rs.getTimestamp(2) == null) {
+                    open.add(current);
+                }
+            }
+        }
+
+        pending = null;
+        for (Migration migration : migrations) {
+            if (open.contains(migration.version())) {
+                completeBackfill();
+                pending = migration;
+            } else if (migration.version() > current) {
+                completeBackfill();
+                System.out.println("Applying schema migration " + migration.version() + ": " + migration.description());
+                migration.migrate(con);
+                record(migration);
+                current = migration.version();
+                pending = migration.hasBackfill() ? migration : null;
+                if (pending == null) {
+                    complete(con, migration);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return {@code true} se un recupero dei dati non è ancora terminato
+     */
+    public boolean hasPendingBackfill() {
+        return pending != null;
+    }
+
+    /**
+     * Completa subito il recupero in sospeso, sulla connessione principale.
+     *
+     * @throws SQLException se il recupero fallisce
+     */
+    public synchronized void completeBackfill() throws SQLException {
+        Migration migration = pending;
+        if (migration == null) {
+            return;
+        }
+        long total = 0;
+        int done;
+        while ((done = migration.backfill(con, batchSize)) > 0) {
+            total += done;
+        }
+        finish(con, migration, total);
+    }
+
+    /**
+     * Avvia il recupero in sospeso su un thread in background. Il thread usa
+     * una connessione dedicata e la chiude al termine.
+     *
+     * @param connection connessione dedicata al recupero
+     */
+    public synchronized void startBackfill(Connection connection) {
+        if (pending == null || backfillThread != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println(e.getMessage());
+            }
+            return;
+        }
+        backfillCon = connection;
+        backfillThread = Thread.ofPlatform().name("schema-backfill").daemon().start(this::backfillLoop);
+    }
+
+    /**
+     * Rende leggibili i dati di una stanza prima del suo caricamento, se il
+     * recupero in corso non li ha ancora raggiunti. Una stanza già recuperata
+     * non attende; le altre attendono al più il lotto in esecuzione.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @throws SQLException se la copia dei dati fallisce
+     */
+    public void prepareRoom(String gameRoomName) throws SQLException {
+        Migration current = pending;
+        if (current == null || !current.isRoomPending(con, gameRoomName)) {
+            return;
+        }
+        synchronized (this) {
+            Migration migration = pending;
+            if (migration != null) {
+                migration.prepareRoom(backfillCon != null ? backfillCon : con, gameRoomName);
+            }
+        }
+    }
+
+    /**
+     * Ferma il recupero in background al termine del lotto in corso, che
+     * riprenderà al prossimo avvio, e ne attende la chiusura della connessione.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = backfillThread;
+        }
+        stop.countDown();
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private void backfillLoop() {
+        Migration migration = pending;
+        long total = 0;
+        long start = System.nanoTime();
+        System.out.println("Schema migration " + migration.version() + ": backfill started in background");
+        try {
+            do {
+                synchronized (this) {
+                    int done = migration.backfill(backfillCon, batchSize);
+                    if (done == 0) {
+                        finish(backfillCon, migration, total);
+                        System.out.printf("Schema migration %d: backfill completed in %d ms%n",
+                                migration.version(), (System.nanoTime() - start) / 1_000_000);
+                        return;
+                    }
+                    total += done;
+                }
+            } while (!stop.await(pauseMillis, TimeUnit.MILLISECONDS));
+            System.out.println("Schema migration " + migration.version() + ": backfill paused after "
+                    + total + " unit(s), resuming at next startup");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            System.err.println("Schema migration " + migration.version() + ": backfill failed after "
+                    + total + " unit(s): " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                try {
+                    backfillCon.close();
+                } catch (SQLException e) {
+                    System.err.println(e.getMessage());
+                }
+                backfillCon = null;
+            }
+        }
+    }
+
+    private void finish(Connection connection, Migration migration, long total) throws SQLException {
+        migration.finish(connection);
+        complete(connection, migration);
+        pending = null;
+        if (total > 0) {
+            System.out.println("Schema migration " + migration.version() + ": backfilled " + total + " unit(s)");
+        }
+    }
+
+    private void record(Migration migration) throws SQLException {
+        String sql = "MERGE INTO schema_version (version, description, applied_at, completed_at) "
+                + "VALUES (?, ?, CURRENT_TIMESTAMP, NULL)";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setInt(1, migration.version());
+            ps.setString(2, migration.description());
+            ps.executeUpdate();
+        }
+    }
+
+    private static void complete(Connection connection, Migration migration) throws SQLException {
+        String sql = "UPDATE schema_version SET completed_at = CURRENT_TIMESTAMP WHERE version = ?";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setInt(1, migration.version());
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.javamale.ectotext.server.persistence.storage;
+
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.server.persistence.DbManager;
+import org.javamale.ectotext.server.persistence.dao.GameRoomDAO;
+import org.javamale.ectotext.server.persistence.dao.GameStateDAO;
+import org.javamale.ectotext.server.persistence.dao.impl.GameRoomDAOImpl;
+import org.javamale.ectotext.server.util.DAOFactory;
+
+import java.sql.SQLException;
+
+/**
+ * Supporto di memorizzazione sul database H2 di {@link DbManager}, su file o
+ * in memoria secondo {@link Storage#STORAGE_PROPERTY}.
+ * <p>
+ * Gli stati di gioco sono salvati nella modalità scelta con
+ * {@link DAOFactory#PERSISTENCE_PROPERTY}; le stanze sempre sul database.
+ * </p>
+ */
+final class H2StorageBackend implements StorageBackend {
+
+    private final boolean inMemory;
+
+    /**
+     * @param inMemory {@code true} per il database in memoria
+     */
+    H2StorageBackend(boolean inMemory) {
+        this.inMemory = inMemory;
+    }
+
+    @Override
+    public String name() {
+        return inMemory ? Storage.H2_MEMORY : Storage.H2;
+    }
+
+    @Override
+    public GameRoomDAO createGameRoomDAO() {
+        return new GameRoomDAOImpl(DbManager.getConnection());
+    }
+
+    @Override
+    public GameStateDAO createGameStateDAO(GameDescription gameDescription) {
+        return DAOFactory.createGameStateDAO(DbManager.getConnection(), gameDescription);
+    }
+
+    @Override
+    public void prepareRoom(String gameRoomName) throws SQLException {
+        DbManager.prepareRoom(gameRoomName);
+    }
+
+    @Override
+    public void ping(int timeoutSeconds) throws SQLException {
+        DbManager.ping(timeoutSeconds);
+    }
+
+    @Override
+    public void close() {
+        DbManager.close();
+    }
+
+    @Override
+    public void reset() {
+        if (inMemory) {
+            // Il database in memoria viene eliminato con l'ultima connessione
+            DbManager.close();
+        } else {
+            DbManager.resetDb();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.javamale.ectotext.server.persistence.storage;
+
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.server.persistence.dao.GameRoomDAO;
+import org.javamale.ectotext.server.persistence.dao.GameStateDAO;
+import org.javamale.ectotext.server.persistence.dao.impl.HeapGameRoomDAO;
+import org.javamale.ectotext.server.persistence.dao.impl.HeapGameStateDAO;
+
+/**
+ * Supporto di memorizzazione nello heap: stanze e stati di gioco sono tenuti
+ * in un {@link HeapStore}, senza database né file. I dati si perdono alla
+ * chiusura; la modalità di persistenza degli stati non si applica.
+ */
+final class HeapStorageBackend implements StorageBackend {
+
+    private final HeapStore store = new HeapStore();
+
+    @Override
+    public String name() {
+        return Storage.HEAP;
+    }
+
+    @Override
+    public GameRoomDAO createGameRoomDAO() {
+        return new HeapGameRoomDAO(store);
+    }
+
+    @Override
+    public GameStateDAO createGameStateDAO(GameDescription gameDescription) {
+        return new HeapGameStateDAO(store, gameDescription);
+    }
+
+    @Override
+    public void close() {
+        store.clear();
+    }
+
+    @Override
+    public void reset() {
+        store.clear();
+    }
+}
@@ -0,0 +1,112 @@
+package org.javamale.ectotext.server.persistence.storage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Dati del {@link HeapStorageBackend}: le stanze di gioco, ordinate per nome
+ * come nella tabella {@code game_rooms}, e l'ultimo stato salvato di ogni
+ * stanza, codificato così che le modifiche successive del motore di gioco non
+ * alterino la copia salvata.
+ * <p>
+ * L'eliminazione di una stanza elimina anche il suo stato, come la foreign key
+ * {@code ON DELETE CASCADE} del database.
+ * </p>
+ */
+public final class HeapStore {
+
+    /**
+     * Riga di una stanza di gioco.
+     *
+     * @param name          nome della stanza
+     * @param password      password della stanza
+     * @param gameId        identificatore dell'avventura
+     * @param maxPlayers    numero massimo di giocatori
+     * @param maxSpectators numero massimo di spettatori
+     */
+    public record RoomRecord(String name, String password, String gameId, int maxPlayers, int maxSpectators) {}
+
+    /**
+     * Stato salvato di una stanza.
+     *
+     * @param uuid  UUID dello stato di gioco
+     * @param state stato codificato
+     */
+    public record StateRecord(UUID uuid, byte[] state) {}
+
+    private final Map<String, RoomRecord> rooms = new ConcurrentSkipListMap<>();
+    private final Map<String, StateRecord> states = new ConcurrentHashMap<>();
+
+    HeapStore() {}
+
+    /**
+     * Aggiunge una stanza.
+     *
+     * @param room stanza da aggiungere
+     * @return {@code false} se esiste già una stanza con lo stesso nome
+     */
+    public boolean addRoom(RoomRecord room) {
+        return rooms.putIfAbsent(room.name(), room) == null;
+    }
+
+    /**
+     * Elimina una stanza e il suo stato.
+     *
+     * @param roomName nome della stanza
+     */
+    public void deleteRoom(String roomName) {
+        rooms.remove(roomName);
+        states.remove(roomName);
+    }
+
+    /**
+     * @param roomName nome della stanza
+     * @return stanza, o {@code null} se non esiste
+     */
+    public RoomRecord getRoom(String roomName) {
+        return rooms.get(roomName);
+    }
+
+    /**
+     * @return stanze ordinate per nome
+     */
+    public List<RoomRecord> getRooms() {
+        return List.copyOf(rooms.values());
+    }
+
+    /**
+     * Sostituisce lo stato salvato di una stanza.
+     *
+     * @param roomName nome della stanza
+     * @param state    stato codificato
+     */
+    public void putState(String roomName, StateRecord state) {
+        states.put(roomName, state);
+    }
+
+    /**
+     * @param roomName nome della stanza
+     * @return stato salvato, o {@code null} se non esiste
+     */
+    public StateRecord getState(String roomName) {
+        return states.get(roomName);
+    }
+
+    /**
+     * Elimina lo stato con l'UUID indicato.
+     *
+     * @param uuid UUID dello stato di gioco
+     */
+    public void deleteState(UUID uuid) {
+        states.values().removeIf(s -> s.uuid().equals(uuid));
+    }
+
+    /** Elimina tutte le stanze e gli stati. */
+    void clear() {
+        rooms.clear();
+        states.clear();
+    }
+}
@@ -0,0 +1,96 @@
+package org.javamale.ectotext.server.persistence.storage;
+
+import java.util.List;
+
+/**
+ * Supporto di memorizzazione scelto all'avvio del server.
+ * <p>
+ * La proprietà di sistema {@value #STORAGE_PROPERTY} (opzione
+ * {@code --storage}) indica il supporto:
+ * <ul>
+ *   <li>{@value #H2} (predefinito): database H2 su file, {@code ./ectotextdb};</li>
+ *   <li>{@value #H2_MEMORY}: database H2 in memoria, eliminato alla chiusura;</li>
+ *   <li>{@value #HEAP}: stanze e stati in strutture dati nello heap, senza
+ *       SQL né I/O su disco.</li>
+ * </ul>
+ * Con i supporti in memoria i dati si perdono all'arresto del server: sono
+ * pensati per server temporanei, test di carico e per misurare il costo della
+ * persistenza separatamente dalla logica di gioco.
+ */
+public final class Storage {
+
+    /** Proprietà di sistema che sceglie il supporto di memorizzazione. */
+    public static final String STORAGE_PROPERTY = "ectotext.storage";
+
+    /** Database H2 su file. */
+    public static final String H2 = "h2";
+    /** Database H2 in memoria. */
+    public static final String H2_MEMORY = "h2-mem";
+    /** Strutture dati nello heap. */
+    public static final String HEAP = "heap";
+
+    /** Nomi dei supporti disponibili. */
+    public static final List<String> NAMES = List.of(H2, H2_MEMORY, HEAP);
+
+    private static volatile StorageBackend instance;
+
+    private Storage() {}
+
+    /**
+     * @return nome del supporto configurato
+     */
+    public static String configuredName() {
+        return System.getProperty(STORAGE_PROPERTY, H2);
+    }
+
+    /**
+     * Restituisce il supporto configurato, creandolo al primo utilizzo.
+     *
+     * @return supporto di memorizzazione
+     * @throws IllegalArgumentException se il supporto configurato non esiste
+     */
+    public static StorageBackend get() {
+        if (instance == null) {
+            synchronized (Storage.class) {
+                if (instance == null) {
+                    instance = create(configuredName());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Chiude il supporto, se aperto.
+     * Una chiamata successiva a {@link #get()} lo riapre.
+     */
+    public static void close() {
+        synchronized (Storage.class) {
+            if (instance == null) {
+                return;
+            }
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Elimina i dati del supporto configurato (usato per reset).
+     */
+    public static synchronized void reset() {
+        get().reset();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static StorageBackend create(String name) {
+        return switch (name) {
+            case H2 -> new H2StorageBackend(false);
+            case H2_MEMORY -> new H2StorageBackend(true);
+            case HEAP -> new HeapStorageBackend();
+            default -> throw new IllegalArgumentException("Unknown storage backend: " + name);
+        };
+    }
+}
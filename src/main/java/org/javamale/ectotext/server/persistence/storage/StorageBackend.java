@@ -0,0 +1,74 @@
+package org.javamale.ectotext.server.persistence.storage;
+
+import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.server.persistence.dao.GameRoomDAO;
+import org.javamale.ectotext.server.persistence.dao.GameStateDAO;
+
+import java.sql.SQLException;
+
+/**
+ * Interfaccia StorageBackend.
+ * <p>
+ * Responsabilità principale di StorageBackend: fornire i DAO delle stanze e
+ * degli stati di gioco di un supporto di memorizzazione, scelto all'avvio con
+ * {@link Storage}. Il server accede alla persistenza solo attraverso questa
+ * interfaccia, quindi può funzionare anche senza il file del database.
+ * </p>
+ * Implementazioni disponibili:
+ * <ul>
+ *   <li>{@link H2StorageBackend} su file, il comportamento predefinito;</li>
+ *   <li>{@link H2StorageBackend} in memoria, per server temporanei e test;</li>
+ *   <li>{@link HeapStorageBackend}, strutture dati nello heap senza JDBC.</li>
+ * </ul>
+ */
+public interface StorageBackend {
+
+    /**
+     * @return nome del supporto, come indicato in {@link Storage#STORAGE_PROPERTY}
+     */
+    String name();
+
+    /**
+     * Crea il DAO delle stanze di gioco.
+     *
+     * @return DAO delle stanze
+     */
+    GameRoomDAO createGameRoomDAO();
+
+    /**
+     * Crea il DAO degli stati di gioco per un'avventura.
+     *
+     * @param gameDescription descrizione dell'avventura della stanza
+     * @return DAO degli stati di gioco
+     */
+    GameStateDAO createGameStateDAO(GameDescription gameDescription);
+
+    /**
+     * Prepara la lettura dello stato di una stanza, ad esempio completando
+     * la migrazione dei suoi dati. Va chiamato prima di leggere lo stato.
+     *
+     * @param gameRoomName nome della stanza di gioco
+     * @throws SQLException se la preparazione fallisce
+     */
+    default void prepareRoom(String gameRoomName) throws SQLException {
+    }
+
+    /**
+     * Verifica che il supporto risponda.
+     *
+     * @param timeoutSeconds tempo massimo della verifica
+     * @throws SQLException se il supporto non risponde
+     */
+    default void ping(int timeoutSeconds) throws SQLException {
+    }
+
+    /**
+     * Chiude il supporto; i dati di un supporto in memoria vengono persi.
+     */
+    void close();
+
+    /**
+     * Elimina tutti i dati memorizzati (usato per reset).
+     */
+    void reset();
+}
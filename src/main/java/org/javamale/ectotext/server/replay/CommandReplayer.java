@@ -0,0 +1,299 @@
+package org.javamale.ectotext.server.replay;
+
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.common.model.Character;
+import org.javamale.ectotext.common.model.CommandHandler;
+import org.javamale.ectotext.common.model.GameFlag;
+import org.javamale.ectotext.common.model.GameStateSnapshot;
+import org.javamale.ectotext.common.model.GameStateSnapshot.CharacterSnapshot;
+import org.javamale.ectotext.common.model.GameStateSnapshot.NPCSnapshot;
+import org.javamale.ectotext.common.packet.ErrorCode;
+import org.javamale.ectotext.common.packet.impl.ErrorPacket;
+import org.javamale.ectotext.server.core.GameCreatorRegistry;
+import org.javamale.ectotext.server.core.GameEngine;
+import org.javamale.ectotext.server.util.PacketFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Riproduce uno {@link ReplayScript} su un {@link GameEngine} senza rete,
+ * database né client, alla massima velocità.
+ * <p>
+ * Ogni riproduzione parte da un motore nuovo con lo stato iniziale
+ * dell'avventura e produce una trascrizione JSON, una riga per passo:
+ * <pre>{"line":3,"player":"ann","command":"vai nord","output":[...pacchetti...]}</pre>
+ * seguita da una riga con lo stato finale (flag, personaggi, NPC e
+ * associazioni giocatore-personaggio, senza l'UUID casuale della partita).
+ * La trascrizione può essere:
+ * <ul>
+ *   <li>salvata come riferimento ({@link #record});</li>
+ *   <li>confrontata riga per riga con un riferimento ({@link #verify}),
+ *       segnalando la prima differenza;</li>
+ *   <li>ridotta a un CRC32 per ripetere lo script molte volte in parallelo
+ *       e verificare che tutte le ripetizioni coincidano ({@link #benchmark}).</li>
+ * </ul>
+ * Come in {@code GameRoom}, la scelta di un personaggio produce l'elenco dei
+ * personaggi disponibili o un errore {@code CHARACTER_NOT_AVAILABLE}. Il
+ * giocatore {@value ReplayScript#DEFAULT_PLAYER} riceve il primo personaggio
+ * libero al suo primo comando, se non ne ha scelto uno.
+ */
+public final class CommandReplayer {
+
+    /**
+     * Prima differenza tra una trascrizione e il riferimento.
+     *
+     * @param line     riga della trascrizione, a partire da 1
+     * @param expected riga del riferimento, o {@code null} se il riferimento è finito
+     * @param actual   riga prodotta, o {@code null} se la trascrizione è finita
+     */
+    public record Mismatch(long line, String expected, String actual) {}
+
+    /**
+     * Esito di {@link #benchmark}.
+     *
+     * @param runs          riproduzioni eseguite
+     * @param commands      comandi di gioco eseguiti in totale
+     * @param nanos         durata complessiva
+     * @param digest        CRC32 della trascrizione della prima riproduzione
+     * @param deterministic {@code true} se tutte le riproduzioni hanno prodotto la stessa trascrizione
+     */
+    public record Summary(int runs, long commands, long nanos, long digest, boolean deterministic) {
+        /** @return comandi eseguiti al minuto */
+        public double commandsPerMinute() {
+            return nanos == 0 ? 0 : commands * 60e9 / nanos;
+        }
+    }
+
+    /** Destinazione delle righe di una trascrizione. */
+    private interface Sink {
+        void line(String line) throws IOException;
+    }
+
+    private final String gameId;
+    private final ReplayScript script;
+
+    /**
+     * Prepara la riproduzione di uno script.
+     *
+     * @param gameId identificatore dell'avventura
+     * @param script passi da riprodurre
+     * @throws IllegalArgumentException se l'avventura non è disponibile
+     */
+    public CommandReplayer(String gameId, ReplayScript script) {
+        GameCreatorRegistry.getGameDescription(gameId);
+        this.gameId = gameId;
+        this.script = script;
+    }
+
+    /**
+     * Riproduce lo script e salva la trascrizione come riferimento.
+     *
+     * @param golden file di destinazione
+     * @throws IOException se il file non può essere scritto
+     */
+    public void record(Path golden) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(golden, StandardCharsets.UTF_8)) {
+            replay(line -> {
+                writer.write(line);
+                writer.newLine();
+            });
+        }
+    }
+
+    /**
+     * Riproduce lo script e confronta la trascrizione con un riferimento.
+     *
+     * @param golden file salvato con {@link #record}
+     * @return prima differenza, o {@code null} se le trascrizioni coincidono
+     * @throws IOException se il riferimento non può essere letto
+     */
+    public Mismatch verify(Path golden) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(golden, StandardCharsets.UTF_8)) {
+            Mismatch[] mismatch = new Mismatch[1];
+            long[] count = new long[1];
+            replay(line -> {
+                count[0]++;
+                if (mismatch[0] != null) {
+                    return;
+                }
+                String expected = reader.readLine();
+                if (!line.equals(expected)) {
+                    mismatch[0] = new Mismatch(count[0], expected, line);
+                }
+            });
+            if (mismatch[0] == null) {
+                String extra = reader.readLine();
+                if (extra != null) {
+                    mismatch[0] = new Mismatch(count[0] + 1, extra, null);
+                }
+            }
+            return mismatch[0];
+        }
+    }
+
+    /**
+     * Riproduce lo script più volte, su più thread, ciascuna volta con un
+     * motore nuovo.
+     *
+     * @param runs    numero di riproduzioni
+     * @param threads thread da usare
+     * @return durata, comandi al minuto e coerenza delle trascrizioni
+     */
+    public Summary benchmark(int runs, int threads) {
+        long start = System.nanoTime();
+        List<Long> digests = new ArrayList<>(runs);
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads))) {
+            List<Future<Long>> futures = new ArrayList<>(runs);
+            for (int i = 0; i < runs; i++) {
+                futures.add(executor.submit(this::digest));
+            }
+            for (Future<Long> future : futures) {
+                digests.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replay failed", e.getCause());
+        }
+        long nanos = System.nanoTime() - start;
+
+        long first = digests.isEmpty() ? 0 : digests.getFirst();
+        boolean deterministic = digests.stream().allMatch(d -> d == first);
+        return new Summary(digests.size(), digests.size() * script.commandCount(), nanos, first, deterministic);
+    }
+
+    /**
+     * Riproduce lo script una volta.
+     *
+     * @return CRC32 della trascrizione
+     */
+    public long digest() {
+        CRC32 crc = new CRC32();
+        try {
+            replay(line -> {
+                crc.update(line.getBytes(StandardCharsets.UTF_8));
+                crc.update('\n');
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return crc.getValue();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private void replay(Sink sink) throws IOException {
+        GameEngine engine = GameCreatorRegistry.createGameEngine(gameId);
+
+        for (ReplayScript.Step step : script.steps()) {
+            StringWriter out = new StringWriter(256);
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject();
+            json.name("line").value(step.line());
+            json.name("player").value(step.playerName());
+            json.name(step.select() ? "select" : "command").value(step.argument());
+            json.name("output").beginArray();
+
+            if (step.select()) {
+                if (engine.connectPlayer(step.playerName(), step.argument())) {
+                    json.jsonValue(PacketFactory.fromGameAvailableCharacters(engine.getAvailableCharacters()).toBaseJson());
+                } else {
+                    json.jsonValue(new ErrorPacket(ErrorCode.CHARACTER_NOT_AVAILABLE).toBaseJson());
+                }
+            } else {
+                if (step.playerName().equals(ReplayScript.DEFAULT_PLAYER)
+                        && !engine.getPlayerCharacters().containsKey(step.playerName())) {
+                    engine.getAvailableCharacters().stream()
+                            .map(Character::getName)
+                            .min(Comparator.naturalOrder())
+                            .ifPresent(name -> engine.connectPlayer(step.playerName(), name));
+                }
+                for (CommandHandler.CommandResponse response : engine.handleCommand(step.playerName(), step.argument())) {
+                    json.jsonValue(response.getPacket().toBaseJson());
+                }
+            }
+
+            json.endArray();
+            json.endObject();
+            json.close();
+            sink.line(out.toString());
+        }
+
+        sink.line(describeState(engine));
+    }
+
+    /**
+     * Descrive lo stato finale in forma canonica: elementi ordinati per
+     * nome e nessun riferimento all'UUID della partita.
+     */
+    private static String describeState(GameEngine engine) throws IOException {
+        GameStateSnapshot snapshot = GameStateSnapshot.of(engine.getGameState(), null);
+        StringWriter out = new StringWriter(1024);
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("state").beginObject();
+
+        json.name("flags").beginArray();
+        for (String key : snapshot.getFlags().stream().map(GameFlag::getKey).sorted().toList()) {
+            json.value(key);
+        }
+        json.endArray();
+
+        json.name("characters").beginArray();
+        for (CharacterSnapshot c : snapshot.getCharacters().stream()
+                .sorted(Comparator.comparing(CharacterSnapshot::name)).toList()) {
+            json.beginObject();
+            json.name("name").value(c.name());
+            json.name("display_name").value(c.displayName());
+            json.name("room").value(c.roomName());
+            json.name("inventory").beginArray();
+            for (String item : c.inventory().stream().sorted().toList()) {
+                json.value(item);
+            }
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("npcs").beginArray();
+        for (NPCSnapshot n : snapshot.getNPCs().stream()
+                .sorted(Comparator.comparing(NPCSnapshot::name)).toList()) {
+            json.beginObject();
+            json.name("name").value(n.name());
+            json.name("display_name").value(n.displayName());
+            json.name("room").value(n.roomName());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("players").beginObject();
+        for (Map.Entry<String, String> binding : new TreeMap<>(engine.getPlayerCharacters()).entrySet()) {
+            json.name(binding.getKey()).value(binding.getValue());
+        }
+        json.endObject();
+
+        json.endObject();
+        json.endObject();
+        json.close();
+        return out.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package org.javamale.ectotext.server.replay;
+
+import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.impl.GameCommandPacket;
+import org.javamale.ectotext.common.packet.impl.GameSelectCharacterPacket;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sequenza di passi da riprodurre con il {@link CommandReplayer}.
+ * <p>
+ * Lo script è un file di testo con un passo per riga; le righe vuote e
+ * quelle che iniziano con {@code #} vengono ignorate. Ogni riga può essere:
+ * <ul>
+ *   <li>un pacchetto JSON {@code game_select_character} o {@code game_command}
+ *       con il campo {@code player_name}, come quelli che il server riceve
+ *       dai client dopo aver associato il giocatore;</li>
+ *   <li>un comando di gioco in testo semplice, eseguito dal giocatore
+ *       {@value #DEFAULT_PLAYER}, come negli script del test di carico.</li>
+ * </ul>
+ *
+ * @param steps passi nell'ordine del file
+ */
+public record ReplayScript(List<Step> steps) {
+
+    /** Giocatore dei comandi scritti in testo semplice. */
+    public static final String DEFAULT_PLAYER = "player";
+
+    /**
+     * Passo dello script.
+     *
+     * @param line       riga del file, a partire da 1
+     * @param playerName giocatore che invia il pacchetto
+     * @param select     {@code true} per la scelta di un personaggio, {@code false} per un comando
+     * @param argument   personaggio scelto o comando eseguito
+     */
+    public record Step(int line, String playerName, boolean select, String argument) {}
+
+    /**
+     * Crea uno script di comandi in testo semplice, eseguiti tutti dal
+     * giocatore {@value #DEFAULT_PLAYER}.
+     *
+     * @param commands comandi di gioco
+     * @return script con un passo per comando
+     */
+    public static ReplayScript ofCommands(List<String> commands) {
+        List<Step> steps = new ArrayList<>(commands.size());
+        for (String command : commands) {
+            steps.add(new Step(steps.size() + 1, DEFAULT_PLAYER, false, command));
+        }
+        return new ReplayScript(List.copyOf(steps));
+    }
+
+    /**
+     * Legge uno script da file.
+     *
+     * @param path file dello script
+     * @return script letto
+     * @throws IOException              se il file non può essere letto
+     * @throws IllegalArgumentException se una riga non è un passo valido
+     */
+    public static ReplayScript load(Path path) throws IOException {
+        List<Step> steps = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                steps.add(line.startsWith("{") ? parsePacket(number, line) : new Step(number, DEFAULT_PLAYER, false, line));
+            }
+        }
+        return new ReplayScript(List.copyOf(steps));
+    }
+
+    /** @return numero di comandi di gioco nello script */
+    public long commandCount() {
+        return steps.stream().filter(step -> !step.select()).count();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static Step parsePacket(int number, String json) {
+        Packet packet;
+        try {
+            packet = Packet.fromBaseJson(json);
+        } catch (RuntimeException e) {
+            packet = null;
+        }
+
+        Step step = switch (packet) {
+            case GameSelectCharacterPacket select ->
+                    new Step(number, select.getPlayerName(), true, select.getCharacter());
+            case GameCommandPacket command ->
+                    new Step(number, command.getPlayerName(), false, command.getCommand());
+            case null, default -> throw new IllegalArgumentException(
+                    "Line " + number + ": expected a game_select_character or game_command packet");
+        };
+        if (step.playerName() == null || step.argument() == null) {
+            throw new IllegalArgumentException("Line " + number + ": player_name and the packet argument are required");
+        }
+        return step;
+    }
+}
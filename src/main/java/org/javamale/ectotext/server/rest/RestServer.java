@@ -4,8 +4,11 @@ import jakarta.ws.rs.core.UriBuilder;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.javamale.ectotext.server.rest.service.ClusterService;
 import org.javamale.ectotext.server.rest.service.GameRoomService;
 import org.javamale.ectotext.server.rest.service.HealthService;
+import org.javamale.ectotext.server.rest.service.MetricsService;
+import org.javamale.ectotext.server.rest.service.TraceService;
 import org.javamale.ectotext.server.rest.service.SocketService;
 
 import java.io.IOException;
@@ -18,6 +21,8 @@ import java.net.URI;
  *   <li>Endpoint di health check per monitoraggio</li>
  *   <li>Servizi per la gestione delle stanze di gioco</li>
  *   <li>Informazioni sullo stato del server socket</li>
+ *   <li>Metriche del server in formato JSON e Prometheus</li>
+ *   <li>Scambio dei riepiloghi delle stanze tra i nodi di un cluster</li>
  * </ul>
  * Il server viene configurato per accettare connessioni su tutte le interfacce di rete (0.0.0.0)
  * e utilizza Jersey per la gestione delle richieste REST.
@@ -25,6 +30,9 @@ import java.net.URI;
  * @see HealthService
  * @see SocketService
  * @see GameRoomService
+ * @see MetricsService
+ * @see TraceService
+ * @see ClusterService
  */
 public class RestServer {
     /** Porta su cui il server REST è in ascolto. */
@@ -48,7 +56,8 @@ public class RestServer {
     public RestServer(int port) {
         this.PORT = port;
         URI baseUri = UriBuilder.fromUri("http://0.0.0.0/").port(PORT).build();
-        ResourceConfig config = new ResourceConfig(HealthService.class, SocketService.class, GameRoomService.class);
+        ResourceConfig config = new ResourceConfig(HealthService.class, SocketService.class, GameRoomService.class,
+                MetricsService.class, TraceService.class, ClusterService.class);
 
         httpServer = GrizzlyHttpServerFactory.createHttpServer(baseUri, config);
     }
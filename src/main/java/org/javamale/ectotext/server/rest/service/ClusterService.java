@@ -0,0 +1,302 @@
+package org.javamale.ectotext.server.rest.service;
+
+import com.google.gson.JsonObject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.PUT;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.javamale.ectotext.common.packet.ErrorCode;
+import org.javamale.ectotext.common.packet.Packet;
+import org.javamale.ectotext.common.packet.impl.ErrorPacket;
+import org.javamale.ectotext.common.packet.impl.RoomListPacket;
+import org.javamale.ectotext.common.packet.impl.RoomListPacket.RoomListEntry;
+import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.cluster.Cluster;
+import org.javamale.ectotext.server.cluster.ClusterNode;
+import org.javamale.ectotext.server.cluster.RoomDirectory;
+import org.javamale.ectotext.server.cluster.RoomMigrator;
+import org.javamale.ectotext.server.cluster.RoomTransfer;
+import org.javamale.ectotext.server.core.GameRoomManager;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servizio REST usato dai nodi di un {@link Cluster} per scambiarsi i
+ * riepiloghi delle stanze e per spostare le stanze da un nodo all'altro.
+ * <p>
+ * Tutti gli endpoint sono accessibili sotto il path base {@code /api/cluster}
+ * e rispondono 404 se il server non fa parte di un cluster. Gli endpoint che
+ * modificano lo stato del nodo richiedono il segreto condiviso del cluster
+ * nell'intestazione {@link Cluster#SECRET_HEADER} e rispondono 401 se manca
+ * o non coincide.
+ * </p>
+ *
+ * @see RoomDirectory
+ * @see RoomMigrator
+ */
+@Path("/api/cluster")
+public class ClusterService {
+
+    /**
+     * Riceve il riepilogo delle stanze pubblicato da un altro nodo.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: PUT</li>
+     *   <li>Path: /api/cluster/directory/{node_id}</li>
+     *   <li>Consuma: un {@link RoomListPacket} in formato JSON</li>
+     * </ul>
+     *
+     * Possibili risposte:
+     * <ul>
+     *   <li>204 No Content - Riepilogo registrato</li>
+     *   <li>400 Bad Request - Body non valido</li>
+     *   <li>401 Unauthorized - Segreto del cluster mancante o errato</li>
+     *   <li>404 Not Found - Nodo sconosciuto o cluster non attivo</li>
+     * </ul>
+     *
+     * @param secret segreto condiviso presentato dal nodo
+     * @param nodeId identificatore del nodo che pubblica
+     * @param body   elenco delle stanze del nodo
+     * @return risposta HTTP con l'esito
+     * @see RoomDirectory#update
+     */
+    @PUT
+    @Path("/directory/{node_id}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response publishRooms(@HeaderParam(Cluster.SECRET_HEADER) String secret,
+                                 @PathParam("node_id") String nodeId, String body) {
+        if (!Cluster.isEnabled() || Cluster.getNode(nodeId) == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (!Cluster.isAuthorized(secret)) {
+            return error(Response.Status.UNAUTHORIZED, ErrorCode.NOT_AUTHORIZED);
+        }
+
+        Packet packet;
+        try {
+            packet = Packet.fromBaseJson(body);
+        } catch (Exception e) {
+            packet = null;
+        }
+        if (!(packet instanceof RoomListPacket roomList) || !isValid(roomList)) {
+            return error(Response.Status.BAD_REQUEST, ErrorCode.INVALID_PACKET);
+        }
+
+        RoomDirectory.update(nodeId, roomList.getRoomList());
+        return Response.noContent().build();
+    }
+
+    /**
+     * Restituisce l'età dei riepiloghi ricevuti dagli altri nodi.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: GET</li>
+     *   <li>Path: /api/cluster/directory</li>
+     *   <li>Produce: application/json</li>
+     * </ul>
+     *
+     * @return Response con status 200 (OK), o 404 se il cluster non è attivo
+     * @see RoomDirectory#toJson()
+     */
+    @GET
+    @Path("/directory")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getDirectory() {
+        if (!Cluster.isEnabled()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(RoomDirectory.toJson(), MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Sposta una stanza ospitata da questo nodo su un altro nodo.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: POST</li>
+     *   <li>Path: /api/cluster/rooms/{room_name}/migrate?to={node_id}</li>
+     *   <li>Produce: application/json</li>
+     * </ul>
+     *
+     * Possibili risposte:
+     * <ul>
+     *   <li>200 OK - Stanza spostata, con nodo di destinazione e durata del blocco</li>
+     *   <li>400 Bad Request - Nodo di destinazione sconosciuto o coincidente con questo</li>
+     *   <li>401 Unauthorized - Segreto del cluster mancante o errato</li>
+     *   <li>404 Not Found - Stanza non ospitata da questo nodo o cluster non attivo</li>
+     *   <li>409 Conflict - Migrazione della stanza già in corso</li>
+     *   <li>502 Bad Gateway - Il nodo di destinazione ha rifiutato la stanza o ha
+     *       confermato di non averla importata: la stanza è stata riaperta</li>
+     *   <li>504 Gateway Timeout - Il nodo di destinazione non ha confermato l'esito:
+     *       la stanza resta bloccata finché non risponde</li>
+     * </ul>
+     *
+     * Formato della risposta:
+     * <pre>{
+     *   "room_name": "SalaProva",
+     *   "node": "b",
+     *   "millis": 38
+     * }</pre>
+     *
+     * @param secret   segreto condiviso del cluster
+     * @param roomName nome della stanza
+     * @param nodeId   identificatore del nodo di destinazione
+     * @return risposta HTTP con l'esito
+     * @see RoomMigrator#migrate(String, ClusterNode)
+     */
+    @POST
+    @Path("/rooms/{room_name}/migrate")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response migrateRoom(@HeaderParam(Cluster.SECRET_HEADER) String secret,
+                                @PathParam("room_name") String roomName, @QueryParam("to") String nodeId) {
+        if (!Cluster.isEnabled()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (!Cluster.isAuthorized(secret)) {
+            return error(Response.Status.UNAUTHORIZED, ErrorCode.NOT_AUTHORIZED);
+        }
+
+        ClusterNode target = Cluster.getNode(nodeId);
+        long start = System.nanoTime();
+        RoomMigrator.Result result = RoomMigrator.migrate(roomName, target);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        return switch (result) {
+            case MIGRATED -> {
+                JsonObject json = new JsonObject();
+                json.addProperty("room_name", roomName);
+                json.addProperty("node", target.id());
+                json.addProperty("millis", millis);
+                yield Response.ok(json.toString(), MediaType.APPLICATION_JSON).build();
+            }
+            case ROOM_NOT_FOUND -> error(Response.Status.NOT_FOUND, ErrorCode.ROOM_NOT_FOUND);
+            case INVALID_TARGET -> error(Response.Status.BAD_REQUEST, ErrorCode.INVALID_PACKET);
+            case ALREADY_MIGRATING -> error(Response.Status.CONFLICT, ErrorCode.ROOM_MIGRATING);
+            case TARGET_REJECTED, TARGET_UNREACHABLE -> error(Response.Status.BAD_GATEWAY, ErrorCode.ROOM_NOT_CREATED);
+            case TARGET_UNCONFIRMED -> error(Response.Status.GATEWAY_TIMEOUT, ErrorCode.ROOM_MIGRATING);
+        };
+    }
+
+    /**
+     * Riceve una stanza spostata da un altro nodo.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: POST</li>
+     *   <li>Path: /api/cluster/rooms</li>
+     *   <li>Consuma: un {@link RoomTransfer} in formato JSON</li>
+     * </ul>
+     *
+     * Possibili risposte:
+     * <ul>
+     *   <li>201 Created - Stanza importata, posti riservati ai giocatori</li>
+     *   <li>400 Bad Request - Body non valido</li>
+     *   <li>401 Unauthorized - Segreto del cluster mancante o errato</li>
+     *   <li>404 Not Found - Cluster non attivo</li>
+     *   <li>409 Conflict - Stanza già presente, avventura o stato non validi, stato non salvato, server in arresto</li>
+     * </ul>
+     *
+     * @param secret segreto condiviso presentato dal nodo di origine
+     * @param body   contenuto della stanza
+     * @return risposta HTTP con l'esito
+     * @see GameRoomManager#importGameRoom(RoomTransfer)
+     */
+    @POST
+    @Path("/rooms")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response importRoom(@HeaderParam(Cluster.SECRET_HEADER) String secret, String body) {
+        if (!Cluster.isEnabled()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (!Cluster.isAuthorized(secret)) {
+            return error(Response.Status.UNAUTHORIZED, ErrorCode.NOT_AUTHORIZED);
+        }
+
+        RoomTransfer transfer;
+        try {
+            transfer = RoomTransfer.fromJson(body);
+        } catch (IOException | RuntimeException e) {
+            return error(Response.Status.BAD_REQUEST, ErrorCode.INVALID_PACKET);
+        }
+
+        if (!GameServer.getRoomManager().importGameRoom(transfer)) {
+            return error(Response.Status.CONFLICT, ErrorCode.ROOM_NOT_CREATED);
+        }
+        return Response.status(Response.Status.CREATED).build();
+    }
+
+    /**
+     * Stabilisce l'esito di un trasferimento il cui invio è rimasto senza
+     * risposta: se la stanza non è stata importata il trasferimento viene
+     * annullato e un invio ancora in viaggio sarà rifiutato.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: POST</li>
+     *   <li>Path: /api/cluster/rooms/{room_name}/settle?transfer={transfer_id}</li>
+     * </ul>
+     *
+     * Possibili risposte:
+     * <ul>
+     *   <li>204 No Content - Stanza importata con questo trasferimento</li>
+     *   <li>400 Bad Request - Identificatore del trasferimento mancante</li>
+     *   <li>401 Unauthorized - Segreto del cluster mancante o errato</li>
+     *   <li>404 Not Found - Cluster non attivo</li>
+     *   <li>410 Gone - Trasferimento annullato, la stanza non è stata importata</li>
+     * </ul>
+     *
+     * @param secret     segreto condiviso presentato dal nodo di origine
+     * @param roomName   nome della stanza
+     * @param transferId identificatore del trasferimento
+     * @return risposta HTTP con l'esito
+     * @see GameRoomManager#settleImport(String, String)
+     */
+    @POST
+    @Path("/rooms/{room_name}/settle")
+    public Response settleImport(@HeaderParam(Cluster.SECRET_HEADER) String secret,
+                                 @PathParam("room_name") String roomName,
+                                 @QueryParam("transfer") String transferId) {
+        if (!Cluster.isEnabled()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (!Cluster.isAuthorized(secret)) {
+            return error(Response.Status.UNAUTHORIZED, ErrorCode.NOT_AUTHORIZED);
+        }
+        if (transferId == null || transferId.isBlank()) {
+            return error(Response.Status.BAD_REQUEST, ErrorCode.INVALID_PACKET);
+        }
+
+        if (!GameServer.getRoomManager().settleImport(roomName, transferId)) {
+            return Response.status(Response.Status.GONE).build();
+        }
+        return Response.noContent().build();
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    private static boolean isValid(RoomListPacket packet) {
+        if (packet.getRoomList() == null) {
+            return false;
+        }
+        for (RoomListEntry entry : packet.getRoomList()) {
+            if (entry == null || entry.name() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Response error(Response.Status status, ErrorCode errorCode) {
+        return Response.status(status)
+                .entity(new ErrorPacket(errorCode).toBaseJson())
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+}
@@ -3,13 +3,20 @@ package org.javamale.ectotext.server.rest.service;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
 import org.javamale.ectotext.common.packet.ErrorCode;
 import org.javamale.ectotext.common.packet.impl.CreateRoomPacket;
 import org.javamale.ectotext.common.packet.impl.ErrorPacket;
+import org.javamale.ectotext.common.packet.impl.RoomListPacket;
 import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.cluster.Cluster;
+import org.javamale.ectotext.server.cluster.ClusterNode;
+import org.javamale.ectotext.server.cluster.RoomDirectory;
+import org.javamale.ectotext.server.core.GameCreatorRegistry;
 import org.javamale.ectotext.server.core.GameRoom;
 import org.javamale.ectotext.server.util.PacketFactory;
 
+import java.net.URI;
 import java.util.Collection;
 
 /**
@@ -28,6 +35,14 @@ import java.util.Collection;
  *   <li>Payload strutturati secondo il protocollo</li>
  * </ul>
  *
+ * <p>
+ * In un {@link Cluster} l'elenco delle stanze comprende quelle di tutti i
+ * nodi, lette dalla {@link RoomDirectory}, ciascuna con l'indirizzo socket
+ * del nodo che la ospita; le richieste
+ * su una singola stanza assegnata a un altro nodo ricevono un redirect
+ * temporaneo (307) verso quel nodo.
+ * </p>
+ *
  * @see GameRoom
  * @see GameServer
  * @see ErrorPacket
@@ -47,20 +62,32 @@ public class GameRoomService {
      *   <li>Nome identificativo</li>
      *   <li>Numero di giocatori connessi</li>
      *   <li>Stato corrente</li>
+     *   <li>Indirizzo socket del nodo che la ospita (solo in un cluster)</li>
      * </ul>
      *
+     * Le stanze degli altri nodi provengono dai riepiloghi che questi
+     * pubblicano periodicamente, quindi possono essere in ritardo al più
+     * dell'intervallo di pubblicazione. Con {@code scope=local} vengono
+     * restituite solo le stanze del nodo interrogato.
+     *
+     * @param scope {@code local} per le sole stanze del nodo, altrimenti tutte
      * @return risposta HTTP 200 OK con JSON contenente la lista delle stanze
      * @see Response
      * @see PacketFactory#fromGameRoomList
+     * @see RoomDirectory#getRemoteRooms()
      */
     @GET
     @Path("/rooms")
     @Produces("application/json")
-    public Response getRoomList() {
+    public Response getRoomList(@QueryParam("scope") String scope) {
         Collection<GameRoom> rooms = GameServer.getRoomManager().getGameRooms();
-        String json = PacketFactory.fromGameRoomList(rooms).toBaseJson();
+        RoomListPacket packet = PacketFactory.fromGameRoomList(rooms);
 
-        return Response.ok(json, MediaType.APPLICATION_JSON).build();
+        if (Cluster.isEnabled() && !"local".equals(scope)) {
+            packet.addAllRooms(RoomDirectory.getRemoteRooms());
+        }
+
+        return Response.ok(packet.toBaseJson(), MediaType.APPLICATION_JSON).build();
     }
 
     /**
@@ -72,6 +99,7 @@ public class GameRoomService {
      * Possibili risposte:
      * <ul>
      *   <li>200 OK - Stanza trovata, dettagli nel body</li>
+     *   <li>307 Temporary Redirect - Stanza assegnata a un altro nodo</li>
      *   <li>404 Not Found - Stanza non esistente</li>
      * </ul>
      *
@@ -85,6 +113,10 @@ public class GameRoomService {
     @Path("/rooms/{room_name}")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getRoomByName(@PathParam("room_name") String roomName) {
+        if (!Cluster.isLocal(roomName)) {
+            return redirectToOwner(roomName, "/api/rooms/" + roomName);
+        }
+
         GameRoom room = GameServer.getRoomManager().getGameRoom(roomName);
 
         if (room == null) {
@@ -107,12 +139,16 @@ public class GameRoomService {
      * <ul>
      *   <li>roomName: nome univoco della stanza (required)</li>
      *   <li>roomPassword: password di accesso (optional)</li>
+     *   <li>max_players: numero massimo di giocatori (optional, 0 = predefinito)</li>
+     *   <li>max_spectators: numero massimo di spettatori (optional)</li>
+     *   <li>game_id: avventura da ospitare (optional)</li>
      * </ul>
      *
      * Possibili risposte:
      * <ul>
      *   <li>201 Created - Stanza creata con successo</li>
-     *   <li>400 Bad Request - Formato richiesta non valido</li>
+     *   <li>307 Temporary Redirect - Stanza assegnata a un altro nodo</li>
+     *   <li>400 Bad Request - Formato richiesta, capienza o avventura non validi</li>
      *   <li>409 Conflict - Nome stanza già in uso</li>
      * </ul>
      *
@@ -139,14 +175,28 @@ public class GameRoomService {
 
         String roomName = packet.getRoomName();
         String roomPassword = packet.getRoomPassword();
+        int maxPlayers = packet.getMaxPlayers() > 0 ? packet.getMaxPlayers() : GameRoom.DEFAULT_MAX_PLAYERS;
+        int maxSpectators = packet.getMaxSpectators();
+        String gameId = packet.getGameId() != null ? packet.getGameId() : GameCreatorRegistry.DEFAULT_GAME_ID;
 
-        if (roomName == null || roomName.isBlank()) {
+        if (roomName == null || roomName.isBlank() || packet.getMaxPlayers() < 0
+                || !GameRoom.isValidCapacity(maxPlayers, maxSpectators)) {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ErrorPacket(ErrorCode.INVALID_PACKET).toBaseJson())
                     .build();
         }
 
-        if (!GameServer.getRoomManager().createGameRoom(roomName, roomPassword)) {
+        if (!Cluster.isLocal(roomName)) {
+            return redirectToOwner(roomName, "/api/rooms");
+        }
+
+        if (!GameCreatorRegistry.contains(gameId)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorPacket(ErrorCode.GAME_NOT_AVAILABLE).toBaseJson())
+                    .build();
+        }
+
+        if (!GameServer.getRoomManager().createGameRoom(roomName, roomPassword, gameId, maxPlayers, maxSpectators)) {
             return Response.status(Response.Status.CONFLICT)
                     .entity(new ErrorPacket(ErrorCode.ROOM_ALREADY_EXISTS).toBaseJson())
                     .build();
@@ -154,4 +204,22 @@ public class GameRoomService {
 
         return Response.status(Response.Status.CREATED).build();
     }
+
+    /**
+     * Costruisce un redirect temporaneo verso il nodo che ospita la stanza.
+     * Il 307 conserva metodo e body, quindi vale anche per la creazione.
+     *
+     * @param roomName nome della stanza
+     * @param path     percorso della richiesta originale
+     * @return risposta HTTP 307 con header {@code Location}
+     */
+    private static Response redirectToOwner(String roomName, String path) {
+        ClusterNode owner = Cluster.ownerOf(roomName);
+        URI location = UriBuilder.fromUri(owner.restUri()).path(path).build();
+
+        return Response.temporaryRedirect(location)
+                .entity(new ErrorPacket(ErrorCode.ROOM_ON_OTHER_NODE).toBaseJson())
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
 }
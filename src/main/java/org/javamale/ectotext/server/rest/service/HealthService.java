@@ -5,6 +5,7 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.javamale.ectotext.server.health.HealthMonitor;
 
 /**
  * Servizio REST per il monitoraggio dello stato del server.
@@ -20,6 +21,11 @@ import jakarta.ws.rs.core.Response;
  * Le risposte sono sempre in formato JSON per garantire
  * compatibilità con sistemi di monitoraggio standard.
  * </p>
+ * <p>
+ * Oltre al ping del client ({@code /api/health}) sono disponibili le sonde
+ * di liveness e readiness, basate sulle verifiche di {@link HealthMonitor}:
+ * rispondono 503 quando una verifica fallisce.
+ * </p>
  */
 @Path("/api")
 public class HealthService {
@@ -53,4 +59,59 @@ public class HealthService {
     public Response healthCheck() {
         return Response.ok("{\"status\":\"UP\"}", MediaType.APPLICATION_JSON).build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Sonda di liveness: verifica che il processo stia ancora servendo i client.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: GET</li>
+     *   <li>Path: /api/health/live</li>
+     *   <li>Produce: application/json</li>
+     * </ul>
+     *
+     * Possibili risposte:
+     * <ul>
+     *   <li>200 OK - accettazione delle connessioni ed event loop attivi</li>
+     *   <li>503 Service Unavailable - almeno una verifica è fallita</li>
+     * </ul>
+     *
+     * @return Response con l'esito delle verifiche
+     * @see HealthMonitor#live()
+     */
+    @GET
+    @Path("/health/live")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response liveness() {
+        return toResponse(HealthMonitor.live());
+    }
+
+    /**
+     * Sonda di readiness: verifica che il nodo possa ricevere nuovi giocatori.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: GET</li>
+     *   <li>Path: /api/health/ready</li>
+     *   <li>Produce: application/json</li>
+     * </ul>
+     *
+     * Possibili risposte:
+     * <ul>
+     *   <li>200 OK - tutti i componenti sono in salute</li>
+     *   <li>503 Service Unavailable - almeno una verifica è fallita</li>
+     * </ul>
+     *
+     * @return Response con l'esito delle verifiche
+     * @see HealthMonitor#ready()
+     */
+    @GET
+    @Path("/health/ready")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response readiness() {
+        return toResponse(HealthMonitor.ready());
+    }
+
+    private static Response toResponse(HealthMonitor.Report report) {
+        Response.Status status = report.up() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE;
+        return Response.status(status).entity(report.toJson()).type(MediaType.APPLICATION_JSON).build();
+    }
+}
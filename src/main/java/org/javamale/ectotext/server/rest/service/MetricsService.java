@@ -0,0 +1,65 @@
+package org.javamale.ectotext.server.rest.service;
+
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.javamale.ectotext.server.metrics.MetricsRegistry;
+import org.javamale.ectotext.server.metrics.ServerMetrics;
+
+/**
+ * Servizio REST per l'esportazione delle metriche del server.
+ * <p>
+ * Espone il contenuto di {@link MetricsRegistry} in due formati:
+ * <ul>
+ *   <li>JSON (default), per la consultazione diretta;</li>
+ *   <li>testo Prometheus, con {@code ?format=prometheus}, per lo scraping.</li>
+ * </ul>
+ *
+ * @see ServerMetrics
+ */
+@Path("/api")
+public class MetricsService {
+
+    /** Content type del formato testuale di Prometheus. */
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Restituisce le metriche correnti.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: GET</li>
+     *   <li>Path: /api/metrics</li>
+     *   <li>Produce: application/json oppure text/plain (Prometheus)</li>
+     * </ul>
+     *
+     * Possibili risposte:
+     * <ul>
+     *   <li>200 OK - metriche nel formato richiesto</li>
+     *   <li>400 Bad Request - formato non supportato</li>
+     * </ul>
+     *
+     * @param format {@code json} o {@code prometheus}
+     * @return risposta HTTP con le metriche
+     * @see MetricsRegistry#toJson()
+     * @see MetricsRegistry#toPrometheus()
+     */
+    @GET
+    @Path("/metrics")
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
+    public Response getMetrics(@QueryParam("format") @DefaultValue("json") String format) {
+        ServerMetrics.register();
+
+        return switch (format) {
+            case "json" -> Response.ok(MetricsRegistry.toJson(), MediaType.APPLICATION_JSON).build();
+            case "prometheus" -> Response.ok(MetricsRegistry.toPrometheus(), PROMETHEUS_TEXT).build();
+            default -> Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Unsupported format\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        };
+    }
+}
@@ -1,11 +1,15 @@
 package org.javamale.ectotext.server.rest.service;
 
+import com.google.gson.JsonObject;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import org.javamale.ectotext.server.GameServer;
+import org.javamale.ectotext.server.cluster.Cluster;
+import org.javamale.ectotext.server.cluster.ClusterNode;
 
 /**
  * Servizio REST per la gestione delle informazioni del server socket.
@@ -36,18 +40,32 @@ public class SocketService {
      * Il formato della risposta JSON è:
      * <pre>
      * {
-     *   "port": numero_porta
+     *   "port": numero_porta,
+     *   "host": "indirizzo"
      * }
      * </pre>
+     * Il campo {@code host} è presente solo in un {@link Cluster}: se la
+     * richiesta indica una stanza, porta e host sono quelli del nodo che la
+     * ospita, così che il client si colleghi direttamente a quel nodo.
      *
+     * @param room nome della stanza a cui il client vuole accedere (opzionale)
      * @return Response con status 200 (OK) e la porta del socket in formato JSON
      * @see GameServer#getSocketPort()
+     * @see Cluster#ownerOf(String)
      * @see MediaType#APPLICATION_JSON
      */
     @GET
     @Path("/port")
     @Produces("application/json")
-    public Response getPort() {
-        return Response.ok("{\"port\":" + GameServer.getSocketPort() + "}", MediaType.APPLICATION_JSON).build();
+    public Response getPort(@QueryParam("room") String room) {
+        if (!Cluster.isEnabled()) {
+            return Response.ok("{\"port\":" + GameServer.getSocketPort() + "}", MediaType.APPLICATION_JSON).build();
+        }
+
+        ClusterNode node = room == null ? Cluster.getLocalNode() : Cluster.ownerOf(room);
+        JsonObject json = new JsonObject();
+        json.addProperty("port", node.socketPort());
+        json.addProperty("host", node.host());
+        return Response.ok(json.toString(), MediaType.APPLICATION_JSON).build();
     }
 }
\ No newline at end of file
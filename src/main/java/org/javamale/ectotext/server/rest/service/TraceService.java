@@ -0,0 +1,59 @@
+package org.javamale.ectotext.server.rest.service;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.javamale.ectotext.server.trace.Tracer;
+
+/**
+ * Servizio REST per la consultazione delle tracce dei pacchetti.
+ * <p>
+ * Espone i due buffer mantenuti da {@link Tracer}:
+ * <ul>
+ *   <li>le richieste che hanno superato la soglia di lentezza;</li>
+ *   <li>le tracce campionate più recenti.</li>
+ * </ul>
+ */
+@Path("/api/traces")
+public class TraceService {
+
+    /**
+     * Restituisce le richieste lente più recenti.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: GET</li>
+     *   <li>Path: /api/traces/slow</li>
+     *   <li>Produce: application/json</li>
+     * </ul>
+     *
+     * @return risposta HTTP con le tracce, dalla più recente
+     * @see Tracer#slowToJson()
+     */
+    @GET
+    @Path("/slow")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getSlow() {
+        return Response.ok(Tracer.slowToJson()).build();
+    }
+
+    /**
+     * Restituisce le tracce campionate più recenti.
+     * Questo endpoint REST:
+     * <ul>
+     *   <li>Metodo: GET</li>
+     *   <li>Path: /api/traces/sampled</li>
+     *   <li>Produce: application/json</li>
+     * </ul>
+     *
+     * @return risposta HTTP con le tracce, dalla più recente
+     * @see Tracer#sampledToJson()
+     */
+    @GET
+    @Path("/sampled")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getSampled() {
+        return Response.ok(Tracer.sampledToJson()).build();
+    }
+}
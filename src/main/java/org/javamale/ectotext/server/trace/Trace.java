@@ -0,0 +1,206 @@
+package org.javamale.ectotext.server.trace;
+
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.common.packet.PacketType;
+import org.javamale.ectotext.server.network.ClientHandler;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Tracciamento del ciclo di vita di un singolo pacchetto ricevuto.
+ * <p>
+ * La traccia viene aperta appena la riga JSON è stata letta dal socket
+ * (istante di lettura) e chiusa quando le risposte destinate al mittente
+ * sono state scritte sul socket. Il tempo trascorso viene attribuito alle
+ * fasi di {@link Stage} tramite {@link #mark(Stage)}: ogni chiamata assegna
+ * alla fase indicata il tempo trascorso dalla chiamata precedente.
+ * <p>
+ * Una traccia è scritta dal thread di lettura del client e completata dal
+ * thread di scrittura; i due accessi sono ordinati dalla coda di attesa
+ * del {@link ClientHandler}.
+ */
+public final class Trace {
+
+    /**
+     * Fasi in cui è suddiviso il trattamento di un pacchetto.
+     */
+    public enum Stage {
+        /** Deserializzazione della riga JSON. */
+        DECODE,
+        /** Attesa del lock della stanza o del gestore delle stanze. */
+        QUEUE,
+        /** Elaborazione del pacchetto (es. esecuzione del comando). */
+        HANDLE,
+        /** Serializzazione e accodamento delle risposte. */
+        ENCODE,
+        /** Salvataggio dello stato di gioco su H2. */
+        PERSIST,
+        /** Attesa della scrittura sul socket delle risposte al mittente. */
+        FLUSH;
+
+        /** @return nome della fase in minuscolo, usato nell'esportazione */
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final ClientHandler client;
+    private final long readAt;
+    private final long startNanos;
+    private final long[] stages = new long[Stage.values().length];
+    private long lastNanos;
+    private long totalNanos;
+
+    /** Fasi già marcate, un bit per ordinale di {@link Stage}. */
+    private int marked;
+
+    private PacketType type;
+    private String room;
+    private String player;
+    private String command;
+
+    /** Numero d'ordine dell'ultimo frame accodato al mittente, 0 se nessuno. */
+    private volatile long flushSequence;
+
+    Trace(ClientHandler client) {
+        this.client = client;
+        this.readAt = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        this.lastNanos = startNanos;
+    }
+
+    /**
+     * Attribuisce a una fase il tempo trascorso dall'ultima chiamata.
+     *
+     * @param stage fase appena conclusa
+     */
+    public void mark(Stage stage) {
+        long now = System.nanoTime();
+        stages[stage.ordinal()] += now - lastNanos;
+        lastNanos = now;
+        marked |= 1 << stage.ordinal();
+    }
+
+    /**
+     * Indica se una fase è già stata marcata.
+     *
+     * @param stage fase richiesta
+     * @return {@code true} se {@link #mark(Stage)} è stato invocato per la fase
+     */
+    public boolean isMarked(Stage stage) {
+        return (marked & 1 << stage.ordinal()) != 0;
+    }
+
+    /** @return client mittente */
+    public ClientHandler getClient() {
+        return client;
+    }
+
+    /** @return tipo del pacchetto, {@code null} se non decodificabile */
+    public PacketType getType() {
+        return type;
+    }
+
+    /** Imposta il tipo del pacchetto decodificato. */
+    public void setType(PacketType type) {
+        this.type = type;
+    }
+
+    /**
+     * Associa alla traccia il contesto di gioco.
+     *
+     * @param room    nome della stanza
+     * @param player  nickname del giocatore
+     * @param command testo del comando
+     */
+    public void annotate(String room, String player, String command) {
+        this.room = room;
+        this.player = player;
+        this.command = command;
+    }
+
+    /** @return numero d'ordine dell'ultimo frame accodato al mittente */
+    public long getFlushSequence() {
+        return flushSequence;
+    }
+
+    /** Registra l'accodamento di un frame al mittente. */
+    public void setFlushSequence(long flushSequence) {
+        this.flushSequence = flushSequence;
+    }
+
+    /** @return durata complessiva in nanosecondi (valida dopo la chiusura) */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @param stage fase richiesta
+     * @return tempo attribuito alla fase in nanosecondi
+     */
+    public long getStageNanos(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /** Chiude la traccia calcolandone la durata complessiva. */
+    void close() {
+        totalNanos = lastNanos - startNanos;
+    }
+
+    /**
+     * Serializza la traccia in JSON.
+     * <p>
+     * Formato:
+     * <pre>{
+     *   "read_at": "2024-05-01T10:15:30.123Z",
+     *   "type": "game_command",
+     *   "room": "SalaProva",
+     *   "player": "giocatore",
+     *   "command": "vai nord",
+     *   "total_ms": 312.4,
+     *   "stages_ms": { "decode": 0.02, "queue": 280.1, "handle": 0.3, ... }
+     * }</pre>
+     *
+     * @param writer destinazione
+     * @throws IOException in caso di errori di scrittura
+     */
+    void toJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("read_at").value(Instant.ofEpochMilli(readAt).toString());
+        writer.name("type").value(type == null ? null : type.getKey());
+        writer.name("room").value(room);
+        writer.name("player").value(player);
+        writer.name("command").value(command);
+        writer.name("total_ms").value(totalNanos / 1e6);
+        writer.name("stages_ms").beginObject();
+        for (Stage stage : Stage.values()) {
+            writer.name(stage.key()).value(stages[stage.ordinal()] / 1e6);
+        }
+        writer.endObject();
+        writer.endObject();
+    }
+
+    /**
+     * @return riga di log con contesto e durata delle fasi
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%.1f ms %s", totalNanos / 1e6, type == null ? "invalid" : type.getKey()));
+        if (room != null) {
+            sb.append(" room=").append(room);
+        }
+        if (player != null) {
+            sb.append(" player=").append(player);
+        }
+        if (command != null) {
+            sb.append(" command=\"").append(command).append('"');
+        }
+        for (Stage stage : Stage.values()) {
+            sb.append(String.format(Locale.ROOT, " %s=%.1f", stage.key(), stages[stage.ordinal()] / 1e6));
+        }
+        return sb.toString();
+    }
+}
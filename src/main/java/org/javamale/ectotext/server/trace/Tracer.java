@@ -0,0 +1,277 @@
+package org.javamale.ectotext.server.trace;
+
+import com.google.gson.stream.JsonWriter;
+import org.javamale.ectotext.common.metrics.Histogram;
+import org.javamale.ectotext.server.metrics.MetricsRegistry;
+import org.javamale.ectotext.server.network.ClientHandler;
+import org.javamale.ectotext.server.trace.Trace.Stage;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Punto di accesso al tracciamento dei pacchetti.
+ * <p>
+ * Il thread di lettura di ogni client apre una {@link Trace} per ciascun
+ * pacchetto ({@link #start(ClientHandler)}) e la rende disponibile al codice
+ * che lo elabora tramite {@link #current()}; i punti intermedi chiamano
+ * {@link #mark(Stage)} senza dover ricevere la traccia come parametro.
+ * <p>
+ * Alla chiusura ({@link #finish(Trace)}) la traccia:
+ * <ul>
+ *   <li>viene registrata nel buffer delle richieste lente se supera
+ *       {@link #getSlowThresholdMillis()}; su standard error viene scritta
+ *       al più una richiesta lenta ogni {@value #SLOW_LOG_INTERVAL_SECONDS}
+ *       secondi, con il numero di quelle omesse nel frattempo;</li>
+ *   <li>viene campionata con probabilità {@link #getSampleRate()}: le tracce
+ *       campionate alimentano le metriche per fase e un buffer delle più
+ *       recenti.</li>
+ * </ul>
+ * Entrambi i buffer hanno dimensione fissa ({@value #BUFFER_SIZE}).
+ */
+public final class Tracer {
+
+    /** Proprietà di sistema per la soglia delle richieste lente (ms). */
+    public static final String SLOW_THRESHOLD_PROPERTY = "ectotext.trace.slowMillis";
+
+    /** Proprietà di sistema per la frazione di tracce campionate (0..1). */
+    public static final String SAMPLE_RATE_PROPERTY = "ectotext.trace.sampleRate";
+
+    /** Numero massimo di tracce conservate in ciascun buffer. */
+    public static final int BUFFER_SIZE = 200;
+
+    /** Intervallo minimo tra due righe di log delle richieste lente. */
+    public static final long SLOW_LOG_INTERVAL_SECONDS = 10;
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private static final Deque<Trace> SLOW = new ArrayDeque<>(BUFFER_SIZE);
+    private static final Deque<Trace> SAMPLED = new ArrayDeque<>(BUFFER_SIZE);
+
+    private static final Histogram[] STAGES = new Histogram[Stage.values().length];
+
+    private static final LongAdder SLOW_TOTAL = MetricsRegistry.counter("ectotext_slow_requests_total",
+            "Packets slower than the slow request threshold");
+
+    /** Istante (nanoTime) dal quale può essere scritta la prossima riga di log. */
+    private static final AtomicLong NEXT_SLOW_LOG = new AtomicLong(System.nanoTime());
+
+    /** Richieste lente non scritte nel log dall'ultima riga. */
+    private static final AtomicLong SUPPRESSED_SLOW = new AtomicLong();
+
+    private static volatile long slowThresholdNanos =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong(SLOW_THRESHOLD_PROPERTY, 250));
+    private static volatile double sampleRate =
+            Double.parseDouble(System.getProperty(SAMPLE_RATE_PROPERTY, "0.01"));
+
+    static {
+        for (Stage stage : Stage.values()) {
+            STAGES[stage.ordinal()] = MetricsRegistry.summary("ectotext_packet_stage_seconds",
+                    "Time spent in each stage of a packet's life (sampled)", 1e6, "stage", stage.key());
+        }
+    }
+
+    private Tracer() {}
+
+    /* ====================================================================== */
+    /*                              CONFIGURAZIONE                            */
+    /* ====================================================================== */
+
+    /** @return soglia oltre la quale una richiesta è registrata come lenta, in ms */
+    public static long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    /**
+     * Imposta la soglia delle richieste lente.
+     *
+     * @param millis soglia in millisecondi
+     * @throws IllegalArgumentException se negativa
+     */
+    public static void setSlowThresholdMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Invalid slow threshold: " + millis);
+        }
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /** @return frazione delle tracce campionate */
+    public static double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Imposta la frazione delle tracce campionate.
+     *
+     * @param rate valore tra 0 (nessuna) e 1 (tutte)
+     * @throws IllegalArgumentException se fuori intervallo
+     */
+    public static void setSampleRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Invalid sample rate: " + rate);
+        }
+        sampleRate = rate;
+    }
+
+    /* ====================================================================== */
+    /*                              TRACCIAMENTO                              */
+    /* ====================================================================== */
+
+    /**
+     * Apre la traccia di un pacchetto appena letto e la associa al thread
+     * corrente.
+     *
+     * @param client client mittente
+     * @return nuova traccia
+     */
+    public static Trace start(ClientHandler client) {
+        Trace trace = new Trace(client);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /** @return traccia associata al thread corrente, o {@code null} */
+    public static Trace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attribuisce alla fase indicata il tempo trascorso per la traccia del
+     * thread corrente, se presente.
+     *
+     * @param stage fase appena conclusa
+     */
+    public static void mark(Stage stage) {
+        Trace trace = CURRENT.get();
+        if (trace != null) {
+            trace.mark(stage);
+        }
+    }
+
+    /**
+     * Associa il contesto di gioco alla traccia del thread corrente.
+     *
+     * @param room    nome della stanza
+     * @param player  nickname del giocatore
+     * @param command testo del comando
+     */
+    public static void annotate(String room, String player, String command) {
+        Trace trace = CURRENT.get();
+        if (trace != null) {
+            trace.annotate(room, player, command);
+        }
+    }
+
+    /**
+     * Dissocia dal thread corrente la traccia attiva, al termine
+     * dell'elaborazione del pacchetto.
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Chiude una traccia, registrandola nel log delle richieste lente e/o
+     * tra quelle campionate.
+     *
+     * @param trace traccia completata
+     */
+    public static void finish(Trace trace) {
+        trace.close();
+
+        if (trace.getTotalNanos() >= slowThresholdNanos) {
+            SLOW_TOTAL.increment();
+            logSlow(trace);
+            append(SLOW, trace);
+        }
+
+        double rate = sampleRate;
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            for (Stage stage : Stage.values()) {
+                STAGES[stage.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(trace.getStageNanos(stage)));
+            }
+            append(SAMPLED, trace);
+        }
+    }
+
+    /* ====================================================================== */
+    /*                              ESPORTAZIONE                              */
+    /* ====================================================================== */
+
+    /**
+     * @return richieste lente più recenti in JSON, dalla più recente
+     */
+    public static String slowToJson() {
+        return toJson(SLOW);
+    }
+
+    /**
+     * @return tracce campionate più recenti in JSON, dalla più recente
+     */
+    public static String sampledToJson() {
+        return toJson(SAMPLED);
+    }
+
+    /* ------------------------------------------------------------------ */
+    /*                    METODI DI SUPPORTO PRIVATI                       */
+    /* ------------------------------------------------------------------ */
+
+    /**
+     * Scrive una richiesta lenta su standard error, se è trascorso
+     * l'intervallo minimo dalla riga precedente; altrimenti la conta tra
+     * quelle omesse.
+     */
+    private static void logSlow(Trace trace) {
+        long now = System.nanoTime();
+        long next = NEXT_SLOW_LOG.get();
+        if (now - next < 0
+                || !NEXT_SLOW_LOG.compareAndSet(next, now + TimeUnit.SECONDS.toNanos(SLOW_LOG_INTERVAL_SECONDS))) {
+            SUPPRESSED_SLOW.incrementAndGet();
+            return;
+        }
+
+        long suppressed = SUPPRESSED_SLOW.getAndSet(0);
+        System.err.println("Slow request: " + trace
+                + (suppressed > 0 ? " (" + suppressed + " more since the last report, see /api/traces/slow)" : ""));
+    }
+
+    private static void append(Deque<Trace> buffer, Trace trace) {
+        synchronized (buffer) {
+            if (buffer.size() == BUFFER_SIZE) {
+                buffer.removeLast();
+            }
+            buffer.addFirst(trace);
+        }
+    }
+
+    private static String toJson(Deque<Trace> buffer) {
+        List<Trace> traces;
+        synchronized (buffer) {
+            traces = new ArrayList<>(buffer);
+        }
+
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("slow_threshold_ms").value(getSlowThresholdMillis());
+            writer.name("sample_rate").value(sampleRate);
+            writer.name("traces").beginArray();
+            for (Trace trace : traces) {
+                trace.toJson(writer);
+            }
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+}
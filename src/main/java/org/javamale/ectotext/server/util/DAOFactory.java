@@ -1,13 +1,21 @@
 package org.javamale.ectotext.server.util;
 
 import org.javamale.ectotext.common.model.GameDescription;
+import org.javamale.ectotext.server.persistence.cache.GameStateCache;
 import org.javamale.ectotext.server.persistence.dao.CharacterDAO;
 import org.javamale.ectotext.server.persistence.dao.GameFlagDAO;
+import org.javamale.ectotext.server.persistence.dao.GameStateDAO;
 import org.javamale.ectotext.server.persistence.dao.InventoryDAO;
 import org.javamale.ectotext.server.persistence.dao.NPCDAO;
+import org.javamale.ectotext.server.persistence.dao.WorldDictionaryDAO;
 import org.javamale.ectotext.server.persistence.dao.impl.*;
+import org.javamale.ectotext.server.persistence.journal.EventJournal;
+import org.javamale.ectotext.server.persistence.mapped.MappedStateStore;
 
 import java.sql.Connection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Classe DAOFactory.
@@ -17,21 +25,77 @@ import java.sql.Connection;
  * </p>
  */
 public class DAOFactory {
+    /**
+     * Proprietà di sistema che sceglie come persistere gli stati di gioco:
+     * <ul>
+     *   <li>{@code rows} (predefinito): righe sul database H2, {@link GameStateDAOImpl};</li>
+     *   <li>{@code journal}: giornale degli eventi con istantanee periodiche,
+     *       {@link JournalGameStateDAO};</li>
+     *   <li>{@code mapped}: record a dimensione fissa in un file mappato in
+     *       memoria, {@link MappedGameStateDAO}.</li>
+     * </ul>
+     */
+    public static final String PERSISTENCE_PROPERTY = "ectotext.persistence";
+
+    /**
+     * Dizionari dei dati statici del mondo, uno per connessione, condivisi da
+     * tutti i DAO creati sulla stessa connessione.
+     */
+    private static final Map<Connection, WorldDictionaryDAO> DICTIONARIES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Crea il DAO degli stati di gioco scelto con {@link #PERSISTENCE_PROPERTY}.
+     * In modalità {@code rows} inizializza internamente anche le istanze di
+     * InventoryDAO, NPCDAO, CharacterDAO e GameFlagDAO necessarie; in modalità
+     * {@code journal} e {@code mapped} la connessione non viene usata.
+     *
+     * @param connection      valore di tipo Connection, connessione al database.
+     * @param gameDescription valore di tipo GameDescription, descrizione del gioco.
+     * @return un'istanza di GameStateDAO.
+     * @throws IllegalArgumentException se la modalità configurata non esiste
+     */
+    public static GameStateDAO createGameStateDAO(Connection connection, GameDescription gameDescription) {
+        return switch (System.getProperty(PERSISTENCE_PROPERTY, "rows")) {
+            case "rows" -> createRowGameStateDAO(connection, gameDescription);
+            case "journal" -> new JournalGameStateDAO(EventJournal.getInstance(), gameDescription);
+            case "mapped" -> new MappedGameStateDAO(MappedStateStore.getInstance(), gameDescription);
+            default -> throw new IllegalArgumentException(
+                    "Unknown persistence mode: " + System.getProperty(PERSISTENCE_PROPERTY));
+        };
+    }
+
     /**
      * Crea e restituisce una nuova istanza di GameStateDAOImpl, inizializzando internamente
      * anche le istanze di InventoryDAO, NPCDAO, CharacterDAO e GameFlagDAO necessarie.
+     * Il dizionario dei dati statici è quello di {@link #getWorldDictionaryDAO(Connection)},
+     * la cache degli stati salvati quella di {@link GameStateCache#of(Connection)}.
      *
      * @param connection      valore di tipo Connection, connessione al database.
      * @param gameDescription valore di tipo GameDescription, descrizione del gioco.
      * @return un'istanza di GameStateDAOImpl.
      */
-    public static GameStateDAOImpl createGameStateDAO(Connection connection, GameDescription gameDescription) {
-        InventoryDAO inventoryDAO = new InventoryDAOImpl(connection);
+    public static GameStateDAOImpl createRowGameStateDAO(Connection connection, GameDescription gameDescription) {
+        WorldDictionaryDAO dictionary = getWorldDictionaryDAO(connection);
+        InventoryDAO inventoryDAO = new InventoryDAOImpl(connection, dictionary);
 
-        NPCDAO npcDAO = new NPCDAOImpl(connection, gameDescription);
-        CharacterDAO characterDAO = new CharacterDAOImpl(connection, inventoryDAO, gameDescription);
-        GameFlagDAO gameFlagDAO = new GameFlagDAOImpl(connection);
+        NPCDAO npcDAO = new NPCDAOImpl(connection, dictionary, gameDescription);
+        CharacterDAO characterDAO = new CharacterDAOImpl(connection, inventoryDAO, dictionary, gameDescription);
+        GameFlagDAO gameFlagDAO = new GameFlagDAOImpl(connection, dictionary);
 
-        return new GameStateDAOImpl(connection, gameFlagDAO, characterDAO, npcDAO);
+        return new GameStateDAOImpl(connection, gameFlagDAO, characterDAO, npcDAO, dictionary,
+                GameStateCache.of(connection), gameDescription);
+    }
+
+    /**
+     * Restituisce il dizionario dei dati statici del mondo associato a una
+     * connessione, creandolo al primo utilizzo. Gli identificatori letti
+     * restano in memoria finché la connessione è in uso.
+     *
+     * @param connection valore di tipo Connection, connessione al database.
+     * @return il WorldDictionaryDAO condiviso della connessione.
+     */
+    public static WorldDictionaryDAO getWorldDictionaryDAO(Connection connection) {
+        return DICTIONARIES.computeIfAbsent(connection, WorldDictionaryDAOImpl::new);
     }
 }
@@ -6,6 +6,8 @@ import org.javamale.ectotext.common.packet.PacketType;
 import org.javamale.ectotext.common.packet.impl.GameAvailableCharactersPacket;
 import org.javamale.ectotext.common.packet.impl.RoomDetailsPacket;
 import org.javamale.ectotext.common.packet.impl.RoomListPacket;
+import org.javamale.ectotext.server.cluster.Cluster;
+import org.javamale.ectotext.server.cluster.ClusterNode;
 import org.javamale.ectotext.server.core.GameRoom;
 
 import java.util.Collection;
@@ -32,6 +34,8 @@ public class PacketFactory {
      * <ul>
      *   <li>Nome della stanza</li>
      *   <li>Numero di giocatori presenti</li>
+     *   <li>Numero massimo di giocatori</li>
+     *   <li>Indirizzo socket del nodo, se il server fa parte di un {@link Cluster}</li>
      * </ul>
      *
      * @param gameRoomList collezione di stanze di gioco attive
@@ -41,8 +45,12 @@ public class PacketFactory {
      * @see GameRoom
      */
     public static RoomListPacket fromGameRoomList(Collection<GameRoom> gameRoomList) {
+        ClusterNode node = Cluster.getLocalNode();
         Collection<RoomListPacket.RoomListEntry> entries = gameRoomList.stream()
-                .map(g -> new RoomListPacket.RoomListEntry(g.getName(), g.getPlayerCount()))
+                .map(g -> node == null
+                        ? new RoomListPacket.RoomListEntry(g.getName(), g.getPlayerCount(), g.getMaxPlayers())
+                        : new RoomListPacket.RoomListEntry(g.getName(), g.getPlayerCount(), g.getMaxPlayers(),
+                                node.host(), node.socketPort()))
                 .toList();
 
         return new RoomListPacket(entries);